@@ -1,17 +1,32 @@
 package com.example.Inscription.config;
 
 import com.google.genai.Client;
+import com.google.genai.types.HttpOptions;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class GeminiConfig {
+
+    /**
+     * URL de base de l'API Gemini ; à surcharger pour pointer vers un serveur de test local
+     */
+    @Value("${gemini.base-url:}")
+    private String baseUrl;
+
     @Bean
     public Client geminiClient(){
         String apiKey = System.getenv("GOOGLE_API_KEY");
         if (apiKey == null || apiKey.isEmpty()) {
             return null;
         }
-        return new Client();
+        if (baseUrl == null || baseUrl.isBlank()) {
+            return new Client();
+        }
+        return Client.builder()
+                .apiKey(apiKey)
+                .httpOptions(HttpOptions.builder().baseUrl(baseUrl).build())
+                .build();
     }
 }
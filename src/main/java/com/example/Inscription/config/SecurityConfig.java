@@ -1,5 +1,6 @@
 package com.example.Inscription.config;
 
+import com.example.Inscription.service.AnalysisAdmissionControl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -30,6 +31,7 @@ import java.util.Arrays;
 public class SecurityConfig {
     
     private final JwtTokenProvider jwtTokenProvider;
+    private final AnalysisAdmissionControl analysisAdmissionControl;
     
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -79,9 +81,13 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.GET, "/api/institution/events/*/grades").hasAnyRole("INSTITUTION_ADMIN", "CONTEST_MANAGER")
                 .requestMatchers("/api/institution/**").hasRole("INSTITUTION_ADMIN")
                 .requestMatchers("/api/admin/**").hasRole("SYSTEM_ADMIN")
+                // Candidate names and ids: staff only
+                .requestMatchers("/pdf/candidats").hasAnyRole("INSTITUTION_ADMIN", "SYSTEM_ADMIN")
                 .anyRequest().authenticated()
             )
-            .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class)
+            // After JWT so that authenticated clients are rate-limited per user rather than per address
+            .addFilterAfter(new AnalysisAdmissionFilter(analysisAdmissionControl), JwtAuthenticationFilter.class);
         
         return http.build();
     }
@@ -1,14 +1,29 @@
 package com.example.Inscription.controller;
 
+import com.example.Inscription.model.AnalysisJobType;
 import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentAnalysisJob;
 import com.example.Inscription.model.Inscription;
+import com.example.Inscription.service.BoundedExecutor;
+import com.example.Inscription.service.DocumentAnalysisJobService;
+import com.example.Inscription.service.DocumentAnalysisMetrics;
+import com.example.Inscription.service.DocumentAnalysisService;
 import com.example.Inscription.service.DocumentService;
+import com.example.Inscription.service.EventMetadataCache;
+import com.example.Inscription.service.GeminiException;
+import com.example.Inscription.service.GeminiGateway;
 import com.example.Inscription.service.GeminiService;
 import com.example.Inscription.service.InscriptionService;
+import com.example.Inscription.service.OnnxDocumentClassifier;
+import com.example.Inscription.service.UploadPreflight;
+import com.example.Inscription.service.WorkExecutors;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -16,6 +31,10 @@ import org.springframework.web.multipart.MultipartFile;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * Controller pour l'analyse et l'extraction de données des documents d'inscription.
@@ -34,6 +53,7 @@ import java.util.Optional;
 @RequestMapping("/api/documents")
 @Tag(name = "API Documents", description = "Analyse de documents pour l'inscription (utilise Gemini Vision)")
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:4200"})
+@Slf4j
 public class ApiDocumentController {
 
     @Autowired
@@ -45,6 +65,30 @@ public class ApiDocumentController {
     @Autowired
     private InscriptionService inscriptionService;
     
+    @Autowired
+    private DocumentAnalysisMetrics analysisMetrics;
+    
+    @Autowired
+    private DocumentAnalysisService documentAnalysisService;
+    
+    @Autowired
+    private DocumentAnalysisJobService jobService;
+    
+    @Autowired
+    private OnnxDocumentClassifier onnxClassifier;
+    
+    @Autowired
+    private UploadPreflight uploadPreflight;
+    
+    @Autowired
+    private WorkExecutors workExecutors;
+    
+    @Autowired
+    private GeminiGateway geminiGateway;
+    
+    @Autowired
+    private EventMetadataCache eventMetadataCache;
+    
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Stockage temporaire des fichiers uploadés (en mémoire) - avant sauvegarde en BDD
@@ -54,27 +98,45 @@ public class ApiDocumentController {
     private static final Map<String, String> uploadedDocTypes = new HashMap<>();
 
     @PostMapping("/classify")
-    @Operation(summary = "Classifier un document avec Gemini Vision", 
-               description = "Analyse l'image du document pour déterminer son type")
-    public ResponseEntity<Map<String, Object>> classifyDocument(@RequestParam("file") MultipartFile file) {
+    @Operation(summary = "Classifier un document", 
+               description = "Détermine le type du document avec le modèle ONNX local ; Gemini Vision n'est appelé que si sa confiance est insuffisante")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> classifyDocument(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "eventId", required = false) Long eventId) {
+        // Analyse sur le pool des appels IA : le thread de la requête est libéré pendant l'attente
+        return offload(workExecutors.ai(), () -> classifyNow(file, tenant(eventId)));
+    }
+
+    private ResponseEntity<Map<String, Object>> classifyNow(MultipartFile file, String tenant) {
         try {
             Map<String, Object> response = new HashMap<>();
             
             String fileName = file.getOriginalFilename();
-            String contentType = file.getContentType();
             byte[] fileBytes = file.getBytes();
             
             System.out.println("=== CLASSIFY: Fichier reçu: " + fileName + " (" + fileBytes.length + " bytes) ===");
 
-            // Déterminer le type MIME pour Gemini
-            String mimeType = getMimeType(contentType, fileName);
+            // Contrôle rapide du fichier ; le type MIME vient des premiers octets
+            UploadPreflight.Report preflight = uploadPreflight.inspect(fileBytes, null);
+            if (!preflight.isAccepted()) {
+                return rejected(preflight);
+            }
+            String mimeType = preflight.getMimeType();
             System.out.println("=== CLASSIFY: MIME type: " + mimeType + " ===");
             
             String documentType = "releve_de_note"; // Default
             String confidence = "medium";
-            
-            // Vérifier si Gemini est configuré
-            if (!geminiService.isConfigured()) {
+            String classifier = "gemini";
+            
+            // Modèle local d'abord : quelques millisecondes, sans appel réseau
+            Optional<OnnxDocumentClassifier.Classification> local = onnxClassifier.classify(fileBytes, mimeType);
+            if (local.isPresent() && onnxClassifier.isConfident(local.get())) {
+                documentType = local.get().getType();
+                confidence = local.get().getProbability() >= 0.95 ? "high" : "medium";
+                classifier = "onnx";
+                log.debug("Classified locally as {} (probability {})", documentType, local.get().getProbability());
+            } else if (!geminiService.isConfigured()) {
+                classifier = "filename";
                 System.out.println("=== CLASSIFY: Gemini non configuré, classification par défaut ===");
                 // Fallback: classification par nom de fichier
                 if (fileName != null) {
@@ -86,6 +148,9 @@ public class ApiDocumentController {
                     }
                 }
             } else {
+                if (local.isPresent()) {
+                    onnxClassifier.recordFallback();
+                }
                 // Prompt pour la classification
                 String classifyPrompt = """
                     Analyse cette image de document et détermine son type.
@@ -104,14 +169,18 @@ public class ApiDocumentController {
                     """;
 
                 try {
-                    String geminiResponse = geminiService.analyzeImage(fileBytes, mimeType, classifyPrompt);
+                    // Une réponse d'erreur ou illisible est écartée (et jamais mise en cache)
+                    Optional<Map<String, String>> classResult = geminiService.analyzeImage(tenant,
+                            fileBytes, mimeType, classifyPrompt, null, geminiResponse -> {
+                                if (geminiResponse.contains("error")) {
+                                    throw new IllegalArgumentException("Gemini returned an error");
+                                }
+                                return objectMapper.readValue(DocumentAnalysisService.cleanJsonResponse(geminiResponse), Map.class);
+                            });
                     
-                    // Vérifier si Gemini a retourné une erreur
-                    if (geminiResponse != null && !geminiResponse.contains("error")) {
-                        String cleanResponse = cleanJsonResponse(geminiResponse);
-                        Map<String, String> classResult = objectMapper.readValue(cleanResponse, Map.class);
-                        documentType = classResult.getOrDefault("type", "releve_de_note");
-                        confidence = classResult.getOrDefault("confidence", "medium");
+                    if (classResult.isPresent()) {
+                        documentType = classResult.get().getOrDefault("type", "releve_de_note");
+                        confidence = classResult.get().getOrDefault("confidence", "medium");
                     } else {
                         System.out.println("=== CLASSIFY: Gemini a retourné une erreur, utilisation du fallback ===");
                     }
@@ -141,9 +210,10 @@ public class ApiDocumentController {
             response.put("documentId", documentId);
             response.put("documentType", documentType);
             response.put("confidence", confidence);
+            response.put("classifier", classifier);
             response.put("fileName", fileName);
             response.put("fileSize", file.getSize());
-            response.put("message", "Document classifié avec Gemini Vision");
+            response.put("message", "onnx".equals(classifier) ? "Document classifié par le modèle local" : "Document classifié avec Gemini Vision");
             
             return ResponseEntity.ok(response);
             
@@ -175,6 +245,11 @@ public class ApiDocumentController {
             System.out.println("=== UPLOAD-SIMPLE: Fichier reçu: " + fileName + " (" + fileBytes.length + " bytes) ===");
             System.out.println("=== UPLOAD-SIMPLE: inscriptionId=" + inscriptionId + ", typeDocument=" + typeDocument + " ===");
             
+            UploadPreflight.Report preflight = uploadPreflight.inspect(fileBytes, typeDocument);
+            if (!preflight.isAccepted()) {
+                return rejected(preflight);
+            }
+            
             // Créer le document
             Document document = new Document();
             document.setNom_fic(fileName);
@@ -225,12 +300,16 @@ public class ApiDocumentController {
             Map<String, Object> response = new HashMap<>();
             
             String fileName = file.getOriginalFilename();
-            String contentType = file.getContentType();
             byte[] fileBytes = file.getBytes();
             
+            UploadPreflight.Report preflight = uploadPreflight.inspect(fileBytes, type);
+            if (!preflight.isAccepted()) {
+                return rejected(preflight);
+            }
+            
             // Générer un ID et stocker le fichier
             String documentId = "doc_" + System.currentTimeMillis();
-            String mimeType = getMimeType(contentType, fileName);
+            String mimeType = preflight.getMimeType();
             
             uploadedFiles.put(documentId, fileBytes);
             uploadedMimeTypes.put(documentId, mimeType);
@@ -259,7 +338,10 @@ public class ApiDocumentController {
                description = "Analyse l'image du document, extrait les informations et sauvegarde en base de données")
     public ResponseEntity<Map<String, Object>> verifyDocument(
             @PathVariable String documentId,
-            @RequestParam(value = "inscriptionId", required = false) Integer inscriptionId) {
+            @RequestParam(value = "inscriptionId", required = false) Integer inscriptionId,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "eventId", required = false) Long eventId,
+            @RequestParam(value = "priority", defaultValue = "0") int priority) {
         try {
             Map<String, Object> response = new HashMap<>();
             
@@ -280,119 +362,22 @@ public class ApiDocumentController {
             
             System.out.println("=== VERIFY: Document trouvé: " + fileName + " (" + fileBytes.length + " bytes) ===");
             
-            Map<String, Object> extractedData = new HashMap<>();
-            String extractedJson = "{}";
-            
-            // Vérifier si Gemini est configuré
-            if (!geminiService.isConfigured()) {
-                System.out.println("=== VERIFY: Gemini non configuré, données vides retournées ===");
-                // Retourner des données vides mais succès pour permettre la saisie manuelle
-                extractedData.put("firstName", "");
-                extractedData.put("lastName", "");
-                extractedData.put("birthDate", "");
-                extractedData.put("birthPlace", "");
-                extractedData.put("bacYear", "");
-                extractedData.put("bacSeries", "");
-                extractedData.put("bacNumber", "");
-                extractedData.put("bacAverage", "");
-                extractedJson = objectMapper.writeValueAsString(extractedData);
-            } else {
-                // Prompt pour l'extraction des données du relevé de notes
-                String extractPrompt = """
-                    Analyse cette image de document académique (relevé de notes, bulletin, diplôme).
-                    
-                    Extrais les informations suivantes et réponds UNIQUEMENT avec un JSON strict,
-                    sans texte avant ou après, sans ```:
-                    
-                    {
-                        "firstName": "prénom de l'étudiant",
-                        "lastName": "nom de famille de l'étudiant",
-                        "birthDate": "date de naissance au format YYYY-MM-DD",
-                        "birthPlace": "lieu de naissance",
-                        "bacYear": "année du baccalauréat ou année académique",
-                        "bacSeries": "série ou filière (ex: Scientifique, Littéraire, D, C, etc.)",
-                        "bacNumber": "numéro de matricule ou identifiant étudiant",
-                        "bacAverage": "moyenne générale (nombre uniquement, ex: 14.5)"
-                    }
-                    
-                    Règles importantes:
-                    - Si une information n'est pas visible ou trouvable, mets une chaîne vide ""
-                    - Pour les noms malgaches, le nom de famille est généralement en premier
-                    - La date doit être au format YYYY-MM-DD (ex: 1998-05-15)
-                    - La moyenne doit être un nombre (ex: 14.5, pas "14,5/20")
-                    - Extrais uniquement ce qui est clairement visible sur le document
-                    """;
-
-                try {
-                    String geminiResponse = geminiService.analyzeImage(fileBytes, mimeType, extractPrompt);
-                    
-                    System.out.println("=== VERIFY: Réponse Gemini reçue ===");
-                    
-                    if (geminiResponse != null && !geminiResponse.contains("\"error\"")) {
-                        extractedJson = cleanJsonResponse(geminiResponse);
-                        extractedData = objectMapper.readValue(extractedJson, Map.class);
-                    } else {
-                        System.out.println("=== VERIFY: Gemini a retourné une erreur ===");
-                        extractedData.put("firstName", "");
-                        extractedData.put("lastName", "");
-                        extractedData.put("birthDate", "");
-                        extractedData.put("birthPlace", "");
-                        extractedData.put("bacYear", "");
-                        extractedData.put("bacSeries", "");
-                        extractedData.put("bacNumber", "");
-                        extractedData.put("bacAverage", "");
-                        extractedJson = objectMapper.writeValueAsString(extractedData);
-                    }
-                } catch (Exception e) {
-                    System.out.println("=== VERIFY: Erreur extraction: " + e.getMessage() + " ===");
-                    extractedData.put("firstName", "");
-                    extractedData.put("lastName", "");
-                    extractedData.put("birthDate", "");
-                    extractedData.put("birthPlace", "");
-                    extractedData.put("bacYear", "");
-                    extractedData.put("bacSeries", "");
-                    extractedData.put("bacNumber", "");
-                    extractedData.put("bacAverage", "");
-                    extractedJson = objectMapper.writeValueAsString(extractedData);
-                }
+            if (async) {
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("docType", docType);
+                payload.put("inscriptionId", inscriptionId);
+                payload.put("documentId", documentId);
+                payload.put("tenant", tenant(eventId));
+                DocumentAnalysisJob job = jobService.enqueue(AnalysisJobType.VERIFY_DOCUMENT, payload,
+                        fileBytes, fileName, mimeType, priority, eventId);
+                removeUploadedFile(documentId);
+                return accepted(job);
             }
             
-            // ========== SAUVEGARDE EN BASE DE DONNÉES ==========
-            Document document = new Document();
-            document.setNom_fic(fileName != null ? fileName : "document_" + documentId);
-            document.setFichier(fileBytes);
-            document.setVerifie(true);
-            document.setValide(true);
-            document.setTypeDocument(docType != null ? docType : "unknown");
-            document.setDonneesExtraites(extractedJson);
-            document.setScoreConfiance(0.95);
-            
-            // Si une inscription est spécifiée, lier le document
-            if (inscriptionId != null) {
-                Optional<Inscription> inscriptionOpt = inscriptionService.getInscriptionById(inscriptionId);
-                if (inscriptionOpt.isPresent()) {
-                    document.setInscription(inscriptionOpt.get());
-                }
-            }
-            
-            // Sauvegarder le document en base de données
-            Document savedDocument = documentService.addDocument(document);
-            System.out.println("=== Document sauvegardé en BDD avec ID: " + savedDocument.getId() + " ===");
-            
-            response.put("success", true);
-            response.put("documentId", documentId);
-            response.put("dbDocumentId", savedDocument.getId()); // ID en base de données
-            response.put("verified", true);
-            response.put("verificationScore", 0.95);
-            response.put("extractedData", extractedData);
-            response.put("savedToDatabase", true);
-            response.put("message", "Document analysé, données extraites et sauvegardées en base de données");
+            response.putAll(documentAnalysisService.verifyAndSave(tenant(eventId), fileBytes, fileName, mimeType, docType, inscriptionId, documentId, null));
             
             // Nettoyer le fichier de la mémoire après sauvegarde en BDD
-            uploadedFiles.remove(documentId);
-            uploadedMimeTypes.remove(documentId);
-            uploadedFileNames.remove(documentId);
-            uploadedDocTypes.remove(documentId);
+            removeUploadedFile(documentId);
             
             return ResponseEntity.ok(response);
             
@@ -407,17 +392,36 @@ public class ApiDocumentController {
     
     @PostMapping("/analyze-and-save")
     @Operation(summary = "Analyser et sauvegarder un document en une seule étape",
-               description = "Classifie, extrait les données avec Gemini Vision et sauvegarde tout en BDD")
-    public ResponseEntity<Map<String, Object>> analyzeAndSaveDocument(
+               description = "Classifie, extrait les données avec Gemini Vision et sauvegarde tout en BDD. "
+                       + "mode=combined (défaut) envoie le fichier une seule fois avec un prompt commun ; "
+                       + "mode=two-step garde l'ancien enchaînement classification puis extraction. "
+                       + "async=true met l'analyse en file et renvoie 202 avec l'identifiant du job")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> analyzeAndSaveDocument(
             @RequestParam("file") MultipartFile file,
-            @RequestParam(value = "inscriptionId", required = false) Integer inscriptionId) {
+            @RequestParam(value = "inscriptionId", required = false) Integer inscriptionId,
+            @RequestParam(value = "mode", defaultValue = "combined") String mode,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "eventId", required = false) Long eventId,
+            @RequestParam(value = "priority", defaultValue = "0") int priority) {
+        long startNanos = System.nanoTime();
+        return offload(workExecutors.ai(),
+                () -> analyzeAndSaveNow(file, inscriptionId, mode, async, eventId, priority, startNanos));
+    }
+
+    private ResponseEntity<Map<String, Object>> analyzeAndSaveNow(MultipartFile file, Integer inscriptionId, String mode,
+                                                                  boolean async, Long eventId, int priority, long startNanos) {
         try {
             Map<String, Object> response = new HashMap<>();
             
             String fileName = file.getOriginalFilename();
-            String contentType = file.getContentType();
             byte[] fileBytes = file.getBytes();
             
+            // Fichier vide, corrompu, protégé... refusé avant tout appel à Gemini
+            UploadPreflight.Report preflight = uploadPreflight.inspect(fileBytes, null);
+            if (!preflight.isAccepted()) {
+                return rejected(preflight);
+            }
+            
             // Vérifier si Gemini est configuré
             if (!geminiService.isConfigured()) {
                 response.put("success", false);
@@ -425,95 +429,36 @@ public class ApiDocumentController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            String mimeType = getMimeType(contentType, fileName);
-            
-            // 1. CLASSIFICATION
-            String classifyPrompt = """
-                Analyse cette image de document et détermine son type.
-                Réponds UNIQUEMENT avec un JSON strict, sans texte avant ou après, sans ```:
-                {"type": "...", "confidence": "..."}
-                Types possibles: releve_de_note, diplome, piece_identite, bordereau_paiement, autre
-                Confidence: high, medium, low
-                """;
-
-            String classifyResponse = geminiService.analyzeImage(fileBytes, mimeType, classifyPrompt);
-            String documentType = "unknown";
-            String confidence = "medium";
-            
-            try {
-                String cleanClassify = cleanJsonResponse(classifyResponse);
-                Map<String, String> classResult = objectMapper.readValue(cleanClassify, Map.class);
-                documentType = classResult.getOrDefault("type", "unknown");
-                confidence = classResult.getOrDefault("confidence", "medium");
-            } catch (Exception e) {
-                System.out.println("Erreur classification: " + e.getMessage());
+            String mimeType = preflight.getMimeType();
+            
+            if (async) {
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("inscriptionId", inscriptionId);
+                payload.put("mode", mode);
+                payload.put("tenant", tenant(eventId));
+                DocumentAnalysisJob job = jobService.enqueue(AnalysisJobType.ANALYZE_AND_SAVE, payload,
+                        fileBytes, fileName, mimeType, priority, eventId);
+                return accepted(job);
             }
-
-            // 2. EXTRACTION DES DONNÉES
-            String extractPrompt = """
-                Analyse cette image de document académique.
-                Extrais les informations et réponds UNIQUEMENT avec un JSON strict, sans ```:
-                {
-                    "firstName": "prénom",
-                    "lastName": "nom de famille",
-                    "birthDate": "date naissance YYYY-MM-DD",
-                    "birthPlace": "lieu de naissance",
-                    "bacYear": "année du bac",
-                    "bacSeries": "série ou filière",
-                    "bacNumber": "numéro matricule",
-                    "bacAverage": "moyenne (nombre)"
-                }
-                Mets "" si information non trouvée.
-                """;
-
-            String extractResponse = geminiService.analyzeImage(fileBytes, mimeType, extractPrompt);
-            Map<String, Object> extractedData = new HashMap<>();
-            String extractedJson = "{}";
-            
-            try {
-                extractedJson = cleanJsonResponse(extractResponse);
-                extractedData = objectMapper.readValue(extractedJson, Map.class);
-            } catch (Exception e) {
-                System.out.println("Erreur extraction: " + e.getMessage());
-                extractedData.put("firstName", "");
-                extractedData.put("lastName", "");
-                extractedData.put("birthDate", "");
-                extractedData.put("birthPlace", "");
-                extractedData.put("bacYear", "");
-                extractedData.put("bacSeries", "");
-                extractedData.put("bacNumber", "");
-                extractedData.put("bacAverage", "");
-                extractedJson = objectMapper.writeValueAsString(extractedData);
-            }
-
-            // 3. SAUVEGARDE EN BASE DE DONNÉES
-            Document document = new Document();
-            document.setNom_fic(fileName != null ? fileName : "document_" + System.currentTimeMillis());
-            document.setFichier(fileBytes);
-            document.setVerifie(true);
-            document.setValide(true);
-            document.setTypeDocument(documentType);
-            document.setDonneesExtraites(extractedJson);
-            document.setScoreConfiance("high".equals(confidence) ? 0.95 : "medium".equals(confidence) ? 0.75 : 0.5);
             
-            if (inscriptionId != null) {
-                Optional<Inscription> inscriptionOpt = inscriptionService.getInscriptionById(inscriptionId);
-                inscriptionOpt.ifPresent(document::setInscription);
-            }
+            response.putAll(documentAnalysisService.analyzeAndSave(tenant(eventId), fileBytes, fileName, mimeType, inscriptionId, mode, null));
+            String documentType = (String) response.get("documentType");
+            String analysisMode = (String) response.get("analysisMode");
             
-            Document savedDocument = documentService.addDocument(document);
-            
-            response.put("success", true);
-            response.put("dbDocumentId", savedDocument.getId());
-            response.put("documentType", documentType);
-            response.put("confidence", confidence);
-            response.put("extractedData", extractedData);
-            response.put("savedToDatabase", true);
-            response.put("fileName", fileName);
-            response.put("message", "Document analysé et sauvegardé avec succès");
+            long elapsed = System.nanoTime() - startNanos;
+            analysisMetrics.recordLatency("analyze-and-save:" + analysisMode, documentType, elapsed);
+            response.put("latencyMs", elapsed / 1_000_000);
             
             return ResponseEntity.ok(response);
             
+        } catch (GeminiException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            errorResponse.put("retriable", e.isRetriable());
+            return ResponseEntity.status(e.getStatusCode() == 429 ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(geminiGateway.retryAfterSeconds()))
+                    .body(errorResponse);
         } catch (Exception e) {
             e.printStackTrace();
             Map<String, Object> errorResponse = new HashMap<>();
@@ -523,6 +468,22 @@ public class ApiDocumentController {
         }
     }
     
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Statut d'un job d'analyse",
+               description = "Renvoie l'état d'un job mis en file (PENDING, RUNNING, SUCCEEDED, FAILED) et son résultat")
+    public ResponseEntity<Map<String, Object>> getJobStatus(@PathVariable Long jobId) {
+        Optional<DocumentAnalysisJob> jobOpt = jobService.getJob(jobId);
+        if (jobOpt.isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Job non trouvé");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+        Map<String, Object> response = new HashMap<>(jobService.toStatus(jobOpt.get()));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/db/{dbDocumentId}")
     @Operation(summary = "Récupérer un document depuis la base de données",
                description = "Récupère les informations d'un document sauvegardé")
@@ -582,53 +543,62 @@ public class ApiDocumentController {
         return ResponseEntity.ok(status);
     }
 
+    private ResponseEntity<Map<String, Object>> accepted(DocumentAnalysisJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("jobId", job.getId());
+        response.put("status", job.getStatus());
+        response.put("statusUrl", "/api/documents/jobs/" + job.getId());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
     /**
-     * Détermine le type MIME approprié pour Gemini
+     * File Gemini de l'établissement organisateur de l'événement, pour un partage équitable entre établissements
      */
-    private String getMimeType(String contentType, String fileName) {
-        if (contentType != null) {
-            if (contentType.contains("pdf")) {
-                return "application/pdf";
-            } else if (contentType.contains("png")) {
-                return "image/png";
-            } else if (contentType.contains("jpeg") || contentType.contains("jpg")) {
-                return "image/jpeg";
-            } else if (contentType.contains("webp")) {
-                return "image/webp";
-            }
+    private String tenant(Long eventId) {
+        if (eventId == null) {
+            return GeminiGateway.DEFAULT_TENANT;
         }
-        
-        // Fallback basé sur l'extension du fichier
-        if (fileName != null) {
-            String lower = fileName.toLowerCase();
-            if (lower.endsWith(".pdf")) return "application/pdf";
-            if (lower.endsWith(".png")) return "image/png";
-            if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
-            if (lower.endsWith(".webp")) return "image/webp";
+        try {
+            return GeminiGateway.institutionTenant(eventMetadataCache.get(eventId).getInstitutionId());
+        } catch (IllegalArgumentException e) {
+            return GeminiGateway.DEFAULT_TENANT; // événement inconnu
         }
-        
-        return "application/octet-stream";
+    }
+
+    private void removeUploadedFile(String documentId) {
+        uploadedFiles.remove(documentId);
+        uploadedMimeTypes.remove(documentId);
+        uploadedFileNames.remove(documentId);
+        uploadedDocTypes.remove(documentId);
     }
 
     /**
-     * Nettoie la réponse JSON de Gemini (enlève les ```, etc.)
+     * Exécute le traitement dans le pool donné ; si le pool est saturé, répond 503 avec Retry-After
      */
-    private String cleanJsonResponse(String response) {
-        if (response == null) return "{}";
-        
-        String cleaned = response.trim();
-        
-        // Enlever les blocs de code markdown
-        if (cleaned.startsWith("```json")) {
-            cleaned = cleaned.substring(7);
-        } else if (cleaned.startsWith("```")) {
-            cleaned = cleaned.substring(3);
-        }
-        
-        if (cleaned.endsWith("```")) {
-            cleaned = cleaned.substring(0, cleaned.length() - 3);
-        }
-        
-        return cleaned.trim();
+    private CompletableFuture<ResponseEntity<Map<String, Object>>> offload(
+            BoundedExecutor pool, Supplier<ResponseEntity<Map<String, Object>>> call) {
+        return pool.supply(call).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            if (cause instanceof RejectedExecutionException) {
+                errorResponse.put("error", "Serveur occupé par d'autres analyses, réessayez dans quelques secondes");
+                errorResponse.put("retriable", true);
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "10")
+                        .body(errorResponse);
+            }
+            errorResponse.put("error", cause.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        });
+    }
+
+    /**
+     * Réponse d'erreur pour un fichier refusé par le contrôle préalable
+     */
+    private ResponseEntity<Map<String, Object>> rejected(UploadPreflight.Report preflight) {
+        log.info("Upload rejected by preflight ({}): {}", preflight.getReason(), preflight.getMessage());
+        return ResponseEntity.status(preflight.httpStatus()).body(preflight.toErrorBody());
     }
 }
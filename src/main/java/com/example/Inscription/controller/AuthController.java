@@ -6,6 +6,7 @@ import com.example.Inscription.dto.StudentRegistrationRequest;
 import com.example.Inscription.model.*;
 import com.example.Inscription.repository.UserRepository;
 import com.example.Inscription.service.AuthenticationService;
+import com.example.Inscription.service.UploadPreflight;
 import com.example.Inscription.service.ai.AcademicRecordAnalysisService;
 import com.example.Inscription.service.ai.ExtractedAcademicData;
 import com.example.Inscription.config.JwtTokenProvider;
@@ -34,6 +35,7 @@ public class AuthController {
     private final JwtTokenProvider jwtTokenProvider;
     private final UserRepository userRepository;
     private final AcademicRecordAnalysisService academicRecordService;
+    private final UploadPreflight uploadPreflight;
     
     @PostMapping("/login")
     @Operation(summary = "Login with email and password", description = "Authenticate user and return JWT token")
@@ -166,6 +168,11 @@ public class AuthController {
         try {
             byte[] fileBytes = file.getBytes();
             
+            UploadPreflight.Report preflight = uploadPreflight.inspect(fileBytes, "releve_de_note");
+            if (!preflight.isAccepted()) {
+                return ResponseEntity.status(preflight.httpStatus()).body("Invalid academic record file: " + preflight.getMessage());
+            }
+            
             if (!academicRecordService.isValidAcademicRecord(fileBytes, file.getOriginalFilename())) {
                 return ResponseEntity.badRequest().body("Invalid academic record document");
             }
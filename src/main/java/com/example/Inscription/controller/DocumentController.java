@@ -1,8 +1,11 @@
 package com.example.Inscription.controller;
 
 import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentSummary;
+import com.example.Inscription.model.DocumentText;
 import com.example.Inscription.model.Inscription;
 import com.example.Inscription.service.DocumentService;
+import com.example.Inscription.service.DocumentTextService;
 import com.example.Inscription.service.InscriptionService;
 import com.example.Inscription.service.PdfService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,13 +14,16 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -33,6 +39,9 @@ public class DocumentController {
     @Autowired
     private PdfService pdfService;
 
+    @Autowired
+    private DocumentTextService documentTextService;
+
     @PostMapping("/add")
     @Operation(summary = "Upload a document", description = "Uploads a document file for an inscription")
     @ApiResponses(value = {
@@ -66,12 +75,30 @@ public class DocumentController {
     public List<Document> getDocuments(){
         return documentService.getAllDocuments();
     }
+    @GetMapping("/non-verifies")
+    @Operation(summary = "List unverified documents", description = "Keyset-paginated list of documents awaiting verification, without file contents. Pass the returned nextCursor as 'after' to get the next page")
+    public Map<String, Object> getNonVerifies(
+            @RequestParam(value = "after", defaultValue = "0") int after,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        List<DocumentSummary> documents = documentService.nonVerifies(after, Math.max(1, Math.min(limit, 500)));
+        Map<String, Object> response = new HashMap<>();
+        response.put("documents", documents);
+        response.put("nextCursor", documents.isEmpty() ? null : documents.get(documents.size() - 1).getId());
+        return response;
+    }
+    @GetMapping("/{id}/text")
+    @Operation(summary = "Get extracted text", description = "Text extracted from the document after upload, with the extraction method and page offsets")
+    public ResponseEntity<DocumentText> getDocumentText(@PathVariable int id) {
+        return documentTextService.getText(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
     @GetMapping("/{id}")
     public Optional<Document> getDocumentById(@PathVariable int id){
         return documentService.getDocumentById(id);
     }
     @GetMapping("/text")
-    public String getText() throws IOException {
+    public String getText() throws Exception {
         /*Document doc = (Document) documentService.nonVerifies().get(0);
         byte[] pdfBytes = doc.getFichier();
         String fileText = pdfService.extractTextFromPDF(pdfBytes);
@@ -126,6 +153,9 @@ public class DocumentController {
         document.setValide(valide);
 
         documentService.updateDocument(document);
+        if (fichier != null && !fichier.isEmpty()) {
+            documentTextService.scheduleExtraction(id);
+        }
         return "Document updated";
     }
 
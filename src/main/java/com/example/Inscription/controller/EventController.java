@@ -2,10 +2,16 @@ package com.example.Inscription.controller;
 
 import com.example.Inscription.model.*;
 import com.example.Inscription.repository.*;
+import com.example.Inscription.service.EventCatalogCache;
+import com.example.Inscription.service.EventRegistrationCounters;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,35 +28,59 @@ import java.util.stream.Collectors;
 public class EventController {
     
     private final EventRepository eventRepository;
-    private final EventRegistrationRepository registrationRepository;
+    private final EventRegistrationCounters registrationCounters;
+    private final EventCatalogCache eventCatalogCache;
     private final ExamResultRepository examResultRepository;
     
     @GetMapping("/active")
     @Operation(summary = "Get active events", description = "Get list of events currently open for registration")
-    public ResponseEntity<List<Map<String, Object>>> getActiveEvents() {
-        List<Event> events = eventRepository.findByIsActiveTrue();
-        List<Map<String, Object>> dtos = events.stream()
-                .map(this::mapEventToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<byte[]> getActiveEvents(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        EventCatalogCache.Entry entry = eventCatalogCache.get(EventCatalogCache.ACTIVE,
+                () -> eventRepository.findByIsActiveTrue().stream()
+                        .map(this::mapEventToDto)
+                        .collect(Collectors.toList()));
+        return cached(entry, ifNoneMatch);
     }
     
     @GetMapping("/by-institution/{institutionId}")
     @Operation(summary = "Get events by institution", description = "Get all events for a specific institution")
-    public ResponseEntity<List<Map<String, Object>>> getEventsByInstitution(@PathVariable Long institutionId) {
-        List<Event> events = eventRepository.findByInstitutionId(institutionId);
-        List<Map<String, Object>> dtos = events.stream()
-                .map(this::mapEventToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<byte[]> getEventsByInstitution(
+            @PathVariable Long institutionId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        EventCatalogCache.Entry entry = eventCatalogCache.get(EventCatalogCache.institution(institutionId),
+                () -> eventRepository.findByInstitutionId(institutionId).stream()
+                        .map(this::mapEventToDto)
+                        .collect(Collectors.toList()));
+        return cached(entry, ifNoneMatch);
     }
     
     @GetMapping("/{eventId}")
     @Operation(summary = "Get event details", description = "Get detailed information about an event")
-    public ResponseEntity<?> getEventDetails(@PathVariable Long eventId) {
-        return eventRepository.findById(eventId)
-                .map(event -> ResponseEntity.ok(mapEventToDto(event)))
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<byte[]> getEventDetails(
+            @PathVariable Long eventId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        EventCatalogCache.Entry entry = eventCatalogCache.get(EventCatalogCache.event(eventId),
+                () -> eventRepository.findById(eventId).map(this::mapEventToDto).orElse(null));
+        if (entry == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return cached(entry, ifNoneMatch);
+    }
+    
+    /**
+     * Serialized catalog entry, or 304 when the client already holds this version.
+     * no-cache makes browsers revalidate with If-None-Match instead of reusing a stale copy.
+     */
+    private ResponseEntity<byte[]> cached(EventCatalogCache.Entry entry, String ifNoneMatch) {
+        if (eventCatalogCache.isNotModified(entry, ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.getEtag()).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(entry.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(entry.getBody());
     }
     
     /**
@@ -104,7 +134,7 @@ public class EventController {
         }
         
         // Registration count
-        dto.put("registrationCount", event.getRegistrations() != null ? event.getRegistrations().size() : 0);
+        dto.put("registrationCount", registrationCounters.counts(event.getId()).getTotal());
         
         return dto;
     }
@@ -112,7 +142,7 @@ public class EventController {
     @GetMapping("/{eventId}/registration-count")
     @Operation(summary = "Get registration count", description = "Get number of registrations for an event")
     public ResponseEntity<?> getRegistrationCount(@PathVariable Long eventId) {
-        long count = registrationRepository.findByEventId(eventId).size();
+        long count = registrationCounters.counts(eventId).getTotal();
         return ResponseEntity.ok("Total registrations: " + count);
     }
 
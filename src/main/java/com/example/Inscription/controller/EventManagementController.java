@@ -2,12 +2,16 @@ package com.example.Inscription.controller;
 
 import com.example.Inscription.model.*;
 import com.example.Inscription.repository.*;
+import com.example.Inscription.service.EventRegistrationCounters;
 import com.example.Inscription.service.EventService;
+import com.example.Inscription.service.ReceiptIndexService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -24,7 +28,9 @@ public class EventManagementController {
     
     private final EventRepository eventRepository;
     private final EventService eventService;
-    private final EventRegistrationRepository registrationRepository;
+    private final EventRegistrationCounters registrationCounters;
+    private final ReceiptIndexService receiptIndexService;
+    private final UserRepository userRepository;
     
     @GetMapping("/active")
     @Operation(summary = "Get active events", description = "Get list of events currently open for registration")
@@ -43,8 +49,28 @@ public class EventManagementController {
     @GetMapping("/{eventId}/registration-count")
     @Operation(summary = "Get registration count", description = "Get number of registrations for an event")
     public ResponseEntity<?> getRegistrationCount(@PathVariable Long eventId) {
-        long count = registrationRepository.findByEventId(eventId).size();
+        long count = registrationCounters.counts(eventId).getTotal();
         return ResponseEntity.ok("Total registrations: " + count);
     }
+    
+    @GetMapping("/{eventId}/receipt-conflicts")
+    @Operation(summary = "Get duplicate receipt report", description = "Receipt numbers, receipt files and extracted payment details shared by several registrations of this event")
+    public ResponseEntity<?> getReceiptConflicts(Authentication authentication, @PathVariable Long eventId) {
+        User user = userRepository.findByEmail((String) authentication.getPrincipal())
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        Institution institution = user.getInstitution();
+        if (institution == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not associated with an institution");
+        }
+        Event event = eventRepository.findById(eventId).orElse(null);
+        if (event == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // Verify event belongs to this institution
+        if (!event.getInstitution().getId().equals(institution.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Unauthorized");
+        }
+        return ResponseEntity.ok(receiptIndexService.conflictReport(eventId));
+    }
 
 }
@@ -1,11 +1,19 @@
 package com.example.Inscription.controller;
 
+import com.example.Inscription.dto.BulkRegistrationRequest;
 import com.example.Inscription.model.*;
 import com.example.Inscription.repository.*;
+import com.example.Inscription.service.EventCatalogCache;
+import com.example.Inscription.service.EventEligibilityIndex;
+import com.example.Inscription.service.EventMetadataCache;
+import com.example.Inscription.service.EventRegistrationCounters;
 import com.example.Inscription.service.EventService;
 import com.example.Inscription.service.MailService;
+import com.example.Inscription.service.RegistrationNumberAllocator;
 import com.example.Inscription.service.StudentEventRegistrationService;
+import com.example.Inscription.service.StudentRegistrationBulkService;
 import com.example.Inscription.service.DeliberationService;
+import com.example.Inscription.service.WorkExecutors;
 import com.example.Inscription.service.ai.IADeliberationClient;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -27,6 +35,7 @@ import jakarta.persistence.PersistenceContext;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -53,9 +62,16 @@ public class InstitutionController {
     private final EventService eventService;
     private final MailService mailService;
     private final StudentEventRegistrationService studentEventRegistrationService;
+    private final StudentRegistrationBulkService studentRegistrationBulkService;
     private final DeliberationService deliberationService;
     private final ObjectMapper objectMapper;
     private final IADeliberationClient iaDeliberationClient;
+    private final WorkExecutors workExecutors;
+    private final EventMetadataCache eventMetadataCache;
+    private final EventEligibilityIndex eventEligibilityIndex;
+    private final EventCatalogCache eventCatalogCache;
+    private final RegistrationNumberAllocator registrationNumberAllocator;
+    private final EventRegistrationCounters registrationCounters;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -197,11 +213,8 @@ public class InstitutionController {
             }
 
             List<Event> events = eventRepository.findByInstitutionId(institution.getId());
-            List<EventRegistration> allRegistrations = new ArrayList<>();
-            
-            for (Event event : events) {
-                allRegistrations.addAll(registrationRepository.findByEventId(event.getId()));
-            }
+            Collection<EventRegistrationCounters.Counts> registrationCounts = registrationCounters
+                    .counts(events.stream().map(Event::getId).collect(Collectors.toList())).values();
 
             long activeEvents = events.stream()
                     .filter(e -> e.getIsActive() && 
@@ -209,9 +222,10 @@ public class InstitutionController {
                             e.getRegistrationEnd().isAfter(LocalDateTime.now()))
                     .count();
 
-            long pendingValidations = allRegistrations.stream()
-                    .filter(r -> r.getStatus() == RegistrationStatus.PENDING)
-                    .count();
+            long totalRegistrations = registrationCounts.stream().mapToLong(EventRegistrationCounters.Counts::getTotal).sum();
+            long pendingValidations = registrationCounts.stream()
+                    .mapToLong(c -> c.get(RegistrationStatus.PENDING))
+                    .sum();
 
             // Calculate admission rate and result counts
             List<ExamResult> results = new ArrayList<>();
@@ -238,7 +252,7 @@ public class InstitutionController {
             Map<String, Object> stats = new HashMap<>();
             stats.put("totalEvents", events.size());
             stats.put("activeEvents", activeEvents);
-            stats.put("totalRegistrations", allRegistrations.size());
+            stats.put("totalRegistrations", totalRegistrations);
             stats.put("pendingValidations", pendingValidations);
             stats.put("admissionRate", Math.round(admissionRate * 10) / 10.0);
             stats.put("averageScore", Math.round(averageScore * 100) / 100.0);
@@ -377,6 +391,7 @@ public class InstitutionController {
             }
 
             Event savedEvent = eventRepository.save(event);
+            eventEligibilityIndex.invalidate();
 
             // Save subjects
             if (subjectsJson != null && !subjectsJson.isEmpty()) {
@@ -450,6 +465,7 @@ public class InstitutionController {
                 savedEvent.setDeliberationRule(savedRule);
                 eventRepository.save(savedEvent);
             }
+            eventCatalogCache.invalidate();
 
             return ResponseEntity.status(HttpStatus.CREATED).body(mapEventToDto(savedEvent));
         } catch (Exception e) {
@@ -618,6 +634,9 @@ public class InstitutionController {
             
             event.setUpdatedAt(LocalDateTime.now());
             Event updatedEvent = eventRepository.save(event);
+            eventMetadataCache.evict(eventId);
+            eventEligibilityIndex.invalidate();
+            eventCatalogCache.invalidate();
 
             return ResponseEntity.ok(mapEventToDto(updatedEvent));
         } catch (Exception e) {
@@ -653,12 +672,17 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
         
         // 2. Delete event registrations
         registrationRepository.deleteByEventIdNative(eventId);
+        registrationCounters.eventDeleted(eventId);
         
         // 3. Delete subjects
         subjectRepository.deleteByEventIdNative(eventId);
         
         // 4. Delete registration numbers
         registrationNumberRepository.deleteByEventIdNative(eventId);
+        entityManager.createNativeQuery("DELETE FROM registration_number_sequences WHERE event_id = :eventId")
+                .setParameter("eventId", eventId)
+                .executeUpdate();
+        registrationNumberAllocator.forget(eventId);
         
         // 5. DELETE EVENT_LOCATIONS (THIS WAS MISSING!)
         entityManager.createNativeQuery("DELETE FROM event_locations WHERE event_id = :eventId")
@@ -667,6 +691,9 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
         
         // 6. Finally, delete the event itself
         eventRepository.deleteEventById(eventId);
+        eventMetadataCache.evict(eventId);
+        eventEligibilityIndex.invalidate();
+        eventCatalogCache.invalidate();
         
         return ResponseEntity.ok(Map.of("message", "Event deleted successfully"));
     } catch (Exception e) {
@@ -786,9 +813,7 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Unauthorized");
             }
 
-            registration.setStatus(RegistrationStatus.APPROVED);
-            registration.setUpdatedAt(LocalDateTime.now());
-            registrationRepository.save(registration);
+            registrationCounters.changeStatus(registration, RegistrationStatus.APPROVED);
 
             return ResponseEntity.ok(Map.of("message", "Dossier validated successfully", "status", "validated"));
         } catch (Exception e) {
@@ -812,9 +837,7 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Unauthorized");
             }
 
-            registration.setStatus(RegistrationStatus.REJECTED);
-            registration.setUpdatedAt(LocalDateTime.now());
-            registrationRepository.save(registration);
+            registrationCounters.changeStatus(registration, RegistrationStatus.REJECTED);
 
             return ResponseEntity.ok(Map.of("message", "Dossier rejected successfully", "status", "rejected"));
         } catch (Exception e) {
@@ -823,6 +846,57 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
         }
     }
 
+    @PutMapping("/events/{eventId}/registration-number-format")
+    @Operation(summary = "Set the registration number format", description = "Numbers assigned at approval are rendered from this format, "
+            + "e.g. INST-2025-{number} or INST-2025-{number:5} for zero-padded numbers, starting at startValue")
+    public ResponseEntity<?> setRegistrationNumberFormat(
+            Authentication authentication,
+            @PathVariable Long eventId,
+            @RequestParam String format,
+            @RequestParam(defaultValue = "1") long startValue) {
+        try {
+            User user = getCurrentUser(authentication);
+            Long eventInstitutionId = eventRepository.getInstitutionIdByEventId(eventId)
+                    .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+
+            if (!eventInstitutionId.equals(user.getInstitution().getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Unauthorized");
+            }
+
+            RegistrationNumberSequence sequence = registrationNumberAllocator.configure(eventId, format, startValue);
+            return ResponseEntity.ok(Map.of("format", sequence.getCustomFormat(), "nextValue", sequence.getNextValue()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error updating registration number format", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/events/{eventId}/waiting-room")
+    @Operation(summary = "Enable or disable the registration waiting room", description = "When enabled, students get a queue ticket and are admitted to register at a controlled rate")
+    public ResponseEntity<?> setEventWaitingRoom(
+            Authentication authentication,
+            @PathVariable Long eventId,
+            @RequestParam boolean enabled) {
+        try {
+            User user = getCurrentUser(authentication);
+            Long eventInstitutionId = eventRepository.getInstitutionIdByEventId(eventId)
+                    .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+
+            if (!eventInstitutionId.equals(user.getInstitution().getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Unauthorized");
+            }
+
+            eventService.setWaitingRoom(eventId, enabled);
+            return ResponseEntity.ok(Map.of("message", enabled ? "Waiting room enabled" : "Waiting room disabled",
+                    "waitingRoomEnabled", enabled));
+        } catch (Exception e) {
+            log.error("Error updating waiting room", e);
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PutMapping("/events/{eventId}/toggle-registrations")
     @Operation(summary = "Toggle registrations pause/resume", description = "Pause or resume registrations for an event (cannot be done after deadline)")
     public ResponseEntity<?> toggleEventRegistrations(
@@ -1113,20 +1187,16 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
                 if (admissibles != null) {
                     for (Map<String, Object> dossier : admissibles) {
                         Long regId = Long.valueOf(dossier.get("candidat_id").toString());
-                        registrationRepository.findById(regId).ifPresent(reg -> {
-                            reg.setStatus(RegistrationStatus.APPROVED);
-                            registrationRepository.save(reg);
-                        });
+                        registrationRepository.findById(regId)
+                                .ifPresent(reg -> registrationCounters.changeStatus(reg, RegistrationStatus.APPROVED));
                     }
                 }
                 
                 if (nonAdmissibles != null) {
                     for (Map<String, Object> dossier : nonAdmissibles) {
                         Long regId = Long.valueOf(dossier.get("candidat_id").toString());
-                        registrationRepository.findById(regId).ifPresent(reg -> {
-                            reg.setStatus(RegistrationStatus.REJECTED);
-                            registrationRepository.save(reg);
-                        });
+                        registrationRepository.findById(regId)
+                                .ifPresent(reg -> registrationCounters.changeStatus(reg, RegistrationStatus.REJECTED));
                     }
                 }
                 
@@ -1246,6 +1316,7 @@ public ResponseEntity<?> deleteEvent(Authentication authentication, @PathVariabl
 
             event.setResultsDate(LocalDateTime.now());
             eventRepository.save(event);
+            eventCatalogCache.invalidate();
 
             // Send notification emails
             List<ExamResult> results = examResultRepository.findByEventIdOrderByAverageDesc(eventId);
@@ -1465,6 +1536,7 @@ private Map<String, Object> mapEventToDto(Event event) {
     dto.put("deadline", event.getRegistrationEnd());
     dto.put("registrationEnd", event.getRegistrationEnd());
     dto.put("registrationsOpen", event.getRegistrationsOpen() != null ? event.getRegistrationsOpen() : true);
+    dto.put("waitingRoomEnabled", Boolean.TRUE.equals(event.getWaitingRoomEnabled()));
     dto.put("examDate", event.getContestDate());
     dto.put("contestDate", event.getContestDate());
     dto.put("examEndDate", event.getContestEndDate());
@@ -1479,10 +1551,11 @@ private Map<String, Object> mapEventToDto(Event event) {
     dto.put("registrationFee", event.getRegistrationFee() != null ? event.getRegistrationFee() : 0);
     dto.put("locations", event.getLocations() != null ? new ArrayList<>(event.getLocations()) : new ArrayList<>());
     
-    // Get registration count
-    List<EventRegistration> registrations = registrationRepository.findByEventId(event.getId());
-    dto.put("registrations", registrations.size());
-    dto.put("registrationCount", registrations.size());
+    // Get registration counts (per-event counters, no registration loaded)
+    EventRegistrationCounters.Counts counts = registrationCounters.counts(event.getId());
+    dto.put("registrations", counts.getTotal());
+    dto.put("registrationCount", counts.getTotal());
+    dto.put("registrationCounts", counts.toDto());
     
     // Get subjects - eagerly load to avoid lazy loading issues
     List<Subject> subjects = subjectRepository.findByEventId(event.getId());
@@ -1870,11 +1943,65 @@ private Map<String, Object> mapEventToDto(Event event) {
         }
     }
     
+    @PostMapping("/events/{eventId}/student-registrations/bulk")
+    @Operation(summary = "Bulk update student registrations", description = "Apply APPROVE, REJECT, VERIFY_RELEVE, VERIFY_BORDEREAU or SEND_CONVOCATION to a list of ids or to the registrations matching a filter, with the same preconditions as the single endpoints; returns the outcome of each id")
+    public ResponseEntity<?> bulkUpdateStudentRegistrations(
+            Authentication authentication,
+            @PathVariable Long eventId,
+            @RequestBody BulkRegistrationRequest request) {
+        try {
+            String email = (String) authentication.getPrincipal();
+            User institution = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+            
+            Event event = eventRepository.findById(eventId)
+                    .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+            
+            // Verify event belongs to institution (every update is restricted to this event)
+            if (!event.getInstitution().getId().equals(institution.getId())) {
+                return ResponseEntity.status(403).body(Map.of("message", "Unauthorized"));
+            }
+            
+            StudentRegistrationBulkService.Action action;
+            try {
+                action = StudentRegistrationBulkService.Action.valueOf(String.valueOf(request.getAction()).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown action, expected one of "
+                        + Arrays.toString(StudentRegistrationBulkService.Action.values()));
+            }
+            
+            List<Long> ids = request.getIds();
+            if (ids == null || ids.isEmpty()) {
+                BulkRegistrationRequest.Filter filter = request.getFilter();
+                if (filter == null) {
+                    throw new IllegalArgumentException("Provide either ids or a filter");
+                }
+                ids = studentRegistrationBulkService.findIds(eventId, filter.getStatus(), filter.getIsEligible(),
+                        filter.getIsReleveVerified(), filter.getIsBordereauVerified(), filter.getIsConvocationSent());
+            }
+            
+            List<StudentRegistrationBulkService.Result> results = ids.isEmpty() ? List.of()
+                    : studentRegistrationBulkService.apply(eventId, action, !Boolean.FALSE.equals(request.getVerified()), ids);
+            
+            return ResponseEntity.ok(Map.of(
+                "action", action,
+                "requested", results.size(),
+                "summary", StudentRegistrationBulkService.summary(results),
+                "results", results
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error in bulk update of student registrations", e);
+            return ResponseEntity.status(500).body(Map.of("message", e.getMessage()));
+        }
+    }
+    
     // ==================== DELIBERATION & RESULTS ====================
     
     @PostMapping("/events/{eventId}/deliberate")
     @Operation(summary = "Trigger deliberation", description = "Start deliberation process for event using AI service")
-    public ResponseEntity<?> triggerDeliberation(
+    public CompletableFuture<ResponseEntity<?>> triggerDeliberation(
             Authentication authentication,
             @PathVariable Long eventId) {
         try {
@@ -1887,18 +2014,26 @@ private Map<String, Object> mapEventToDto(Event event) {
             
             // Verify event belongs to institution
             if (!event.getInstitution().getId().equals(institution.getId())) {
-                return ResponseEntity.status(403).body(Map.of("message", "Unauthorized"));
+                return CompletableFuture.completedFuture(ResponseEntity.status(403).body(Map.of("message", "Unauthorized")));
             }
-            
-            Map<String, Object> result = deliberationService.triggerDeliberation(eventId);
-            return ResponseEntity.ok(result);
-            
-        } catch (IllegalStateException e) {
-            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
-            log.error("Error during deliberation for event {}: {}", eventId, e.getMessage(), e);
-            return ResponseEntity.status(500).body(Map.of("message", "Deliberation error: " + e.getMessage()));
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(500).body(Map.of("message", "Deliberation error: " + e.getMessage())));
         }
+
+        // The AI service call blocks for a while: run it on the AI pool so the request thread is released
+        return workExecutors.ai().<ResponseEntity<?>>supply(() -> {
+            try {
+                return ResponseEntity.ok(deliberationService.triggerDeliberation(eventId));
+            } catch (IllegalStateException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+            } catch (Exception e) {
+                log.error("Error during deliberation for event {}: {}", eventId, e.getMessage(), e);
+                return ResponseEntity.status(500).body(Map.of("message", "Deliberation error: " + e.getMessage()));
+            }
+        }).exceptionally(e -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "10")
+                .body(Map.of("message", "Too many deliberations in progress, retry shortly")));
     }
     
     @GetMapping("/events/{eventId}/results")
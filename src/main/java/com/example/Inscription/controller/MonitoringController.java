@@ -0,0 +1,208 @@
+package com.example.Inscription.controller;
+
+import com.example.Inscription.service.AnalysisAdmissionControl;
+import com.example.Inscription.service.BordereauFieldExtractor;
+import com.example.Inscription.service.BordereauRoiOcr;
+import com.example.Inscription.service.CandidateDeduplication;
+import com.example.Inscription.service.DocumentAnalysisJobService;
+import com.example.Inscription.service.DocumentAnalysisMetrics;
+import com.example.Inscription.service.DocumentTextService;
+import com.example.Inscription.service.EventCatalogCache;
+import com.example.Inscription.service.EventEligibilityIndex;
+import com.example.Inscription.service.EventMetadataCache;
+import com.example.Inscription.service.EventRegistrationCounters;
+import com.example.Inscription.service.GeminiGateway;
+import com.example.Inscription.service.GeminiImagePreprocessor;
+import com.example.Inscription.service.GeminiResponseCache;
+import com.example.Inscription.service.NameMatcher;
+import com.example.Inscription.service.OnnxDocumentClassifier;
+import com.example.Inscription.service.PdfLoader;
+import com.example.Inscription.service.ReceiptIndexService;
+import com.example.Inscription.service.RegistrationNumberAllocator;
+import com.example.Inscription.service.RegistrationWaitingRoom;
+import com.example.Inscription.service.UploadPreflight;
+import com.example.Inscription.service.WorkExecutors;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runtime metrics for AI and document processing components
+ */
+@RestController
+@RequestMapping("/api/admin/monitoring")
+@RequiredArgsConstructor
+@Tag(name = "Monitoring", description = "Runtime metrics for AI and document processing")
+@SecurityRequirement(name = "bearerAuth")
+public class MonitoringController {
+
+    private final GeminiGateway geminiGateway;
+    private final GeminiResponseCache geminiResponseCache;
+    private final GeminiImagePreprocessor geminiImagePreprocessor;
+    private final BordereauFieldExtractor bordereauFieldExtractor;
+    private final BordereauRoiOcr bordereauRoiOcr;
+    private final DocumentAnalysisMetrics documentAnalysisMetrics;
+    private final DocumentAnalysisJobService documentAnalysisJobService;
+    private final OnnxDocumentClassifier onnxDocumentClassifier;
+    private final NameMatcher nameMatcher;
+    private final ReceiptIndexService receiptIndexService;
+    private final DocumentTextService documentTextService;
+    private final PdfLoader pdfLoader;
+    private final UploadPreflight uploadPreflight;
+    private final WorkExecutors workExecutors;
+    private final AnalysisAdmissionControl analysisAdmissionControl;
+    private final EventMetadataCache eventMetadataCache;
+    private final EventEligibilityIndex eventEligibilityIndex;
+    private final CandidateDeduplication candidateDeduplication;
+    private final EventCatalogCache eventCatalogCache;
+    private final RegistrationWaitingRoom registrationWaitingRoom;
+    private final RegistrationNumberAllocator registrationNumberAllocator;
+    private final EventRegistrationCounters registrationCounters;
+
+    @GetMapping("/gemini")
+    @Operation(summary = "Gemini gateway metrics", description = "Queue depth, in-flight calls, retries and latency of the Gemini gateway")
+    public ResponseEntity<Map<String, Object>> getGeminiMetrics() {
+        return ResponseEntity.ok(geminiGateway.stats());
+    }
+    
+    @GetMapping("/gemini-cache")
+    @Operation(summary = "Gemini response cache metrics", description = "Hit rate, stores and size of the content-addressed Gemini response cache")
+    public ResponseEntity<Map<String, Object>> getGeminiCacheMetrics() {
+        return ResponseEntity.ok(geminiResponseCache.stats());
+    }
+    
+    @GetMapping("/gemini-preprocessing")
+    @Operation(summary = "Gemini image preprocessing report", description = "Bytes saved and Gemini call latency with and without preprocessing, per document type")
+    public ResponseEntity<Map<String, Object>> getGeminiPreprocessingMetrics() {
+        return ResponseEntity.ok(geminiImagePreprocessor.stats());
+    }
+    
+    @GetMapping("/bordereau-extraction")
+    @Operation(summary = "Bordereau extraction metrics", description = "How many receipts were extracted locally vs escalated to Gemini, per detected bank layout")
+    public ResponseEntity<Map<String, Object>> getBordereauExtractionMetrics() {
+        return ResponseEntity.ok(bordereauFieldExtractor.stats());
+    }
+    
+    @GetMapping("/bordereau-roi-ocr")
+    @Operation(summary = "Bordereau region OCR metrics", description = "Template hits, fingerprints of scanned receipts without a template, and region vs full-page OCR latency")
+    public ResponseEntity<Map<String, Object>> getBordereauRoiOcrMetrics() {
+        return ResponseEntity.ok(bordereauRoiOcr.stats());
+    }
+    
+    @GetMapping("/document-text")
+    @Operation(summary = "Document text extraction", description = "Upload-time text extraction latency per method (text layer, OCR) and how often verifications read precomputed text")
+    public ResponseEntity<Map<String, Object>> getDocumentTextMetrics() {
+        return ResponseEntity.ok(documentTextService.stats());
+    }
+    
+    @GetMapping("/pdf-parsing")
+    @Operation(summary = "PDF parsing limiter", description = "PDF documents currently open, callers waiting for a slot, timeouts and parse latency")
+    public ResponseEntity<Map<String, Object>> getPdfParsingMetrics() {
+        return ResponseEntity.ok(pdfLoader.stats());
+    }
+    
+    @GetMapping("/upload-preflight")
+    @Operation(summary = "Upload pre-flight checks", description = "Accepted uploads and rejections per reason (empty, corrupted, encrypted, too many pages...) with check latency")
+    public ResponseEntity<Map<String, Object>> getUploadPreflightMetrics() {
+        return ResponseEntity.ok(uploadPreflight.stats());
+    }
+    
+    @GetMapping("/executors")
+    @Operation(summary = "Worker pools", description = "Threads, active tasks, queue depth, rejections, queue wait and run time of the CPU, AI and bulk pools")
+    public ResponseEntity<Map<String, Object>> getExecutorMetrics() {
+        return ResponseEntity.ok(workExecutors.stats());
+    }
+    
+    @GetMapping("/admission")
+    @Operation(summary = "Analysis admission control", description = "Analysis requests in progress and waiting, admitted/queued counts and 429 rejections per cause (client rate, queue full, wait timeout)")
+    public ResponseEntity<Map<String, Object>> getAdmissionMetrics() {
+        return ResponseEntity.ok(analysisAdmissionControl.stats());
+    }
+    
+    @GetMapping("/event-cache")
+    @Operation(summary = "Event registration metadata cache", description = "Events cached for registration checks, cache hits and database loads")
+    public ResponseEntity<Map<String, Object>> getEventCacheMetrics() {
+        return ResponseEntity.ok(eventMetadataCache.stats());
+    }
+    
+    @GetMapping("/waiting-room")
+    @Operation(summary = "Registration waiting rooms", description = "Per event: students waiting, tickets joined, admitted, abandoned and refused because the room was full")
+    public ResponseEntity<Map<String, Object>> getWaitingRoomMetrics() {
+        return ResponseEntity.ok(registrationWaitingRoom.stats());
+    }
+    
+    @GetMapping("/registration-numbers")
+    @Operation(summary = "Registration number allocator", description = "Numbers issued from reserved blocks, blocks claimed, pre-created numbers taken, uniqueness conflicts skipped and numbers left in each block")
+    public ResponseEntity<Map<String, Object>> getRegistrationNumberMetrics() {
+        return ResponseEntity.ok(registrationNumberAllocator.stats());
+    }
+    
+    @GetMapping("/registration-counters")
+    @Operation(summary = "Registration counter reconciliation", description = "Events reconciled, counters corrected, total drift found and duration of the last reconciliation")
+    public ResponseEntity<Map<String, Object>> getRegistrationCounterMetrics() {
+        return ResponseEntity.ok(registrationCounters.stats());
+    }
+    
+    @GetMapping("/eligibility-index")
+    @Operation(summary = "Event eligibility index", description = "Events indexed and open, rebuilds, lookups and lookups answered from the event cache because the event was not indexed yet")
+    public ResponseEntity<Map<String, Object>> getEligibilityIndexMetrics() {
+        return ResponseEntity.ok(eventEligibilityIndex.stats());
+    }
+    
+    @GetMapping("/candidate-dedup")
+    @Operation(summary = "Candidate deduplication index", description = "Students and blocking keys indexed, registration-time lookups and their latency")
+    public ResponseEntity<Map<String, Object>> getCandidateDedupMetrics() {
+        return ResponseEntity.ok(candidateDeduplication.stats());
+    }
+    
+    @GetMapping("/candidate-duplicates")
+    @Operation(summary = "Likely duplicate candidates", description = "Groups of student accounts that probably belong to the same person (CIN, phonetic name and birth date, phone), most certain first")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> getCandidateDuplicates() {
+        return candidateDeduplication.duplicateClusters().thenApply(ResponseEntity::ok);
+    }
+    
+    @GetMapping("/event-catalog")
+    @Operation(summary = "Public event catalog cache", description = "Cached catalog entries, hits, rebuilds and 304 Not Modified answers")
+    public ResponseEntity<Map<String, Object>> getEventCatalogMetrics() {
+        return ResponseEntity.ok(eventCatalogCache.stats());
+    }
+    
+    @GetMapping("/document-analysis")
+    @Operation(summary = "Document analysis latency", description = "End-to-end latency of document analysis per operation and document type")
+    public ResponseEntity<Map<String, Object>> getDocumentAnalysisMetrics() {
+        return ResponseEntity.ok(documentAnalysisMetrics.stats());
+    }
+    
+    @GetMapping("/analysis-jobs")
+    @Operation(summary = "Document analysis job queue", description = "Number of queued, running, succeeded and failed analysis jobs")
+    public ResponseEntity<Map<String, Object>> getAnalysisJobMetrics() {
+        return ResponseEntity.ok(documentAnalysisJobService.stats());
+    }
+    
+    @GetMapping("/document-classifier")
+    @Operation(summary = "Local document classifier metrics", description = "ONNX classifier availability, batch sizes, latency and Gemini fallbacks")
+    public ResponseEntity<Map<String, Object>> getDocumentClassifierMetrics() {
+        return ResponseEntity.ok(onnxDocumentClassifier.stats());
+    }
+    
+    @GetMapping("/name-index")
+    @Operation(summary = "Candidate name index", description = "Size of the trigram name index and lookup latency")
+    public ResponseEntity<Map<String, Object>> getNameIndexMetrics() {
+        return ResponseEntity.ok(nameMatcher.stats());
+    }
+    
+    @GetMapping("/receipt-conflicts")
+    @Operation(summary = "Duplicate receipt report", description = "Every receipt fingerprint shared by more than one registration or verified document, across all events")
+    public ResponseEntity<List<Map<String, Object>>> getReceiptConflicts() {
+        return ResponseEntity.ok(receiptIndexService.conflictReport(null));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.Inscription.controller;
+
+import com.example.Inscription.model.User;
+import com.example.Inscription.repository.UserRepository;
+import com.example.Inscription.service.BankStatementReconciliationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Bulk payment verification from bank statement exports
+ */
+@RestController
+@RequestMapping("/api/institution/payments")
+@RequiredArgsConstructor
+@Tag(name = "Payment Reconciliation", description = "Reconcile bank statement exports with pending registration payments")
+@SecurityRequirement(name = "bearerAuth")
+public class PaymentReconciliationController {
+    
+    private final BankStatementReconciliationService reconciliationService;
+    private final UserRepository userRepository;
+    
+    @PostMapping("/reconcile")
+    @Operation(summary = "Reconcile a bank statement",
+               description = "Streams a CSV or OFX export of deposits and marks every pending bordereau / payment reference "
+                       + "that matches by reference, amount and depositor name as verified. "
+                       + "Unmatched payments are left for document verification. Use dryRun=true to preview the report")
+    public ResponseEntity<?> reconcile(
+            Authentication authentication,
+            @RequestParam("file") MultipartFile statement,
+            @RequestParam(value = "eventId", required = false) Long eventId,
+            @RequestParam(value = "dryRun", defaultValue = "false") boolean dryRun) {
+        try {
+            String email = (String) authentication.getPrincipal();
+            User user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+            if (user.getInstitution() == null) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Not associated with an institution"));
+            }
+            
+            try (InputStream in = statement.getInputStream()) {
+                return ResponseEntity.ok(reconciliationService.reconcile(in, statement.getOriginalFilename(),
+                        user.getInstitution().getId(), eventId, dryRun));
+            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.Inscription.controller;
 
+import com.example.Inscription.model.AnalysisJobType;
 import com.example.Inscription.model.BordereauData;
+import com.example.Inscription.model.DocumentSummary;
+import com.example.Inscription.service.DocumentAnalysisJobService;
+import com.example.Inscription.service.DocumentService;
+import com.example.Inscription.service.NameMatcher;
 import com.example.Inscription.service.PdfService;
+import com.example.Inscription.service.WorkExecutors;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -9,6 +15,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/pdf")
@@ -18,6 +29,18 @@ public class PdfController {
     @Autowired
     private PdfService pdfService;
 
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentAnalysisJobService jobService;
+
+    @Autowired
+    private NameMatcher nameMatcher;
+
+    @Autowired
+    private WorkExecutors workExecutors;
+
     @GetMapping("/extract")
     @Operation(summary = "Extract bordereau data from PDF", description = "Extracts structured data from PDF documents using OCR and text extraction")
     @ApiResponse(responseCode = "200", description = "Data extracted successfully")
@@ -26,9 +49,58 @@ public class PdfController {
     }
 
     @GetMapping("/verificationAutomatique")
-    @Operation(summary = "Verify all bordereaux", description = "Automatically verifies and processes all unverified bordereau documents")
-    @ApiResponse(responseCode = "200", description = "Verification completed")
-    public void verificationAuto() throws Exception {
-        pdfService.verifierTousLesBordereaux();
+    @Operation(summary = "Verify all bordereaux", description = "Automatically verifies and processes all unverified bordereau documents. "
+            + "With async=true, one queued job is created per document and the call returns immediately")
+    @ApiResponse(responseCode = "200", description = "Verification completed, or jobs queued")
+    public CompletableFuture<Map<String, Object>> verificationAuto(@RequestParam(value = "async", defaultValue = "false") boolean async) {
+        Map<String, Object> response = new HashMap<>();
+        if (!async) {
+            // Parcours complet sur le pool bulk : le thread HTTP est libéré pendant la vérification
+            return workExecutors.bulk().supply(() -> {
+                try {
+                    pdfService.verifierTousLesBordereaux();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Vérification des bordereaux interrompue: " + e.getMessage(), e);
+                }
+                response.put("success", true);
+                return response;
+            });
+        }
+        int queued = 0;
+        int alreadyQueued = 0;
+        int curseur = 0;
+        List<DocumentSummary> page;
+        try {
+            // Un second appel ne recrée pas de job pour un document déjà en attente ou en cours
+            Set<String> enFile = jobService.activeDocumentIds(AnalysisJobType.BORDEREAU_VERIFICATION);
+            do {
+                page = documentService.nonVerifies(curseur, pdfService.getPageSize());
+                for (DocumentSummary doc : page) {
+                    curseur = doc.getId();
+                    if (enFile.contains(String.valueOf(doc.getId()))) {
+                        alreadyQueued++;
+                        continue;
+                    }
+                    Map<String, Object> payload = new HashMap<>();
+                    payload.put("documentId", doc.getId());
+                    jobService.enqueue(AnalysisJobType.BORDEREAU_VERIFICATION, payload, null, doc.getNomFic(), null, 0, null);
+                    queued++;
+                }
+            } while (page.size() == pdfService.getPageSize());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Mise en file interrompue après " + queued + " jobs: " + e.getMessage(), e));
+        }
+        response.put("success", true);
+        response.put("queuedJobs", queued);
+        response.put("alreadyQueued", alreadyQueued);
+        return CompletableFuture.completedFuture(response);
+    }
+
+    @GetMapping("/candidats")
+    @Operation(summary = "Find candidates by depositor name", description = "Returns the registered candidates whose name matches a receipt depositor name, tolerating typos and accents")
+    @ApiResponse(responseCode = "200", description = "Best matches, closest first")
+    public List<NameMatcher.Match> chercherCandidats(@RequestParam("remettant") String remettant) {
+        return nameMatcher.findCandidates(remettant);
     }
 }
@@ -2,11 +2,17 @@ package com.example.Inscription.controller;
 
 import com.example.Inscription.model.*;
 import com.example.Inscription.repository.*;
+import com.example.Inscription.service.CandidateDeduplication;
+import com.example.Inscription.service.EventEligibilityIndex;
+import com.example.Inscription.service.RegistrationWaitingRoom;
 import com.example.Inscription.service.StudentEventRegistrationService;
+import com.example.Inscription.service.UploadPreflight;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -32,6 +38,10 @@ public class StudentController {
     private final DocumentRepository documentRepository;
     private final StudentEventRegistrationService studentEventRegistrationService;
     private final EventRepository eventRepository;
+    private final UploadPreflight uploadPreflight;
+    private final RegistrationWaitingRoom waitingRoom;
+    private final EventEligibilityIndex eventEligibilityIndex;
+    private final CandidateDeduplication candidateDeduplication;
     
     @GetMapping("/profile")
     @Operation(summary = "Get student profile", description = "Get current student's profile information")
@@ -160,6 +170,7 @@ public class StudentController {
             }
             
             userRepository.save(user);
+            candidateDeduplication.index(user);
             
             return ResponseEntity.ok(Map.of("message", "Profile updated successfully"));
         } catch (Exception e) {
@@ -182,23 +193,7 @@ public class StudentController {
             
             for (Event event : events) {
                 if (event.getIsActive() && !event.getContestDate().isBefore(LocalDateTime.now())) {
-                    Map<String, Object> eventMap = new HashMap<>();
-                    eventMap.put("id", event.getId());
-                    eventMap.put("title", event.getTitle());
-                    eventMap.put("description", event.getDescription());
-                    eventMap.put("level", event.getLevel());
-                    eventMap.put("registrationStart", event.getRegistrationStart());
-                    eventMap.put("registrationEnd", event.getRegistrationEnd());
-                    eventMap.put("contestDate", event.getContestDate());
-                    eventMap.put("locations", event.getLocations());
-                    eventMap.put("maxAdmissions", event.getMaxAdmissions());
-                    eventMap.put("eligibleSeries", event.getEligibleSeries());
-                    eventMap.put("registrationsOpen", event.getRegistrationsOpen());
-                    
-                    boolean isEligible = isStudentEligibleForEvent(user, event);
-                    eventMap.put("isEligible", isEligible);
-                    
-                    result.add(eventMap);
+                    result.add(mapAvailableEvent(event, isStudentEligibleForEvent(user, event)));
                 }
             }
             
@@ -208,28 +203,64 @@ public class StudentController {
         }
     }
     
+    @GetMapping("/eligible-events")
+    @Operation(summary = "Get events the student can apply to", description = "Events currently open for registration that accept the student's bac series, optionally for one level (L1, L2, L3, M1, M2)")
+    public ResponseEntity<?> getEligibleEvents(
+            Authentication authentication,
+            @RequestParam(required = false) String level) {
+        try {
+            String email = (String) authentication.getPrincipal();
+            User user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+            
+            // Matching events come from the eligibility index; only those are loaded
+            List<Long> eventIds = eventEligibilityIndex.openEventIds(user.getBacSeries(), level);
+            List<Map<String, Object>> result = new java.util.ArrayList<>();
+            for (Event event : eventRepository.findAllById(eventIds)) {
+                result.add(mapAvailableEvent(event, true));
+            }
+            
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+    
     @PostMapping("/events/{eventId}/register")
-    @Operation(summary = "Register student for event", description = "Register student for a concours with document uploads")
+    @Operation(summary = "Register student for event", description = "Register student for a concours with document uploads. "
+            + "Retries sent with the same Idempotency-Key header return the existing registration")
     public ResponseEntity<?> registerForEvent(
             Authentication authentication,
             @PathVariable Long eventId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = RegistrationWaitingRoom.TICKET_HEADER, required = false) String ticket,
             @RequestParam("numeroBordereau") String numeroBordereau,
             @RequestParam("releveFile") MultipartFile releveFile,
             @RequestParam("bordereauFile") MultipartFile bordereauFile) {
         try {
+            if (idempotencyKey != null && idempotencyKey.length() > 100) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Idempotency-Key must be at most 100 characters"));
+            }
             String email = (String) authentication.getPrincipal();
+            // Waiting room first: a student who has not been admitted yet costs no database or upload work
+            if (!waitingRoom.isAdmitted(eventId, email, ticket)) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(waitingRoom.getPollIntervalSeconds()))
+                        .body(waitingRoom.notAdmittedBody(eventId));
+            }
             User user = userRepository.findByEmail(email)
                     .orElseThrow(() -> new IllegalArgumentException("User not found"));
             
-            Event event = eventRepository.findById(eventId)
-                    .orElseThrow(() -> new IllegalArgumentException("Event not found"));
-            
-            // Validate file types
-            if (!isValidFileType(releveFile.getContentType())) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Invalid releve de note file type. Must be PDF, JPG, or PNG"));
+            // Validate files from their content (type, pages, encryption) before storing them
+            UploadPreflight.Report releveCheck = uploadPreflight.inspect(releveFile.getBytes(), "releve_de_note");
+            if (!releveCheck.isAccepted()) {
+                return ResponseEntity.status(releveCheck.httpStatus())
+                        .body(Map.of("message", "Invalid releve de note file: " + releveCheck.getMessage(), "reason", releveCheck.getReason()));
             }
-            if (!isValidFileType(bordereauFile.getContentType())) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Invalid bordereau file type. Must be PDF, JPG, or PNG"));
+            UploadPreflight.Report bordereauCheck = uploadPreflight.inspect(bordereauFile.getBytes(), "bordereau_paiement");
+            if (!bordereauCheck.isAccepted()) {
+                return ResponseEntity.status(bordereauCheck.httpStatus())
+                        .body(Map.of("message", "Invalid bordereau file: " + bordereauCheck.getMessage(), "reason", bordereauCheck.getReason()));
             }
             
             // Validate numeroBordereau
@@ -237,20 +268,11 @@ public class StudentController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Numero bordereau must be at least 3 characters"));
             }
             
-            // Register student for event
-            StudentEventRegistration registration = new StudentEventRegistration();
-            registration.setUser(user);
-            registration.setEvent(event);
-            registration.setNumeroBordereau(numeroBordereau);
-            registration.setReleveDeNoteFile(releveFile.getBytes());
-            registration.setReleveDeNoteFilename(releveFile.getOriginalFilename());
-            registration.setBordereauFile(bordereauFile.getBytes());
-            registration.setBordereauFilename(bordereauFile.getOriginalFilename());
-            registration.setStatus(RegistrationStatus.PENDING);
-            registration.setIsEligible(isStudentEligibleForEvent(user, event));
-            registration.setCreatedAt(LocalDateTime.now());
-            
-            StudentEventRegistration saved = studentEventRegistrationService.registerForEvent(registration);
+            // Register student for event (eligibility checked from the cached event metadata)
+            StudentEventRegistration saved = studentEventRegistrationService.registerForEvent(user, eventId,
+                    releveFile.getBytes(), releveFile.getOriginalFilename(),
+                    bordereauFile.getBytes(), bordereauFile.getOriginalFilename(),
+                    numeroBordereau, idempotencyKey);
             
             Map<String, Object> response = new HashMap<>();
             response.put("message", "Registration submitted successfully");
@@ -334,17 +356,27 @@ public class StudentController {
     
     // ==================== HELPER METHODS ====================
     
+    private Map<String, Object> mapAvailableEvent(Event event, boolean isEligible) {
+        Map<String, Object> eventMap = new HashMap<>();
+        eventMap.put("id", event.getId());
+        eventMap.put("title", event.getTitle());
+        eventMap.put("description", event.getDescription());
+        eventMap.put("level", event.getLevel());
+        eventMap.put("registrationStart", event.getRegistrationStart());
+        eventMap.put("registrationEnd", event.getRegistrationEnd());
+        eventMap.put("contestDate", event.getContestDate());
+        eventMap.put("locations", event.getLocations());
+        eventMap.put("maxAdmissions", event.getMaxAdmissions());
+        eventMap.put("eligibleSeries", event.getEligibleSeries());
+        eventMap.put("registrationsOpen", event.getRegistrationsOpen());
+        eventMap.put("isEligible", isEligible);
+        return eventMap;
+    }
+    
     private boolean isStudentEligibleForEvent(User user, Event event) {
         if (event.getEligibleSeries() == null || event.getEligibleSeries().isEmpty()) {
             return true; // No series restriction
         }
         return event.getEligibleSeries().contains(user.getBacSeries());
     }
-    
-    private boolean isValidFileType(String contentType) {
-        if (contentType == null) return false;
-        return contentType.equals("application/pdf") ||
-                contentType.equals("image/jpeg") ||
-                contentType.equals("image/png");
-    }
 }
@@ -4,10 +4,13 @@ import com.example.Inscription.dto.EventRegistrationRequest;
 import com.example.Inscription.model.*;
 import com.example.Inscription.repository.*;
 import com.example.Inscription.service.EventRegistrationService;
+import com.example.Inscription.service.RegistrationWaitingRoom;
+import com.example.Inscription.service.UploadPreflight;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -15,6 +18,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -31,21 +35,33 @@ public class StudentRegistrationController {
     private final EventRepository eventRepository;
     private final EventRegistrationRepository registrationRepository;
     private final UserRepository userRepository;
+    private final UploadPreflight uploadPreflight;
+    private final RegistrationWaitingRoom waitingRoom;
     
     @PostMapping("/register-event")
-    @Operation(summary = "Register for an event", description = "Register student for contest or selection event")
+    @Operation(summary = "Register for an event", description = "Register student for contest or selection event. "
+            + "Retries sent with the same Idempotency-Key header return the existing registration")
     public ResponseEntity<?> registerForEvent(
             Authentication authentication,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestHeader(value = RegistrationWaitingRoom.TICKET_HEADER, required = false) String ticket,
             @RequestBody EventRegistrationRequest request) {
         try {
+            if (idempotencyKey != null && idempotencyKey.length() > 100) {
+                return ResponseEntity.badRequest().body("Idempotency-Key must be at most 100 characters");
+            }
             String email = (String) authentication.getPrincipal();
+            if (!waitingRoom.isAdmitted(request.getEventId(), email, ticket)) {
+                return notAdmitted(request.getEventId());
+            }
             User user = userRepository.findByEmail(email)
                     .orElseThrow(() -> new IllegalArgumentException("User not found"));
             
             EventRegistration registration = registrationService.registerForEvent(
-                    user.getId(),
+                    user,
                     request.getEventId(),
-                    request.getFormData()
+                    request.getFormData(),
+                    idempotencyKey
             );
             
             return ResponseEntity.status(HttpStatus.CREATED).body(registration);
@@ -59,6 +75,7 @@ public class StudentRegistrationController {
     public ResponseEntity<?> submitPaymentReceipt(
             Authentication authentication,
             @PathVariable Long registrationId,
+            @RequestHeader(value = RegistrationWaitingRoom.TICKET_HEADER, required = false) String ticket,
             @RequestParam("file") MultipartFile receiptFile,
             @RequestParam("paymentReference") String paymentReference) {
         try {
@@ -69,6 +86,14 @@ public class StudentRegistrationController {
             if (!registration.getUser().getEmail().equals(email)) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Unauthorized");
             }
+            if (!waitingRoom.isAdmitted(registration.getEvent().getId(), email, ticket)) {
+                return notAdmitted(registration.getEvent().getId());
+            }
+            
+            UploadPreflight.Report preflight = uploadPreflight.inspect(receiptFile.getBytes(), "bordereau_paiement");
+            if (!preflight.isAccepted()) {
+                return ResponseEntity.status(preflight.httpStatus()).body("Invalid payment receipt: " + preflight.getMessage());
+            }
             
             registrationService.verifyPayment(
                     registrationId,
@@ -83,6 +108,40 @@ public class StudentRegistrationController {
         }
     }
     
+    @PostMapping("/events/{eventId}/waiting-room")
+    @Operation(summary = "Join the registration waiting room", description = "Returns a queue ticket and its position. "
+            + "Once ADMITTED, send the ticket in the " + RegistrationWaitingRoom.TICKET_HEADER + " header of the registration and upload calls")
+    public ResponseEntity<?> joinWaitingRoom(Authentication authentication, @PathVariable Long eventId) {
+        try {
+            String email = (String) authentication.getPrincipal();
+            if (!waitingRoom.isActive(eventId)) {
+                return ResponseEntity.ok(Map.of("eventId", eventId, "waitingRoom", false));
+            }
+            return ResponseEntity.ok(waitingRoom.join(eventId, email));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(waitingRoom.getPollIntervalSeconds()))
+                    .body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/events/{eventId}/waiting-room/{ticket}")
+    @Operation(summary = "Waiting room position", description = "Position, estimated wait and state of a ticket, answered from memory. "
+            + "Poll at the returned pollAfterSeconds to keep the ticket in the queue")
+    public ResponseEntity<?> getWaitingRoomStatus(
+            Authentication authentication,
+            @PathVariable Long eventId,
+            @PathVariable String ticket) {
+        try {
+            String email = (String) authentication.getPrincipal();
+            return ResponseEntity.ok(waitingRoom.status(eventId, ticket, email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", e.getMessage()));
+        }
+    }
+    
     @GetMapping("/my-registrations")
     @Operation(summary = "Get my registrations", description = "Get all registrations for current student")
     public ResponseEntity<List<EventRegistration>> getMyRegistrations(Authentication authentication) {
@@ -109,4 +168,10 @@ public class StudentRegistrationController {
         
         return ResponseEntity.ok(registration);
     }
+    
+    private ResponseEntity<?> notAdmitted(Long eventId) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(waitingRoom.getPollIntervalSeconds()))
+                .body(waitingRoom.notAdmittedBody(eventId));
+    }
 }
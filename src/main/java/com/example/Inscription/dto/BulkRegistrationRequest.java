@@ -0,0 +1,35 @@
+package com.example.Inscription.dto;
+
+import com.example.Inscription.model.RegistrationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for bulk operations on student registrations: either a list of ids or a filter
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRegistrationRequest {
+    private String action; // APPROVE, REJECT, VERIFY_RELEVE, VERIFY_BORDEREAU, SEND_CONVOCATION
+    private Boolean verified; // VERIFY_RELEVE / VERIFY_BORDEREAU only, defaults to true
+    private List<Long> ids;
+    private Filter filter;
+
+    /**
+     * Registrations of the event matching every non-null criterion
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Filter {
+        private RegistrationStatus status;
+        private Boolean isEligible;
+        private Boolean isReleveVerified;
+        private Boolean isBordereauVerified;
+        private Boolean isConvocationSent;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.Inscription.model;
+
+public enum AnalysisJobStatus {
+    PENDING("En attente"),
+    RUNNING("En cours"),
+    SUCCEEDED("Terminé"),
+    FAILED("Échoué");
+    
+    private final String displayName;
+    
+    AnalysisJobStatus(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.Inscription.model;
+
+public enum AnalysisJobType {
+    VERIFY_DOCUMENT("Extraction d'un relevé de notes"),
+    ANALYZE_AND_SAVE("Classification et extraction d'un document"),
+    BORDEREAU_VERIFICATION("Vérification d'un bordereau de versement");
+    
+    private final String displayName;
+    
+    AnalysisJobType(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -31,6 +31,10 @@ public class Document {
     @Column
     private Double scoreConfiance;
 
+    // Job d'analyse qui a créé le document : un job repris après son délai de visibilité retrouve ce document
+    @Column(name = "analysis_job_id", unique = true)
+    private Long analysisJobId;
+
     public Document() {
     }
 
@@ -126,4 +130,12 @@ public class Document {
     public void setScoreConfiance(Double scoreConfiance) {
         this.scoreConfiance = scoreConfiance;
     }
+
+    public Long getAnalysisJobId() {
+        return analysisJobId;
+    }
+
+    public void setAnalysisJobId(Long analysisJobId) {
+        this.analysisJobId = analysisJobId;
+    }
 }
@@ -0,0 +1,85 @@
+package com.example.Inscription.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Job d'analyse de document persistant, consommé par les workers de tous les nœuds
+ * (dépilage via SELECT ... FOR UPDATE SKIP LOCKED)
+ */
+@Entity
+@Table(name = "document_analysis_jobs", indexes = {
+        @Index(name = "idx_analysis_jobs_dequeue", columnList = "status, priority, run_after")
+})
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentAnalysisJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false)
+    private AnalysisJobType jobType;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AnalysisJobStatus status = AnalysisJobStatus.PENDING;
+    
+    // Plus la valeur est élevée, plus le job passe tôt
+    @Column(nullable = false)
+    private Integer priority = 0;
+    
+    // Date limite d'inscription de l'événement concerné : à priorité égale, le plus proche passe d'abord
+    @Column(name = "deadline")
+    private LocalDateTime deadline;
+    
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload; // JSON format (inscriptionId, mode, documentId...)
+    
+    @JsonIgnore
+    @Column(name = "file_data")
+    private byte[] fileData;
+    
+    @Column(name = "file_name")
+    private String fileName;
+    
+    @Column(name = "mime_type")
+    private String mimeType;
+    
+    @Column(name = "result", columnDefinition = "TEXT")
+    private String result; // JSON format
+    
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "max_attempts", nullable = false)
+    private Integer maxAttempts = 3;
+    
+    @Column(name = "locked_by")
+    private String lockedBy;
+    
+    // Délai de visibilité : passé cette date, un job RUNNING est repris par un autre worker
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+    
+    @Column(name = "run_after", nullable = false)
+    private LocalDateTime runAfter = LocalDateTime.now();
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
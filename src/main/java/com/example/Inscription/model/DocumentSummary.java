@@ -0,0 +1,21 @@
+package com.example.Inscription.model;
+
+import lombok.*;
+
+/**
+ * Vue d'un document sans son fichier, pour les listes et les parcours de documents à vérifier
+ */
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentSummary {
+    private Integer id;
+    private String nomFic;
+    private String typeDocument;
+    private Boolean verifie;
+    private Boolean valide;
+    private Double scoreConfiance;
+    private Integer inscriptionId;
+}
@@ -0,0 +1,62 @@
+package com.example.Inscription.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Texte d'un document extrait une seule fois après l'upload (couche texte PDF, sinon OCR).
+ * Les vérifications lisent ce texte au lieu de ré-extraire le fichier.
+ */
+@Entity
+@Table(name = "document_texts",
+        uniqueConstraints = @UniqueConstraint(name = "uk_document_text_document", columnNames = "document_id"))
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentText {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "document_id", nullable = false)
+    private Integer documentId;
+    
+    @Column(columnDefinition = "TEXT")
+    private String text;
+    
+    // Position du début de chaque page dans text, séparées par des virgules (ex: "0,1834,3920")
+    @Column(name = "page_offsets", columnDefinition = "TEXT")
+    private String pageOffsets;
+    
+    @Column(name = "page_count")
+    private Integer pageCount;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TextExtractionMethod method;
+    
+    @Column(name = "duration_ms")
+    private Long durationMs;
+    
+    @Column(name = "extracted_at", nullable = false)
+    private LocalDateTime extractedAt = LocalDateTime.now();
+    
+    /**
+     * Texte d'une page (numérotée à partir de 0)
+     */
+    public String pageText(int page) {
+        if (text == null || pageOffsets == null || pageOffsets.isEmpty()) {
+            return page == 0 && text != null ? text : "";
+        }
+        String[] offsets = pageOffsets.split(",");
+        if (page < 0 || page >= offsets.length) {
+            return "";
+        }
+        int start = Integer.parseInt(offsets[page]);
+        int end = page + 1 < offsets.length ? Integer.parseInt(offsets[page + 1]) : text.length();
+        return text.substring(start, end);
+    }
+}
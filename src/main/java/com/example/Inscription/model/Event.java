@@ -114,4 +114,8 @@ public class Event {
     
     @Column(name = "registrations_open", nullable = false)
     private Boolean registrationsOpen = true;
+    
+    // Registration attempts go through the virtual waiting room (popular contests)
+    @Column(name = "waiting_room_enabled")
+    private Boolean waitingRoomEnabled = false;
 }
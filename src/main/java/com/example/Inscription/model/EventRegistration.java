@@ -1,12 +1,14 @@
 package com.example.Inscription.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "event_registrations")
+@Table(name = "event_registrations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_event_registration_user_event", columnNames = {"user_id", "event_id"}))
 @Data
 @Getter
 @Setter
@@ -55,6 +57,11 @@ public class EventRegistration {
     @Column(name = "is_summons_sent", nullable = false)
     private Boolean isSummonsSent = false;
     
+    // Idempotency-Key header of the registration request; a retry with the same key returns this registration
+    @Column(name = "idempotency_key", length = 100)
+    @JsonIgnore
+    private String idempotencyKey;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
     
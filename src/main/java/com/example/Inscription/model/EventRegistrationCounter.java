@@ -0,0 +1,36 @@
+package com.example.Inscription.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Nombre d'inscriptions d'un événement dans un statut donné, tenu à jour dans la même
+ * transaction que les écritures d'inscription (une ligne par événement et par statut).
+ */
+@Entity
+@Table(name = "event_registration_counters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_registration_counter_event_status", columnNames = {"event_id", "status"}))
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventRegistrationCounter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "event_id", nullable = false)
+    private Long eventId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private RegistrationStatus status;
+    
+    @Column(name = "registration_count", nullable = false)
+    private Long registrationCount = 0L;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -0,0 +1,36 @@
+package com.example.Inscription.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Réponse Gemini mise en cache, indexée par le hash (modèle, version, prompt, contenu du fichier)
+ */
+@Entity
+@Table(name = "gemini_response_cache", indexes = @Index(name = "idx_gemini_cache_expires_at", columnList = "expires_at"))
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeminiCacheEntry {
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey; // SHA-256 hex
+    
+    @Column(nullable = false)
+    private String model;
+    
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String response;
+    
+    @Column(name = "hit_count", nullable = false)
+    private Long hitCount = 0L;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,53 @@
+package com.example.Inscription.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Empreinte normalisée et hachée d'un reçu de paiement (numéro, fichier, compte/montant/remettant).
+ * Deux lignes avec la même (kind, fingerprint) sur des sources différentes signalent un reçu réutilisé.
+ */
+@Entity
+@Table(name = "receipt_fingerprints",
+        indexes = {
+                @Index(name = "idx_receipt_fingerprint_lookup", columnList = "kind, fingerprint"),
+                @Index(name = "idx_receipt_fingerprint_event", columnList = "event_id")
+        },
+        uniqueConstraints = @UniqueConstraint(name = "uk_receipt_fingerprint_source",
+                columnNames = {"source_type", "source_id", "kind"}))
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptFingerprint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReceiptFingerprintKind kind;
+    
+    @Column(nullable = false, length = 64)
+    private String fingerprint; // SHA-256 hex de la valeur normalisée
+    
+    @Column(name = "normalized_value", length = 512)
+    private String normalizedValue; // affiché dans le rapport de conflits
+    
+    @Column(name = "source_type", nullable = false)
+    private String sourceType; // student_event_registration, event_registration, document
+    
+    @Column(name = "source_id", nullable = false)
+    private Long sourceId;
+    
+    @Column(name = "event_id")
+    private Long eventId;
+    
+    @Column(name = "user_id")
+    private Long userId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -0,0 +1,17 @@
+package com.example.Inscription.model;
+
+public enum ReceiptFingerprintKind {
+    RECEIPT_NUMBER("Numéro de bordereau / référence de paiement"),
+    FILE_HASH("Fichier du reçu identique"),
+    PAYMENT_TUPLE("Compte, montant et remettant extraits");
+    
+    private final String displayName;
+    
+    ReceiptFingerprintKind(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -4,7 +4,8 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "registration_numbers")
+@Table(name = "registration_numbers",
+        indexes = @Index(name = "idx_registration_numbers_free", columnList = "event_id, is_used"))
 @Data
 @Getter
 @Setter
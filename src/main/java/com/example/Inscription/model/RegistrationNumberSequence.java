@@ -0,0 +1,32 @@
+package com.example.Inscription.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Compteur des numéros d'inscription d'un événement. Chaque nœud en réserve des blocs
+ * (next_value avancé en une seule requête) puis distribue les numéros du bloc en mémoire.
+ */
+@Entity
+@Table(name = "registration_number_sequences")
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RegistrationNumberSequence {
+    @Id
+    @Column(name = "event_id")
+    private Long eventId;
+    
+    // Prochain numéro non réservé par un nœud
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+    
+    @Column(name = "custom_format", nullable = false)
+    private String customFormat; // e.g., "INST-2025-{number}" or "INST-2025-{number:5}" (zero-padded)
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
@@ -1,12 +1,14 @@
 package com.example.Inscription.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "student_event_registrations")
+@Table(name = "student_event_registrations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_student_event_registration_user_event", columnNames = {"user_id", "event_id"}))
 @Data
 @Getter
 @Setter
@@ -61,6 +63,11 @@ public class StudentEventRegistration {
     @Column(name = "is_convocation_sent", nullable = false)
     private Boolean isConvocationSent = false;
     
+    // Client retry key (Idempotency-Key header)
+    @Column(name = "idempotency_key", length = 100)
+    @JsonIgnore
+    private String idempotencyKey;
+    
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
     
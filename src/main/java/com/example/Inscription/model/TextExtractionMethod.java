@@ -0,0 +1,17 @@
+package com.example.Inscription.model;
+
+public enum TextExtractionMethod {
+    TEXT_LAYER("Couche texte du PDF"),
+    OCR("OCR Tesseract"),
+    EMPTY("Aucun texte lisible");
+    
+    private final String displayName;
+    
+    TextExtractionMethod(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+}
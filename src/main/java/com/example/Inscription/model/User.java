@@ -1,5 +1,6 @@
 package com.example.Inscription.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -32,6 +33,11 @@ public class User {
     @Column(unique = true)
     private String cin;
     
+    // CIN en majuscules sans espaces ni tirets : un même CIN saisi autrement ne crée pas un second compte
+    @JsonIgnore
+    @Column(name = "cin_normalized", unique = true)
+    private String cinNormalized;
+    
     @Column(name = "birth_date")
     private String birthDate;
     
@@ -88,4 +94,20 @@ public class User {
     
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private Set<ExamResult> examResults = new HashSet<>();
+    
+    @PrePersist
+    protected void onCreate() {
+        cinNormalized = normalizeCin(cin);
+    }
+    
+    /**
+     * CIN comparable quelle que soit la saisie ("AB 123-456" = "ab123456") ; null s'il est trop court
+     */
+    public static String normalizeCin(String cin) {
+        if (cin == null) {
+            return null;
+        }
+        String normalized = cin.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "");
+        return normalized.length() >= 5 ? normalized : null;
+    }
 }
@@ -0,0 +1,67 @@
+package com.example.Inscription.repository;
+
+import com.example.Inscription.model.AnalysisJobStatus;
+import com.example.Inscription.model.DocumentAnalysisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DocumentAnalysisJobRepository extends JpaRepository<DocumentAnalysisJob, Long> {
+    
+    /**
+     * Verrouille les prochains jobs disponibles sans bloquer sur ceux déjà pris par un autre nœud.
+     * Un job RUNNING dont le délai de visibilité est dépassé est considéré comme abandonné,
+     * et n'est repris que s'il lui reste des tentatives.
+     */
+    @Query(value = "SELECT id FROM document_analysis_jobs " +
+            "WHERE (status = 'PENDING' AND run_after <= :now) " +
+            "OR (status = 'RUNNING' AND locked_until < :now AND attempts < max_attempts) " +
+            "ORDER BY priority DESC, deadline ASC NULLS LAST, id ASC " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockNextAvailable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentAnalysisJob j SET j.status = :status, j.lockedBy = :node, j.lockedUntil = :lockedUntil, " +
+            "j.attempts = j.attempts + 1, j.updatedAt = :now WHERE j.id IN :ids")
+    int markClaimed(@Param("ids") List<Long> ids, @Param("status") AnalysisJobStatus status,
+                    @Param("node") String node, @Param("lockedUntil") LocalDateTime lockedUntil,
+                    @Param("now") LocalDateTime now);
+    
+    /**
+     * Passe en FAILED les jobs abandonnés qui ont épuisé leurs tentatives (job qui fait tomber ou bloque le worker)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentAnalysisJob j SET j.status = :failed, j.lastError = COALESCE(j.lastError, :error), " +
+            "j.lockedBy = null, j.lockedUntil = null, j.completedAt = :now, j.updatedAt = :now " +
+            "WHERE j.status = :running AND j.lockedUntil < :now AND j.attempts >= j.maxAttempts")
+    int failExhausted(@Param("running") AnalysisJobStatus running, @Param("failed") AnalysisJobStatus failed,
+                      @Param("error") String error, @Param("now") LocalDateTime now);
+    
+    /**
+     * Rend un job réservé par ce nœud mais jamais démarré ; la réservation ne compte pas comme une tentative
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE DocumentAnalysisJob j SET j.status = :pending, j.lockedBy = null, j.lockedUntil = null, " +
+            "j.attempts = j.attempts - 1, j.runAfter = :now, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status = :running AND j.lockedBy = :node")
+    int release(@Param("id") Long id, @Param("node") String node, @Param("running") AnalysisJobStatus running,
+                @Param("pending") AnalysisJobStatus pending, @Param("now") LocalDateTime now);
+    
+    /**
+     * documentId du payload des jobs d'un type encore en attente ou en cours
+     */
+    @Query(value = "SELECT CAST(payload AS jsonb) ->> 'documentId' FROM document_analysis_jobs " +
+            "WHERE job_type = :type AND status IN ('PENDING', 'RUNNING')", nativeQuery = true)
+    List<String> findActiveDocumentIds(@Param("type") String type);
+    
+    long countByStatus(AnalysisJobStatus status);
+}
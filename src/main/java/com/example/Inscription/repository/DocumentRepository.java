@@ -1,7 +1,9 @@
 package com.example.Inscription.repository;
 
 import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentSummary;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document,Integer> {
@@ -23,8 +26,13 @@ public interface DocumentRepository extends JpaRepository<Document,Integer> {
     @Query("UPDATE Document d SET d.verifie = :validation WHERE d.inscription.id= :id")
     void updateVerifie(@Param("id") int id, @Param("validation") Boolean validation);
 
-    @Modifying(clearAutomatically = true)  // Indique que c'est une requête update
-    @Transactional
-    @Query("SELECT d FROM Document d WHERE d.verifie = false")
-    List<Document> findByValideFalse();
+    // Parcours par curseur (id croissant) des documents non vérifiés, sans charger les fichiers
+    @Query("SELECT d.id FROM Document d WHERE d.verifie = false AND d.id > :afterId ORDER BY d.id")
+    List<Integer> findNonVerifiesIdsAfter(@Param("afterId") int afterId, Pageable pageable);
+
+    @Query("SELECT new com.example.Inscription.model.DocumentSummary(d.id, d.nom_fic, d.typeDocument, d.verifie, d.valide, d.scoreConfiance, i.id) " +
+            "FROM Document d LEFT JOIN d.inscription i WHERE d.verifie = false AND d.id > :afterId ORDER BY d.id")
+    List<DocumentSummary> findNonVerifiesAfter(@Param("afterId") int afterId, Pageable pageable);
+
+    Optional<Document> findByAnalysisJobId(Long analysisJobId);
 }
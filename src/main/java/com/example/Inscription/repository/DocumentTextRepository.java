@@ -0,0 +1,27 @@
+package com.example.Inscription.repository;
+
+import com.example.Inscription.model.DocumentText;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+    Optional<DocumentText> findByDocumentId(Integer documentId);
+    
+    // Documents sans texte extrait, par curseur sur l'id
+    @Query("SELECT d.id FROM Document d WHERE d.id > :afterId " +
+            "AND NOT EXISTS (SELECT 1 FROM DocumentText t WHERE t.documentId = d.id) ORDER BY d.id")
+    List<Integer> findDocumentIdsWithoutText(@Param("afterId") int afterId, Pageable pageable);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DocumentText t WHERE t.documentId = :documentId")
+    void deleteByDocumentId(@Param("documentId") Integer documentId);
+}
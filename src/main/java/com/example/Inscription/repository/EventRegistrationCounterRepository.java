@@ -0,0 +1,50 @@
+package com.example.Inscription.repository;
+
+import com.example.Inscription.model.EventRegistrationCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EventRegistrationCounterRepository extends JpaRepository<EventRegistrationCounter, Long> {
+    
+    // Ajoute delta au compteur (créé au premier passage) ; l'UPDATE verrouille la ligne jusqu'au commit
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO event_registration_counters (event_id, status, registration_count, updated_at) " +
+            "VALUES (:eventId, :status, :delta, :now) ON CONFLICT (event_id, status) DO UPDATE " +
+            "SET registration_count = event_registration_counters.registration_count + :delta, updated_at = :now",
+            nativeQuery = true)
+    int add(@Param("eventId") Long eventId, @Param("status") String status, @Param("delta") long delta,
+            @Param("now") LocalDateTime now);
+    
+    // Remplace la valeur du compteur (réconciliation)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO event_registration_counters (event_id, status, registration_count, updated_at) " +
+            "VALUES (:eventId, :status, :count, :now) ON CONFLICT (event_id, status) DO UPDATE " +
+            "SET registration_count = :count, updated_at = :now", nativeQuery = true)
+    int set(@Param("eventId") Long eventId, @Param("status") String status, @Param("count") long count,
+            @Param("now") LocalDateTime now);
+    
+    // event id, statut, nombre
+    @Query("SELECT c.eventId, c.status, c.registrationCount FROM EventRegistrationCounter c WHERE c.eventId IN :eventIds")
+    List<Object[]> findCounts(@Param("eventIds") Collection<Long> eventIds);
+    
+    // Bloque les écritures d'inscription de l'événement le temps de comparer les compteurs au décompte réel
+    @Query(value = "SELECT id FROM event_registration_counters WHERE event_id = :eventId FOR UPDATE", nativeQuery = true)
+    List<Long> lockByEventId(@Param("eventId") Long eventId);
+    
+    @Query("SELECT DISTINCT c.eventId FROM EventRegistrationCounter c")
+    List<Long> findEventIds();
+    
+    @Modifying
+    @Query(value = "DELETE FROM event_registration_counters WHERE event_id = :eventId", nativeQuery = true)
+    void deleteByEventIdNative(@Param("eventId") Long eventId);
+}
@@ -4,18 +4,65 @@ import com.example.Inscription.model.*;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface EventRegistrationRepository extends JpaRepository<EventRegistration, Long> {
     Optional<EventRegistration> findByUserIdAndEventId(Long userId, Long eventId);
+    // Parmi les comptes donnés, ceux déjà inscrits à l'événement
+    @Query("SELECT r.user.id FROM EventRegistration r WHERE r.event.id = :eventId AND r.user.id IN :userIds")
+    List<Long> findRegisteredUserIds(@Param("eventId") Long eventId, @Param("userIds") Collection<Long> userIds);
     List<EventRegistration> findByEventId(Long eventId);
     List<EventRegistration> findByUserId(Long userId);
     List<EventRegistration> findByEventIdAndStatus(Long eventId, RegistrationStatus status);
     long countByEventIdAndStatus(Long eventId, RegistrationStatus status);
     
+    // statut, nombre : décompte réel comparé aux compteurs lors de la réconciliation
+    @Query("SELECT r.status, COUNT(r) FROM EventRegistration r WHERE r.event.id = :eventId GROUP BY r.status")
+    List<Object[]> countByStatus(@Param("eventId") Long eventId);
+    
+    // event id, statut actuel, nombre des inscriptions qui vont passer au statut donné
+    @Query("SELECT r.event.id, r.status, COUNT(r) FROM EventRegistration r " +
+            "WHERE r.id IN :ids AND r.status <> :status GROUP BY r.event.id, r.status")
+    List<Object[]> countTransitions(@Param("ids") List<Long> ids, @Param("status") RegistrationStatus status);
+    
+    @Query("SELECT DISTINCT r.event.id FROM EventRegistration r")
+    List<Long> findEventIds();
+    
+    // id, event id, user id, référence de paiement : projection pour l'index des reçus
+    @Query("SELECT r.id, r.event.id, r.user.id, r.paymentReference FROM EventRegistration r WHERE r.paymentReference IS NOT NULL")
+    List<Object[]> findAllPaymentReferences();
+    
+    // id, référence de paiement, nom, prénom, event id, frais et niveau de l'événement des paiements non vérifiés d'un établissement
+    @Query("SELECT r.id, r.paymentReference, r.user.lastName, r.user.firstName, r.event.id, r.event.registrationFee, r.event.level " +
+            "FROM EventRegistration r " +
+            "WHERE r.isPaymentVerified = false AND r.paymentReference IS NOT NULL " +
+            "AND r.event.institution.id = :institutionId AND (:eventId IS NULL OR r.event.id = :eventId)")
+    List<Object[]> findPendingPayments(@Param("institutionId") Long institutionId, @Param("eventId") Long eventId);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventRegistration r SET r.isPaymentVerified = true, r.status = :status, r.updatedAt = :now WHERE r.id IN :ids")
+    int markPaymentVerified(@Param("ids") List<Long> ids, @Param("status") RegistrationStatus status,
+                            @Param("now") LocalDateTime now);
+    
+    // Insère l'inscription sauf si l'étudiant est déjà inscrit à l'événement (clé unique user_id, event_id)
+    // Renvoie l'id créé, ou une liste vide si l'inscription existait déjà
+    @Transactional
+    @Query(value = "INSERT INTO event_registrations (user_id, event_id, status, form_data, is_payment_verified, " +
+            "is_form_completed, is_summons_sent, idempotency_key, created_at, updated_at) " +
+            "VALUES (:userId, :eventId, CAST(:status AS VARCHAR), CAST(:formData AS VARCHAR), false, true, false, " +
+            "CAST(:idempotencyKey AS VARCHAR), :now, :now) ON CONFLICT DO NOTHING RETURNING id", nativeQuery = true)
+    List<Long> insertIfAbsent(@Param("userId") Long userId, @Param("eventId") Long eventId, @Param("status") String status,
+                              @Param("formData") String formData, @Param("idempotencyKey") String idempotencyKey,
+                              @Param("now") LocalDateTime now);
+    
     @Modifying
     @Query(value = "DELETE FROM event_registrations WHERE event_id = :eventId", nativeQuery = true)
     void deleteByEventIdNative(Long eventId);
@@ -4,10 +4,12 @@ import com.example.Inscription.model.*;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
@@ -19,6 +21,24 @@ public interface EventRepository extends JpaRepository<Event, Long> {
     @Query(value = "SELECT institution_id FROM events WHERE id = :eventId", nativeQuery = true)
     Optional<Long> getInstitutionIdByEventId(Long eventId);
     
+    // id, type, début et fin des inscriptions, inscriptions ouvertes, salle d'attente, établissement :
+    // métadonnées pour valider une inscription
+    @Query("SELECT e.id, e.eventType, e.registrationStart, e.registrationEnd, e.registrationsOpen, e.waitingRoomEnabled, i.id " +
+            "FROM Event e LEFT JOIN e.institution i WHERE e.id = :eventId")
+    List<Object[]> findRegistrationMetadata(@Param("eventId") Long eventId);
+    
+    @Query("SELECT s FROM Event e JOIN e.eligibleSeries s WHERE e.id = :eventId")
+    Set<BacSeries> findEligibleSeries(@Param("eventId") Long eventId);
+    
+    // id, niveau, début, fin, actif, inscriptions ouvertes des événements dont la période n'est pas terminée
+    @Query("SELECT e.id, e.level, e.registrationStart, e.registrationEnd, e.isActive, e.registrationsOpen " +
+            "FROM Event e WHERE e.registrationEnd IS NULL OR e.registrationEnd >= :now ORDER BY e.id")
+    List<Object[]> findEligibilityRows(@Param("now") LocalDateTime now);
+    
+    // event id, série éligible des mêmes événements
+    @Query("SELECT e.id, s FROM Event e JOIN e.eligibleSeries s WHERE e.registrationEnd IS NULL OR e.registrationEnd >= :now")
+    List<Object[]> findEligibleSeriesRows(@Param("now") LocalDateTime now);
+    
     @Modifying
     @Query(value = "DELETE FROM events WHERE id = :eventId", nativeQuery = true)
     void deleteEventById(Long eventId);
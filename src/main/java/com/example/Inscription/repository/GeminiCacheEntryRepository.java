@@ -0,0 +1,26 @@
+package com.example.Inscription.repository;
+
+import com.example.Inscription.model.GeminiCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface GeminiCacheEntryRepository extends JpaRepository<GeminiCacheEntry, String> {
+    Optional<GeminiCacheEntry> findByCacheKeyAndExpiresAtAfter(String cacheKey, LocalDateTime now);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE GeminiCacheEntry e SET e.hitCount = e.hitCount + 1 WHERE e.cacheKey = :cacheKey")
+    void incrementHitCount(@Param("cacheKey") String cacheKey);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM GeminiCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
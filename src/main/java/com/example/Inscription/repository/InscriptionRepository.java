@@ -45,4 +45,8 @@ public interface InscriptionRepository extends JpaRepository<Inscription,Integer
     
     @Query("SELECT i FROM Inscription i WHERE i.email = :email")
     java.util.List<Inscription> findByEmail(@Param("email") String email);
+    
+    // id, nom, prenom : projection légère pour l'index des noms
+    @Query("SELECT i.id, i.nom, i.prenom FROM Inscription i")
+    java.util.List<Object[]> findAllNames();
 }
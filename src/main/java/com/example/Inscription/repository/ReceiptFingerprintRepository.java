@@ -0,0 +1,45 @@
+package com.example.Inscription.repository;
+
+import com.example.Inscription.model.ReceiptFingerprint;
+import com.example.Inscription.model.ReceiptFingerprintKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReceiptFingerprintRepository extends JpaRepository<ReceiptFingerprint, Long> {
+    List<ReceiptFingerprint> findByKindAndFingerprint(ReceiptFingerprintKind kind, String fingerprint);
+    
+    // Crée ou remplace l'empreinte de la source en une requête (clé unique source_type, source_id, kind) :
+    // deux indexations simultanées de la même source ne se heurtent plus
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO receipt_fingerprints (kind, fingerprint, normalized_value, source_type, source_id, " +
+            "event_id, user_id, created_at) VALUES (:kind, :fingerprint, CAST(:value AS VARCHAR), :sourceType, :sourceId, " +
+            "CAST(:eventId AS BIGINT), CAST(:userId AS BIGINT), :now) ON CONFLICT (source_type, source_id, kind) DO UPDATE " +
+            "SET fingerprint = EXCLUDED.fingerprint, normalized_value = EXCLUDED.normalized_value, " +
+            "event_id = EXCLUDED.event_id, user_id = EXCLUDED.user_id, created_at = EXCLUDED.created_at",
+            nativeQuery = true)
+    int upsert(@Param("kind") String kind, @Param("fingerprint") String fingerprint, @Param("value") String value,
+               @Param("sourceType") String sourceType, @Param("sourceId") Long sourceId, @Param("eventId") Long eventId,
+               @Param("userId") Long userId, @Param("now") LocalDateTime now);
+    
+    /**
+     * Toutes les empreintes partagées par au moins deux sources, dont l'une appartient à l'événement
+     */
+    @Query("SELECT f FROM ReceiptFingerprint f WHERE " +
+            "EXISTS (SELECT 1 FROM ReceiptFingerprint e WHERE e.eventId = :eventId AND e.kind = f.kind AND e.fingerprint = f.fingerprint) " +
+            "AND EXISTS (SELECT 1 FROM ReceiptFingerprint o WHERE o.kind = f.kind AND o.fingerprint = f.fingerprint AND o.id <> f.id) " +
+            "ORDER BY f.kind, f.fingerprint, f.createdAt")
+    List<ReceiptFingerprint> findConflictsForEvent(@Param("eventId") Long eventId);
+    
+    @Query("SELECT f FROM ReceiptFingerprint f WHERE " +
+            "EXISTS (SELECT 1 FROM ReceiptFingerprint o WHERE o.kind = f.kind AND o.fingerprint = f.fingerprint AND o.id <> f.id) " +
+            "ORDER BY f.kind, f.fingerprint, f.createdAt")
+    List<ReceiptFingerprint> findAllConflicts();
+}
@@ -4,7 +4,9 @@ import com.example.Inscription.model.RegistrationNumber;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 
 @Repository
@@ -13,6 +15,21 @@ public interface RegistrationNumberRepository extends JpaRepository<Registration
     List<RegistrationNumber> findByEventId(Long eventId);
     long countByEventIdAndIsUsedFalse(Long eventId);
     
+    // Prend un numéro pré-créé libre sans charger la liste ; SKIP LOCKED : deux approbations simultanées
+    // obtiennent deux numéros différents sans s'attendre
+    @Transactional
+    @Query(value = "UPDATE registration_numbers SET is_used = true, event_registration_id = :registrationId " +
+            "WHERE id = (SELECT id FROM registration_numbers WHERE event_id = :eventId AND is_used = false " +
+            "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED) RETURNING registration_number", nativeQuery = true)
+    List<String> claimUnused(@Param("eventId") Long eventId, @Param("registrationId") Long registrationId);
+    
+    // Enregistre un numéro généré ; liste vide si ce numéro existe déjà
+    @Transactional
+    @Query(value = "INSERT INTO registration_numbers (event_id, event_registration_id, registration_number, is_used, custom_format) " +
+            "VALUES (:eventId, :registrationId, :number, true, :format) ON CONFLICT DO NOTHING RETURNING id", nativeQuery = true)
+    List<Long> insertIssued(@Param("eventId") Long eventId, @Param("registrationId") Long registrationId,
+                            @Param("number") String number, @Param("format") String format);
+    
     @Modifying
     @Query(value = "DELETE FROM registration_numbers WHERE event_id = :eventId", nativeQuery = true)
     void deleteByEventIdNative(Long eventId);
@@ -0,0 +1,23 @@
+package com.example.Inscription.repository;
+
+import com.example.Inscription.model.RegistrationNumberSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RegistrationNumberSequenceRepository extends JpaRepository<RegistrationNumberSequence, Long> {
+    
+    // Réserve [premier, fin[ pour ce nœud : premier numéro, fin du bloc, format
+    // Transaction indépendante : un bloc réservé le reste même si l'approbation qui l'a demandé échoue
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "UPDATE registration_number_sequences SET next_value = next_value + :blockSize, updated_at = :now " +
+            "WHERE event_id = :eventId RETURNING next_value - :blockSize, next_value, custom_format", nativeQuery = true)
+    List<Object[]> claimBlock(@Param("eventId") Long eventId, @Param("blockSize") long blockSize,
+                              @Param("now") LocalDateTime now);
+}
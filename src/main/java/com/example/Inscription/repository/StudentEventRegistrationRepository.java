@@ -3,8 +3,14 @@ package com.example.Inscription.repository;
 import com.example.Inscription.model.StudentEventRegistration;
 import com.example.Inscription.model.RegistrationStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +25,10 @@ public interface StudentEventRegistrationRepository extends JpaRepository<Studen
     
     Optional<StudentEventRegistration> findByUserIdAndEventId(Long userId, Long eventId);
     
+    // Parmi les comptes donnés, ceux déjà inscrits à l'événement
+    @Query("SELECT r.user.id FROM StudentEventRegistration r WHERE r.event.id = :eventId AND r.user.id IN :userIds")
+    List<Long> findRegisteredUserIds(@Param("eventId") Long eventId, @Param("userIds") Collection<Long> userIds);
+    
     List<StudentEventRegistration> findByEventIdAndIsEligibleTrue(Long eventId);
     
     List<StudentEventRegistration> findByEventIdAndStatusAndIsEligibleTrue(Long eventId, RegistrationStatus status);
@@ -26,4 +36,83 @@ public interface StudentEventRegistrationRepository extends JpaRepository<Studen
     long countByEventId(Long eventId);
     
     long countByEventIdAndIsEligibleTrue(Long eventId);
+    
+    // id, event id, user id, numéro de bordereau : projection pour l'index des reçus
+    @Query("SELECT r.id, r.event.id, r.user.id, r.numeroBordereau FROM StudentEventRegistration r")
+    List<Object[]> findAllReceiptNumbers();
+    
+    // id, numéro de bordereau, nom, prénom, event id, frais et niveau de l'événement des bordereaux non vérifiés d'un établissement
+    @Query("SELECT r.id, r.numeroBordereau, r.user.lastName, r.user.firstName, r.event.id, r.event.registrationFee, r.event.level " +
+            "FROM StudentEventRegistration r " +
+            "WHERE r.isBordereauVerified = false AND r.event.institution.id = :institutionId " +
+            "AND (:eventId IS NULL OR r.event.id = :eventId)")
+    List<Object[]> findPendingReceipts(@Param("institutionId") Long institutionId, @Param("eventId") Long eventId);
+    
+    // Insère l'inscription sauf si l'étudiant est déjà inscrit à l'événement (clé unique user_id, event_id)
+    // Renvoie l'id créé, ou une liste vide si l'inscription existait déjà
+    @Transactional
+    @Query(value = "INSERT INTO student_event_registrations (user_id, event_id, status, releve_de_note_file, " +
+            "releve_de_note_filename, bordereau_file, bordereau_filename, numero_bordereau, is_releve_verified, " +
+            "is_bordereau_verified, is_eligible, is_convocation_sent, idempotency_key, created_at, updated_at) " +
+            "VALUES (:userId, :eventId, CAST(:status AS VARCHAR), :releveFile, CAST(:releveFilename AS VARCHAR), :bordereauFile, " +
+            "CAST(:bordereauFilename AS VARCHAR), :numeroBordereau, false, false, :eligible, false, " +
+            "CAST(:idempotencyKey AS VARCHAR), :now, :now) ON CONFLICT DO NOTHING RETURNING id", nativeQuery = true)
+    List<Long> insertIfAbsent(@Param("userId") Long userId, @Param("eventId") Long eventId, @Param("status") String status,
+                              @Param("releveFile") byte[] releveFile, @Param("releveFilename") String releveFilename,
+                              @Param("bordereauFile") byte[] bordereauFile, @Param("bordereauFilename") String bordereauFilename,
+                              @Param("numeroBordereau") String numeroBordereau, @Param("eligible") boolean eligible,
+                              @Param("idempotencyKey") String idempotencyKey, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE StudentEventRegistration r SET r.isBordereauVerified = true, r.updatedAt = :now WHERE r.id IN :ids")
+    int markBordereauVerified(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+    
+    // Ids des inscriptions de l'événement correspondant au filtre (critère null = ignoré), pour les traitements groupés
+    @Query("SELECT r.id FROM StudentEventRegistration r WHERE r.event.id = :eventId " +
+            "AND (:status IS NULL OR r.status = :status) " +
+            "AND (:eligible IS NULL OR r.isEligible = :eligible) " +
+            "AND (:releveVerified IS NULL OR r.isReleveVerified = :releveVerified) " +
+            "AND (:bordereauVerified IS NULL OR r.isBordereauVerified = :bordereauVerified) " +
+            "AND (:convocationSent IS NULL OR r.isConvocationSent = :convocationSent) ORDER BY r.id")
+    List<Long> findIdsForBulk(@Param("eventId") Long eventId, @Param("status") RegistrationStatus status,
+                              @Param("eligible") Boolean eligible, @Param("releveVerified") Boolean releveVerified,
+                              @Param("bordereauVerified") Boolean bordereauVerified,
+                              @Param("convocationSent") Boolean convocationSent);
+    
+    // id, event id, statut, relevé vérifié, bordereau vérifié, convocation envoyée : explique les ids non modifiés
+    @Query("SELECT r.id, r.event.id, r.status, r.isReleveVerified, r.isBordereauVerified, r.isConvocationSent " +
+            "FROM StudentEventRegistration r WHERE r.id IN :ids")
+    List<Object[]> findBulkState(@Param("ids") List<Long> ids);
+    
+    // Transitions groupées : chaque UPDATE applique la précondition de la méthode unitaire
+    // et renvoie les ids réellement modifiés
+    @Transactional
+    @Query(value = "UPDATE student_event_registrations SET status = 'APPROVED', updated_at = :now " +
+            "WHERE id IN (:ids) AND event_id = :eventId AND is_releve_verified AND is_bordereau_verified " +
+            "AND status <> 'APPROVED' RETURNING id", nativeQuery = true)
+    List<Long> approveAll(@Param("eventId") Long eventId, @Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Query(value = "UPDATE student_event_registrations SET status = 'REJECTED', updated_at = :now " +
+            "WHERE id IN (:ids) AND event_id = :eventId AND status <> 'REJECTED' RETURNING id", nativeQuery = true)
+    List<Long> rejectAll(@Param("eventId") Long eventId, @Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Query(value = "UPDATE student_event_registrations SET is_releve_verified = :verified, updated_at = :now " +
+            "WHERE id IN (:ids) AND event_id = :eventId AND is_releve_verified <> :verified RETURNING id", nativeQuery = true)
+    List<Long> setReleveVerified(@Param("eventId") Long eventId, @Param("ids") List<Long> ids,
+                                 @Param("verified") boolean verified, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Query(value = "UPDATE student_event_registrations SET is_bordereau_verified = :verified, updated_at = :now " +
+            "WHERE id IN (:ids) AND event_id = :eventId AND is_bordereau_verified <> :verified RETURNING id", nativeQuery = true)
+    List<Long> setBordereauVerified(@Param("eventId") Long eventId, @Param("ids") List<Long> ids,
+                                    @Param("verified") boolean verified, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Query(value = "UPDATE student_event_registrations SET is_convocation_sent = true, updated_at = :now " +
+            "WHERE id IN (:ids) AND event_id = :eventId AND status = 'APPROVED' AND NOT is_convocation_sent " +
+            "RETURNING id", nativeQuery = true)
+    List<Long> markConvocationSent(@Param("eventId") Long eventId, @Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
 }
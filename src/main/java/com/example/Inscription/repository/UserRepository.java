@@ -2,6 +2,7 @@ package com.example.Inscription.repository;
 
 import com.example.Inscription.model.*;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -11,6 +12,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Optional<User> findByCin(String cin);
     boolean existsByEmail(String email);
+    boolean existsByCinNormalized(String cinNormalized);
     List<User> findByInstitutionIdAndRole(Long institutionId, UserRole role);
     List<User> findByInstitutionId(Long institutionId);
+    
+    // id, lastName, firstName : projection légère pour l'index des noms
+    @Query("SELECT u.id, u.lastName, u.firstName FROM User u WHERE u.role = :role")
+    List<Object[]> findAllNamesByRole(UserRole role);
+    
+    // id, lastName, firstName, cin, birthDate, phone : clés de rapprochement des doublons de candidats
+    @Query("SELECT u.id, u.lastName, u.firstName, u.cin, u.birthDate, u.phone FROM User u WHERE u.role = :role")
+    List<Object[]> findDeduplicationRowsByRole(UserRole role);
 }
@@ -0,0 +1,170 @@
+package com.example.Inscription.service;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contrôle d'admission des endpoints d'analyse de documents (publics, chacun peut lancer
+ * OCR et appels Gemini).
+ *
+ * - chaque client (utilisateur authentifié, sinon adresse IP) dispose d'un token bucket
+ * - au plus documents.admission.max-concurrent analyses en cours sur le nœud
+ * - au-delà, documents.admission.queue-capacity requêtes attendent au plus max-wait-ms
+ * - tout le reste est refusé immédiatement (429 + Retry-After)
+ */
+@Component
+public class AnalysisAdmissionControl {
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    @Value("${documents.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${documents.admission.paths:/api/documents/classify,/api/documents/analyze-and-save,/api/documents/upload,/api/documents/upload-simple,/api/documents/*/verify}")
+    private List<String> paths;
+
+    @Value("${documents.admission.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${documents.admission.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    @Value("${documents.admission.client-burst:5}")
+    private double clientBurst;
+
+    @Value("${documents.admission.client-per-minute:20}")
+    private double clientPerMinute;
+
+    @Value("${documents.admission.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${documents.admission.client-idle-minutes:10}")
+    private long clientIdleMinutes;
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Map<String, ClientBucket> clients = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejectedRateLimit = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final LatencyStats queueWait = new LatencyStats();
+
+    public AnalysisAdmissionControl(@Value("${documents.admission.max-concurrent:8}") int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * Décision d'admission : soit une place (à rendre avec release), soit un refus
+     */
+    @Data
+    public static class Decision {
+        private final boolean admitted;
+        private final String reason;
+        private final long retryAfterSeconds;
+    }
+
+    public boolean applies(String method, String path) {
+        return enabled && "POST".equals(method) && paths.stream().anyMatch(p -> PATH_MATCHER.match(p, path));
+    }
+
+    /**
+     * Consomme un jeton du client puis attend une place d'analyse dans la limite de la file.
+     * Bloque au plus documents.admission.max-wait-ms.
+     */
+    public Decision admit(String clientKey) {
+        ClientBucket client = clients.computeIfAbsent(clientKey,
+                k -> new ClientBucket(new TokenBucket(clientBurst, clientPerMinute / 60.0)));
+        client.lastSeen = System.nanoTime();
+        if (!client.bucket.tryAcquire()) {
+            rejectedRateLimit.increment();
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(client.bucket.nanosUntilAvailable() + 999_999_999));
+            return new Decision(false, "Trop de requêtes d'analyse pour ce client", seconds);
+        }
+
+        if (permits.tryAcquire()) {
+            admitted.increment();
+            return new Decision(true, null, 0);
+        }
+        if (waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            rejectedQueueFull.increment();
+            return new Decision(false, "Serveur saturé, réessayez plus tard", retryAfterSeconds);
+        }
+        queued.increment();
+        long start = System.nanoTime();
+        try {
+            if (permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                queueWait.record(System.nanoTime() - start);
+                admitted.increment();
+                return new Decision(true, null, 0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting.decrementAndGet();
+        }
+        rejectedTimeout.increment();
+        return new Decision(false, "Serveur saturé, réessayez plus tard", retryAfterSeconds);
+    }
+
+    /**
+     * Rend la place prise par une requête admise
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Oublie les clients inactifs (leur bucket serait de toute façon plein)
+     */
+    @Scheduled(fixedDelayString = "${documents.admission.cleanup-interval-ms:60000}")
+    public void evictIdleClients() {
+        long idleBefore = System.nanoTime() - TimeUnit.MINUTES.toNanos(clientIdleMinutes);
+        clients.values().removeIf(client -> client.lastSeen - idleBefore < 0);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("active", maxConcurrent - permits.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("trackedClients", clients.size());
+        stats.put("admitted", admitted.sum());
+        stats.put("queued", queued.sum());
+        Map<String, Long> rejected = new LinkedHashMap<>();
+        rejected.put("rateLimited", rejectedRateLimit.sum());
+        rejected.put("queueFull", rejectedQueueFull.sum());
+        rejected.put("waitTimeout", rejectedTimeout.sum());
+        stats.put("rejected", rejected);
+        stats.put("queueWait", queueWait.snapshot());
+        return stats;
+    }
+
+    private static class ClientBucket {
+        private final TokenBucket bucket;
+        private volatile long lastSeen;
+
+        ClientBucket(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class AuthenticationService {
     private final UserRepository userRepository;
     private final InstitutionRepository institutionRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CandidateDeduplication candidateDeduplication;
     
     /**
      * Register a new student with extracted academic data
@@ -28,6 +29,10 @@ public class AuthenticationService {
         if (userRepository.existsByEmail(email)) {
             throw new IllegalArgumentException("Email already exists");
         }
+        // Same CIN written differently (spaces, dashes, case) is the same person
+        if (cinAlreadyRegistered(cin)) {
+            throw new IllegalArgumentException("An account already exists for this CIN");
+        }
         
         User user = new User();
         user.setFirstName(firstName);
@@ -39,7 +44,18 @@ public class AuthenticationService {
         user.setBacSeries(bacSeries);
         user.setIsActive(true);
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        candidateDeduplication.index(saved);
+        return saved;
+    }
+    
+    /**
+     * Checked in the database (unique cin_normalized index), not in the per-node duplicate index
+     * which may not have seen an account just created on another node
+     */
+    private boolean cinAlreadyRegistered(String cin) {
+        String normalized = User.normalizeCin(cin);
+        return normalized != null && userRepository.existsByCinNormalized(normalized);
     }
     
     /**
@@ -64,6 +80,9 @@ public class AuthenticationService {
         if (userRepository.existsByEmail(email)) {
             throw new IllegalArgumentException("Un compte avec cet email existe déjà");
         }
+        if (cinAlreadyRegistered(cin)) {
+            throw new IllegalArgumentException("Un compte avec ce CIN existe déjà");
+        }
         
         User user = new User();
         user.setFirstName(firstName);
@@ -79,7 +98,9 @@ public class AuthenticationService {
         user.setBacEntries(bacEntries); // JSON string with multiple bac entries
         user.setIsActive(true);
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        candidateDeduplication.index(saved);
+        return saved;
     }
     
     /**
@@ -0,0 +1,481 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.repository.EventRegistrationRepository;
+import com.example.Inscription.repository.StudentEventRegistrationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rapprochement d'un relevé bancaire (CSV ou OFX) avec les paiements en attente.
+ *
+ * Les références en attente (numeroBordereau, paymentReference) sont chargées dans une table
+ * de hachage ; le relevé est lu ligne à ligne et chaque versement est cherché par sa référence
+ * (ou les références trouvées dans son libellé). Un rapprochement n'est retenu que si le montant
+ * correspond aux frais de l'inscription concernée et si le nom du remettant concorde, avec tolérance.
+ * Un versement sans remettant ni libellé est laissé de côté (ambigu) plutôt que validé sur le seul
+ * numéro. Les paiements rapprochés sont marqués
+ * vérifiés par lots ; les autres restent pour la vérification OCR / Gemini.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BankStatementReconciliationService {
+
+    private static final Pattern OFX_TAG = Pattern.compile("<([A-Z.]+)>([^<\\r\\n]*)");
+    private static final Pattern LABEL_REFERENCE = Pattern.compile("[A-Za-z0-9-]*\\d[A-Za-z0-9-]*");
+    private static final int UPDATE_CHUNK = 500;
+    private static final int SAMPLE_SIZE = 50;
+
+    private final StudentEventRegistrationRepository studentEventRegistrationRepository;
+    private final EventRegistrationRepository eventRegistrationRepository;
+    private final NameMatcher nameMatcher;
+    private final EventRegistrationCounters registrationCounters;
+
+    @Value("${bordereau.expected-account:21000135638-01}")
+    private String expectedAccount;
+
+    // Frais d'inscription acceptés selon le niveau de l'événement (plein tarif, demi-tarif),
+    // lorsque l'événement n'a pas de frais renseignés
+    @Value("${reconciliation.licence-amounts:350000,175000}")
+    private List<Double> licenceAmounts;
+
+    @Value("${reconciliation.master-amounts:682500,341250}")
+    private List<Double> masterAmounts;
+
+    // Écart relatif toléré sur le montant (frais bancaires, arrondis)
+    @Value("${reconciliation.amount-tolerance:0.01}")
+    private double amountTolerance;
+
+    /**
+     * Rapproche un relevé bancaire avec les paiements en attente d'un établissement
+     * @param eventId Limite aux inscriptions d'un événement (optionnel)
+     * @param dryRun Calcule le rapport sans marquer les paiements
+     */
+    @Transactional
+    public Map<String, Object> reconcile(InputStream statement, String filename, Long institutionId, Long eventId,
+                                         boolean dryRun) throws IOException {
+        long start = System.nanoTime();
+
+        // Côté "build" de la jointure : références en attente -> paiements
+        Map<String, List<Pending>> pendingByReference = new HashMap<>();
+        int pendingCount = 0;
+        for (Object[] row : studentEventRegistrationRepository.findPendingReceipts(institutionId, eventId)) {
+            pendingCount += addPending(pendingByReference, ReceiptIndexService.SOURCE_STUDENT_EVENT_REGISTRATION, row);
+        }
+        for (Object[] row : eventRegistrationRepository.findPendingPayments(institutionId, eventId)) {
+            pendingCount += addPending(pendingByReference, ReceiptIndexService.SOURCE_EVENT_REGISTRATION, row);
+        }
+
+        Stats stats = new Stats();
+        List<Long> matchedReceipts = new ArrayList<>();
+        List<Long> matchedPayments = new ArrayList<>();
+        String format;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(statement, StandardCharsets.UTF_8))) {
+            // La première ligne sert à détecter le format puis est transmise au lecteur
+            String firstLine = reader.readLine();
+            boolean ofx = (filename != null && filename.toLowerCase(Locale.ROOT).matches(".*\\.(ofx|qfx)$"))
+                    || (firstLine != null && (firstLine.startsWith("OFXHEADER") || firstLine.contains("<OFX>")));
+            format = ofx ? "OFX" : "CSV";
+
+            TransactionHandler handler = tx -> {
+                Pending pending = probe(tx, pendingByReference, stats);
+                if (pending == null) {
+                    return;
+                }
+                (ReceiptIndexService.SOURCE_STUDENT_EVENT_REGISTRATION.equals(pending.sourceType)
+                        ? matchedReceipts : matchedPayments).add(pending.id);
+            };
+            if (ofx) {
+                readOfx(firstLine, reader, handler, stats);
+            } else {
+                readCsv(firstLine, reader, handler, stats);
+            }
+        }
+
+        if (!dryRun) {
+            LocalDateTime now = LocalDateTime.now();
+            for (List<Long> chunk : chunks(matchedReceipts)) {
+                studentEventRegistrationRepository.markBordereauVerified(chunk, now);
+            }
+            for (List<Long> chunk : chunks(matchedPayments)) {
+                registrationCounters.markPaymentVerified(chunk, now);
+            }
+        }
+        int matched = matchedReceipts.size() + matchedPayments.size();
+        log.info("Bank statement {} reconciled: {} transactions, {} payments matched{}",
+                filename, stats.transactions, matched, dryRun ? " (dry run)" : "");
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("format", format);
+        report.put("dryRun", dryRun);
+        report.put("linesRead", stats.lines);
+        report.put("transactions", stats.transactions);
+        report.put("ignored", stats.ignored);
+        report.put("pendingBefore", pendingCount);
+        report.put("matched", matched);
+        report.put("matchedBordereaux", matchedReceipts);
+        report.put("matchedPayments", matchedPayments);
+        report.put("amountMismatches", stats.amountMismatches);
+        report.put("nameMismatches", stats.nameMismatches);
+        report.put("ambiguous", stats.ambiguous);
+        report.put("unmatchedTransactions", stats.unmatched);
+        report.put("unmatchedSample", stats.unmatchedSample);
+        report.put("pendingRemaining", pendingCount - matched);
+        report.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    /**
+     * Cherche le paiement en attente correspondant à un versement du relevé
+     */
+    private Pending probe(BankTransaction tx, Map<String, List<Pending>> pendingByReference, Stats stats) {
+        Set<String> keys = new LinkedHashSet<>();
+        String reference = ReceiptIndexService.normalizeReceiptNumber(tx.reference);
+        if (!reference.isEmpty()) {
+            keys.add(reference);
+        }
+        if (tx.label != null) {
+            Matcher m = LABEL_REFERENCE.matcher(tx.label);
+            while (m.find()) {
+                String key = ReceiptIndexService.normalizeReceiptNumber(m.group());
+                if (key.length() >= 4) {
+                    keys.add(key);
+                }
+            }
+        }
+
+        List<Pending> candidates = new ArrayList<>();
+        String matchedKey = null;
+        for (String key : keys) {
+            List<Pending> found = pendingByReference.get(key);
+            if (found != null && !found.isEmpty()) {
+                candidates = found;
+                matchedKey = key;
+                break;
+            }
+        }
+        if (candidates.isEmpty()) {
+            recordUnmatched(tx, stats, "reference inconnue");
+            return null;
+        }
+        List<Pending> amountMatches = new ArrayList<>();
+        for (Pending pending : candidates) {
+            if (amountAccepted(tx.amount, pending.expectedAmounts)) {
+                amountMatches.add(pending);
+            }
+        }
+        if (amountMatches.isEmpty()) {
+            stats.amountMismatches++;
+            recordUnmatched(tx, stats, "montant");
+            return null;
+        }
+
+        String payer = ((tx.depositor == null ? "" : tx.depositor) + " " + (tx.label == null ? "" : tx.label)).trim();
+        if (payer.isEmpty()) {
+            // Pas de colonne remettant / libellé : la référence seule ne suffit pas
+            stats.ambiguous++;
+            recordUnmatched(tx, stats, "remettant absent du releve");
+            return null;
+        }
+        List<Pending> nameMatches = new ArrayList<>();
+        for (Pending pending : amountMatches) {
+            if (nameMatcher.matchingTokens(pending.name, payer) >= Math.min(2, pending.nameTokens)) {
+                nameMatches.add(pending);
+            }
+        }
+        if (nameMatches.isEmpty()) {
+            stats.nameMismatches++;
+            recordUnmatched(tx, stats, "remettant");
+            return null;
+        }
+        if (nameMatches.size() > 1) {
+            stats.ambiguous++;
+            recordUnmatched(tx, stats, "plusieurs inscriptions avec cette reference");
+            return null;
+        }
+
+        Pending pending = nameMatches.get(0);
+        candidates.remove(pending); // un paiement n'est rapproché qu'une fois
+        if (candidates.isEmpty()) {
+            pendingByReference.remove(matchedKey);
+        }
+        return pending;
+    }
+
+    private boolean amountAccepted(Double amount, List<Double> expectedAmounts) {
+        if (amount == null) {
+            return false;
+        }
+        for (double expected : expectedAmounts) {
+            if (Math.abs(amount - expected) <= expected * amountTolerance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordUnmatched(BankTransaction tx, Stats stats, String reason) {
+        stats.unmatched++;
+        if (stats.unmatchedSample.size() < SAMPLE_SIZE) {
+            Map<String, Object> sample = new LinkedHashMap<>();
+            sample.put("line", tx.line);
+            sample.put("reference", tx.reference);
+            sample.put("amount", tx.amount);
+            sample.put("depositor", tx.depositor);
+            sample.put("reason", reason);
+            stats.unmatchedSample.add(sample);
+        }
+    }
+
+    /**
+     * Montants attendus pour une inscription, comme pour la vérification des bordereaux :
+     * frais de l'événement (plein ou demi-tarif), sinon tarifs master / licence selon le niveau
+     */
+    List<Double> expectedAmounts(Double registrationFee, String level) {
+        if (registrationFee != null && registrationFee > 0) {
+            return List.of(registrationFee, registrationFee / 2);
+        }
+        String normalized = level == null ? "" : level.trim().toUpperCase(Locale.ROOT);
+        if (normalized.startsWith("M")) {
+            return masterAmounts;
+        }
+        if (normalized.startsWith("L")) {
+            return licenceAmounts;
+        }
+        List<Double> all = new ArrayList<>(licenceAmounts);
+        all.addAll(masterAmounts);
+        return all;
+    }
+
+    /**
+     * CSV avec ligne d'en-tête ; séparateur ';' ou ',' détecté sur l'en-tête
+     * @param header Première ligne du relevé, déjà lue pour détecter le format
+     */
+    private void readCsv(String header, BufferedReader reader, TransactionHandler handler, Stats stats) throws IOException {
+        if (header == null) {
+            return;
+        }
+        stats.lines++;
+        char separator = count(header, ';') >= count(header, ',') ? ';' : ',';
+        List<String> columns = splitCsv(header.replace("\uFEFF", ""), separator);
+        int reference = -1, amount = -1, credit = -1, depositor = -1, label = -1, account = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            String name = normalizeHeader(columns.get(i));
+            if (name.contains("compte") || name.contains("account") || name.contains("rib")) {
+                account = account < 0 ? i : account;
+            } else if (name.contains("credit")) {
+                credit = credit < 0 ? i : credit;
+            } else if (name.contains("montant") || name.contains("amount")) {
+                amount = amount < 0 ? i : amount;
+            } else if (name.contains("remettant") || name.contains("deposant") || name.contains("nom")
+                    || name.contains("name") || name.contains("client") || name.contains("ordre")) {
+                depositor = depositor < 0 ? i : depositor;
+            } else if (name.contains("libelle") || name.contains("description") || name.contains("memo") || name.contains("label")) {
+                label = label < 0 ? i : label;
+            } else if (name.contains("ref") || name.contains("numero") || name.contains("bordereau") || name.contains("piece")) {
+                reference = reference < 0 ? i : reference;
+            }
+        }
+        int amountColumn = credit >= 0 ? credit : amount;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            stats.lines++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> cells = splitCsv(line, separator);
+            BankTransaction tx = new BankTransaction();
+            tx.line = stats.lines;
+            tx.reference = cell(cells, reference);
+            tx.amount = parseAmount(cell(cells, amountColumn));
+            tx.depositor = cell(cells, depositor);
+            tx.label = cell(cells, label);
+            tx.account = cell(cells, account);
+            accept(tx, handler, stats);
+        }
+    }
+
+    /**
+     * OFX (SGML ou XML) : un versement par bloc STMTTRN
+     * @param firstLine Première ligne du relevé, déjà lue pour détecter le format
+     */
+    private void readOfx(String firstLine, BufferedReader reader, TransactionHandler handler, Stats stats) throws IOException {
+        String account = null;
+        BankTransaction tx = null;
+        for (String line = firstLine; line != null; line = reader.readLine()) {
+            stats.lines++;
+            Matcher m = OFX_TAG.matcher(line);
+            while (m.find()) {
+                String tag = m.group(1);
+                String value = m.group(2).trim();
+                switch (tag) {
+                    case "ACCTID" -> account = value;
+                    case "STMTTRN" -> {
+                        tx = new BankTransaction();
+                        tx.line = stats.lines;
+                        tx.account = account;
+                    }
+                    case "TRNAMT" -> { if (tx != null) tx.amount = parseAmount(value); }
+                    case "CHECKNUM", "REFNUM" -> { if (tx != null && tx.reference == null) tx.reference = value; }
+                    case "NAME" -> { if (tx != null) tx.depositor = value; }
+                    case "MEMO" -> { if (tx != null) tx.label = value; }
+                    default -> { }
+                }
+            }
+            if (tx != null && line.contains("</STMTTRN>")) {
+                accept(tx, handler, stats);
+                tx = null;
+            }
+        }
+    }
+
+    /**
+     * Ne garde que les crédits sur le compte des frais d'inscription
+     */
+    private void accept(BankTransaction tx, TransactionHandler handler, Stats stats) {
+        if (tx.amount == null || tx.amount <= 0
+                || (tx.account != null && !tx.account.isBlank() && !digits(tx.account).contains(digits(expectedAccount)))) {
+            stats.ignored++;
+            return;
+        }
+        stats.transactions++;
+        handler.handle(tx);
+    }
+
+    private int addPending(Map<String, List<Pending>> pendingByReference, String sourceType, Object[] row) {
+        String reference = ReceiptIndexService.normalizeReceiptNumber((String) row[1]);
+        if (reference.isEmpty()) {
+            return 0;
+        }
+        Pending pending = new Pending();
+        pending.sourceType = sourceType;
+        pending.id = (Long) row[0];
+        pending.name = ((row[2] == null ? "" : row[2]) + " " + (row[3] == null ? "" : row[3])).trim();
+        pending.nameTokens = Math.max(1, NameMatcher.normalize(pending.name).split(" ").length);
+        pending.expectedAmounts = expectedAmounts((Double) row[5], (String) row[6]);
+        pendingByReference.computeIfAbsent(reference, k -> new ArrayList<>()).add(pending);
+        return 1;
+    }
+
+    /**
+     * "1 234 567,50", "1,234,567.50", "350000" -> nombre
+     */
+    static Double parseAmount(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String s = raw.replaceAll("[\\s\\u00a0A-Za-z]", "");
+        if (s.isEmpty()) {
+            return null;
+        }
+        int comma = s.lastIndexOf(',');
+        int dot = s.lastIndexOf('.');
+        if (comma >= 0 && dot >= 0) {
+            s = comma > dot ? s.replace(".", "").replace(',', '.') : s.replace(",", "");
+        } else if (comma >= 0) {
+            s = s.length() - comma - 1 <= 2 ? s.replace(',', '.') : s.replace(",", "");
+        } else if (dot >= 0 && s.length() - dot - 1 == 3 && s.indexOf('.') != dot) {
+            s = s.replace(".", ""); // 1.234.567
+        }
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> splitCsv(String line, char separator) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == separator && !quoted) {
+                cells.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        cells.add(current.toString().trim());
+        return cells;
+    }
+
+    private static String cell(List<String> cells, int index) {
+        return index >= 0 && index < cells.size() && !cells.get(index).isEmpty() ? cells.get(index) : null;
+    }
+
+    private static String normalizeHeader(String header) {
+        return Normalizer.normalize(header, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static String digits(String value) {
+        return value.replaceAll("[^0-9]", "");
+    }
+
+    private static int count(String s, char c) {
+        return (int) s.chars().filter(ch -> ch == c).count();
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += UPDATE_CHUNK) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + UPDATE_CHUNK)));
+        }
+        return chunks;
+    }
+
+    private interface TransactionHandler {
+        void handle(BankTransaction tx);
+    }
+
+    private static class BankTransaction {
+        private int line;
+        private String reference;
+        private Double amount;
+        private String depositor;
+        private String label;
+        private String account;
+    }
+
+    private static class Pending {
+        private String sourceType;
+        private Long id;
+        private String name;
+        private int nameTokens;
+        private List<Double> expectedAmounts;
+    }
+
+    private static class Stats {
+        private int lines;
+        private int transactions;
+        private int ignored;
+        private int amountMismatches;
+        private int nameMismatches;
+        private int ambiguous;
+        private int unmatched;
+        private final List<Map<String, Object>> unmatchedSample = new ArrayList<>();
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.BordereauData;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extraction déterministe (sans IA) des champs montant / remettant / compte
+ * d'un bordereau de versement à partir de sa couche texte.
+ *
+ * Chaque modèle de banque connu est détecté par des mots-clés (mots entiers), puis ses libellés
+ * sont cherchés par expressions régulières. Un score de confiance (0.0 à 1.0) est
+ * calculé par champ ; l'appelant n'escalade vers Gemini que si le score global
+ * est sous le seuil.
+ */
+@Component
+public class BordereauFieldExtractor {
+
+    private static final Pattern ACCOUNT_STRICT = Pattern.compile("\\b(\\d{11})\\s*[- ]\\s*(\\d{2})\\b");
+    private static final Pattern ACCOUNT_LOOSE = Pattern.compile("(\\d[\\d -]{7,}\\d)");
+    private static final Pattern AMOUNT = Pattern.compile("(\\d{1,3}(?:[ .\\u00a0]\\d{3})+|\\d+)(?:[.,](\\d{1,2}))?\\s*(ar\\b|ariary|mga)?");
+    private static final Pattern NAME = Pattern.compile("([a-z][a-z' -]{2,})");
+    private static final Map<String, Pattern> LABEL_PATTERNS = new ConcurrentHashMap<>();
+
+    private static final List<BankLayout> LAYOUTS = List.of(
+            new BankLayout("BOA", 1.0,
+                    List.of("bank of africa", "boa madagascar", "boa-madagascar"),
+                    List.of("montant verse", "montant", "somme de"),
+                    List.of("nom du remettant", "remettant", "verse par"),
+                    List.of("compte beneficiaire", "numero de compte", "n de compte", "compte")),
+            new BankLayout("BNI", 1.0,
+                    List.of("bni madagascar", "banque nationale pour l'industrie", "bni"),
+                    List.of("montant en chiffres", "montant", "total"),
+                    List.of("nom du deposant", "deposant", "remettant"),
+                    List.of("compte a crediter", "compte credite", "compte")),
+            new BankLayout("BFV-SG", 1.0,
+                    List.of("bfv-sg", "bfv societe generale", "societe generale"),
+                    List.of("montant", "somme versee"),
+                    List.of("remis par", "remettant", "deposant"),
+                    List.of("n compte", "compte")),
+            new BankLayout("BMOI", 1.0,
+                    List.of("bmoi", "banque malgache de l'ocean indien"),
+                    List.of("montant du versement", "montant"),
+                    List.of("nom et prenoms du remettant", "remettant"),
+                    List.of("compte du beneficiaire", "compte")),
+            new BankLayout("TRESOR", 1.0,
+                    List.of("tresor public", "recette generale", "quittance"),
+                    List.of("la somme de", "montant"),
+                    List.of("verse par", "partie versante", "remettant"),
+                    List.of("compte d'imputation", "compte"))
+    );
+
+    // Modèle inconnu : avec le seuil par défaut (0.8), seul un bordereau dont tous les champs ont leur
+    // meilleur score (montant avec devise, nom complet, compte libellé au format attendu) est retenu
+    // sans Gemini : 0.9 x 0.9 = 0.81
+    private static final BankLayout GENERIC = new BankLayout("GENERIQUE", 0.9,
+            List.of(),
+            List.of("montant", "somme", "total"),
+            List.of("remettant", "deposant", "verse par", "remis par", "nom"),
+            List.of("compte", "rib", "account"));
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final Map<String, LongAdder> layoutCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Extrait les champs du bordereau
+     * @param text Texte brut du bordereau (couche texte PDF ou OCR)
+     */
+    public Extraction extract(String text) {
+        attempts.increment();
+        Extraction extraction = new Extraction();
+        extraction.setData(new BordereauData());
+        if (text == null || text.isBlank()) {
+            extraction.setLayout("VIDE");
+            return extraction;
+        }
+
+        String normalized = normalize(text);
+        BankLayout layout = detectLayout(normalized);
+        extraction.setLayout(layout.name);
+        layoutCounts.computeIfAbsent(layout.name, k -> new LongAdder()).increment();
+
+        double amountScore = extractAmount(normalized, layout, extraction);
+        double depositorScore = extractDepositor(normalized, layout, extraction);
+        double accountScore = extractAccount(normalized, layout, extraction);
+
+        extraction.getFieldConfidence().put("montant", amountScore);
+        extraction.getFieldConfidence().put("remettant", depositorScore);
+        extraction.getFieldConfidence().put("compte", accountScore);
+        // Le score global est limité par le champ le moins sûr
+        extraction.setConfidence(Math.min(amountScore, Math.min(depositorScore, accountScore)) * layout.reliability);
+        return extraction;
+    }
+
+    /**
+     * À appeler quand l'extraction locale a été retenue (pas d'escalade vers Gemini)
+     */
+    public void recordAccepted() {
+        accepted.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long total = attempts.sum();
+        stats.put("attempts", total);
+        stats.put("acceptedLocally", accepted.sum());
+        stats.put("escalatedToGemini", total - accepted.sum());
+        Map<String, Long> layouts = new LinkedHashMap<>();
+        layoutCounts.forEach((name, count) -> layouts.put(name, count.sum()));
+        stats.put("layouts", layouts);
+        return stats;
+    }
+
+    private BankLayout detectLayout(String normalized) {
+        for (BankLayout layout : LAYOUTS) {
+            for (Pattern keyword : layout.keywords) {
+                if (keyword.matcher(normalized).find()) {
+                    return layout;
+                }
+            }
+        }
+        return GENERIC;
+    }
+
+    private double extractAmount(String normalized, BankLayout layout, Extraction extraction) {
+        for (String label : layout.amountLabels) {
+            String value = valueAfterLabel(normalized, label);
+            if (value == null) {
+                continue;
+            }
+            Matcher m = AMOUNT.matcher(value);
+            if (m.find()) {
+                String digits = m.group(1).replaceAll("[^0-9]", "");
+                if (digits.length() < 4) {
+                    continue; // trop court pour des frais d'inscription, sûrement un numéro de ligne
+                }
+                extraction.getData().setMontant(digits);
+                return m.group(3) != null ? 0.95 : 0.8;
+            }
+        }
+        return 0.0;
+    }
+
+    private double extractDepositor(String normalized, BankLayout layout, Extraction extraction) {
+        for (String label : layout.depositorLabels) {
+            String value = valueAfterLabel(normalized, label);
+            if (value == null) {
+                continue;
+            }
+            Matcher m = NAME.matcher(value);
+            if (m.find()) {
+                String name = m.group(1).trim().replaceAll("\\s+", " ");
+                if (name.length() < 3) {
+                    continue;
+                }
+                extraction.getData().setRemettant(name.toUpperCase(Locale.ROOT));
+                int words = name.split(" ").length;
+                return words >= 2 ? 0.9 : 0.6;
+            }
+        }
+        return 0.0;
+    }
+
+    private double extractAccount(String normalized, BankLayout layout, Extraction extraction) {
+        for (String label : layout.accountLabels) {
+            String value = valueAfterLabel(normalized, label);
+            if (value == null) {
+                continue;
+            }
+            Matcher strict = ACCOUNT_STRICT.matcher(value);
+            if (strict.find()) {
+                extraction.getData().setCompte(strict.group(1) + "-" + strict.group(2));
+                return 1.0;
+            }
+            Matcher loose = ACCOUNT_LOOSE.matcher(value);
+            if (loose.find()) {
+                extraction.getData().setCompte(loose.group(1).trim());
+                return 0.6;
+            }
+        }
+        // Sans libellé, un numéro au format du compte attendu reste très fiable
+        Matcher strict = ACCOUNT_STRICT.matcher(normalized);
+        if (strict.find()) {
+            extraction.getData().setCompte(strict.group(1) + "-" + strict.group(2));
+            return 0.85;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Renvoie le texte qui suit le libellé (sur la même ligne, ou la ligne suivante si vide)
+     */
+    private String valueAfterLabel(String normalized, String label) {
+        Pattern p = LABEL_PATTERNS.computeIfAbsent(label, l ->
+                Pattern.compile("(?m)" + Pattern.quote(l) + "\\s*(?:\\(?en chiffres\\)?)?\\s*[:.\\-]?[ \\t]*(.*)$"));
+        Matcher m = p.matcher(normalized);
+        while (m.find()) {
+            String sameLine = m.group(1).trim();
+            if (!sameLine.isEmpty()) {
+                return sameLine;
+            }
+            int next = normalized.indexOf('\n', m.end());
+            if (next >= 0) {
+                int end = normalized.indexOf('\n', next + 1);
+                String nextLine = normalized.substring(next + 1, end < 0 ? normalized.length() : end).trim();
+                if (!nextLine.isEmpty()) {
+                    return nextLine;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Minuscules, sans accents ni "°", espaces compactés : les libellés se comparent une seule fois
+     */
+    private static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .replace('°', ' ')
+                .replace(' ', ' ')
+                .toLowerCase(Locale.ROOT);
+        return decomposed.replaceAll("[ \\t]+", " ").replace("\r", "");
+    }
+
+    /**
+     * Résultat de l'extraction locale
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Extraction {
+        private BordereauData data;
+        private String layout;
+        private double confidence;
+        private Map<String, Double> fieldConfidence = new LinkedHashMap<>();
+
+        public boolean isComplete() {
+            return data != null && data.getMontant() != null && data.getRemettant() != null && data.getCompte() != null;
+        }
+    }
+
+    /**
+     * Modèle de bordereau d'une banque : mots-clés de détection et libellés des champs
+     */
+    private static class BankLayout {
+        private final String name;
+        private final double reliability;
+        private final List<Pattern> keywords;
+        private final List<String> amountLabels;
+        private final List<String> depositorLabels;
+        private final List<String> accountLabels;
+
+        private BankLayout(String name, double reliability, List<String> keywords, List<String> amountLabels,
+                           List<String> depositorLabels, List<String> accountLabels) {
+            this.name = name;
+            this.reliability = reliability;
+            // Mots entiers : "bni" ne doit pas être reconnu dans "ubnin" ou un numéro de référence
+            this.keywords = keywords.stream()
+                    .map(k -> Pattern.compile("(?<![a-z0-9])" + Pattern.quote(k) + "(?![a-z0-9])"))
+                    .toList();
+            this.amountLabels = amountLabels;
+            this.depositorLabels = depositorLabels;
+            this.accountLabels = accountLabels;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.BordereauData;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.Tesseract;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OCR ciblé des bordereaux scannés dont le modèle de banque est connu.
+ *
+ * Chaque modèle (fichier bordereau.roi.templates) donne l'empreinte de la page et la position
+ * relative (0.0 à 1.0) des zones montant, remettant et compte. L'empreinte est un hash de
+ * différence 64 bits de la page réduite à 9x8 pixels : le modèle le plus proche (distance de
+ * Hamming sous le seuil) est retenu, puis seules ses trois zones passent à l'OCR, chacune avec
+ * la liste de caractères permis pour le champ. Les empreintes des pages sans modèle sont
+ * comptées dans les statistiques pour savoir quels modèles ajouter.
+ *
+ * Aucun modèle n'est livré (bordereau-templates.json est vide) : tant qu'il n'en est pas
+ * ajouté, les bordereaux scannés passent par l'OCR de la page entière.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BordereauRoiOcr {
+
+    private static final String AMOUNT_WHITELIST = "0123456789 .,";
+    private static final String DEPOSITOR_WHITELIST = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz '-";
+    private static final String ACCOUNT_WHITELIST = "0123456789-";
+
+    // Mode Tesseract "une seule ligne de texte"
+    private static final int PSM_SINGLE_LINE = 7;
+    private static final int MAX_UNMATCHED_REPORTED = 20;
+
+    private final PdfLoader pdfLoader;
+
+    @Value("${bordereau.roi.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bordereau.roi.templates:classpath:bordereau-templates.json}")
+    private Resource templatesResource;
+
+    @Value("${bordereau.roi.render-dpi:300}")
+    private int renderDpi;
+
+    // Nombre de bits différents tolérés entre l'empreinte de la page et celle du modèle
+    @Value("${bordereau.roi.max-fingerprint-distance:10}")
+    private int maxFingerprintDistance;
+
+    @Value("${bordereau.roi.tessdata-path:src/main/resources/tessdata}")
+    private String tessdataPath;
+
+    private volatile List<Template> templates = List.of();
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder incomplete = new LongAdder();
+    private final Map<String, LongAdder> templateHits = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> unmatchedFingerprints = new ConcurrentHashMap<>();
+    private final LatencyStats roiLatency = new LatencyStats();
+
+    @PostConstruct
+    void loadTemplates() {
+        if (!templatesResource.exists()) {
+            log.info("No bordereau OCR templates at {}", templatesResource.getDescription());
+            return;
+        }
+        try (InputStream in = templatesResource.getInputStream()) {
+            Template[] loaded = new ObjectMapper().readValue(in, Template[].class);
+            List<Template> valid = new ArrayList<>();
+            for (Template template : loaded) {
+                if (template.getFingerprint() == null || template.getMontant() == null
+                        || template.getRemettant() == null || template.getCompte() == null) {
+                    log.warn("Bordereau OCR template {} ignored: fingerprint or region missing", template.getName());
+                    continue;
+                }
+                template.fingerprintBits = Long.parseUnsignedLong(template.getFingerprint(), 16);
+                valid.add(template);
+            }
+            templates = List.copyOf(valid);
+            if (templates.isEmpty()) {
+                log.info("No bordereau OCR template defined in {}: region OCR is inactive", templatesResource.getDescription());
+            } else {
+                log.info("Loaded {} bordereau OCR templates", templates.size());
+            }
+        } catch (Exception e) {
+            log.error("Could not load bordereau OCR templates: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lit montant, remettant et compte dans les zones du modèle reconnu
+     * @return Les champs lus et le nom du modèle, ou vide si aucun modèle ne correspond
+     * ou si une zone n'a rien donné (l'appelant fait alors l'OCR de la page entière)
+     */
+    public Optional<Result> extract(byte[] fileBytes, String mimeType) {
+        // Sans modèle, rien ne peut correspondre : pas de rendu ni d'empreinte
+        if (!enabled || templates.isEmpty()) {
+            return Optional.empty();
+        }
+        attempts.increment();
+        long start = System.nanoTime();
+        try {
+            BufferedImage page = render(fileBytes, mimeType);
+            if (page == null) {
+                return Optional.empty();
+            }
+            long fingerprint = fingerprint(page);
+            Template template = closest(fingerprint);
+            if (template == null) {
+                unmatched.increment();
+                if (unmatchedFingerprints.size() < MAX_UNMATCHED_REPORTED
+                        || unmatchedFingerprints.containsKey(hex(fingerprint))) {
+                    unmatchedFingerprints.computeIfAbsent(hex(fingerprint), k -> new LongAdder()).increment();
+                }
+                return Optional.empty();
+            }
+
+            BordereauData data = new BordereauData();
+            data.setMontant(ocr(crop(page, template.getMontant()), AMOUNT_WHITELIST));
+            data.setRemettant(ocr(crop(page, template.getRemettant()), DEPOSITOR_WHITELIST));
+            data.setCompte(ocr(crop(page, template.getCompte()), ACCOUNT_WHITELIST));
+            if (data.getMontant().isEmpty() || data.getRemettant().isEmpty() || data.getCompte().isEmpty()) {
+                incomplete.increment();
+                return Optional.empty();
+            }
+            templateHits.computeIfAbsent(template.getName(), k -> new LongAdder()).increment();
+            roiLatency.record(System.nanoTime() - start);
+            return Optional.of(new Result(template.getName(), data));
+        } catch (Exception | Error e) {
+            // tess4j remonte les erreurs natives (bibliothèque absente...) sous forme d'Error
+            log.warn("Region OCR failed, falling back to full-page OCR: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("templates", templates.stream().map(Template::getName).toList());
+        stats.put("attempts", attempts.sum());
+        stats.put("unmatched", unmatched.sum());
+        stats.put("incomplete", incomplete.sum());
+        Map<String, Long> hits = new TreeMap<>();
+        templateHits.forEach((name, count) -> hits.put(name, count.sum()));
+        stats.put("templateHits", hits);
+        Map<String, Long> fingerprints = new TreeMap<>();
+        unmatchedFingerprints.forEach((fp, count) -> fingerprints.put(fp, count.sum()));
+        stats.put("unmatchedFingerprints", fingerprints);
+        stats.put("regionOcr", roiLatency.snapshot());
+        return stats;
+    }
+
+    private Template closest(long fingerprint) {
+        Template best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Template template : templates) {
+            int distance = Long.bitCount(template.fingerprintBits ^ fingerprint);
+            if (distance < bestDistance) {
+                best = template;
+                bestDistance = distance;
+            }
+        }
+        return bestDistance <= maxFingerprintDistance ? best : null;
+    }
+
+    /**
+     * Hash de différence : chaque bit indique si un pixel est plus clair que son voisin de droite
+     */
+    static long fingerprint(BufferedImage page) {
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(page, 0, 0, 9, 8, null);
+        } finally {
+            g.dispose();
+        }
+        long bits = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int left = small.getRaster().getSample(x, y, 0);
+                int right = small.getRaster().getSample(x + 1, y, 0);
+                bits = (bits << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return bits;
+    }
+
+    private static String hex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+
+    private BufferedImage render(byte[] fileBytes, String mimeType) throws Exception {
+        if (mimeType == null || mimeType.equals("application/pdf")) {
+            return pdfLoader.withDocument(fileBytes, document -> document.getNumberOfPages() == 0 ? null
+                    : new PDFRenderer(document).renderImageWithDPI(0, renderDpi, ImageType.GRAY));
+        }
+        return ImageIO.read(new ByteArrayInputStream(fileBytes));
+    }
+
+    private static BufferedImage crop(BufferedImage page, Region region) {
+        int x = clamp((int) Math.floor(region.getX() * page.getWidth()), page.getWidth() - 1);
+        int y = clamp((int) Math.floor(region.getY() * page.getHeight()), page.getHeight() - 1);
+        int width = clamp((int) Math.ceil(region.getWidth() * page.getWidth()), page.getWidth() - x);
+        int height = clamp((int) Math.ceil(region.getHeight() * page.getHeight()), page.getHeight() - y);
+        return page.getSubimage(x, y, Math.max(1, width), Math.max(1, height));
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    /**
+     * Tesseract n'est pas thread-safe : une instance par zone, la liste de caractères varie par champ
+     */
+    private String ocr(BufferedImage region, String whitelist) throws Exception {
+        Tesseract tesseract = new Tesseract();
+        tesseract.setDatapath(tessdataPath);
+        tesseract.setLanguage("fra+eng");
+        tesseract.setPageSegMode(PSM_SINGLE_LINE);
+        tesseract.setTessVariable("tessedit_char_whitelist", whitelist);
+        return tesseract.doOCR(region).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Champs lus par zones
+     */
+    @Data
+    public static class Result {
+        private final String template;
+        private final BordereauData data;
+    }
+
+    /**
+     * Modèle de bordereau : empreinte de page (16 caractères hexadécimaux) et zones des champs
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Template {
+        private String name;
+        private String fingerprint;
+        private Region montant;
+        private Region remettant;
+        private Region compte;
+        @JsonIgnore
+        private long fingerprintBits;
+    }
+
+    /**
+     * Zone relative à la taille de la page
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Region {
+        private double x;
+        private double y;
+        private double width;
+        private double height;
+    }
+}
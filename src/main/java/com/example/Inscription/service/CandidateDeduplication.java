@@ -0,0 +1,560 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.User;
+import com.example.Inscription.model.UserRole;
+import com.example.Inscription.repository.UserRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Détection des comptes en double d'un même candidat (second compte créé avec un autre email).
+ *
+ * Chaque étudiant est rangé sous des clés de blocage normalisées :
+ * - cin : CIN en majuscules, sans espaces ni séparateurs
+ * - nd : clé phonétique de chaque mot du nom + date de naissance (une faute dans un mot
+ *   laisse les autres mots en commun)
+ * - tel : 9 derniers chiffres du téléphone
+ * Seuls les comptes partageant une clé sont comparés. La note d'une paire combine CIN, date
+ * de naissance, téléphone et proximité des noms ; deux CIN renseignés et différents de plus
+ * d'un caractère désignent deux personnes (jumeaux, frères et sœurs au même téléphone).
+ *
+ * À l'inscription à un événement, un autre compte déjà inscrit fait refuser l'inscription
+ * seulement si son CIN est le même ou à un caractère près ; un compte noté au moins
+ * dedup.review-threshold sans CIN concordant fait seulement passer l'inscription en examen.
+ * Le rapport compare toutes les paires des blocs en parallèle sur le pool cpu et regroupe
+ * les paires notées au moins dedup.report-threshold.
+ *
+ * L'index est propre à chaque nœud et peut être en retard : le refus d'un second compte avec
+ * le même CIN se fait en base (index unique users.cin_normalized), pas ici.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CandidateDeduplication {
+
+    private static final Pattern YEAR_FIRST = Pattern.compile("(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2}).*");
+    private static final Pattern YEAR_LAST = Pattern.compile("(\\d{1,2})[-/.](\\d{1,2})[-/.](\\d{4}).*");
+    private static final String SAME_CIN = "same CIN";
+    private static final String CIN_ONE_OFF = "CIN differs by one character";
+
+    private final UserRepository userRepository;
+    private final NameMatcher nameMatcher;
+    private final WorkExecutors workExecutors;
+
+    @Value("${dedup.enforce-on-registration:true}")
+    private boolean enforceOnRegistration;
+
+    @Value("${dedup.review-threshold:0.85}")
+    private double reviewThreshold;
+
+    @Value("${dedup.report-threshold:0.6}")
+    private double reportThreshold;
+
+    // Un bloc plus grand vient d'une valeur bouche-trou (téléphone fictif...) : il n'est pas comparé
+    @Value("${dedup.max-block-size:200}")
+    private int maxBlockSize;
+
+    private volatile Index index = new Index();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LatencyStats lookupLatency = new LatencyStats();
+    private final LongAdder reports = new LongAdder();
+
+    /**
+     * Compte proche de celui recherché
+     */
+    @Data
+    public static class Match {
+        private final Long userId;
+        private final String name;
+        private final double score;
+        private final List<String> reasons;
+
+        /**
+         * Même CIN, ou CIN à un caractère près (faute de saisie)
+         */
+        public boolean isCinMatch() {
+            return reasons.contains(SAME_CIN) || reasons.contains(CIN_ONE_OFF);
+        }
+    }
+
+    /**
+     * Comptes à vérifier avant une inscription : ceux qui la bloquent (CIN concordant)
+     * et ceux qui la font seulement passer en examen
+     */
+    @Data
+    public static class Suspects {
+        private final List<Long> blocking;
+        private final List<Long> review;
+
+        public boolean isEmpty() {
+            return blocking.isEmpty() && review.isEmpty();
+        }
+
+        public List<Long> all() {
+            List<Long> all = new ArrayList<>(blocking);
+            all.addAll(review);
+            return all;
+        }
+
+        public boolean blocks(Collection<Long> registeredUserIds) {
+            return blocking.stream().anyMatch(registeredUserIds::contains);
+        }
+
+        public boolean needsReview(Collection<Long> registeredUserIds) {
+            return review.stream().anyMatch(registeredUserIds::contains);
+        }
+    }
+
+    /**
+     * Autres comptes probablement du même candidat, du plus au moins probable
+     */
+    public List<Match> findLikelyDuplicates(User user) {
+        long start = System.nanoTime();
+        lookups.increment();
+        Candidate candidate = Candidate.of(user.getId(), user.getLastName(), user.getFirstName(),
+                user.getCin(), user.getBirthDate(), user.getPhone());
+        if (candidate.keys.isEmpty()) {
+            return List.of();
+        }
+        Index current = index;
+        Set<Long> compared = new HashSet<>();
+        List<Match> matches = new ArrayList<>();
+        for (String key : candidate.keys) {
+            Set<Long> block = current.blocks.get(key);
+            if (block == null || block.size() > maxBlockSize) {
+                continue;
+            }
+            for (Long otherId : block) {
+                if (otherId.equals(candidate.id) || !compared.add(otherId)) {
+                    continue;
+                }
+                Candidate other = current.candidates.get(otherId);
+                if (other == null) {
+                    continue;
+                }
+                Pair pair = score(candidate, other);
+                if (pair.score >= reportThreshold) {
+                    matches.add(new Match(otherId, other.displayName, pair.score, pair.reasons));
+                }
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::getScore).reversed());
+        lookupLatency.record(System.nanoTime() - start);
+        return matches;
+    }
+
+    /**
+     * Autres comptes à contrôler avant une inscription à un événement : un CIN concordant
+     * refuse une seconde inscription, une simple ressemblance (nom, naissance, téléphone)
+     * la fait passer en examen
+     */
+    public Suspects suspects(User user) {
+        if (!enforceOnRegistration) {
+            return new Suspects(List.of(), List.of());
+        }
+        List<Long> blocking = new ArrayList<>();
+        List<Long> review = new ArrayList<>();
+        for (Match match : findLikelyDuplicates(user)) {
+            if (match.isCinMatch()) {
+                blocking.add(match.getUserId());
+            } else if (match.getScore() >= reviewThreshold) {
+                review.add(match.getUserId());
+            }
+        }
+        return new Suspects(blocking, review);
+    }
+
+    /**
+     * Indexe le compte créé ou modifié ; dans une transaction, seulement après le commit
+     */
+    public void index(User user) {
+        Candidate candidate = Candidate.of(user.getId(), user.getLastName(), user.getFirstName(),
+                user.getCin(), user.getBirthDate(), user.getPhone());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index.put(candidate);
+                }
+            });
+        } else {
+            index.put(candidate);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Reconstruit l'index à partir des comptes étudiants (modifications faites par les autres nœuds)
+     */
+    @Scheduled(fixedDelayString = "${dedup.refresh-interval-ms:3600000}", initialDelayString = "${dedup.refresh-interval-ms:3600000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        Index built = new Index();
+        try {
+            for (Object[] row : userRepository.findDeduplicationRowsByRole(UserRole.STUDENT)) {
+                built.put(Candidate.of(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        (String) row[3], (String) row[4], (String) row[5]));
+            }
+        } catch (Exception e) {
+            log.warn("Candidate deduplication index rebuild failed, keeping previous index: {}", e.getMessage());
+            return;
+        }
+        index = built;
+        log.info("Candidate deduplication index rebuilt: {} students, {} keys in {} ms",
+                built.candidates.size(), built.blocks.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Rapport complet : groupes de comptes probablement du même candidat, les plus sûrs d'abord.
+     * Les blocs sont répartis entre les threads du pool cpu.
+     */
+    public CompletableFuture<List<Map<String, Object>>> duplicateClusters() {
+        reports.increment();
+        Index current = index;
+        List<Set<Long>> blocks = new ArrayList<>();
+        for (Set<Long> block : current.blocks.values()) {
+            if (block.size() > 1 && block.size() <= maxBlockSize) {
+                blocks.add(block);
+            }
+        }
+        int partitions = Math.max(1, Math.min(blocks.size(), Runtime.getRuntime().availableProcessors()));
+        List<CompletableFuture<Map<String, Pair>>> futures = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            futures.add(workExecutors.cpu().supply(() -> scoreBlocks(current, blocks, partition, partitions)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> {
+            Map<String, Pair> pairs = new HashMap<>();
+            for (CompletableFuture<Map<String, Pair>> future : futures) {
+                future.join().forEach((key, pair) -> pairs.merge(key, pair, (a, b) -> a.score >= b.score ? a : b));
+            }
+            return clusters(current, pairs.values());
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Index current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("students", current.candidates.size());
+        stats.put("keys", current.blocks.size());
+        stats.put("enforceOnRegistration", enforceOnRegistration);
+        stats.put("reviewThreshold", reviewThreshold);
+        stats.put("lookups", lookups.sum());
+        stats.put("lookupLatency", lookupLatency.snapshot());
+        stats.put("reports", reports.sum());
+        return stats;
+    }
+
+    /**
+     * Paires des blocs d'une partition (un bloc sur {@code partitions}) notées au moins le seuil du rapport
+     */
+    private Map<String, Pair> scoreBlocks(Index current, List<Set<Long>> blocks, int partition, int partitions) {
+        Map<String, Pair> pairs = new HashMap<>();
+        for (int b = partition; b < blocks.size(); b += partitions) {
+            Candidate[] members = blocks.get(b).stream()
+                    .map(current.candidates::get)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(c -> c.id))
+                    .toArray(Candidate[]::new);
+            for (int i = 0; i < members.length; i++) {
+                for (int j = i + 1; j < members.length; j++) {
+                    String key = members[i].id + ":" + members[j].id;
+                    if (pairs.containsKey(key)) {
+                        continue;
+                    }
+                    Pair pair = score(members[i], members[j]);
+                    if (pair.score >= reportThreshold) {
+                        pairs.put(key, pair);
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private List<Map<String, Object>> clusters(Index current, Collection<Pair> pairs) {
+        Map<Long, Long> parent = new HashMap<>();
+        for (Pair pair : pairs) {
+            Long rootA = find(parent, pair.a);
+            Long rootB = find(parent, pair.b);
+            if (!rootA.equals(rootB)) {
+                parent.put(rootA, rootB);
+            }
+        }
+        Map<Long, List<Pair>> pairsByRoot = new HashMap<>();
+        for (Pair pair : pairs) {
+            pairsByRoot.computeIfAbsent(find(parent, pair.a), r -> new ArrayList<>()).add(pair);
+        }
+
+        List<Map<String, Object>> clusters = new ArrayList<>();
+        for (List<Pair> clusterPairs : pairsByRoot.values()) {
+            Set<Long> memberIds = new TreeSet<>();
+            double maxScore = 0;
+            List<Map<String, Object>> pairDtos = new ArrayList<>();
+            for (Pair pair : clusterPairs) {
+                memberIds.add(pair.a);
+                memberIds.add(pair.b);
+                maxScore = Math.max(maxScore, pair.score);
+                Map<String, Object> pairDto = new LinkedHashMap<>();
+                pairDto.put("userA", pair.a);
+                pairDto.put("userB", pair.b);
+                pairDto.put("score", pair.score);
+                pairDto.put("reasons", pair.reasons);
+                pairDtos.add(pairDto);
+            }
+            List<Map<String, Object>> members = new ArrayList<>();
+            for (Long id : memberIds) {
+                Candidate candidate = current.candidates.get(id);
+                Map<String, Object> member = new LinkedHashMap<>();
+                member.put("userId", id);
+                member.put("name", candidate != null ? candidate.displayName : null);
+                member.put("cin", candidate != null ? candidate.rawCin : null);
+                member.put("birthDate", candidate != null ? candidate.birthDate : null);
+                members.add(member);
+            }
+            Map<String, Object> cluster = new LinkedHashMap<>();
+            cluster.put("size", members.size());
+            cluster.put("maxScore", maxScore);
+            cluster.put("members", members);
+            cluster.put("pairs", pairDtos);
+            clusters.add(cluster);
+        }
+        clusters.sort(Comparator.<Map<String, Object>>comparingDouble(c -> (Double) c.get("maxScore")).reversed()
+                .thenComparing(c -> -(Integer) c.get("size")));
+        return clusters;
+    }
+
+    private static Long find(Map<Long, Long> parent, Long id) {
+        Long root = id;
+        Long next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        // Compression du chemin
+        while (!id.equals(root)) {
+            next = parent.get(id);
+            parent.put(id, root);
+            id = next;
+        }
+        return root;
+    }
+
+    /**
+     * Note d'une paire : 1 pour un même CIN ; sinon date de naissance ou téléphone communs,
+     * pondérés par la proximité des noms
+     */
+    private Pair score(Candidate a, Candidate b) {
+        List<String> reasons = new ArrayList<>();
+        if (a.cin != null && a.cin.equals(b.cin)) {
+            reasons.add(SAME_CIN);
+            return new Pair(a.id, b.id, 1.0, reasons);
+        }
+        boolean sameBirthDate = a.birthDate != null && a.birthDate.equals(b.birthDate);
+        boolean samePhone = a.phone != null && a.phone.equals(b.phone);
+        if (!sameBirthDate && !samePhone) {
+            return new Pair(a.id, b.id, 0, reasons);
+        }
+
+        double names;
+        if (!a.nameKey.isEmpty() && a.nameKey.equals(b.nameKey)) {
+            names = 1;
+            reasons.add("same name (phonetic)");
+        } else {
+            int matched = nameMatcher.matchingTokens(a.displayName, b.displayName);
+            names = (double) matched / Math.max(1, Math.max(a.tokenCount, b.tokenCount));
+            if (names > 0) {
+                reasons.add("similar name");
+            }
+        }
+
+        double score;
+        if (sameBirthDate) {
+            reasons.add("same birth date");
+            score = names >= 1 ? 0.9 : names >= 0.5 ? 0.6 : 0.1;
+        } else {
+            score = names >= 1 ? 0.8 : names >= 0.5 ? 0.5 : 0.2;
+        }
+        if (samePhone) {
+            reasons.add("same phone");
+            if (sameBirthDate) {
+                score = Math.min(1.0, score + 0.1);
+            }
+        }
+        if (a.cin != null && b.cin != null) {
+            if (NameMatcher.boundedDistance(a.cin, b.cin, 1) <= 1) {
+                reasons.add(CIN_ONE_OFF);
+            } else {
+                score = Math.min(score, 0.5);
+            }
+        }
+        return new Pair(a.id, b.id, Math.round(score * 100) / 100.0, reasons);
+    }
+
+    static String normalizeCin(String cin) {
+        return User.normalizeCin(cin);
+    }
+
+    /**
+     * Date de naissance en AAAAMMJJ, qu'elle soit saisie 2004-05-14 ou 14/05/2004
+     */
+    static String normalizeBirthDate(String birthDate) {
+        if (birthDate == null) {
+            return null;
+        }
+        String trimmed = birthDate.trim();
+        Matcher m = YEAR_FIRST.matcher(trimmed);
+        if (m.matches()) {
+            return m.group(1) + pad(m.group(2)) + pad(m.group(3));
+        }
+        m = YEAR_LAST.matcher(trimmed);
+        if (m.matches()) {
+            return m.group(3) + pad(m.group(2)) + pad(m.group(1));
+        }
+        return null;
+    }
+
+    static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (digits.length() < 8) {
+            return null;
+        }
+        // Sans indicatif : +261 34 12 345 67 = 034 12 345 67
+        return digits.length() > 9 ? digits.substring(digits.length() - 9) : digits;
+    }
+
+    /**
+     * Clé phonétique simplifiée d'un mot déjà normalisé (graphies françaises et malgaches
+     * courantes : ph/f, qu/k, ou/o, y/i, z/s, lettres doublées, h muet, e ou s final)
+     */
+    static String phonetic(String token) {
+        String s = token.replace("ph", "f").replace("qu", "k").replace("ou", "o")
+                .replace("sch", "s").replace("ch", "s").replace("sh", "s")
+                .replaceAll("c(?=[eiy])", "s").replace('c', 'k').replace('q', 'k')
+                .replace('y', 'i').replace('z', 's').replace('w', 'v').replace("h", "")
+                .replaceAll("(.)\\1+", "$1");
+        if (s.length() > 3 && (s.endsWith("e") || s.endsWith("s"))) {
+            s = s.substring(0, s.length() - 1);
+        }
+        return s;
+    }
+
+    private static String pad(String value) {
+        return value.length() == 1 ? "0" + value : value;
+    }
+
+    private static class Candidate {
+        private final long id;
+        private final String displayName;
+        private final String nameKey;
+        private final int tokenCount;
+        private final String cin;
+        private final String rawCin;
+        private final String birthDate;
+        private final String phone;
+        private final List<String> keys = new ArrayList<>();
+
+        private Candidate(long id, String displayName, String nameKey, int tokenCount, String cin, String rawCin,
+                          String birthDate, String phone) {
+            this.id = id;
+            this.displayName = displayName;
+            this.nameKey = nameKey;
+            this.tokenCount = tokenCount;
+            this.cin = cin;
+            this.rawCin = rawCin;
+            this.birthDate = birthDate;
+            this.phone = phone;
+        }
+
+        static Candidate of(Long id, String lastName, String firstName, String cin, String birthDate, String phone) {
+            String displayName = ((lastName == null ? "" : lastName) + " " + (firstName == null ? "" : firstName)).trim();
+            String normalized = NameMatcher.normalize(displayName);
+            String[] tokens = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+            String[] phonetic = new String[tokens.length];
+            for (int i = 0; i < tokens.length; i++) {
+                phonetic[i] = phonetic(tokens[i]);
+            }
+            String[] sorted = phonetic.clone();
+            Arrays.sort(sorted);
+
+            Candidate candidate = new Candidate(id == null ? -1 : id, displayName, String.join(" ", sorted),
+                    tokens.length, normalizeCin(cin), cin, normalizeBirthDate(birthDate), normalizePhone(phone));
+            if (candidate.cin != null) {
+                candidate.keys.add("cin:" + candidate.cin);
+            }
+            if (candidate.birthDate != null) {
+                for (String key : new LinkedHashSet<>(Arrays.asList(phonetic))) {
+                    if (key.length() >= 3) {
+                        candidate.keys.add("nd:" + key + "|" + candidate.birthDate);
+                    }
+                }
+            }
+            if (candidate.phone != null) {
+                candidate.keys.add("tel:" + candidate.phone);
+            }
+            return candidate;
+        }
+    }
+
+    private static class Pair {
+        private final long a;
+        private final long b;
+        private final double score;
+        private final List<String> reasons;
+
+        Pair(long a, long b, double score, List<String> reasons) {
+            this.a = Math.min(a, b);
+            this.b = Math.max(a, b);
+            this.score = score;
+            this.reasons = reasons;
+        }
+    }
+
+    /**
+     * Comptes et clés de blocage ; les lectures se font sans verrou
+     */
+    private static class Index {
+        private final Map<Long, Candidate> candidates = new ConcurrentHashMap<>();
+        private final Map<String, Set<Long>> blocks = new ConcurrentHashMap<>();
+
+        synchronized void put(Candidate candidate) {
+            Candidate previous = candidates.put(candidate.id, candidate);
+            if (previous != null) {
+                for (String key : previous.keys) {
+                    Set<Long> block = blocks.get(key);
+                    if (block != null) {
+                        block.remove(previous.id);
+                        if (block.isEmpty()) {
+                            blocks.remove(key);
+                        }
+                    }
+                }
+            }
+            for (String key : candidate.keys) {
+                blocks.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(candidate.id);
+            }
+        }
+    }
+}
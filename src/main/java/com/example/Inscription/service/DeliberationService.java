@@ -24,6 +24,7 @@ public class DeliberationService {
     private final UserRepository userRepository;
     private final GradeEntryService gradeEntryService;
     private final IADeliberationClient iaDeliberationClient;
+    private final EventCatalogCache eventCatalogCache;
     
     /**
      * Trigger deliberation for an event
@@ -179,6 +180,7 @@ public class DeliberationService {
             if (event != null) {
                 event.setResultsDate(LocalDateTime.now());
                 eventRepository.save(event);
+                eventCatalogCache.invalidate();
             }
             
             log.info("Deliberation completed for event {}: {} admitted, total: {}", 
@@ -0,0 +1,241 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.AnalysisJobStatus;
+import com.example.Inscription.model.AnalysisJobType;
+import com.example.Inscription.model.DocumentAnalysisJob;
+import com.example.Inscription.repository.DocumentAnalysisJobRepository;
+import com.example.Inscription.repository.EventRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * File de jobs d'analyse de documents stockée en base (PostgreSQL).
+ *
+ * Les workers de chaque nœud réservent des jobs avec FOR UPDATE SKIP LOCKED, ce qui permet
+ * à plusieurs instances de l'application de se partager la file sans se bloquer.
+ * Un job réservé est invisible aux autres workers jusqu'à la fin de son délai de visibilité ;
+ * s'il n'est ni terminé ni relâché avant (crash du nœud), il est repris tant qu'il lui reste
+ * des tentatives, sinon il passe en FAILED.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentAnalysisJobService {
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<Map<String, Object>>() {};
+
+    private final DocumentAnalysisJobRepository jobRepository;
+    private final EventRepository eventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${analysis.jobs.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${analysis.jobs.visibility-timeout-seconds:600}")
+    private long visibilityTimeoutSeconds;
+
+    @Value("${analysis.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${analysis.jobs.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    private String nodeId;
+
+    /**
+     * Ajoute un job dans la file
+     * @param payload Paramètres du job (sérialisés en JSON)
+     * @param priority Priorité (plus élevée = traitée plus tôt)
+     * @param eventId Événement concerné (optionnel) : sa date limite d'inscription départage les priorités égales
+     */
+    @Transactional
+    public DocumentAnalysisJob enqueue(AnalysisJobType type, Map<String, Object> payload, byte[] fileData,
+                                       String fileName, String mimeType, int priority, Long eventId) throws Exception {
+        DocumentAnalysisJob job = new DocumentAnalysisJob();
+        job.setJobType(type);
+        job.setStatus(AnalysisJobStatus.PENDING);
+        job.setPriority(priority);
+        job.setPayload(objectMapper.writeValueAsString(payload));
+        job.setFileData(fileData);
+        job.setFileName(fileName);
+        job.setMimeType(mimeType);
+        job.setAttempts(0);
+        job.setMaxAttempts(maxAttempts);
+        job.setRunAfter(LocalDateTime.now());
+        if (eventId != null) {
+            eventRepository.findById(eventId).ifPresent(event -> job.setDeadline(event.getRegistrationEnd()));
+        }
+        return jobRepository.save(job);
+    }
+
+    /**
+     * Réserve jusqu'à {@code limit} jobs pour ce nœud
+     * @return Les identifiants des jobs réservés
+     */
+    @Transactional
+    public List<Long> claim(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int exhausted = jobRepository.failExhausted(AnalysisJobStatus.RUNNING, AnalysisJobStatus.FAILED,
+                "Visibility timeout exceeded on the last attempt", now);
+        if (exhausted > 0) {
+            log.error("{} abandoned analysis jobs had no attempts left and were marked FAILED", exhausted);
+        }
+        List<Long> ids = jobRepository.lockNextAvailable(now, limit);
+        if (!ids.isEmpty()) {
+            jobRepository.markClaimed(ids, AnalysisJobStatus.RUNNING, getNodeId(),
+                    now.plusSeconds(visibilityTimeoutSeconds), now);
+        }
+        return ids;
+    }
+
+    /**
+     * Rend immédiatement à la file un job réservé que ce nœud n'a pas pu démarrer (pool saturé)
+     */
+    public void release(Long jobId) {
+        jobRepository.release(jobId, getNodeId(), AnalysisJobStatus.RUNNING, AnalysisJobStatus.PENDING, LocalDateTime.now());
+    }
+
+    /**
+     * Documents ayant déjà un job de ce type en attente ou en cours
+     */
+    public Set<String> activeDocumentIds(AnalysisJobType type) {
+        Set<String> ids = new HashSet<>();
+        for (String id : jobRepository.findActiveDocumentIds(type.name())) {
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Marque un job comme terminé (ignoré si un autre nœud l'a repris entre-temps)
+     */
+    @Transactional
+    public void complete(Long jobId, Object result) throws Exception {
+        DocumentAnalysisJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !isOwnedByThisNode(job)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(AnalysisJobStatus.SUCCEEDED);
+        job.setResult(objectMapper.writeValueAsString(result));
+        job.setLastError(null);
+        job.setFileData(null); // le fichier est désormais stocké avec le document analysé
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        job.setCompletedAt(now);
+        job.setUpdatedAt(now);
+        jobRepository.save(job);
+    }
+
+    /**
+     * Enregistre un échec : le job est replanifié avec un délai croissant, ou marqué FAILED
+     * lorsque le nombre maximal de tentatives est atteint
+     */
+    @Transactional
+    public void fail(Long jobId, Exception error) {
+        DocumentAnalysisJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || !isOwnedByThisNode(job)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        job.setLastError(error.getClass().getSimpleName() + ": " + error.getMessage());
+        job.setLockedBy(null);
+        job.setLockedUntil(null);
+        job.setUpdatedAt(now);
+        boolean retriable = !(error instanceof GeminiException geminiException) || geminiException.isRetriable();
+        if (retriable && job.getAttempts() < job.getMaxAttempts()) {
+            long delay = retryBackoffSeconds << Math.min(job.getAttempts() - 1, 10);
+            job.setStatus(AnalysisJobStatus.PENDING);
+            job.setRunAfter(now.plusSeconds(delay));
+            log.warn("Analysis job {} failed (attempt {}/{}), retrying in {}s: {}",
+                    jobId, job.getAttempts(), job.getMaxAttempts(), delay, error.getMessage());
+        } else {
+            job.setStatus(AnalysisJobStatus.FAILED);
+            job.setCompletedAt(now);
+            log.error("Analysis job {} failed permanently: {}", jobId, error.getMessage());
+        }
+        jobRepository.save(job);
+    }
+
+    public Optional<DocumentAnalysisJob> getJob(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Vue du job pour l'endpoint de statut
+     */
+    public Map<String, Object> toStatus(DocumentAnalysisJob job) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", job.getId());
+        status.put("jobType", job.getJobType());
+        status.put("status", job.getStatus());
+        status.put("priority", job.getPriority());
+        status.put("attempts", job.getAttempts());
+        status.put("maxAttempts", job.getMaxAttempts());
+        status.put("createdAt", job.getCreatedAt());
+        status.put("updatedAt", job.getUpdatedAt());
+        status.put("completedAt", job.getCompletedAt());
+        if (job.getResult() != null) {
+            try {
+                status.put("result", objectMapper.readValue(job.getResult(), JSON_OBJECT));
+            } catch (Exception e) {
+                status.put("result", job.getResult());
+            }
+        }
+        if (job.getLastError() != null) {
+            status.put("lastError", job.getLastError());
+        }
+        return status;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", getNodeId());
+        for (AnalysisJobStatus status : AnalysisJobStatus.values()) {
+            stats.put(status.name().toLowerCase(), jobRepository.countByStatus(status));
+        }
+        return stats;
+    }
+
+    public Map<String, Object> readPayload(DocumentAnalysisJob job) throws Exception {
+        if (job.getPayload() == null) {
+            return new HashMap<>();
+        }
+        return objectMapper.readValue(job.getPayload(), JSON_OBJECT);
+    }
+
+    public String getNodeId() {
+        if (nodeId == null) {
+            if (configuredNodeId != null && !configuredNodeId.isBlank()) {
+                nodeId = configuredNodeId;
+            } else {
+                String host;
+                try {
+                    host = InetAddress.getLocalHost().getHostName();
+                } catch (Exception e) {
+                    host = "node";
+                }
+                nodeId = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+            }
+        }
+        return nodeId;
+    }
+
+    private boolean isOwnedByThisNode(DocumentAnalysisJob job) {
+        return job.getStatus() == AnalysisJobStatus.RUNNING && getNodeId().equals(job.getLockedBy());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentAnalysisJob;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Worker local de la file d'analyse : réserve des jobs à intervalle régulier,
+ * sans jamais en prendre plus qu'il n'a de threads libres.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentAnalysisJobWorker {
+
+    private final DocumentAnalysisJobService jobService;
+    private final DocumentAnalysisService documentAnalysisService;
+    private final DocumentService documentService;
+    private final PdfService pdfService;
+    private final WorkExecutors workExecutors;
+
+    @Value("${analysis.jobs.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analysis.jobs.worker-threads:2}")
+    private int workerThreads;
+
+    private Semaphore freeSlots;
+
+    @PostConstruct
+    void start() {
+        freeSlots = new Semaphore(workerThreads);
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.jobs.poll-interval-ms:2000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        int available = freeSlots.availablePermits();
+        if (available == 0) {
+            return;
+        }
+        List<Long> jobIds;
+        try {
+            jobIds = jobService.claim(available);
+        } catch (Exception e) {
+            log.warn("Could not claim analysis jobs: {}", e.getMessage());
+            return;
+        }
+        for (Long jobId : jobIds) {
+            freeSlots.acquireUninterruptibly();
+            try {
+                // Les jobs attendent surtout Gemini : pool des appels IA bloquants
+                workExecutors.ai().execute(() -> {
+                    try {
+                        run(jobId);
+                    } finally {
+                        freeSlots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Rendu tout de suite à la file plutôt que d'attendre la fin du délai de visibilité
+                freeSlots.release();
+                try {
+                    jobService.release(jobId);
+                } catch (Exception releaseError) {
+                    log.warn("Could not release analysis job {}: {}", jobId, releaseError.getMessage());
+                }
+                log.warn("AI pool saturated, analysis job {} returned to the queue", jobId);
+            }
+        }
+    }
+
+    private void run(Long jobId) {
+        DocumentAnalysisJob job = jobService.getJob(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        try {
+            Map<String, Object> payload = jobService.readPayload(job);
+            Map<String, Object> result = switch (job.getJobType()) {
+                case ANALYZE_AND_SAVE -> documentAnalysisService.analyzeAndSave(tenant(payload), job.getFileData(), job.getFileName(),
+                        job.getMimeType(), asInteger(payload.get("inscriptionId")), (String) payload.get("mode"), jobId);
+                case VERIFY_DOCUMENT -> documentAnalysisService.verifyAndSave(tenant(payload), job.getFileData(), job.getFileName(),
+                        job.getMimeType(), (String) payload.get("docType"), asInteger(payload.get("inscriptionId")),
+                        (String) payload.get("documentId"), jobId);
+                case BORDEREAU_VERIFICATION -> verifyBordereau(asInteger(payload.get("documentId")));
+            };
+            jobService.complete(jobId, result);
+        } catch (Exception e) {
+            jobService.fail(jobId, e);
+        }
+    }
+
+    private Map<String, Object> verifyBordereau(Integer documentId) throws Exception {
+        Document doc = documentService.getDocumentById(documentId)
+                .orElseThrow(() -> new IllegalArgumentException("Document " + documentId + " not found"));
+        boolean valide = pdfService.verifierBordereau(doc, GeminiGateway.BATCH_TENANT);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("documentId", documentId);
+        result.put("valide", valide);
+        return result;
+    }
+
+    /**
+     * File Gemini enregistrée à la mise en file (établissement de l'événement)
+     */
+    private static String tenant(Map<String, Object> payload) {
+        return payload.get("tenant") instanceof String tenant ? tenant : GeminiGateway.DEFAULT_TENANT;
+    }
+
+    private static Integer asInteger(Object value) {
+        return value instanceof Number number ? Integer.valueOf(number.intValue()) : null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.Inscription.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latence de bout en bout des analyses de documents, par opération et par type de document
+ */
+@Component
+public class DocumentAnalysisMetrics {
+
+    private final Map<String, LatencyStats> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * @param operation Opération (ex: "analyze-and-save:combined")
+     * @param documentType Type détecté (releve_de_note, bordereau_paiement...)
+     */
+    public void recordLatency(String operation, String documentType, long nanos) {
+        String key = operation + "/" + (documentType == null ? "unknown" : documentType);
+        latencies.computeIfAbsent(key, k -> new LatencyStats()).record(nanos);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        latencies.forEach((key, latency) -> stats.put(key, latency.snapshot()));
+        return stats;
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.Document;
+import com.example.Inscription.model.Inscription;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Analyse de documents d'inscription avec Gemini Vision et sauvegarde en base.
+ * Utilisé par les endpoints synchrones de ApiDocumentController et par les workers
+ * de la file de jobs d'analyse.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentAnalysisService {
+
+    private final DocumentService documentService;
+    private final GeminiService geminiService;
+    private final InscriptionService inscriptionService;
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<Map<String, Object>>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Prompt commun classification + extraction : le fichier n'est envoyé qu'une fois
+     */
+    private static final String COMBINED_PROMPT = """
+        Analyse cette image de document : détermine son type puis extrais les informations.
+        Réponds UNIQUEMENT avec un JSON strict, sans texte avant ou après, sans ```:
+        {
+            "type": "releve_de_note | diplome | piece_identite | bordereau_paiement | autre",
+            "confidence": "high | medium | low",
+            "data": {
+                "firstName": "prénom",
+                "lastName": "nom de famille",
+                "birthDate": "date naissance YYYY-MM-DD",
+                "birthPlace": "lieu de naissance",
+                "bacYear": "année du bac",
+                "bacSeries": "série ou filière",
+                "bacNumber": "numéro matricule",
+                "bacAverage": "moyenne (nombre)"
+            }
+        }
+        Mets "" dans data si une information n'est pas trouvée.
+        Pour les noms malgaches, le nom de famille est généralement en premier.
+        """;
+
+    /**
+     * Extrait les données d'un relevé de notes et sauvegarde le document vérifié
+     * @param tenant File de la passerelle Gemini (établissement de l'événement, sinon DEFAULT_TENANT)
+     * @param documentId Identifiant temporaire du document uploadé
+     * @param jobId Job d'analyse appelant (null en synchrone) : un job repris renvoie le document déjà enregistré
+     * @return Réponse de l'API (extractedData, dbDocumentId...)
+     */
+    public Map<String, Object> verifyAndSave(String tenant, byte[] fileBytes, String fileName, String mimeType, String docType,
+                                             Integer inscriptionId, String documentId, Long jobId) throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        Optional<Document> alreadySaved = savedByJob(jobId);
+        if (alreadySaved.isPresent()) {
+            response.put("success", true);
+            response.put("documentId", documentId);
+            response.put("dbDocumentId", alreadySaved.get().getId());
+            response.put("verified", true);
+            response.put("verificationScore", alreadySaved.get().getScoreConfiance());
+            response.put("extractedData", readExtractedData(alreadySaved.get()));
+            response.put("savedToDatabase", true);
+            response.put("message", "Document déjà analysé et sauvegardé par ce job");
+            return response;
+        }
+        Map<String, Object> extractedData = new HashMap<>();
+        String extractedJson = "{}";
+
+        // Vérifier si Gemini est configuré
+        if (!geminiService.isConfigured()) {
+            log.debug("Gemini not configured, returning empty data for document {}", documentId);
+            // Retourner des données vides mais succès pour permettre la saisie manuelle
+            extractedData = emptyExtractedData();
+            extractedJson = objectMapper.writeValueAsString(extractedData);
+        } else {
+            // Prompt pour l'extraction des données du relevé de notes
+            String extractPrompt = """
+                Analyse cette image de document académique (relevé de notes, bulletin, diplôme).
+
+                Extrais les informations suivantes et réponds UNIQUEMENT avec un JSON strict,
+                sans texte avant ou après, sans ```:
+
+                {
+                    "firstName": "prénom de l'étudiant",
+                    "lastName": "nom de famille de l'étudiant",
+                    "birthDate": "date de naissance au format YYYY-MM-DD",
+                    "birthPlace": "lieu de naissance",
+                    "bacYear": "année du baccalauréat ou année académique",
+                    "bacSeries": "série ou filière (ex: Scientifique, Littéraire, D, C, etc.)",
+                    "bacNumber": "numéro de matricule ou identifiant étudiant",
+                    "bacAverage": "moyenne générale (nombre uniquement, ex: 14.5)"
+                }
+
+                Règles importantes:
+                - Si une information n'est pas visible ou trouvable, mets une chaîne vide ""
+                - Pour les noms malgaches, le nom de famille est généralement en premier
+                - La date doit être au format YYYY-MM-DD (ex: 1998-05-15)
+                - La moyenne doit être un nombre (ex: 14.5, pas "14,5/20")
+                - Extrais uniquement ce qui est clairement visible sur le document
+                """;
+
+            try {
+                Optional<Map<String, Object>> geminiData = geminiService.analyzeImage(tenant,
+                        fileBytes, mimeType, extractPrompt, docType, logRejected("verification", this::readJsonObject));
+
+                if (geminiData.isPresent()) {
+                    extractedData = geminiData.get();
+                    extractedJson = objectMapper.writeValueAsString(extractedData);
+                } else {
+                    log.warn("Gemini extraction unusable for document {}, returning empty data for manual entry", documentId);
+                    extractedData = emptyExtractedData();
+                    extractedJson = objectMapper.writeValueAsString(extractedData);
+                }
+            } catch (Exception e) {
+                log.warn("Gemini extraction failed for document {}, returning empty data for manual entry", documentId, e);
+                extractedData = emptyExtractedData();
+                extractedJson = objectMapper.writeValueAsString(extractedData);
+            }
+        }
+
+        // ========== SAUVEGARDE EN BASE DE DONNÉES ==========
+        Document document = new Document();
+        document.setNom_fic(fileName != null ? fileName : "document_" + documentId);
+        document.setFichier(fileBytes);
+        document.setVerifie(true);
+        document.setValide(true);
+        document.setTypeDocument(docType != null ? docType : "unknown");
+        document.setDonneesExtraites(extractedJson);
+        document.setScoreConfiance(0.95);
+        document.setAnalysisJobId(jobId);
+
+        // Si une inscription est spécifiée, lier le document
+        if (inscriptionId != null) {
+            Optional<Inscription> inscriptionOpt = inscriptionService.getInscriptionById(inscriptionId);
+            if (inscriptionOpt.isPresent()) {
+                document.setInscription(inscriptionOpt.get());
+            }
+        }
+
+        // Sauvegarder le document en base de données
+        Document savedDocument = documentService.addDocument(document);
+        log.debug("Verified document {} saved with id {}", documentId, savedDocument.getId());
+
+        response.put("success", true);
+        response.put("documentId", documentId);
+        response.put("dbDocumentId", savedDocument.getId()); // ID en base de données
+        response.put("verified", true);
+        response.put("verificationScore", 0.95);
+        response.put("extractedData", extractedData);
+        response.put("savedToDatabase", true);
+        response.put("message", "Document analysé, données extraites et sauvegardées en base de données");
+        return response;
+    }
+
+    /**
+     * Classifie, extrait et sauvegarde un document
+     * @param tenant File de la passerelle Gemini (établissement de l'événement, sinon DEFAULT_TENANT)
+     * @param mode "combined" (un seul appel Gemini) ou "two-step" (classification puis extraction)
+     * @param jobId Job d'analyse appelant (null en synchrone) : un job repris renvoie le document déjà enregistré
+     * @return Réponse de l'API (documentType, extractedData, dbDocumentId, analysisMode...)
+     */
+    public Map<String, Object> analyzeAndSave(String tenant, byte[] fileBytes, String fileName, String mimeType,
+                                              Integer inscriptionId, String mode, Long jobId) throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        Optional<Document> alreadySaved = savedByJob(jobId);
+        if (alreadySaved.isPresent()) {
+            response.put("success", true);
+            response.put("dbDocumentId", alreadySaved.get().getId());
+            response.put("documentType", alreadySaved.get().getTypeDocument());
+            response.put("extractedData", readExtractedData(alreadySaved.get()));
+            response.put("savedToDatabase", true);
+            response.put("fileName", fileName);
+            response.put("message", "Document déjà analysé et sauvegardé par ce job");
+            return response;
+        }
+        String documentType = "unknown";
+        String confidence = "medium";
+        Map<String, Object> extractedData = null;
+        String analysisMode = "two-step";
+
+        // 1+2. CLASSIFICATION ET EXTRACTION EN UN SEUL APPEL
+        if (!"two-step".equals(mode)) {
+            // Une réponse sans type ni données est rejetée par la lecture : elle n'est pas mise en cache
+            Optional<Map<String, Object>> combined = geminiService.analyzeImage(tenant,
+                    fileBytes, mimeType, COMBINED_PROMPT, null, logRejected("combined", geminiResponse -> {
+                        Map<String, Object> parsed = readJsonObject(geminiResponse);
+                        if (!(parsed.get("type") instanceof String) || !(parsed.get("data") instanceof Map)) {
+                            throw new IllegalArgumentException("type or data missing");
+                        }
+                        return parsed;
+                    }));
+            if (combined.isPresent()) {
+                documentType = (String) combined.get().get("type");
+                confidence = combined.get().get("confidence") instanceof String ? (String) combined.get().get("confidence") : "medium";
+                extractedData = objectMapper.convertValue(combined.get().get("data"), JSON_OBJECT);
+                analysisMode = "combined";
+            } else {
+                log.warn("Combined Gemini analysis unusable, falling back to classification + extraction");
+            }
+        }
+
+        if (extractedData == null) {
+            // 1. CLASSIFICATION
+            String classifyPrompt = """
+                Analyse cette image de document et détermine son type.
+                Réponds UNIQUEMENT avec un JSON strict, sans texte avant ou après, sans ```:
+                {"type": "...", "confidence": "..."}
+                Types possibles: releve_de_note, diplome, piece_identite, bordereau_paiement, autre
+                Confidence: high, medium, low
+                """;
+
+            Optional<Map<String, Object>> classResult = geminiService.analyzeImage(tenant,
+                    fileBytes, mimeType, classifyPrompt, null, logRejected("classification", this::readJsonObject));
+            if (classResult.isPresent()) {
+                documentType = String.valueOf(classResult.get().getOrDefault("type", "unknown"));
+                confidence = String.valueOf(classResult.get().getOrDefault("confidence", "medium"));
+            } else {
+                log.warn("Gemini classification unusable, document type left unknown");
+            }
+
+            // 2. EXTRACTION DES DONNÉES
+            String extractPrompt = """
+                Analyse cette image de document académique.
+                Extrais les informations et réponds UNIQUEMENT avec un JSON strict, sans ```:
+                {
+                    "firstName": "prénom",
+                    "lastName": "nom de famille",
+                    "birthDate": "date naissance YYYY-MM-DD",
+                    "birthPlace": "lieu de naissance",
+                    "bacYear": "année du bac",
+                    "bacSeries": "série ou filière",
+                    "bacNumber": "numéro matricule",
+                    "bacAverage": "moyenne (nombre)"
+                }
+                Mets "" si information non trouvée.
+                """;
+
+            extractedData = geminiService.analyzeImage(tenant, fileBytes, mimeType,
+                    extractPrompt, documentType, logRejected("extraction", this::readJsonObject)).orElse(null);
+
+            if (extractedData == null) {
+                log.warn("Gemini extraction unusable, returning empty data for manual entry");
+                extractedData = emptyExtractedData();
+            }
+        }
+        String extractedJson = objectMapper.writeValueAsString(extractedData);
+
+        // 3. SAUVEGARDE EN BASE DE DONNÉES
+        Document document = new Document();
+        document.setNom_fic(fileName != null ? fileName : "document_" + System.currentTimeMillis());
+        document.setFichier(fileBytes);
+        document.setVerifie(true);
+        document.setValide(true);
+        document.setTypeDocument(documentType);
+        document.setDonneesExtraites(extractedJson);
+        document.setScoreConfiance("high".equals(confidence) ? 0.95 : "medium".equals(confidence) ? 0.75 : 0.5);
+        document.setAnalysisJobId(jobId);
+
+        if (inscriptionId != null) {
+            Optional<Inscription> inscriptionOpt = inscriptionService.getInscriptionById(inscriptionId);
+            inscriptionOpt.ifPresent(document::setInscription);
+        }
+
+        Document savedDocument = documentService.addDocument(document);
+
+        response.put("success", true);
+        response.put("dbDocumentId", savedDocument.getId());
+        response.put("documentType", documentType);
+        response.put("confidence", confidence);
+        response.put("extractedData", extractedData);
+        response.put("savedToDatabase", true);
+        response.put("fileName", fileName);
+        response.put("message", "Document analysé et sauvegardé avec succès");
+        response.put("analysisMode", analysisMode);
+        return response;
+    }
+
+    /**
+     * Données vides renvoyées quand rien n'a pu être extrait, pour permettre la saisie manuelle
+     */
+    private static Map<String, Object> emptyExtractedData() {
+        Map<String, Object> data = new HashMap<>();
+        for (String field : new String[]{"firstName", "lastName", "birthDate", "birthPlace",
+                "bacYear", "bacSeries", "bacNumber", "bacAverage"}) {
+            data.put(field, "");
+        }
+        return data;
+    }
+
+    /**
+     * Journalise la cause du rejet d'une réponse avant que GeminiService ne renvoie vide
+     * (GeminiService ne garde que le message), puis propage le rejet
+     */
+    private static <T> GeminiService.ResponseParser<T> logRejected(String step, GeminiService.ResponseParser<T> parser) {
+        return response -> {
+            try {
+                return parser.parse(response);
+            } catch (Exception e) {
+                log.warn("Gemini {} response rejected", step, e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Lit une réponse Gemini attendue sous forme d'objet JSON ; une réponse d'erreur est refusée
+     */
+    private Map<String, Object> readJsonObject(String response) throws Exception {
+        if (response == null || response.contains("\"error\"")) {
+            throw new IllegalArgumentException("Gemini returned an error");
+        }
+        return objectMapper.readValue(cleanJsonResponse(response), JSON_OBJECT);
+    }
+
+    /**
+     * Document déjà enregistré par ce job lors d'une tentative précédente (job repris après son
+     * délai de visibilité) : il est renvoyé tel quel, sans nouvel appel Gemini ni second enregistrement
+     */
+    private Optional<Document> savedByJob(Long jobId) {
+        if (jobId == null) {
+            return Optional.empty();
+        }
+        Optional<Document> saved = documentService.getDocumentByAnalysisJob(jobId);
+        saved.ifPresent(document -> log.info("Analysis job {} already saved document {}, not analyzed again", jobId, document.getId()));
+        return saved;
+    }
+
+    private Map<String, Object> readExtractedData(Document document) throws Exception {
+        if (document.getDonneesExtraites() == null) {
+            return emptyExtractedData();
+        }
+        return objectMapper.readValue(document.getDonneesExtraites(), JSON_OBJECT);
+    }
+
+    /**
+     * Nettoie la réponse JSON de Gemini (enlève les ```, etc.)
+     */
+    public static String cleanJsonResponse(String response) {
+        if (response == null) return "{}";
+        
+        String cleaned = response.trim();
+        
+        // Enlever les blocs de code markdown
+        if (cleaned.startsWith("```json")) {
+            cleaned = cleaned.substring(7);
+        } else if (cleaned.startsWith("```")) {
+            cleaned = cleaned.substring(3);
+        }
+        
+        if (cleaned.endsWith("```")) {
+            cleaned = cleaned.substring(0, cleaned.length() - 3);
+        }
+        
+        return cleaned.trim();
+    }
+}
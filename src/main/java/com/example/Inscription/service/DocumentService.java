@@ -1,6 +1,7 @@
 package com.example.Inscription.service;
 
 import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentSummary;
 
 import java.io.IOException;
 import java.util.List;
@@ -10,10 +11,23 @@ public interface DocumentService {
     public List<Document> getAllDocuments();
     public Document addDocument(Document document);
     public Optional<Document> getDocumentById(int id);
+    /**
+     * Document déjà enregistré par un job d'analyse (cas d'un job repris)
+     */
+    public Optional<Document> getDocumentByAnalysisJob(Long jobId);
     public void deleteDocument(int id);
     public void updateDocument(Document document);
     public void updateValidation(int inscription_id, Boolean valide);
     public void updateVerifie(int inscription_id, Boolean verifie);
     public String lirePdf(String url);
-    public List<Document> nonVerifies();
+    /**
+     * Identifiants des documents non vérifiés après le curseur, par id croissant
+     * @param afterId Dernier id de la page précédente (0 pour la première page)
+     */
+    public List<Integer> nonVerifiesIds(int afterId, int limit);
+    /**
+     * Documents non vérifiés (sans fichier) après le curseur, par id croissant
+     */
+    public List<DocumentSummary> nonVerifies(int afterId, int limit);
+    public Optional<Document> premierNonVerifie();
 }
@@ -1,10 +1,13 @@
 package com.example.Inscription.service;
 
 import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentSummary;
 import com.example.Inscription.repository.DocumentRepository;
+import com.example.Inscription.repository.DocumentTextRepository;
 import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
 import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -16,6 +19,10 @@ import java.util.Optional;
 public class DocumentServiceImpl implements DocumentService {
     @Autowired
     private DocumentRepository documentRepository;
+    @Autowired
+    private DocumentTextService documentTextService;
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
     @Override
     public List<Document> getAllDocuments() {
         return documentRepository.findAll();
@@ -23,7 +30,10 @@ public class DocumentServiceImpl implements DocumentService {
 
     @Override
     public Document addDocument(Document document) {
-        return documentRepository.save(document);
+        Document saved = documentRepository.save(document);
+        // Texte extrait en tâche de fond, lu ensuite par les vérifications
+        documentTextService.scheduleExtraction(saved.getId());
+        return saved;
     }
 
     @Override
@@ -31,8 +41,14 @@ public class DocumentServiceImpl implements DocumentService {
         return documentRepository.findById(id);
     }
 
+    @Override
+    public Optional<Document> getDocumentByAnalysisJob(Long jobId) {
+        return documentRepository.findByAnalysisJobId(jobId);
+    }
+
     @Override
     public void deleteDocument(int id) {
+        documentTextRepository.deleteByDocumentId(id);
         documentRepository.deleteById(id);
     }
 
@@ -57,7 +73,18 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     @Override
-    public List<Document> nonVerifies() {
-        return documentRepository.findByValideFalse();
+    public List<Integer> nonVerifiesIds(int afterId, int limit) {
+        return documentRepository.findNonVerifiesIdsAfter(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<DocumentSummary> nonVerifies(int afterId, int limit) {
+        return documentRepository.findNonVerifiesAfter(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public Optional<Document> premierNonVerifie() {
+        List<Integer> ids = nonVerifiesIds(0, 1);
+        return ids.isEmpty() ? Optional.empty() : documentRepository.findById(ids.get(0));
     }
 }
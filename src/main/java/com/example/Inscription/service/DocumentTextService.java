@@ -0,0 +1,272 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentText;
+import com.example.Inscription.model.TextExtractionMethod;
+import com.example.Inscription.repository.DocumentRepository;
+import com.example.Inscription.repository.DocumentTextRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.Tesseract;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Extraction du texte des documents juste après l'upload, en tâche de fond.
+ *
+ * La couche texte du PDF est lue page par page ; si elle est vide, chaque page est rendue
+ * puis passée à l'OCR. Le texte, la position de chaque page et la méthode utilisée sont
+ * enregistrés dans document_texts : les vérifications (bordereaux, relevés, arrêtés) lisent
+ * ce texte au lieu de ré-extraire le fichier. Les documents déjà présents sans texte sont
+ * traités au démarrage.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentTextService {
+
+    private final DocumentTextRepository documentTextRepository;
+    private final DocumentRepository documentRepository;
+    private final PdfLoader pdfLoader;
+    private final WorkExecutors workExecutors;
+
+    @Value("${documents.text.ocr-dpi:300}")
+    private int ocrDpi;
+
+    @Value("${documents.text.tessdata-path:src/main/resources/tessdata}")
+    private String tessdataPath;
+
+    @Value("${documents.scan.page-size:100}")
+    private int pageSize;
+
+    private final LongAdder precomputed = new LongAdder();
+    private final LongAdder computedOnDemand = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Map<TextExtractionMethod, LatencyStats> latencyByMethod = new LinkedHashMap<>();
+
+    @PostConstruct
+    void start() {
+        for (TextExtractionMethod method : TextExtractionMethod.values()) {
+            latencyByMethod.put(method, new LatencyStats());
+        }
+    }
+
+    /**
+     * Planifie l'extraction du texte d'un document sur le pool CPU (remplace un texte déjà extrait).
+     * Dans une transaction, l'extraction ne démarre qu'après le commit. Si le pool est saturé,
+     * le texte sera extrait à la première lecture (textFor) ou au prochain démarrage.
+     */
+    public void scheduleExtraction(int documentId) {
+        Runnable submit = () -> {
+            try {
+                workExecutors.cpu().execute(() -> extractAndStore(documentId));
+            } catch (RejectedExecutionException e) {
+                log.debug("Text extraction of document {} not scheduled: CPU pool saturated", documentId);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit.run();
+                }
+            });
+        } else {
+            submit.run();
+        }
+    }
+
+    /**
+     * Texte du document : celui extrait à l'upload, sinon extrait maintenant puis enregistré
+     */
+    public DocumentText textFor(Document document) {
+        Optional<DocumentText> stored = documentTextRepository.findByDocumentId(document.getId());
+        if (stored.isPresent()) {
+            precomputed.increment();
+            return stored.get();
+        }
+        computedOnDemand.increment();
+        DocumentText extracted = extract(document.getFichier());
+        try {
+            return store(document.getId(), extracted);
+        } catch (DataIntegrityViolationException e) {
+            // L'extraction en tâche de fond a enregistré le texte entre-temps
+            return documentTextRepository.findByDocumentId(document.getId()).orElse(extracted);
+        }
+    }
+
+    public Optional<DocumentText> getText(int documentId) {
+        return documentTextRepository.findByDocumentId(documentId);
+    }
+
+    /**
+     * Extrait le texte d'un fichier sans l'enregistrer (PDF ou image)
+     */
+    public DocumentText extract(byte[] fileBytes) {
+        long start = System.nanoTime();
+        DocumentText result = new DocumentText();
+        result.setText("");
+        result.setPageCount(0);
+        result.setMethod(TextExtractionMethod.EMPTY);
+        if (fileBytes == null || fileBytes.length == 0) {
+            return result;
+        }
+        try {
+            if (isPdf(fileBytes)) {
+                extractPdf(fileBytes, result);
+            } else {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(fileBytes));
+                if (image != null) {
+                    String text = newTesseract().doOCR(image);
+                    result.setText(text);
+                    result.setPageOffsets("0");
+                    result.setPageCount(1);
+                    result.setMethod(text.isBlank() ? TextExtractionMethod.EMPTY : TextExtractionMethod.OCR);
+                }
+            }
+        } catch (Exception | Error e) {
+            // tess4j remonte les erreurs natives (bibliothèque absente...) sous forme d'Error
+            failures.increment();
+            log.warn("Text extraction failed: {}", e.getMessage());
+        }
+        long elapsed = System.nanoTime() - start;
+        result.setDurationMs(elapsed / 1_000_000);
+        latencyByMethod.get(result.getMethod()).record(elapsed);
+        return result;
+    }
+
+    /**
+     * Traite au démarrage, sur le pool bulk, les documents qui n'ont pas encore de texte extrait
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMissingTexts() {
+        workExecutors.bulk().execute(() -> {
+            int cursor = 0;
+            int extracted = 0;
+            List<Integer> ids;
+            do {
+                ids = documentTextRepository.findDocumentIdsWithoutText(cursor, PageRequest.of(0, pageSize));
+                for (Integer id : ids) {
+                    cursor = id;
+                    extractAndStore(id);
+                    extracted++;
+                }
+            } while (ids.size() == pageSize);
+            if (extracted > 0) {
+                log.info("Extracted text of {} existing documents", extracted);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("readPrecomputed", precomputed.sum());
+        stats.put("extractedOnDemand", computedOnDemand.sum());
+        stats.put("failures", failures.sum());
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latencyByMethod.forEach((method, stat) -> latency.put(method.name(), stat.snapshot()));
+        stats.put("extraction", latency);
+        return stats;
+    }
+
+    private void extractAndStore(int documentId) {
+        try {
+            Optional<Document> document = documentRepository.findById(documentId);
+            if (document.isEmpty()) {
+                return;
+            }
+            store(documentId, extract(document.get().getFichier()));
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("Could not store text of document {}: {}", documentId, e.getMessage());
+        }
+    }
+
+    private DocumentText store(int documentId, DocumentText extracted) {
+        DocumentText entry = documentTextRepository.findByDocumentId(documentId).orElseGet(DocumentText::new);
+        entry.setDocumentId(documentId);
+        entry.setText(extracted.getText());
+        entry.setPageOffsets(extracted.getPageOffsets());
+        entry.setPageCount(extracted.getPageCount());
+        entry.setMethod(extracted.getMethod());
+        entry.setDurationMs(extracted.getDurationMs());
+        entry.setExtractedAt(LocalDateTime.now());
+        return documentTextRepository.save(entry);
+    }
+
+    /**
+     * Couche texte page par page ; OCR de chaque page rendue si le PDF n'a aucun texte
+     */
+    private void extractPdf(byte[] pdfBytes, DocumentText result) throws Exception {
+        pdfLoader.withDocument(pdfBytes, document -> {
+            int pages = document.getNumberOfPages();
+            result.setPageCount(pages);
+            PDFTextStripper stripper = new PDFTextStripper();
+            StringBuilder text = new StringBuilder();
+            StringBuilder offsets = new StringBuilder();
+            for (int page = 1; page <= pages; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                appendPage(text, offsets, stripper.getText(document));
+            }
+            if (!text.toString().isBlank()) {
+                result.setText(text.toString());
+                result.setPageOffsets(offsets.toString());
+                result.setMethod(TextExtractionMethod.TEXT_LAYER);
+                return result;
+            }
+
+            PDFRenderer renderer = new PDFRenderer(document);
+            Tesseract tesseract = newTesseract();
+            text.setLength(0);
+            offsets.setLength(0);
+            for (int page = 0; page < pages; page++) {
+                appendPage(text, offsets, tesseract.doOCR(renderer.renderImageWithDPI(page, ocrDpi, ImageType.GRAY)));
+            }
+            result.setText(text.toString());
+            result.setPageOffsets(offsets.toString());
+            result.setMethod(text.toString().isBlank() ? TextExtractionMethod.EMPTY : TextExtractionMethod.OCR);
+            return result;
+        });
+    }
+
+    private static void appendPage(StringBuilder text, StringBuilder offsets, String pageText) {
+        if (offsets.length() > 0) {
+            offsets.append(',');
+        }
+        offsets.append(text.length());
+        text.append(pageText);
+    }
+
+    private static boolean isPdf(byte[] bytes) {
+        return bytes.length >= 4 && bytes[0] == '%' && bytes[1] == 'P' && bytes[2] == 'D' && bytes[3] == 'F';
+    }
+
+    private Tesseract newTesseract() {
+        Tesseract tesseract = new Tesseract();
+        tesseract.setDatapath(tessdataPath);
+        tesseract.setLanguage("fra+eng");
+        return tesseract;
+    }
+}
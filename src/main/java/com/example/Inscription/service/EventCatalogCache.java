@@ -0,0 +1,195 @@
+package com.example.Inscription.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Catalogue public des événements (/api/events/active, /by-institution/{id}, /{eventId})
+ * gardé en mémoire sous forme de JSON déjà sérialisé, avec son ETag.
+ *
+ * Une réponse se résume à renvoyer des octets, ou un 304 quand le client présente le même
+ * ETag (calculé sur le contenu : identique d'un nœud à l'autre). Toute modification d'un
+ * événement ou de ses matières vide le catalogue (invalidate). Les nombres d'inscrits changent
+ * à chaque inscription : ils ne font reconstruire une entrée qu'au plus toutes les
+ * catalog.count-refresh-ms. catalog.ttl-ms borne le retard sur les modifications d'un autre nœud.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventCatalogCache {
+
+    public static final String ACTIVE = "active";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${catalog.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${catalog.count-refresh-ms:5000}")
+    private long countRefreshMs;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Un verrou par clé : le chargement (requêtes en base) se fait hors de la map
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+    // Une entrée construite avant la dernière invalidation n'est plus servie, même si elle est rangée après
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong countsVersion = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /**
+     * Réponse sérialisée et son ETag
+     */
+    @Data
+    public static class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final long generation;
+        private final long countsVersion;
+        private final long builtAt;
+    }
+
+    public static String institution(Long institutionId) {
+        return "institution:" + institutionId;
+    }
+
+    public static String event(Long eventId) {
+        return "event:" + eventId;
+    }
+
+    /**
+     * Entrée du catalogue, construite par loader si absente ou périmée (un seul chargement à la fois par clé)
+     * @return null si loader ne renvoie rien (événement inexistant)
+     */
+    public Entry get(String key, Supplier<Object> loader) {
+        Entry entry = entries.get(key);
+        if (entry != null && isFresh(entry)) {
+            hits.increment();
+            return entry;
+        }
+        synchronized (loadLocks.computeIfAbsent(key, k -> new Object())) {
+            Entry current = entries.get(key);
+            if (current != null && isFresh(current)) {
+                hits.increment();
+                return current;
+            }
+            Entry built = build(loader);
+            if (built == null) {
+                entries.remove(key);
+            } else {
+                entries.put(key, built);
+            }
+            return built;
+        }
+    }
+
+    /**
+     * Vrai si l'en-tête If-None-Match contient l'ETag de l'entrée (le client garde sa copie)
+     */
+    public boolean isNotModified(Entry entry, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(entry.getEtag())) {
+                notModified.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Vide le catalogue après une modification d'événement ; dans une transaction, à nouveau
+     * après le commit pour ne pas garder une entrée reconstruite avant
+     */
+    public void invalidate() {
+        clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * Nombre d'inscrits modifié : les entrées seront reconstruites une fois count-refresh-ms écoulé
+     */
+    public void registrationCountChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    countsVersion.incrementAndGet();
+                }
+            });
+        } else {
+            countsVersion.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("builds", builds.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("ttlMs", ttlMs);
+        stats.put("countRefreshMs", countRefreshMs);
+        return stats;
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private boolean isFresh(Entry entry) {
+        long age = System.nanoTime() - entry.getBuiltAt();
+        if (entry.getGeneration() != generation.get() || age >= TimeUnit.MILLISECONDS.toNanos(ttlMs)) {
+            return false;
+        }
+        return entry.getCountsVersion() == countsVersion.get() || age < TimeUnit.MILLISECONDS.toNanos(countRefreshMs);
+    }
+
+    private Entry build(Supplier<Object> loader) {
+        // Versions lues avant le chargement : une modification pendant la construction périme l'entrée
+        long builtGeneration = generation.get();
+        long builtCounts = countsVersion.get();
+        long builtAt = System.nanoTime();
+        Object value = loader.get();
+        if (value == null) {
+            return null;
+        }
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+            builds.increment();
+            return new Entry(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"", builtGeneration, builtCounts, builtAt);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize event catalog", e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.BacSeries;
+import com.example.Inscription.repository.EventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Index d'éligibilité des événements dont la période d'inscription n'est pas terminée.
+ *
+ * Chaque événement reçoit une position ; une série du bac (ou un niveau) correspond à un
+ * BitSet des positions des événements qui l'acceptent. « Événements auxquels je peux
+ * m'inscrire » devient un ET entre le bitmap des événements ouverts et celui de la série,
+ * suivi d'un contrôle des dates sur les seuls bits restants, sans charger un événement.
+ *
+ * L'index est reconstruit (deux requêtes de projection) après chaque modification d'un
+ * événement (invalidate) et toutes les registration.eligibility.refresh-ms pour voir les
+ * modifications faites par les autres nœuds. Un événement absent de l'index (créé ailleurs
+ * depuis la dernière reconstruction) est vérifié d'après EventMetadataCache.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EventEligibilityIndex {
+
+    private final EventRepository eventRepository;
+    private final EventMetadataCache eventMetadataCache;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty = true;
+
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Value("${registration.eligibility.refresh-ms:60000}")
+    private long refreshMs;
+
+    /**
+     * Ids des événements ouverts aux inscriptions (actifs, non suspendus, dans la période)
+     * acceptant la série : sans restriction de série, ou la série figure dans la liste
+     * @param series null = toutes les séries
+     * @param level null = tous les niveaux
+     */
+    public List<Long> openEventIds(BacSeries series, String level) {
+        Snapshot current = current();
+        lookups.increment();
+        BitSet candidates = (BitSet) current.open.clone();
+        if (series != null) {
+            BitSet accepting = (BitSet) current.unrestricted.clone();
+            BitSet listed = current.bySeries.get(series);
+            if (listed != null) {
+                accepting.or(listed);
+            }
+            candidates.and(accepting);
+        }
+        if (level != null) {
+            BitSet atLevel = current.byLevel.get(level.trim().toUpperCase(Locale.ROOT));
+            if (atLevel == null) {
+                return List.of();
+            }
+            candidates.and(atLevel);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (current.isInPeriod(i, now)) {
+                ids.add(current.eventIds[i]);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Vrai si la série figure dans la liste des séries éligibles de l'événement
+     */
+    public boolean listsSeries(Long eventId, BacSeries series) {
+        Snapshot current = current();
+        lookups.increment();
+        Integer position = current.positions.get(eventId);
+        if (position == null) {
+            fallbacks.increment();
+            return eventMetadataCache.get(eventId).getEligibleSeries().contains(series);
+        }
+        BitSet listed = series != null ? current.bySeries.get(series) : null;
+        return listed != null && listed.get(position);
+    }
+
+    /**
+     * Vrai si l'événement limite les inscriptions à certaines séries
+     */
+    public boolean restrictsSeries(Long eventId) {
+        Snapshot current = current();
+        Integer position = current.positions.get(eventId);
+        if (position == null) {
+            fallbacks.increment();
+            return !eventMetadataCache.get(eventId).getEligibleSeries().isEmpty();
+        }
+        return !current.unrestricted.get(position);
+    }
+
+    /**
+     * Demande une reconstruction à la prochaine lecture ; dans une transaction, encore une fois
+     * après le commit pour ne pas indexer l'état d'avant la modification
+     */
+    public void invalidate() {
+        dirty = true;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty = true;
+                }
+            });
+        }
+    }
+
+    @Scheduled(initialDelayString = "${registration.eligibility.refresh-ms:60000}",
+            fixedDelayString = "${registration.eligibility.refresh-ms:60000}")
+    public void refresh() {
+        dirty = true;
+        current();
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedEvents", current != null ? current.eventIds.length : 0);
+        stats.put("openEvents", current != null ? current.open.cardinality() : 0);
+        stats.put("builtAt", current != null ? current.builtAt : null);
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("lookups", lookups.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        stats.put("refreshMs", refreshMs);
+        return stats;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && !dirty) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null || dirty) {
+                // Remis à faux avant la lecture : une invalidation pendant la reconstruction en demande une autre
+                dirty = false;
+                snapshot = build();
+            }
+            return snapshot;
+        }
+    }
+
+    private Snapshot build() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = eventRepository.findEligibilityRows(now);
+        int size = rows.size();
+        Snapshot built = new Snapshot(size, now);
+        for (int i = 0; i < size; i++) {
+            Object[] row = rows.get(i);
+            Long eventId = (Long) row[0];
+            built.eventIds[i] = eventId;
+            built.positions.put(eventId, i);
+            built.starts[i] = (LocalDateTime) row[2];
+            built.ends[i] = (LocalDateTime) row[3];
+            if (row[1] != null) {
+                built.byLevel.computeIfAbsent(((String) row[1]).trim().toUpperCase(Locale.ROOT), l -> new BitSet(size)).set(i);
+            }
+            // registrationsOpen null vaut ouvert, comme dans les DTO des événements
+            if (Boolean.TRUE.equals(row[4]) && !Boolean.FALSE.equals(row[5])) {
+                built.open.set(i);
+            }
+        }
+        built.unrestricted.set(0, size);
+        for (Object[] row : eventRepository.findEligibleSeriesRows(now)) {
+            Integer position = built.positions.get((Long) row[0]);
+            if (position == null) {
+                continue; // événement créé entre les deux requêtes, indexé à la prochaine reconstruction
+            }
+            built.unrestricted.clear(position);
+            built.bySeries.computeIfAbsent((BacSeries) row[1], s -> new BitSet(size)).set(position);
+        }
+        rebuilds.increment();
+        log.debug("Eligibility index rebuilt: {} events, {} open", size, built.open.cardinality());
+        return built;
+    }
+
+    private static class Snapshot {
+        private final Long[] eventIds;
+        private final Map<Long, Integer> positions = new HashMap<>();
+        private final LocalDateTime[] starts;
+        private final LocalDateTime[] ends;
+        private final BitSet open;
+        private final BitSet unrestricted;
+        private final Map<BacSeries, BitSet> bySeries = new EnumMap<>(BacSeries.class);
+        private final Map<String, BitSet> byLevel = new HashMap<>();
+        private final LocalDateTime builtAt;
+
+        Snapshot(int size, LocalDateTime builtAt) {
+            this.eventIds = new Long[size];
+            this.starts = new LocalDateTime[size];
+            this.ends = new LocalDateTime[size];
+            this.open = new BitSet(size);
+            this.unrestricted = new BitSet(size);
+            this.builtAt = builtAt;
+        }
+
+        boolean isInPeriod(int position, LocalDateTime now) {
+            return (starts[position] == null || !now.isBefore(starts[position]))
+                    && (ends[position] == null || !now.isAfter(ends[position]));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.BacSeries;
+import com.example.Inscription.model.EventType;
+import com.example.Inscription.repository.EventRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métadonnées d'inscription des événements (période, pause, salle d'attente, séries éligibles)
+ * gardées en mémoire.
+ *
+ * À l'ouverture des inscriptions, chaque candidat relisait l'événement complet : ici deux
+ * petites requêtes par événement et par période registration.event-cache.ttl-ms, un seul
+ * chargement à la fois par événement. Les modifications d'un événement appellent evict ;
+ * un changement fait par un autre nœud est visible au plus tard après le TTL.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventMetadataCache {
+
+    private final EventRepository eventRepository;
+
+    @Value("${registration.event-cache.ttl-ms:5000}")
+    private long ttlMs;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    // Un verrou par événement : le chargement (requêtes en base) se fait hors de la map
+    private final Map<Long, Object> loadLocks = new ConcurrentHashMap<>();
+    // Une valeur chargée pendant un evict n'est pas gardée
+    private final AtomicLong evictions = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * Métadonnées de l'événement
+     * @throws IllegalArgumentException si l'événement n'existe pas
+     */
+    public EventMetadata get(Long eventId) {
+        if (eventId == null) {
+            throw new IllegalArgumentException("Event not found");
+        }
+        Entry entry = entries.get(eventId);
+        if (entry != null && !entry.isExpired()) {
+            hits.increment();
+            return entry.metadata;
+        }
+        // Un seul chargement par événement même si des milliers de candidats arrivent en même temps
+        synchronized (loadLocks.computeIfAbsent(eventId, id -> new Object())) {
+            Entry current = entries.get(eventId);
+            if (current != null && !current.isExpired()) {
+                hits.increment();
+                return current.metadata;
+            }
+            long evictionsBefore = evictions.get();
+            EventMetadata metadata = load(eventId);
+            if (evictions.get() == evictionsBefore) {
+                entries.put(eventId, new Entry(metadata, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+            }
+            return metadata;
+        }
+    }
+
+    /**
+     * Oublie l'événement ; dans une transaction, encore une fois après le commit pour ne pas
+     * garder une valeur relue entre-temps par une autre requête
+     */
+    public void evict(Long eventId) {
+        remove(eventId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(eventId);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("events", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("loads", loads.sum());
+        stats.put("ttlMs", ttlMs);
+        return stats;
+    }
+
+    private void remove(Long eventId) {
+        evictions.incrementAndGet();
+        entries.remove(eventId);
+    }
+
+    private EventMetadata load(Long eventId) {
+        List<Object[]> rows = eventRepository.findRegistrationMetadata(eventId);
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Event not found");
+        }
+        loads.increment();
+        Object[] row = rows.get(0);
+        return new EventMetadata((Long) row[0], (EventType) row[1], (LocalDateTime) row[2], (LocalDateTime) row[3],
+                Boolean.TRUE.equals(row[4]), Boolean.TRUE.equals(row[5]), Set.copyOf(eventRepository.findEligibleSeries(eventId)),
+                (Long) row[6]);
+    }
+
+    /**
+     * Ce qu'il faut pour valider une inscription sans charger l'événement
+     */
+    @Data
+    public static class EventMetadata {
+        private final Long id;
+        private final EventType eventType;
+        private final LocalDateTime registrationStart;
+        private final LocalDateTime registrationEnd;
+        private final boolean registrationsOpen;
+        private final boolean waitingRoom;
+        private final Set<BacSeries> eligibleSeries;
+        private final Long institutionId;
+    }
+
+    private static class Entry {
+        private final EventMetadata metadata;
+        private final long expiresAt;
+
+        Entry(EventMetadata metadata, long expiresAt) {
+            this.metadata = metadata;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
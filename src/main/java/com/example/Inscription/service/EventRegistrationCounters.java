@@ -0,0 +1,220 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.EventRegistration;
+import com.example.Inscription.model.RegistrationStatus;
+import com.example.Inscription.repository.EventRegistrationCounterRepository;
+import com.example.Inscription.repository.EventRegistrationRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs d'inscriptions par événement et par statut (table event_registration_counters).
+ *
+ * Les tableaux de bord et les listes d'événements chargeaient toutes les inscriptions d'un
+ * événement pour en afficher le nombre. Chaque écriture (création, changement de statut,
+ * suppression de l'événement) ajuste ici le compteur dans sa propre transaction : le compteur
+ * ne change que si l'inscription est enregistrée. Une réconciliation périodique compare les
+ * compteurs au décompte réel (écritures faites hors de ce service, SQL manuel) et les corrige.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventRegistrationCounters {
+
+    private final EventRegistrationCounterRepository counterRepository;
+    private final EventRegistrationRepository registrationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EventCatalogCache eventCatalogCache;
+
+    private final LongAdder reconciledEvents = new LongAdder();
+    private final LongAdder correctedCounters = new LongAdder();
+    private final LongAdder drift = new LongAdder();
+    private final AtomicLong lastReconcileMs = new AtomicLong(-1);
+
+    /**
+     * Nombre d'inscriptions d'un événement : total et détail par statut
+     */
+    @Data
+    public static class Counts {
+        private final Map<RegistrationStatus, Long> byStatus;
+
+        public long get(RegistrationStatus status) {
+            return byStatus.getOrDefault(status, 0L);
+        }
+
+        public long getTotal() {
+            return byStatus.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public Map<String, Object> toDto() {
+            Map<String, Object> dto = new LinkedHashMap<>();
+            dto.put("total", getTotal());
+            dto.put("pending", get(RegistrationStatus.PENDING));
+            dto.put("approved", get(RegistrationStatus.APPROVED));
+            Map<String, Long> statuses = new LinkedHashMap<>();
+            byStatus.forEach((status, count) -> statuses.put(status.name(), count));
+            dto.put("byStatus", statuses);
+            return dto;
+        }
+    }
+
+    /**
+     * Nouvelle inscription, dans la transaction qui l'insère
+     */
+    public void registered(Long eventId, RegistrationStatus status) {
+        counterRepository.add(eventId, status.name(), 1, LocalDateTime.now());
+        eventCatalogCache.registrationCountChanged();
+    }
+
+    /**
+     * Passage d'un statut à l'autre, dans la transaction qui enregistre l'inscription
+     */
+    public void statusChanged(Long eventId, RegistrationStatus from, RegistrationStatus to) {
+        if (from == to) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (from != null) {
+            counterRepository.add(eventId, from.name(), -1, now);
+        }
+        counterRepository.add(eventId, to.name(), 1, now);
+    }
+
+    /**
+     * Change le statut de l'inscription et ajuste les compteurs dans une seule transaction
+     * (pour les appelants qui ne sont pas transactionnels)
+     */
+    @Transactional
+    public EventRegistration changeStatus(EventRegistration registration, RegistrationStatus status) {
+        RegistrationStatus previous = registration.getStatus();
+        registration.setStatus(status);
+        registration.setUpdatedAt(LocalDateTime.now());
+        EventRegistration saved = registrationRepository.save(registration);
+        statusChanged(registration.getEvent().getId(), previous, status);
+        return saved;
+    }
+
+    /**
+     * Vérification groupée des paiements (relevé bancaire) : compteurs ajustés d'après les
+     * statuts lus juste avant la mise à jour
+     */
+    @Transactional
+    public int markPaymentVerified(List<Long> ids, LocalDateTime now) {
+        List<Object[]> transitions = registrationRepository.countTransitions(ids, RegistrationStatus.PAYMENT_VERIFIED);
+        int updated = registrationRepository.markPaymentVerified(ids, RegistrationStatus.PAYMENT_VERIFIED, now);
+        for (Object[] row : transitions) {
+            Long eventId = (Long) row[0];
+            long count = ((Number) row[2]).longValue();
+            counterRepository.add(eventId, ((RegistrationStatus) row[1]).name(), -count, now);
+            counterRepository.add(eventId, RegistrationStatus.PAYMENT_VERIFIED.name(), count, now);
+        }
+        return updated;
+    }
+
+    /**
+     * Suppression de l'événement, dans la transaction qui supprime ses inscriptions
+     */
+    public void eventDeleted(Long eventId) {
+        counterRepository.deleteByEventIdNative(eventId);
+        eventCatalogCache.registrationCountChanged();
+    }
+
+    public Counts counts(Long eventId) {
+        return counts(List.of(eventId)).get(eventId);
+    }
+
+    /**
+     * Compteurs de plusieurs événements en une requête ; un événement sans inscription a des compteurs vides
+     */
+    public Map<Long, Counts> counts(Collection<Long> eventIds) {
+        Map<Long, Map<RegistrationStatus, Long>> byEvent = new HashMap<>();
+        for (Long eventId : eventIds) {
+            byEvent.put(eventId, new EnumMap<>(RegistrationStatus.class));
+        }
+        if (!eventIds.isEmpty()) {
+            for (Object[] row : counterRepository.findCounts(eventIds)) {
+                long count = ((Number) row[2]).longValue();
+                if (count != 0) {
+                    byEvent.get((Long) row[0]).put((RegistrationStatus) row[1], count);
+                }
+            }
+        }
+        Map<Long, Counts> counts = new HashMap<>();
+        byEvent.forEach((eventId, statuses) -> counts.put(eventId, new Counts(statuses)));
+        return counts;
+    }
+
+    /**
+     * Recalcule les compteurs de chaque événement, un événement par transaction. Les lignes de
+     * compteurs sont verrouillées pendant le décompte : aucune écriture de l'événement ne
+     * s'intercale entre la lecture et la correction.
+     */
+    @Scheduled(initialDelayString = "${registration.counters.reconcile-initial-delay-ms:30000}",
+            fixedDelayString = "${registration.counters.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        Set<Long> eventIds = new LinkedHashSet<>(registrationRepository.findEventIds());
+        eventIds.addAll(counterRepository.findEventIds());
+        for (Long eventId : eventIds) {
+            try {
+                transactionTemplate.executeWithoutResult(tx -> reconcile(eventId));
+            } catch (RuntimeException e) {
+                log.warn("Registration counters of event {} not reconciled: {}", eventId, e.getMessage());
+            }
+        }
+        lastReconcileMs.set(System.currentTimeMillis() - start);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reconciledEvents", reconciledEvents.sum());
+        stats.put("correctedCounters", correctedCounters.sum());
+        stats.put("drift", drift.sum());
+        stats.put("lastReconcileMs", lastReconcileMs.get());
+        return stats;
+    }
+
+    private void reconcile(Long eventId) {
+        counterRepository.lockByEventId(eventId);
+        Map<RegistrationStatus, Long> actual = new EnumMap<>(RegistrationStatus.class);
+        for (Object[] row : registrationRepository.countByStatus(eventId)) {
+            actual.put((RegistrationStatus) row[0], ((Number) row[1]).longValue());
+        }
+        Map<RegistrationStatus, Long> stored = new EnumMap<>(RegistrationStatus.class);
+        for (Object[] row : counterRepository.findCounts(List.of(eventId))) {
+            stored.put((RegistrationStatus) row[1], ((Number) row[2]).longValue());
+        }
+        Set<RegistrationStatus> statuses = new LinkedHashSet<>(actual.keySet());
+        statuses.addAll(stored.keySet());
+        LocalDateTime now = LocalDateTime.now();
+        for (RegistrationStatus status : statuses) {
+            long expected = actual.getOrDefault(status, 0L);
+            long current = stored.getOrDefault(status, 0L);
+            if (expected != current) {
+                counterRepository.set(eventId, status.name(), expected, now);
+                correctedCounters.increment();
+                drift.add(Math.abs(expected - current));
+                log.info("Registration counter {} of event {} corrected: {} -> {}", status, eventId, current, expected);
+                eventCatalogCache.registrationCountChanged();
+            }
+        }
+        reconciledEvents.increment();
+    }
+}
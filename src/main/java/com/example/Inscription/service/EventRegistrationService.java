@@ -4,6 +4,7 @@ import com.example.Inscription.model.*;
 import com.example.Inscription.repository.*;
 import com.example.Inscription.service.ai.*;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
@@ -15,13 +16,19 @@ import java.util.*;
 @Service
 @RequiredArgsConstructor
 @Transactional
+@Slf4j
 public class EventRegistrationService {
     
     private final EventRegistrationRepository registrationRepository;
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
-    private final RegistrationNumberRepository registrationNumberRepository;
+    private final RegistrationNumberAllocator registrationNumberAllocator;
     private final MailService mailService;
+    private final ReceiptIndexService receiptIndexService;
+    private final EventMetadataCache eventMetadataCache;
+    private final EventEligibilityIndex eventEligibilityIndex;
+    private final CandidateDeduplication candidateDeduplication;
+    private final EventRegistrationCounters registrationCounters;
     
     /**
      * Register student for an event
@@ -29,9 +36,16 @@ public class EventRegistrationService {
     public EventRegistration registerForEvent(Long userId, Long eventId, String formData) throws Exception {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
-        
-        Event event = eventRepository.findById(eventId)
-                .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+        return registerForEvent(user, eventId, formData, null);
+    }
+    
+    /**
+     * Register student for an event, validated against cached event metadata.
+     * The insert is skipped when the student is already registered: a retry carrying the
+     * same idempotency key returns the existing registration, anything else is a duplicate.
+     */
+    public EventRegistration registerForEvent(User user, Long eventId, String formData, String idempotencyKey) {
+        EventMetadataCache.EventMetadata event = eventMetadataCache.get(eventId);
         
         // Check if registration period is open
         LocalDateTime now = LocalDateTime.now();
@@ -40,29 +54,46 @@ public class EventRegistrationService {
         }
         
         // Check if registrations are paused
-        if (!event.getRegistrationsOpen()) {
+        if (!event.isRegistrationsOpen()) {
             throw new IllegalStateException("Registrations are temporarily paused for this event");
         }
         
         // Check if user's BAC series is eligible
-        if (!event.getEligibleSeries().contains(user.getBacSeries())) {
+        if (!eventEligibilityIndex.listsSeries(eventId, user.getBacSeries())) {
             throw new IllegalArgumentException("Your BAC series is not eligible for this event");
         }
         
-        // Check if already registered
-        Optional<EventRegistration> existing = registrationRepository.findByUserIdAndEventId(userId, eventId);
-        if (existing.isPresent()) {
-            throw new IllegalStateException("Already registered for this event");
+        // Same candidate already registered through another account: refused on a matching CIN,
+        // sent to review on a name / birth date / phone resemblance
+        RegistrationStatus status = RegistrationStatus.PENDING;
+        CandidateDeduplication.Suspects suspects = candidateDeduplication.suspects(user);
+        if (!suspects.isEmpty()) {
+            List<Long> registered = registrationRepository.findRegisteredUserIds(eventId, suspects.all());
+            if (suspects.blocks(registered)) {
+                throw new IllegalStateException("A registration for this candidate already exists under another account");
+            }
+            if (suspects.needsReview(registered)) {
+                status = RegistrationStatus.UNDER_REVIEW;
+                log.info("Registration of user {} to event {} flagged for review: possible duplicate of {}",
+                        user.getId(), eventId, registered);
+            }
         }
         
-        EventRegistration registration = new EventRegistration();
-        registration.setUser(user);
-        registration.setEvent(event);
-        registration.setFormData(formData);
-        registration.setStatus(RegistrationStatus.PENDING);
-        registration.setIsFormCompleted(true);
+        List<Long> created = registrationRepository.insertIfAbsent(user.getId(), eventId, status.name(),
+                formData, idempotencyKey, now);
+        if (!created.isEmpty()) {
+            registrationCounters.registered(eventId, status);
+            return registrationRepository.findById(created.get(0))
+                    .orElseThrow(() -> new IllegalStateException("Registration not found after insert"));
+        }
         
-        return registrationRepository.save(registration);
+        // Already registered: same request retried, or a real duplicate
+        EventRegistration existing = registrationRepository.findByUserIdAndEventId(user.getId(), eventId)
+                .orElseThrow(() -> new IllegalStateException("Registration conflict, please retry"));
+        if (idempotencyKey != null && idempotencyKey.equals(existing.getIdempotencyKey())) {
+            return existing;
+        }
+        throw new IllegalStateException("Already registered for this event");
     }
     
     /**
@@ -78,9 +109,15 @@ public class EventRegistrationService {
         registration.setPaymentReceiptFilename(filename);
         registration.setPaymentReference(paymentRef);
         registration.setIsPaymentVerified(true);
+        RegistrationStatus previous = registration.getStatus();
         registration.setStatus(RegistrationStatus.PAYMENT_VERIFIED);
         
         registrationRepository.save(registration);
+        registrationCounters.statusChanged(registration.getEvent().getId(), previous, RegistrationStatus.PAYMENT_VERIFIED);
+        
+        // Signale un reçu déjà utilisé par un autre candidat (rapport de conflits par événement)
+        receiptIndexService.indexReceipt(ReceiptIndexService.SOURCE_EVENT_REGISTRATION, registration.getId(),
+                registration.getEvent().getId(), registration.getUser().getId(), paymentRef, receiptFile, filename);
     }
     
     /**
@@ -94,21 +131,16 @@ public class EventRegistrationService {
             throw new IllegalStateException("Registration cannot be approved until all requirements are met");
         }
         
-        // Assign registration number if event has custom formats
-        if (!registration.getEvent().getRegistrationNumbers().isEmpty()) {
-            List<RegistrationNumber> available = registrationNumberRepository
-                    .findByEventIdAndIsUsedFalse(registration.getEvent().getId());
-            if (!available.isEmpty()) {
-                RegistrationNumber regNum = available.get(0);
-                regNum.setIsUsed(true);
-                regNum.setEventRegistration(registration);
-                registrationNumberRepository.save(regNum);
-                registration.setRegistrationNumber(regNum.getRegistrationNumber());
-            }
+        // Assign registration number (event format or pre-created numbers), once per registration
+        if (registration.getRegistrationNumber() == null) {
+            registrationNumberAllocator.allocate(registration.getEvent().getId(), registration.getId())
+                    .ifPresent(registration::setRegistrationNumber);
         }
         
+        RegistrationStatus previous = registration.getStatus();
         registration.setStatus(RegistrationStatus.APPROVED);
         registrationRepository.save(registration);
+        registrationCounters.statusChanged(registration.getEvent().getId(), previous, RegistrationStatus.APPROVED);
         
         // Send summons if contest event
         if (registration.getEvent().getEventType() == EventType.CONTEST) {
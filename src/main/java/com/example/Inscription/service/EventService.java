@@ -23,6 +23,9 @@ public class EventService {
     private final DeliberationService deliberationService;
     private final ExamResultRepository examResultRepository;
     private final MailService mailService;
+    private final EventMetadataCache eventMetadataCache;
+    private final EventEligibilityIndex eventEligibilityIndex;
+    private final EventCatalogCache eventCatalogCache;
     
     /**
      * Create a new event from decree
@@ -53,7 +56,10 @@ public class EventService {
         event.setEligibleSeries(decreeData.getEligibleSeries());
         event.setIsActive(true);
         
-        return eventRepository.save(event);
+        Event saved = eventRepository.save(event);
+        eventEligibilityIndex.invalidate();
+        eventCatalogCache.invalidate();
+        return saved;
     }
     
     /**
@@ -91,6 +97,22 @@ public class EventService {
         event.setRegistrationsOpen(!event.getRegistrationsOpen());
         event.setUpdatedAt(now);
         eventRepository.save(event);
+        eventMetadataCache.evict(eventId);
+        eventEligibilityIndex.invalidate();
+        eventCatalogCache.invalidate();
+    }
+    
+    /**
+     * Enable or disable the virtual waiting room for registrations
+     */
+    public void setWaitingRoom(Long eventId, boolean enabled) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+        
+        event.setWaitingRoomEnabled(enabled);
+        event.setUpdatedAt(LocalDateTime.now());
+        eventRepository.save(event);
+        eventMetadataCache.evict(eventId);
     }
     
     /**
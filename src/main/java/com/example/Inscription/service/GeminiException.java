@@ -0,0 +1,51 @@
+package com.example.Inscription.service;
+
+import com.google.genai.errors.ApiException;
+
+import java.io.IOException;
+
+/**
+ * Erreur d'appel à Gemini (quota, indisponibilité, file saturée, etc.)
+ */
+public class GeminiException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean retriable;
+    private final int statusCode;
+
+    public GeminiException(String message, Throwable cause, boolean retriable, int statusCode) {
+        super(message, cause);
+        this.retriable = retriable;
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Convertit une exception du client Gemini en GeminiException.
+     * 429 (quota), 5xx et erreurs réseau sont considérés comme réessayables.
+     */
+    public static GeminiException from(Throwable error) {
+        if (error instanceof GeminiException geminiException) {
+            return geminiException;
+        }
+        if (error instanceof ApiException apiException) {
+            int code = apiException.code();
+            boolean retriable = code == 429 || code == 408 || code >= 500;
+            return new GeminiException("Gemini API error " + code + ": " + apiException.getMessage(), error, retriable, code);
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return new GeminiException("Gemini network error: " + cause.getMessage(), error, true, 503);
+            }
+        }
+        return new GeminiException("Gemini call failed: " + error.getMessage(), error, false, 500);
+    }
+
+    public boolean isRetriable() {
+        return retriable;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
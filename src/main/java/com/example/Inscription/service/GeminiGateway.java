@@ -0,0 +1,274 @@
+package com.example.Inscription.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Passerelle unique vers Gemini.
+ *
+ * - limite le débit (requêtes/minute) et le nombre d'appels simultanés
+ * - réessaie les erreurs temporaires (429, 5xx, réseau) avec un backoff exponentiel + jitter
+ * - répartit équitablement les appels entre files (une file par établissement / appelant)
+ *   en servant les files à tour de rôle
+ * - expose des métriques : profondeur de file, appels en cours, latence
+ */
+@Component
+@Slf4j
+public class GeminiGateway {
+
+    /** File utilisée par les endpoints publics sans établissement identifié */
+    public static final String DEFAULT_TENANT = "public";
+
+    /** File utilisée par les traitements de masse (vérification des bordereaux, etc.) */
+    public static final String BATCH_TENANT = "batch";
+
+    /**
+     * File d'un établissement ; DEFAULT_TENANT si l'établissement n'est pas connu
+     */
+    public static String institutionTenant(Long institutionId) {
+        return institutionId == null ? DEFAULT_TENANT : "institution:" + institutionId;
+    }
+
+    @Value("${gemini.gateway.requests-per-minute:60}")
+    private int requestsPerMinute;
+
+    @Value("${gemini.gateway.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${gemini.gateway.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${gemini.gateway.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${gemini.gateway.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${gemini.gateway.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    @Value("${gemini.gateway.timeout-seconds:180}")
+    private long timeoutSeconds;
+
+    private final Object monitor = new Object();
+    private final Map<String, Deque<Job<?>>> queues = new HashMap<>();
+    private final Deque<String> rotation = new ArrayDeque<>();
+    private int queued;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyStats queueWait = new LatencyStats();
+    private final LatencyStats callLatency = new LatencyStats();
+
+    private TokenBucket rateLimiter;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        rateLimiter = new TokenBucket(requestsPerMinute, requestsPerMinute / 60.0);
+        workers = Executors.newFixedThreadPool(maxConcurrency, new CustomizableThreadFactory("gemini-worker-"));
+        running = true;
+        for (int i = 0; i < maxConcurrency; i++) {
+            workers.submit(this::workLoop);
+        }
+        log.info("Gemini gateway started: {} req/min, concurrency {}, queue capacity {}",
+                requestsPerMinute, maxConcurrency, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        workers.shutdownNow();
+    }
+
+    /**
+     * Exécute un appel Gemini via la passerelle et attend son résultat
+     * @param tenant Clé de la file (id d'établissement, DEFAULT_TENANT, BATCH_TENANT...)
+     * @param call L'appel au client Gemini
+     * @throws GeminiException si l'appel échoue après les tentatives, ou si la file est saturée
+     */
+    public <T> T execute(String tenant, Callable<T> call) {
+        return await(submit(tenant, call));
+    }
+
+    /**
+     * Soumet un appel sans attendre son résultat
+     */
+    public <T> CompletableFuture<T> submit(String tenant, Callable<T> call) {
+        String key = tenant == null || tenant.isBlank() ? DEFAULT_TENANT : tenant;
+        Job<T> job = new Job<>(call);
+        synchronized (monitor) {
+            if (queued >= queueCapacity) {
+                rejected.increment();
+                throw new GeminiException("Gemini queue is full (" + queueCapacity + " pending calls)", null, true, 429);
+            }
+            Deque<Job<?>> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+            if (queue.isEmpty()) {
+                rotation.addLast(key);
+            }
+            queue.addLast(job);
+            queued++;
+            submitted.increment();
+            monitor.notify();
+        }
+        return job.future;
+    }
+
+    /**
+     * Attend le résultat d'un appel soumis
+     */
+    public <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw GeminiException.from(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new GeminiException("Gemini call timed out after " + timeoutSeconds + "s", e, true, 504);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeminiException("Interrupted while waiting for Gemini", e, true, 503);
+        }
+    }
+
+    /**
+     * Délai conseillé (Retry-After) après un refus : temps pour que le débit autorisé
+     * écoule les appels déjà en file, plus celui du client
+     */
+    public long retryAfterSeconds() {
+        int backlog;
+        synchronized (monitor) {
+            backlog = queued;
+        }
+        long nanos = rateLimiter.nanosUntil(backlog + 1);
+        return Math.max(1, (long) Math.ceil(nanos / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Métriques de la passerelle
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Integer> depthByTenant = new TreeMap<>();
+        synchronized (monitor) {
+            stats.put("queueDepth", queued);
+            queues.forEach((tenant, queue) -> depthByTenant.put(tenant, queue.size()));
+        }
+        stats.put("queueDepthByTenant", depthByTenant);
+        stats.put("inFlight", inFlight.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("retries", retries.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("availableRateTokens", Math.floor(rateLimiter.availableTokens()));
+        stats.put("queueWait", queueWait.snapshot());
+        stats.put("callLatency", callLatency.snapshot());
+        stats.put("requestsPerMinute", requestsPerMinute);
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("queueCapacity", queueCapacity);
+        return stats;
+    }
+
+    private Job<?> take() throws InterruptedException {
+        synchronized (monitor) {
+            while (rotation.isEmpty()) {
+                monitor.wait();
+            }
+            // Tour de rôle : la file servie repasse en fin de rotation si elle n'est pas vide
+            String key = rotation.pollFirst();
+            Deque<Job<?>> queue = queues.get(key);
+            Job<?> job = queue.pollFirst();
+            if (queue.isEmpty()) {
+                queues.remove(key);
+            } else {
+                rotation.addLast(key);
+            }
+            queued--;
+            return job;
+        }
+    }
+
+    private void workLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            Job<?> job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job.future.isDone()) {
+                continue; // annulé par l'appelant (timeout)
+            }
+            queueWait.record(System.nanoTime() - job.enqueuedAt);
+            run(job);
+        }
+    }
+
+    private <T> void run(Job<T> job) {
+        inFlight.incrementAndGet();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                rateLimiter.acquire();
+                long start = System.nanoTime();
+                try {
+                    T result = job.call.call();
+                    callLatency.record(System.nanoTime() - start);
+                    succeeded.increment();
+                    job.future.complete(result);
+                    return;
+                } catch (Exception e) {
+                    callLatency.record(System.nanoTime() - start);
+                    GeminiException error = GeminiException.from(e);
+                    if (!error.isRetriable() || attempt >= maxAttempts || job.future.isDone()) {
+                        failed.increment();
+                        job.future.completeExceptionally(error);
+                        return;
+                    }
+                    long delay = backoffMillis(attempt);
+                    retries.increment();
+                    log.warn("Gemini call failed (attempt {}/{}), retrying in {} ms: {}",
+                            attempt, maxAttempts, delay, error.getMessage());
+                    Thread.sleep(delay);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.future.completeExceptionally(new GeminiException("Gemini gateway is shutting down", e, true, 503));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Backoff exponentiel plafonné avec "equal jitter" : entre cap/2 et cap
+     */
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    private static class Job<T> {
+        private final Callable<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedAt = System.nanoTime();
+
+        private Job(Callable<T> call) {
+            this.call = call;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.Inscription.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prépare un document avant envoi à Gemini Vision : seules les premières pages non vides
+ * sont rendues, en niveaux de gris, réduites à un grand côté maximal par page, empilées
+ * puis encodées en JPEG.
+ *
+ * Les octets économisés et la latence des appels Gemini (avec et sans préparation) sont
+ * mesurés par type de document ; un pourcentage d'appels peut être envoyé tel quel
+ * (gemini.preprocess.raw-sample-percent) pour garder une référence de latence.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeminiImagePreprocessor {
+
+    private static final String OUTPUT_MIME_TYPE = "image/jpeg";
+
+    private final PdfLoader pdfLoader;
+
+    @Value("${gemini.preprocess.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gemini.preprocess.long-edge:1600}")
+    private int longEdge;
+
+    @Value("${gemini.preprocess.max-pages:2}")
+    private int maxPages;
+
+    @Value("${gemini.preprocess.render-dpi:150}")
+    private int renderDpi;
+
+    @Value("${gemini.preprocess.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${gemini.preprocess.raw-sample-percent:0}")
+    private int rawSamplePercent;
+
+    private final Map<String, TypeStats> statsByType = new ConcurrentHashMap<>();
+
+    /**
+     * Prépare le fichier. En cas d'échec ou si le résultat n'est pas plus petit, le fichier d'origine est renvoyé.
+     * @param documentType Type de document attendu (clé des statistiques), null si inconnu
+     */
+    public Prepared prepare(byte[] fileBytes, String mimeType, String documentType) {
+        TypeStats stats = stats(documentType);
+        if (!enabled || fileBytes == null || mimeType == null
+                || (rawSamplePercent > 0 && ThreadLocalRandom.current().nextInt(100) < rawSamplePercent)) {
+            return new Prepared(fileBytes, mimeType, false, 0, 0, stats);
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<BufferedImage> pages = new ArrayList<>();
+            if (mimeType.equals("application/pdf")) {
+                pages.addAll(renderRelevantPages(fileBytes));
+            } else if (mimeType.startsWith("image/")) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(fileBytes));
+                if (image != null) {
+                    pages.add(image);
+                }
+            }
+            if (pages.isEmpty()) {
+                return new Prepared(fileBytes, mimeType, false, 0, 0, stats); // format non lisible (webp...)
+            }
+
+            // Chaque page est réduite séparément pour rester lisible une fois empilée
+            List<BufferedImage> scaled = new ArrayList<>();
+            for (BufferedImage page : pages) {
+                scaled.add(scale(page));
+            }
+            byte[] encoded = encodeJpeg(stack(scaled));
+            long elapsed = System.nanoTime() - start;
+            stats.preprocessLatency.record(elapsed);
+            if (encoded.length >= fileBytes.length) {
+                return new Prepared(fileBytes, mimeType, false, pages.size(), 0, stats);
+            }
+            stats.originalBytes.add(fileBytes.length);
+            stats.sentBytes.add(encoded.length);
+            return new Prepared(encoded, OUTPUT_MIME_TYPE, true, pages.size(), fileBytes.length - encoded.length, stats);
+        } catch (Exception | OutOfMemoryError e) {
+            log.warn("Document preprocessing failed, sending original file: {}", e.getMessage());
+            stats.failures.increment();
+            return new Prepared(fileBytes, mimeType, false, 0, 0, stats);
+        }
+    }
+
+    /**
+     * Réglages qui déterminent le fichier envoyé à Gemini, pour la clé du cache des réponses
+     */
+    public String settingsKey() {
+        if (!enabled) {
+            return "raw";
+        }
+        return "long-edge=" + longEdge + ";max-pages=" + maxPages + ";dpi=" + renderDpi + ";jpeg-quality=" + jpegQuality;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        statsByType.forEach((type, typeStats) -> stats.put(type, typeStats.snapshot()));
+        return stats;
+    }
+
+    private TypeStats stats(String documentType) {
+        return statsByType.computeIfAbsent(documentType == null ? "unknown" : documentType, k -> new TypeStats());
+    }
+
+    /**
+     * Rend les premières pages non blanches (les pages de garde ou versos vides sont ignorés)
+     */
+    private List<BufferedImage> renderRelevantPages(byte[] pdfBytes) throws Exception {
+        return pdfLoader.withDocument(pdfBytes, document -> {
+            List<BufferedImage> pages = new ArrayList<>();
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int i = 0; i < document.getNumberOfPages() && pages.size() < maxPages; i++) {
+                BufferedImage page = renderer.renderImageWithDPI(i, renderDpi, ImageType.GRAY);
+                if (!isBlank(page)) {
+                    pages.add(page);
+                }
+            }
+            return pages;
+        });
+    }
+
+    /**
+     * Une page est blanche si moins de 0,5 % des pixels échantillonnés sont sombres
+     */
+    private static boolean isBlank(BufferedImage image) {
+        int step = Math.max(1, Math.min(image.getWidth(), image.getHeight()) / 200);
+        long sampled = 0;
+        long dark = 0;
+        for (int y = 0; y < image.getHeight(); y += step) {
+            for (int x = 0; x < image.getWidth(); x += step) {
+                sampled++;
+                if ((image.getRGB(x, y) & 0xff) < 160) {
+                    dark++;
+                }
+            }
+        }
+        return dark * 200 < sampled;
+    }
+
+    /**
+     * Empile les pages verticalement en une seule image en niveaux de gris
+     */
+    private static BufferedImage stack(List<BufferedImage> pages) {
+        int width = 0;
+        int height = 0;
+        for (BufferedImage page : pages) {
+            width = Math.max(width, page.getWidth());
+            height += page.getHeight();
+        }
+        BufferedImage stacked = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = stacked.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            int y = 0;
+            for (BufferedImage page : pages) {
+                g.drawImage(page, 0, y, null);
+                y += page.getHeight();
+            }
+        } finally {
+            g.dispose();
+        }
+        return stacked;
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        double ratio = longest > longEdge ? (double) longEdge / longest : 1.0;
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Fichier à envoyer à Gemini
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Prepared {
+        private byte[] bytes;
+        private String mimeType;
+        private boolean preprocessed;
+        private int pages;
+        private long bytesSaved;
+        private TypeStats stats;
+
+        /**
+         * Enregistre la durée de l'appel Gemini fait avec ce fichier
+         */
+        public void recordGeminiLatency(long nanos) {
+            (preprocessed ? stats.preprocessedCallLatency : stats.rawCallLatency).record(nanos);
+        }
+    }
+
+    /**
+     * Compteurs d'un type de document
+     */
+    public static class TypeStats {
+        private final LongAdder originalBytes = new LongAdder();
+        private final LongAdder sentBytes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LatencyStats preprocessLatency = new LatencyStats();
+        private final LatencyStats preprocessedCallLatency = new LatencyStats();
+        private final LatencyStats rawCallLatency = new LatencyStats();
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            long original = originalBytes.sum();
+            long sent = sentBytes.sum();
+            snapshot.put("originalBytes", original);
+            snapshot.put("sentBytes", sent);
+            snapshot.put("bytesSaved", original - sent);
+            snapshot.put("bytesSavedRatio", original == 0 ? 0.0 : Math.round((original - sent) * 10000.0 / original) / 10000.0);
+            snapshot.put("failures", failures.sum());
+            snapshot.put("preprocessing", preprocessLatency.snapshot());
+            snapshot.put("geminiCallPreprocessed", preprocessedCallLatency.snapshot());
+            snapshot.put("geminiCallRaw", rawCallLatency.snapshot());
+            if (preprocessedCallLatency.getCount() > 0 && rawCallLatency.getCount() > 0) {
+                double saved = rawCallLatency.getAverageMillis()
+                        - preprocessedCallLatency.getAverageMillis() - preprocessLatency.getAverageMillis();
+                snapshot.put("latencySavedMs", Math.round(saved * 100) / 100.0);
+            }
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.GeminiCacheEntry;
+import com.example.Inscription.repository.GeminiCacheEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache persistant des réponses Gemini, adressé par contenu.
+ *
+ * La clé est le SHA-256 de (modèle, version du cache, prompt, type MIME, octets du fichier,
+ * réglages de préparation de l'image) :
+ * un même relevé ou bordereau analysé plusieurs fois (classify, verify, analyze-and-save,
+ * vérification des bordereaux) n'est envoyé qu'une fois à Gemini tant que l'entrée n'a pas expiré.
+ * Changer le texte d'un prompt change la clé ; incrémenter gemini.cache.version invalide tout le cache.
+ * GeminiService n'enregistre une réponse qu'une fois lue avec succès par l'appelant.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeminiResponseCache {
+
+    private final GeminiCacheEntryRepository cacheRepository;
+
+    @Value("${gemini.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gemini.cache.version:1}")
+    private String version;
+
+    @Value("${gemini.cache.ttl-hours:720}")
+    private long ttlHours;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Calcule la clé de cache
+     * @param fileBytes Contenu du fichier analysé (null pour un prompt texte seul)
+     * @param preparation Réglages de préparation appliqués au fichier avant envoi (null pour un prompt texte seul)
+     */
+    public String key(String model, String prompt, String mimeType, byte[] fileBytes, String preparation) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, model);
+            update(digest, version);
+            update(digest, prompt);
+            update(digest, mimeType);
+            update(digest, preparation);
+            if (fileBytes != null) {
+                digest.update(fileBytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Cherche une réponse non expirée. Une erreur du cache n'empêche jamais l'analyse.
+     */
+    public Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            Optional<GeminiCacheEntry> entry = cacheRepository.findByCacheKeyAndExpiresAtAfter(key, LocalDateTime.now());
+            if (entry.isPresent()) {
+                hits.increment();
+                cacheRepository.incrementHitCount(key);
+                return Optional.of(entry.get().getResponse());
+            }
+        } catch (Exception e) {
+            errors.increment();
+            log.warn("Gemini cache lookup failed: {}", e.getMessage());
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(String key, String model, String response) {
+        if (!enabled || response == null) {
+            return;
+        }
+        try {
+            GeminiCacheEntry entry = new GeminiCacheEntry();
+            entry.setCacheKey(key);
+            entry.setModel(model);
+            entry.setResponse(response);
+            entry.setHitCount(0L);
+            entry.setCreatedAt(LocalDateTime.now());
+            entry.setExpiresAt(LocalDateTime.now().plusHours(ttlHours));
+            cacheRepository.save(entry);
+            stores.increment();
+        } catch (Exception e) {
+            errors.increment();
+            log.warn("Gemini cache store failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Retire une entrée que l'appelant n'a pas pu lire
+     */
+    public void evict(String key) {
+        try {
+            cacheRepository.deleteById(key);
+            evictions.increment();
+        } catch (Exception e) {
+            errors.increment();
+            log.warn("Gemini cache eviction failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Purge des entrées expirées (toutes les heures)
+     */
+    @Scheduled(fixedDelayString = "${gemini.cache.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int deleted = cacheRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired Gemini cache entries", deleted);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("version", version);
+        stats.put("ttlHours", ttlHours);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", lookups == 0 ? 0.0 : Math.round(hitCount * 10000.0 / lookups) / 10000.0);
+        stats.put("stores", stores.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("errors", errors.sum());
+        stats.put("entries", cacheRepository.count());
+        return stats;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0); // séparateur entre champs
+    }
+}
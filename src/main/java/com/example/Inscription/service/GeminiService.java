@@ -5,34 +5,55 @@ import com.google.genai.types.Blob;
 import com.google.genai.types.Content;
 import com.google.genai.types.GenerateContentResponse;
 import com.google.genai.types.Part;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
 
 @Service
+@Slf4j
 public class GeminiService {
+    public static final String TEXT_MODEL = "gemini-2.5-flash";
+    public static final String VISION_MODEL = "gemini-1.5-flash";
+
     private final Client client;
-    
-    public GeminiService(@Nullable Client client){
+    private final GeminiGateway gateway;
+    private final GeminiResponseCache responseCache;
+    private final GeminiImagePreprocessor imagePreprocessor;
+
+    public GeminiService(@Nullable Client client, GeminiGateway gateway, GeminiResponseCache responseCache,
+                         GeminiImagePreprocessor imagePreprocessor){
         this.client = client;
+        this.gateway = gateway;
+        this.responseCache = responseCache;
+        this.imagePreprocessor = imagePreprocessor;
     }
 
     /**
      * Envoie une requête texte à Gemini
      */
     public String askGemini(String prompt){
+        return askGemini(GeminiGateway.DEFAULT_TENANT, prompt);
+    }
+
+    /**
+     * Envoie une requête texte à Gemini dans la file d'un appelant donné
+     * @param tenant Clé de file de la passerelle (établissement, traitement de masse...)
+     * @throws GeminiException si Gemini reste indisponible après les tentatives
+     */
+    public String askGemini(String tenant, String prompt){
         if (client == null) {
             return "Gemini API not configured. Please set GOOGLE_API_KEY environment variable.";
         }
 
-        GenerateContentResponse response =
-                client.models.generateContent(
-                        "gemini-2.5-flash",
+        GenerateContentResponse response = gateway.execute(tenant,
+                () -> client.models.generateContent(
+                        TEXT_MODEL,
                         prompt,
-                        null);
+                        null));
         System.out.println("********DEBUT*********");
         System.out.println(response.text());
         System.out.println("********FIN*********");
@@ -40,6 +61,23 @@ public class GeminiService {
         return response.text();
     }
 
+    /**
+     * Envoie une requête texte à Gemini et lit la réponse ; seule une réponse acceptée par parser est mise en cache
+     * @return vide si Gemini n'est pas configuré ou si parser rejette la réponse
+     * @throws GeminiException si Gemini reste indisponible après les tentatives
+     */
+    public <T> Optional<T> askGemini(String tenant, String prompt, ResponseParser<T> parser) {
+        if (client == null) {
+            return Optional.empty();
+        }
+        String cacheKey = responseCache.key(TEXT_MODEL, prompt, null, null, null);
+        Optional<T> cached = fromCache(cacheKey, parser);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        return parseAndStore(cacheKey, TEXT_MODEL, askGemini(tenant, prompt), parser);
+    }
+
     /**
      * Analyse une image (PDF converti ou image directe) avec Gemini Vision
      * @param imageBytes Les bytes de l'image
@@ -48,53 +86,89 @@ public class GeminiService {
      * @return La réponse de Gemini
      */
     public String analyzeImage(byte[] imageBytes, String mimeType, String prompt) {
+        return analyzeImage(GeminiGateway.DEFAULT_TENANT, imageBytes, mimeType, prompt);
+    }
+
+    /**
+     * Analyse une image avec Gemini Vision dans la file d'un appelant donné
+     * @throws GeminiException si Gemini reste indisponible après les tentatives (quota, 5xx...)
+     */
+    public String analyzeImage(String tenant, byte[] imageBytes, String mimeType, String prompt) {
+        return analyzeImage(tenant, imageBytes, mimeType, prompt, null);
+    }
+
+    /**
+     * Analyse une image avec Gemini Vision après réduction (pages utiles, niveaux de gris, taille limitée)
+     * @param documentType Type de document attendu, pour les statistiques de préparation (null si inconnu)
+     */
+    public String analyzeImage(String tenant, byte[] imageBytes, String mimeType, String prompt, String documentType) {
         if (client == null) {
             return "{\"error\": \"Gemini API not configured. Please set GOOGLE_API_KEY environment variable.\"}";
         }
 
-        try {
-            // Créer le blob pour l'image
-            Blob imageBlob = Blob.builder()
-                .mimeType(mimeType)
-                .data(imageBytes)
-                .build();
-
-            // Créer les parts: image + texte
-            Part imagePart = Part.builder()
-                .inlineData(imageBlob)
-                .build();
-
-            Part textPart = Part.builder()
-                .text(prompt)
-                .build();
-
-            // Créer le contenu avec les deux parts
-            List<Part> parts = new ArrayList<>();
-            parts.add(imagePart);
-            parts.add(textPart);
-
-            Content content = Content.builder()
-                .parts(parts)
-                .build();
-
-            // Appeler Gemini avec le contenu multimodal
-            GenerateContentResponse response = client.models.generateContent(
-                "gemini-1.5-flash",
+        GeminiImagePreprocessor.Prepared prepared = imagePreprocessor.prepare(imageBytes, mimeType, documentType);
+
+        // Créer le blob pour l'image
+        Blob imageBlob = Blob.builder()
+            .mimeType(prepared.getMimeType())
+            .data(prepared.getBytes())
+            .build();
+
+        // Créer les parts: image + texte
+        Part imagePart = Part.builder()
+            .inlineData(imageBlob)
+            .build();
+
+        Part textPart = Part.builder()
+            .text(prompt)
+            .build();
+
+        // Créer le contenu avec les deux parts
+        List<Part> parts = new ArrayList<>();
+        parts.add(imagePart);
+        parts.add(textPart);
+
+        Content content = Content.builder()
+            .parts(parts)
+            .build();
+
+        // Appeler Gemini avec le contenu multimodal (débit, concurrence et retries gérés par la passerelle)
+        long start = System.nanoTime();
+        GenerateContentResponse response = gateway.execute(tenant,
+            () -> client.models.generateContent(
+                VISION_MODEL,
                 content,
                 null
-            );
+            ));
+        prepared.recordGeminiLatency(System.nanoTime() - start);
 
-            System.out.println("********GEMINI VISION DEBUT*********");
-            System.out.println(response.text());
-            System.out.println("********GEMINI VISION FIN*********");
+        System.out.println("********GEMINI VISION DEBUT*********");
+        System.out.println(response.text());
+        System.out.println("********GEMINI VISION FIN*********");
 
-            return response.text();
-            
-        } catch (Exception e) {
-            System.out.println("Erreur Gemini Vision: " + e.getMessage());
-            e.printStackTrace();
-            return "{\"error\": \"" + e.getMessage().replace("\"", "'") + "\"}";
+        return response.text();
+    }
+
+    /**
+     * Analyse une image avec Gemini Vision et lit la réponse ; seule une réponse acceptée par parser est mise en cache
+     * @param documentType Type de document attendu, pour les statistiques de préparation (null si inconnu)
+     * @return vide si Gemini n'est pas configuré ou si parser rejette la réponse
+     * @throws GeminiException si Gemini reste indisponible après les tentatives (quota, 5xx...)
+     */
+    public <T> Optional<T> analyzeImage(String tenant, byte[] imageBytes, String mimeType, String prompt,
+                                        String documentType, ResponseParser<T> parser) {
+        if (client == null) {
+            return Optional.empty();
+        }
+        // Même fichier + même prompt + même préparation => réponse déjà connue, pas d'appel Gemini ni de préparation.
+        // La clé porte sur le fichier d'origine et sur les réglages de préparation, qui la rendent déterministe.
+        String cacheKey = responseCache.key(VISION_MODEL, prompt, mimeType, imageBytes, imagePreprocessor.settingsKey());
+        Optional<T> cached = fromCache(cacheKey, parser);
+        if (cached.isPresent()) {
+            return cached;
         }
+        return parseAndStore(cacheKey, VISION_MODEL,
+                analyzeImage(tenant, imageBytes, mimeType, prompt, documentType), parser);
     }
 
     /**
@@ -103,4 +177,45 @@ public class GeminiService {
     public boolean isConfigured() {
         return client != null;
     }
+
+    private <T> Optional<T> fromCache(String cacheKey, ResponseParser<T> parser) {
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(parser.parse(cached.get()));
+        } catch (Exception e) {
+            // Entrée illisible (enregistrée avant la validation des réponses) : on redemande à Gemini
+            responseCache.evict(cacheKey);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Une réponse tronquée ou hors format n'est pas gardée : le prochain appel la redemande
+     */
+    private <T> Optional<T> parseAndStore(String cacheKey, String model, String response, ResponseParser<T> parser) {
+        T parsed;
+        try {
+            parsed = parser.parse(response);
+        } catch (Exception e) {
+            log.warn("Unreadable Gemini response ({}), not cached: {}", model, e.getMessage());
+            return Optional.empty();
+        }
+        if (parsed == null) {
+            return Optional.empty();
+        }
+        responseCache.put(cacheKey, model, response);
+        return Optional.of(parsed);
+    }
+
+    /**
+     * Lecture d'une réponse Gemini ; une exception signale une réponse inutilisable
+     */
+    @FunctionalInterface
+    public interface ResponseParser<T> {
+        T parse(String response) throws Exception;
+    }
 }
+
@@ -0,0 +1,304 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.UserRole;
+import com.example.Inscription.repository.InscriptionRepository;
+import com.example.Inscription.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Comparaison approximative de noms de personnes (remettant d'un bordereau, candidat...).
+ *
+ * - normalisation unique : sans accents, minuscules, lettres seulement
+ * - distance d'édition bornée : seule la bande |i - j| <= seuil est calculée, sur deux lignes,
+ *   avec arrêt dès que toute la ligne dépasse le seuil
+ * - index de trigrammes sur les noms de toutes les inscriptions et de tous les étudiants,
+ *   reconstruit périodiquement, pour retrouver à quel candidat correspond un nom
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NameMatcher {
+
+    public static final String SOURCE_INSCRIPTION = "inscription";
+    public static final String SOURCE_USER = "user";
+
+    private final InscriptionRepository inscriptionRepository;
+    private final UserRepository userRepository;
+
+    @Value("${name-index.max-results:5}")
+    private int maxResults;
+
+    // Part minimale des trigrammes du nom cherché présents dans le nom candidat avant vérification fine
+    @Value("${name-index.min-trigram-overlap:0.4}")
+    private double minTrigramOverlap;
+
+    private volatile Index index = Index.EMPTY;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LatencyStats lookupLatency = new LatencyStats();
+
+    /**
+     * Minuscules, sans accents, tout ce qui n'est pas une lettre devient un espace
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return decomposed.toLowerCase(Locale.ROOT).replaceAll("[^a-z]+", " ").trim();
+    }
+
+    /**
+     * Distance de Levenshtein limitée à {@code max}
+     * @return La distance, ou {@code max + 1} dès qu'elle dépasse le seuil
+     */
+    public static int boundedDistance(CharSequence a, CharSequence b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        if (n > m) {
+            CharSequence t = a; a = b; b = t;
+            int tn = n; n = m; m = tn;
+        }
+        int big = max + 1;
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            previous[i] = i <= max ? i : big;
+        }
+        for (int j = 1; j <= m; j++) {
+            char cb = b.charAt(j - 1);
+            int from = Math.max(1, j - max);
+            int to = Math.min(n, j + max);
+            current[0] = j <= max ? j : big;
+            if (from > 1) {
+                current[from - 1] = big;
+            }
+            int rowMin = current[0];
+            for (int i = from; i <= to; i++) {
+                int cost = a.charAt(i - 1) == cb ? 0 : 1;
+                int value = Math.min(Math.min(current[i - 1] + 1, previous[i] + 1), previous[i - 1] + cost);
+                current[i] = Math.min(value, big);
+                rowMin = Math.min(rowMin, current[i]);
+            }
+            if (to < n) {
+                current[to + 1] = big;
+            }
+            if (rowMin > max) {
+                return big;
+            }
+            int[] t = previous; previous = current; current = t;
+        }
+        return Math.min(previous[n], big);
+    }
+
+    /**
+     * Nombre de mots du nom de référence retrouvés (à quelques fautes près) dans le nom lu
+     * @param reference Nom attendu (ex: nom + prénom de l'inscription)
+     * @param candidate Nom lu (ex: remettant du bordereau)
+     */
+    public int matchingTokens(String reference, String candidate) {
+        return matchingTokens(tokens(normalize(reference)), tokens(normalize(candidate)));
+    }
+
+    /**
+     * Cherche les candidats enregistrés dont le nom correspond au nom donné
+     * @return Les meilleures correspondances, de la plus proche à la moins proche
+     */
+    public List<Match> findCandidates(String name) {
+        long start = System.nanoTime();
+        lookups.increment();
+        Index current = index;
+        String normalized = normalize(name);
+        String[] queryTokens = tokens(normalized);
+        Set<String> grams = trigrams(queryTokens);
+        if (grams.isEmpty() || current.entries.length == 0) {
+            return List.of();
+        }
+
+        // Comptage des trigrammes communs, puis vérification par distance d'édition des seuls entrants
+        int[] shared = new int[current.entries.length];
+        List<Integer> touched = new ArrayList<>();
+        for (String gram : grams) {
+            int[] postings = current.postings.get(gram);
+            if (postings == null) {
+                continue;
+            }
+            for (int entry : postings) {
+                if (shared[entry]++ == 0) {
+                    touched.add(entry);
+                }
+            }
+        }
+        int minShared = Math.max(1, (int) Math.ceil(grams.size() * minTrigramOverlap));
+        List<Match> matches = new ArrayList<>();
+        for (int entryIndex : touched) {
+            if (shared[entryIndex] < minShared) {
+                continue;
+            }
+            Entry entry = current.entries[entryIndex];
+            int matched = matchingTokens(entry.tokens, queryTokens);
+            if (matched == 0) {
+                continue;
+            }
+            double score = (double) matched / Math.max(entry.tokens.length, queryTokens.length);
+            matches.add(new Match(entry.source, entry.id, entry.displayName, matched,
+                    Math.round(score * 1000) / 1000.0));
+        }
+        matches.sort(Comparator.comparingDouble(Match::getScore).reversed()
+                .thenComparing(Comparator.comparingInt(Match::getMatchedTokens).reversed()));
+        lookupLatency.record(System.nanoTime() - start);
+        return matches.size() > maxResults ? new ArrayList<>(matches.subList(0, maxResults)) : matches;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Reconstruit l'index à partir des inscriptions et des comptes étudiants
+     */
+    @Scheduled(fixedDelayString = "${name-index.refresh-interval-ms:300000}", initialDelayString = "${name-index.refresh-interval-ms:300000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        try {
+            for (Object[] row : inscriptionRepository.findAllNames()) {
+                addEntry(entries, SOURCE_INSCRIPTION, ((Number) row[0]).longValue(), (String) row[1], (String) row[2]);
+            }
+            for (Object[] row : userRepository.findAllNamesByRole(UserRole.STUDENT)) {
+                addEntry(entries, SOURCE_USER, ((Number) row[0]).longValue(), (String) row[1], (String) row[2]);
+            }
+        } catch (Exception e) {
+            log.warn("Name index rebuild failed, keeping previous index: {}", e.getMessage());
+            return;
+        }
+
+        Map<String, List<Integer>> postingLists = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            for (String gram : trigrams(entries.get(i).tokens)) {
+                postingLists.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> postings = new HashMap<>(postingLists.size() * 2);
+        postingLists.forEach((gram, list) -> postings.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+
+        index = new Index(entries.toArray(new Entry[0]), postings);
+        log.info("Name index rebuilt: {} names, {} trigrams in {} ms",
+                entries.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Index current = index;
+        stats.put("names", current.entries.length);
+        stats.put("trigrams", current.postings.size());
+        stats.put("lookups", lookups.sum());
+        stats.put("lookupLatency", lookupLatency.snapshot());
+        return stats;
+    }
+
+    private static void addEntry(List<Entry> entries, String source, long id, String lastName, String firstName) {
+        String displayName = ((lastName == null ? "" : lastName) + " " + (firstName == null ? "" : firstName)).trim();
+        String[] tokens = tokens(normalize(displayName));
+        if (tokens.length > 0) {
+            entries.add(new Entry(source, id, displayName, tokens));
+        }
+    }
+
+    private static int matchingTokens(String[] reference, String[] candidate) {
+        int matched = 0;
+        for (String part : reference) {
+            int tolerance = tolerance(part);
+            for (String token : candidate) {
+                if (boundedDistance(part, token, tolerance) <= tolerance) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Fautes tolérées selon la longueur du mot : aucune pour les mots courts
+     */
+    private static int tolerance(String token) {
+        if (token.length() <= 3) {
+            return 0;
+        }
+        return token.length() <= 7 ? 1 : 2;
+    }
+
+    private static String[] tokens(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    /**
+     * Trigrammes de chaque mot, bornés par des espaces (l'ordre nom/prénom n'a pas d'effet)
+     */
+    private static Set<String> trigrams(String[] tokens) {
+        Set<String> grams = new HashSet<>();
+        for (String token : tokens) {
+            String padded = " " + token + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Candidat correspondant à un nom recherché
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Match {
+        private String source;
+        private Long id;
+        private String name;
+        private int matchedTokens;
+        private double score;
+    }
+
+    private static class Entry {
+        private final String source;
+        private final long id;
+        private final String displayName;
+        private final String[] tokens;
+
+        private Entry(String source, long id, String displayName, String[] tokens) {
+            this.source = source;
+            this.id = id;
+            this.displayName = displayName;
+            this.tokens = tokens;
+        }
+    }
+
+    private static class Index {
+        private static final Index EMPTY = new Index(new Entry[0], Map.of());
+
+        private final Entry[] entries;
+        private final Map<String, int[]> postings;
+
+        private Index(Entry[] entries, Map<String, int[]> postings) {
+            this.entries = entries;
+            this.postings = postings;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.Inscription.service;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classification locale du type de document (relevé, arrêté, bordereau) avec un modèle ONNX sur CPU.
+ *
+ * Le modèle attendu prend un tenseur image [N, 3, H, W] normalisé (moyenne/écart-type ImageNet)
+ * et renvoie des logits [N, nombre de classes] dans l'ordre de classifier.onnx.labels.
+ * Les demandes concurrentes sont regroupées en lots (classifier.onnx.max-batch-size,
+ * classifier.onnx.batch-window-ms) puis exécutées sur un pool de sessions ; au-delà de
+ * classifier.onnx.max-pending demandes en attente, l'appelant passe directement par Gemini.
+ * Sans fichier modèle, le classifieur est inactif et l'appelant passe par Gemini.
+ *
+ * Le softmax répartit toujours la probabilité entre les seules classes apprises : un document
+ * d'un autre type (pièce d'identité, diplôme) peut en sortir avec une probabilité élevée.
+ * Le résultat n'est donc retenu que si l'écart avec la deuxième classe et l'entropie de la
+ * distribution indiquent une décision nette, et jamais pour la classe de rejet du modèle.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OnnxDocumentClassifier {
+
+    private static final float[] MEAN = {0.485f, 0.456f, 0.406f};
+    private static final float[] STD = {0.229f, 0.224f, 0.225f};
+
+    private final PdfLoader pdfLoader;
+
+    @Value("${classifier.onnx.enabled:true}")
+    private boolean enabled;
+
+    @Value("${classifier.onnx.model-path:models/document-classifier.onnx}")
+    private String modelPath;
+
+    @Value("${classifier.onnx.labels:arrete,releve_de_note,bordereau_paiement}")
+    private List<String> labels;
+
+    @Value("${classifier.onnx.input-size:224}")
+    private int inputSize;
+
+    @Value("${classifier.onnx.session-pool-size:2}")
+    private int sessionPoolSize;
+
+    @Value("${classifier.onnx.intra-op-threads:1}")
+    private int intraOpThreads;
+
+    @Value("${classifier.onnx.max-batch-size:8}")
+    private int maxBatchSize;
+
+    @Value("${classifier.onnx.batch-window-ms:5}")
+    private long batchWindowMs;
+
+    // En dessous de cette probabilité, l'appelant se replie sur Gemini
+    @Value("${classifier.onnx.min-confidence:0.85}")
+    private double minConfidence;
+
+    // Écart minimal entre les probabilités de la première et de la deuxième classe
+    @Value("${classifier.onnx.min-margin:0.75}")
+    private double minMargin;
+
+    // Entropie maximale de la distribution, rapportée à celle d'une distribution uniforme (0 à 1)
+    @Value("${classifier.onnx.max-entropy:0.4}")
+    private double maxEntropy;
+
+    // Classe « hors périmètre » d'un modèle entraîné avec une classe de rejet : jamais retenue
+    @Value("${classifier.onnx.reject-label:autre}")
+    private String rejectLabel;
+
+    @Value("${classifier.onnx.max-pending:64}")
+    private int maxPending;
+
+    @Value("${classifier.onnx.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private OrtEnvironment environment;
+    private BlockingQueue<OrtSession> sessions;
+    private String inputName;
+    private BlockingQueue<Request> pending;
+    private ExecutorService dispatcher;
+    private ExecutorService inference;
+    private volatile boolean running;
+
+    private final LongAdder classified = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder outOfSet = new LongAdder();
+    private final LatencyStats latency = new LatencyStats();
+    private final LatencyStats batchLatency = new LatencyStats();
+
+    @PostConstruct
+    void start() {
+        if (!enabled || !Files.isRegularFile(Path.of(modelPath))) {
+            log.info("ONNX document classifier disabled (model file {} not found)", modelPath);
+            return;
+        }
+        try {
+            environment = OrtEnvironment.getEnvironment();
+            sessions = new ArrayBlockingQueue<>(sessionPoolSize);
+            for (int i = 0; i < sessionPoolSize; i++) {
+                OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+                options.setIntraOpNumThreads(intraOpThreads);
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                sessions.add(environment.createSession(modelPath, options));
+            }
+            inputName = sessions.peek().getInputNames().iterator().next();
+        } catch (OrtException e) {
+            log.error("Could not load ONNX model {}: {}", modelPath, e.getMessage());
+            closeSessions();
+            return;
+        }
+        pending = new LinkedBlockingQueue<>(maxPending);
+        running = true;
+        inference = Executors.newFixedThreadPool(sessionPoolSize, new CustomizableThreadFactory("onnx-classifier-"));
+        dispatcher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("onnx-batcher-"));
+        dispatcher.submit(this::batchLoop);
+        log.info("ONNX document classifier loaded from {} ({} sessions, labels {})", modelPath, sessionPoolSize, labels);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+            inference.shutdownNow();
+        }
+        closeSessions();
+    }
+
+    public boolean isAvailable() {
+        return running;
+    }
+
+    /**
+     * Classifie un document (image ou PDF, première page)
+     * @return Le type et sa probabilité, ou vide si le modèle n'est pas chargé ou l'image illisible
+     */
+    public Optional<Classification> classify(byte[] fileBytes, String mimeType) {
+        if (!running) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        try {
+            BufferedImage image = decode(fileBytes, mimeType);
+            if (image == null) {
+                return Optional.empty();
+            }
+            Request request = new Request(toTensor(image), start + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            if (!pending.offer(request)) {
+                rejectedFull.increment();
+                return Optional.empty();
+            }
+            try {
+                Classification result = request.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+                latency.record(System.nanoTime() - start);
+                classified.increment();
+                return Optional.of(result);
+            } finally {
+                // Sans effet si le résultat est arrivé ; sinon le lot ne calcule pas cette demande
+                request.future.cancel(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("ONNX classification failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Vrai si le résultat peut être retenu sans Gemini : classe apprise, probabilité, écart et entropie suffisants
+     */
+    public boolean isConfident(Classification classification) {
+        if (!labels.contains(classification.getType()) || classification.getType().equals(rejectLabel)) {
+            outOfSet.increment();
+            return false;
+        }
+        return classification.getProbability() >= minConfidence
+                && classification.getMargin() >= minMargin
+                && classification.getEntropy() <= maxEntropy;
+    }
+
+    /**
+     * À appeler quand le résultat local n'a pas été retenu et que Gemini a été sollicité
+     */
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("available", running);
+        stats.put("modelPath", modelPath);
+        stats.put("labels", labels);
+        stats.put("classified", classified.sum());
+        stats.put("failures", failures.sum());
+        stats.put("geminiFallbacks", fallbacks.sum());
+        stats.put("outOfSet", outOfSet.sum());
+        stats.put("rejectedQueueFull", rejectedFull.sum());
+        stats.put("expiredBeforeInference", expired.sum());
+        stats.put("pending", pending != null ? pending.size() : 0);
+        long batchCount = batches.sum();
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : Math.round(classified.sum() * 100.0 / batchCount) / 100.0);
+        stats.put("latency", latency.snapshot());
+        stats.put("batchInference", batchLatency.snapshot());
+        return stats;
+    }
+
+    /**
+     * Regroupe les demandes arrivées pendant la fenêtre de batch et les envoie au pool d'inférence
+     */
+    private void batchLoop() {
+        while (running) {
+            try {
+                Request first = pending.take();
+                List<Request> batch = new ArrayList<>(maxBatchSize);
+                addIfWaiting(batch, first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    addIfWaiting(batch, next);
+                }
+                if (!batch.isEmpty()) {
+                    inference.execute(() -> runBatch(batch));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Écarte une demande dont l'appelant n'attend plus le résultat (délai dépassé)
+     */
+    private void addIfWaiting(List<Request> batch, Request request) {
+        if (request.future.isDone() || System.nanoTime() - request.deadline > 0) {
+            request.future.cancel(false);
+            expired.increment();
+            return;
+        }
+        batch.add(request);
+    }
+
+    private void runBatch(List<Request> batch) {
+        batch.removeIf(request -> request.future.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int pixels = 3 * inputSize * inputSize;
+        FloatBuffer buffer = FloatBuffer.allocate(batch.size() * pixels);
+        for (Request request : batch) {
+            buffer.put(request.tensor);
+        }
+        buffer.rewind();
+
+        OrtSession session = null;
+        try {
+            session = sessions.take();
+            try (OnnxTensor input = OnnxTensor.createTensor(environment, buffer,
+                    new long[]{batch.size(), 3, inputSize, inputSize});
+                 OrtSession.Result result = session.run(Map.of(inputName, input))) {
+                float[][] logits = (float[][]) result.get(0).getValue();
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future.complete(toClassification(logits[i]));
+                }
+            }
+            batches.increment();
+            batchLatency.record(System.nanoTime() - start);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            batch.forEach(request -> request.future.completeExceptionally(e));
+        } finally {
+            if (session != null) {
+                sessions.add(session);
+            }
+        }
+    }
+
+    Classification toClassification(float[] logits) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (float logit : logits) {
+            max = Math.max(max, logit);
+        }
+        double sum = 0;
+        double[] probabilities = new double[logits.length];
+        for (int i = 0; i < logits.length; i++) {
+            probabilities[i] = Math.exp(logits[i] - max);
+            sum += probabilities[i];
+        }
+        int best = 0;
+        int second = -1;
+        double entropy = 0;
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] /= sum;
+            if (probabilities[i] > 0) {
+                entropy -= probabilities[i] * Math.log(probabilities[i]);
+            }
+            if (i == 0) {
+                continue;
+            }
+            if (probabilities[i] > probabilities[best]) {
+                second = best;
+                best = i;
+            } else if (second < 0 || probabilities[i] > probabilities[second]) {
+                second = i;
+            }
+        }
+        double margin = probabilities[best] - (second < 0 ? 0 : probabilities[second]);
+        double normalizedEntropy = probabilities.length > 1 ? entropy / Math.log(probabilities.length) : 0;
+        String label = best < labels.size() ? labels.get(best) : rejectLabel;
+        return new Classification(label, probabilities[best], margin, normalizedEntropy);
+    }
+
+    private BufferedImage decode(byte[] fileBytes, String mimeType) throws Exception {
+        if ("application/pdf".equals(mimeType)) {
+            return pdfLoader.withDocument(fileBytes, document -> document.getNumberOfPages() == 0 ? null
+                    : new PDFRenderer(document).renderImageWithDPI(0, 72, ImageType.RGB));
+        }
+        return ImageIO.read(new ByteArrayInputStream(fileBytes));
+    }
+
+    /**
+     * Redimensionne en inputSize x inputSize et normalise en CHW
+     */
+    private float[] toTensor(BufferedImage image) {
+        BufferedImage resized = new BufferedImage(inputSize, inputSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, inputSize, inputSize, null);
+        } finally {
+            g.dispose();
+        }
+        int plane = inputSize * inputSize;
+        float[] tensor = new float[3 * plane];
+        for (int y = 0; y < inputSize; y++) {
+            for (int x = 0; x < inputSize; x++) {
+                int rgb = resized.getRGB(x, y);
+                int offset = y * inputSize + x;
+                tensor[offset] = (((rgb >> 16) & 0xff) / 255f - MEAN[0]) / STD[0];
+                tensor[plane + offset] = (((rgb >> 8) & 0xff) / 255f - MEAN[1]) / STD[1];
+                tensor[2 * plane + offset] = ((rgb & 0xff) / 255f - MEAN[2]) / STD[2];
+            }
+        }
+        return tensor;
+    }
+
+    private void closeSessions() {
+        if (sessions == null) {
+            return;
+        }
+        for (OrtSession session : sessions) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                log.warn("Could not close ONNX session: {}", e.getMessage());
+            }
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Résultat de la classification locale
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Classification {
+        private String type;
+        private double probability;
+        // Probabilité de la classe retenue moins celle de la suivante
+        private double margin;
+        // Entropie normalisée : 0 = certitude, 1 = distribution uniforme
+        private double entropy;
+    }
+
+    private static class Request {
+        private final float[] tensor;
+        private final long deadline;
+        private final CompletableFuture<Classification> future = new CompletableFuture<>();
+
+        private Request(float[] tensor, long deadline) {
+            this.tensor = tensor;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.Inscription.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Point d'entrée unique pour ouvrir un PDF avec PDFBox.
+ *
+ * - mémoire bornée par document : au-delà de pdf.memory.max-main-memory-bytes, les tampons
+ *   de PDFBox passent dans un fichier temporaire (pdf.memory.temp-dir)
+ * - nombre de PDF ouverts en même temps limité (pdf.parse.max-concurrent) : une rafale de gros
+ *   uploads attend son tour au lieu de saturer le tas
+ */
+@Component
+@Slf4j
+public class PdfLoader {
+
+    @Value("${pdf.memory.max-main-memory-bytes:16777216}")
+    private long maxMainMemoryBytes;
+
+    // Taille maximale mémoire + fichier temporaire par document, -1 pour illimité
+    @Value("${pdf.memory.max-storage-bytes:-1}")
+    private long maxStorageBytes;
+
+    @Value("${pdf.memory.temp-dir:}")
+    private String tempDir;
+
+    @Value("${pdf.parse.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LatencyStats waitLatency = new LatencyStats();
+    private final LatencyStats parseLatency = new LatencyStats();
+
+    public PdfLoader(@Value("${pdf.parse.max-concurrent:0}") int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * Traitement appliqué au document ouvert (fermé ensuite par le loader)
+     */
+    @FunctionalInterface
+    public interface PdfFunction<T> {
+        T apply(PDDocument document) throws Exception;
+    }
+
+    /**
+     * Ouvre le PDF en mémoire bornée, applique le traitement puis ferme le document
+     * @throws IllegalStateException si aucune place ne se libère avant pdf.parse.acquire-timeout-ms
+     */
+    public <T> T withDocument(byte[] pdfBytes, PdfFunction<T> function) throws Exception {
+        long waitStart = System.nanoTime();
+        if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+            timeouts.increment();
+            throw new IllegalStateException("Trop de PDF en cours d'analyse, réessayez plus tard");
+        }
+        long start = System.nanoTime();
+        waitLatency.record(start - waitStart);
+        try (PDDocument document = PDDocument.load(pdfBytes, "", null, null, memoryUsageSetting())) {
+            loads.increment();
+            return function.apply(document);
+        } finally {
+            parseLatency.record(System.nanoTime() - start);
+            permits.release();
+        }
+    }
+
+    /**
+     * Couche texte du document entier
+     */
+    public String extractText(byte[] pdfBytes) throws Exception {
+        return extractText(pdfBytes, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Couche texte des pages firstPage à lastPage (numérotées à partir de 1, bornes incluses)
+     */
+    public String extractText(byte[] pdfBytes, int firstPage, int lastPage) throws Exception {
+        return withDocument(pdfBytes, document -> {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(firstPage);
+            stripper.setEndPage(Math.min(lastPage, document.getNumberOfPages()));
+            return stripper.getText(document);
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("active", maxConcurrent - permits.availablePermits());
+        stats.put("waiting", permits.getQueueLength());
+        stats.put("loads", loads.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("maxMainMemoryBytes", maxMainMemoryBytes);
+        stats.put("wait", waitLatency.snapshot());
+        stats.put("parse", parseLatency.snapshot());
+        return stats;
+    }
+
+    private MemoryUsageSetting memoryUsageSetting() {
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes, maxStorageBytes);
+        if (!tempDir.isBlank()) {
+            setting.setTempDir(new File(tempDir));
+        }
+        return setting;
+    }
+}
@@ -2,26 +2,29 @@ package com.example.Inscription.service;
 
 import com.example.Inscription.model.BordereauData;
 import com.example.Inscription.model.Document;
+import com.example.Inscription.model.DocumentText;
 import com.example.Inscription.model.Inscription;
+import com.example.Inscription.model.TextExtractionMethod;
 import com.example.Inscription.repository.DocumentRepository;
 import com.google.genai.types.GenerateContentResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.text.similarity.LevenshteinDistance;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import org.apache.pdfbox.pdmodel.PDDocument;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.pdfbox.text.PDFTextStripper;
 import java.io.File;
 import java.nio.file.Files;
 import net.sourceforge.tess4j.Tesseract;
 import net.sourceforge.tess4j.TesseractException;
 
 import java.io.DataInput;
-import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 @Service
+@Slf4j
 public class PdfService {
 
     @Autowired
@@ -31,21 +34,72 @@ public class PdfService {
     @Nullable
     private GeminiService geminiService;
 
-    public BordereauData extraireBordereau() throws Exception {
+    @Autowired
+    private BordereauFieldExtractor bordereauFieldExtractor;
+
+    @Autowired
+    private NameMatcher nameMatcher;
+
+    @Autowired
+    private ReceiptIndexService receiptIndexService;
 
-        Document doc = documentService.nonVerifies().get(0);
-        byte[] pdfBytes = doc.getFichier();
+    @Autowired
+    private BordereauRoiOcr bordereauRoiOcr;
 
-        // Extraction texte normale
-        String fileText = extractTextFromPDF(pdfBytes);
+    @Autowired
+    private DocumentTextService documentTextService;
+
+    @Autowired
+    private PdfLoader pdfLoader;
 
-        // Si PDFBox trouve rien → OCR
-        if (fileText.trim().isEmpty()) {
-            System.out.println("PDF vide -> utilisation de l'OCR...");
-            fileText = extractTextWithOCR(pdfBytes);
+    // Compte bancaire sur lequel les frais d'inscription doivent être versés
+    @Value("${bordereau.expected-account:21000135638-01}")
+    private String compteAttendu;
+
+    // Taille des pages lors du parcours des documents à vérifier
+    @Value("${documents.scan.page-size:100}")
+    private int pageSize;
+
+    // Score minimal de l'extraction locale pour ne pas appeler Gemini
+    @Value("${bordereau.local-extraction.min-confidence:0.8}")
+    private double seuilConfianceLocale;
+
+    public BordereauData extraireBordereau() throws Exception {
+
+        Document doc = documentService.premierNonVerifie()
+                .orElseThrow(() -> new IllegalStateException("Aucun document à vérifier"));
+        return lireBordereau(doc, GeminiGateway.DEFAULT_TENANT);
+    }
+
+    /**
+     * Texte extrait à l'upload (couche texte ou OCR). Pour un bordereau scanné d'un modèle
+     * de banque connu, l'OCR des seules zones utiles est préféré (caractères filtrés par champ)
+     */
+    private BordereauData lireBordereau(Document doc, String tenant) throws Exception {
+        DocumentText texte = documentTextService.textFor(doc);
+        if (texte.getMethod() != TextExtractionMethod.TEXT_LAYER) {
+            Optional<BordereauRoiOcr.Result> zones = bordereauRoiOcr.extract(doc.getFichier(), null);
+            if (zones.isPresent()) {
+                log.debug("Region OCR with bordereau template {}", zones.get().getTemplate());
+                return zones.get().getData();
+            }
         }
+        return extraireChamps(texte.getText(), tenant);
+    }
 
-        System.out.println("Texte extrait final : " + fileText);
+    /**
+     * Extrait montant, remettant et compte : d'abord par les modèles de bordereaux connus
+     * (extraction locale), puis par Gemini seulement si la confiance est sous le seuil
+     */
+    private BordereauData extraireChamps(String fileText, String tenant) throws Exception {
+        BordereauFieldExtractor.Extraction locale = bordereauFieldExtractor.extract(fileText);
+        if (locale.isComplete() && locale.getConfidence() >= seuilConfianceLocale) {
+            bordereauFieldExtractor.recordAccepted();
+            log.debug("Local bordereau extraction ({}, confidence {})", locale.getLayout(), locale.getConfidence());
+            return locale.getData();
+        }
+        log.debug("Local bordereau extraction insufficient ({}, confidence {}), falling back to Gemini",
+                locale.getLayout(), locale.getConfidence());
 
         // Prompt Gemini
         String prompt ="Analyse le texte ci-dessous et retourne uniquement un objet JSON strict, sans explication, sans mise en forme, sans texte avant ou après, sans blocs de code. \n" +
@@ -56,18 +110,21 @@ public class PdfService {
                 "\n" +
                 "et n'ajoute JAMAIS une introduction ou ``` ou ```json ou autre de ce forme dans ta réponse."+
                 "Texte à analyser :\n" + fileText;
-        String response = geminiService.askGemini(prompt);
-
         ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(response, BordereauData.class);
+        return geminiService.askGemini(tenant, prompt, response -> mapper.readValue(response, BordereauData.class))
+                .orElseThrow(() -> new IllegalStateException("Réponse Gemini illisible pour le bordereau"));
     }
 
 
-    public String extractTextFromPDF(byte[] pdfBytes) throws IOException {
-        try (PDDocument document = PDDocument.load(pdfBytes)) {
-            PDFTextStripper pdfStripper = new PDFTextStripper();
-            return pdfStripper.getText(document);
-        }
+    public String extractTextFromPDF(byte[] pdfBytes) throws Exception {
+        return pdfLoader.extractText(pdfBytes);
+    }
+
+    /**
+     * Couche texte des seules pages demandées (numérotées à partir de 1)
+     */
+    public String extractTextFromPDF(byte[] pdfBytes, int premierePage, int dernierePage) throws Exception {
+        return pdfLoader.extractText(pdfBytes, premierePage, dernierePage);
     }
     public String extractTextWithOCR(byte[] pdfBytes) throws Exception {
         // Sauvegarder temporairement le PDF
@@ -85,106 +142,92 @@ public class PdfService {
 
         return ocrText;
     }
-    private boolean fuzzyMatch(String a, String b, int maxDistance) {
-        a = a.toLowerCase().trim();
-        b = b.toLowerCase().trim();
-
-        int[][] dp = new int[a.length() + 1][b.length() + 1];
-
-        for (int i = 0; i <= a.length(); i++) dp[i][0] = i;
-        for (int i = 0; i <= b.length(); i++) dp[0][i] = i;
-
-        for (int i = 1; i <= a.length(); i++) {
-            for (int j = 1; j <= b.length(); j++) {
-                int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
-                dp[i][j] = Math.min(
-                        Math.min(dp[i - 1][j] + 1, dp[i][j - 1] + 1),
-                        dp[i - 1][j - 1] + cost
-                );
+    /**
+     * Vérifie tous les bordereaux en attente, page par page (curseur sur l'id) :
+     * un seul fichier est en mémoire à la fois, quelle que soit la taille du backlog
+     */
+    public void verifierTousLesBordereaux() throws Exception {
+        int curseur = 0;
+        List<Integer> ids;
+        do {
+            ids = documentService.nonVerifiesIds(curseur, pageSize);
+            for (Integer id : ids) {
+                curseur = id;
+                Document doc = documentService.getDocumentById(id).orElse(null);
+                if (doc != null) {
+                    verifierBordereau(doc, GeminiGateway.BATCH_TENANT);
+                }
             }
-        }
+        } while (ids.size() == pageSize);
+    }
 
-        return dp[a.length()][b.length()] <= maxDistance;
+    public int getPageSize() {
+        return pageSize;
     }
 
-    public void verifierTousLesBordereaux() throws Exception {
-        List<Document> documents = documentService.nonVerifies();
+    /**
+     * Vérifie un bordereau (remettant, montant, compte) et enregistre le résultat sur le document
+     * @param tenant File de la passerelle Gemini à utiliser si l'extraction locale ne suffit pas
+     * @return true si le bordereau est valide
+     */
+    public boolean verifierBordereau(Document doc, String tenant) throws Exception {
         LevenshteinDistance ld = new LevenshteinDistance();
-
-        for (Document doc : documents) {
-            Inscription ins = doc.getInscription();
-            byte[] pdfBytes = doc.getFichier();
-
-            // Extraction texte
-            String fileText = extractTextFromPDF(pdfBytes);
-            if (fileText.trim().isEmpty()) {
-                fileText = extractTextWithOCR(pdfBytes);
-            }
-
-            // Appel Gemini pour extraire JSON
-            String prompt = "Analyse le texte ci-dessous et retourne uniquement un objet JSON strict, sans explication, sans mise en forme, sans texte avant ou après, sans blocs de code. \n" +
-                    "Le JSON doit contenir : montant, remettant, compte.\n" +
-                    "\n" +
-                    "Format EXACT attendu :\n" +
-                    "{\"montant\": \"...\", \"remettant\": \"...\", \"compte\": \"...\"}\n" +
-                    "\n" +
-                    "et n'ajoute JAMAIS une introduction ou ``` ou ```json ou autre de ce forme dans ta réponse."+
-                    "Texte à analyser :\n" + fileText;
-            String response = geminiService.askGemini(prompt);
-
-            ObjectMapper mapper = new ObjectMapper();
-            BordereauData bd = mapper.readValue(response, BordereauData.class);
-
-            // -------------------
-            // Vérification remettant
-            // -------------------
-            String nomComplet = (ins.getNom() + " " + ins.getPrenom()).toLowerCase().trim();
-            String remettant = bd.getRemettant().toLowerCase().trim();
-            int matchCount = 0;
-            for (String part : nomComplet.split(" ")) {
-                if (remettant.contains(part)) {
-                    matchCount++;
-                }
-            }
-            // on valide si au moins 2 parties du nom complet sont présentes
-            boolean remettantOk = matchCount >= 2;
-
-            // -------------------
-            // Vérification montant
-            // -------------------
-            double montantBordereau = parseMontant(bd.getMontant());
-            boolean montantOk = true;
-            if (ins.isMaster()) {
-                montantOk = montantBordereau == 682500.0 || montantBordereau == 341250.0;
-            } else if (ins.getLicence() != null && ins.getLicence()) {
-                montantOk = montantBordereau == 350000.0 || montantBordereau == 175000.0;
+        Inscription ins = doc.getInscription();
+
+        // Extraction des champs (texte ou OCR par zones, sinon Gemini)
+        BordereauData bd = lireBordereau(doc, tenant);
+        receiptIndexService.indexExtractedPayment(ReceiptIndexService.SOURCE_DOCUMENT, (long) doc.getId(), null, null, bd);
+
+        // -------------------
+        // Vérification remettant
+        // -------------------
+        String nomComplet = ins.getNom() + " " + ins.getPrenom();
+        int matchCount = nameMatcher.matchingTokens(nomComplet, bd.getRemettant());
+        // on valide si au moins 2 parties du nom complet sont présentes (fautes de frappe tolérées)
+        boolean remettantOk = matchCount >= 2;
+        if (!remettantOk) {
+            List<NameMatcher.Match> candidats = nameMatcher.findCandidates(bd.getRemettant());
+            if (!candidats.isEmpty()) {
+                log.debug("Depositor closest to {} ({} {})", candidats.get(0).getName(),
+                        candidats.get(0).getSource(), candidats.get(0).getId());
             }
+        }
 
-            // -------------------
-            // Vérification compte
-            // -------------------
-            String compteRef = "21000135638-01";
-            boolean compteOk = ld.apply(compteRef, bd.getCompte()) <= 2; // tolérance 2 caractères
-
-            // -------------------
-            // Debug
-            // -------------------
-            System.out.println("Document ID: " + doc.getId());
-            System.out.println("Montant: " + bd.getMontant() + " -> " + montantBordereau + ", montantOk=" + montantOk);
-            System.out.println("Remettant: " + bd.getRemettant() + ", matchCount=" + matchCount + ", remettantOk=" + remettantOk);
-            System.out.println("Compte: " + bd.getCompte() + ", compteOk=" + compteOk);
-            System.out.println("isMaster=" + ins.isMaster());
-
-            // -------------------
-            // Validation finale
-            // -------------------
-            doc.setValide(remettantOk && montantOk && compteOk);
-            doc.setVerifie(true);
-            documentService.updateDocument(doc);
-
-            System.out.println("Document validé: " + doc.getValide());
-            System.out.println("--------------------------------------------------");
+        // -------------------
+        // Vérification montant
+        // -------------------
+        double montantBordereau = parseMontant(bd.getMontant());
+        boolean montantOk = true;
+        if (ins.isMaster()) {
+            montantOk = montantBordereau == 682500.0 || montantBordereau == 341250.0;
+        } else if (ins.getLicence() != null && ins.getLicence()) {
+            montantOk = montantBordereau == 350000.0 || montantBordereau == 175000.0;
         }
+
+        // -------------------
+        // Vérification compte
+        // -------------------
+        boolean compteOk = ld.apply(compteAttendu, bd.getCompte()) <= 2; // tolérance 2 caractères
+
+        // -------------------
+        // Debug
+        // -------------------
+        System.out.println("Document ID: " + doc.getId());
+        System.out.println("Montant: " + bd.getMontant() + " -> " + montantBordereau + ", montantOk=" + montantOk);
+        System.out.println("Remettant: " + bd.getRemettant() + ", matchCount=" + matchCount + ", remettantOk=" + remettantOk);
+        System.out.println("Compte: " + bd.getCompte() + ", compteOk=" + compteOk);
+        System.out.println("isMaster=" + ins.isMaster());
+
+        // -------------------
+        // Validation finale
+        // -------------------
+        doc.setValide(remettantOk && montantOk && compteOk);
+        doc.setVerifie(true);
+        documentService.updateDocument(doc);
+
+        System.out.println("Document validé: " + doc.getValide());
+        System.out.println("--------------------------------------------------");
+        return doc.getValide();
     }
 
 
@@ -0,0 +1,197 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.BordereauData;
+import com.example.Inscription.model.ReceiptFingerprint;
+import com.example.Inscription.model.ReceiptFingerprintKind;
+import com.example.Inscription.repository.EventRegistrationRepository;
+import com.example.Inscription.repository.ReceiptFingerprintRepository;
+import com.example.Inscription.repository.StudentEventRegistrationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Index global des reçus de paiement pour détecter leur réutilisation par plusieurs candidats.
+ *
+ * Chaque reçu est réduit à des empreintes SHA-256 (numéro normalisé, contenu du fichier,
+ * triplet compte/montant/remettant extrait) stockées dans une table indexée : la vérification
+ * à l'upload est une recherche par clé, sans comparaison de table à table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReceiptIndexService {
+
+    public static final String SOURCE_STUDENT_EVENT_REGISTRATION = "student_event_registration";
+    public static final String SOURCE_EVENT_REGISTRATION = "event_registration";
+    public static final String SOURCE_DOCUMENT = "document";
+
+    private final ReceiptFingerprintRepository fingerprintRepository;
+    private final StudentEventRegistrationRepository studentEventRegistrationRepository;
+    private final EventRegistrationRepository eventRegistrationRepository;
+
+    /**
+     * Indexe le numéro et le fichier d'un reçu
+     * @return Les autres sources qui partagent déjà une de ces empreintes
+     */
+    @Transactional
+    public List<ReceiptFingerprint> indexReceipt(String sourceType, Long sourceId, Long eventId, Long userId,
+                                                 String receiptNumber, byte[] receiptFile, String receiptFilename) {
+        List<ReceiptFingerprint> conflicts = new ArrayList<>();
+        String number = normalizeReceiptNumber(receiptNumber);
+        if (!number.isEmpty()) {
+            conflicts.addAll(index(ReceiptFingerprintKind.RECEIPT_NUMBER, sha256(number.getBytes(StandardCharsets.UTF_8)),
+                    number, sourceType, sourceId, eventId, userId));
+        }
+        if (receiptFile != null && receiptFile.length > 0) {
+            conflicts.addAll(index(ReceiptFingerprintKind.FILE_HASH, sha256(receiptFile),
+                    receiptFilename, sourceType, sourceId, eventId, userId));
+        }
+        logConflicts(sourceType, sourceId, conflicts);
+        return conflicts;
+    }
+
+    /**
+     * Indexe le triplet compte / montant / remettant extrait d'un bordereau
+     */
+    @Transactional
+    public List<ReceiptFingerprint> indexExtractedPayment(String sourceType, Long sourceId, Long eventId, Long userId,
+                                                          BordereauData data) {
+        if (data == null || data.getCompte() == null || data.getMontant() == null || data.getRemettant() == null) {
+            return List.of();
+        }
+        String tuple = data.getCompte().replaceAll("[^0-9]", "") + "|"
+                + data.getMontant().replaceAll("[^0-9]", "") + "|"
+                + NameMatcher.normalize(data.getRemettant());
+        List<ReceiptFingerprint> conflicts = index(ReceiptFingerprintKind.PAYMENT_TUPLE,
+                sha256(tuple.getBytes(StandardCharsets.UTF_8)), tuple, sourceType, sourceId, eventId, userId);
+        logConflicts(sourceType, sourceId, conflicts);
+        return conflicts;
+    }
+
+    /**
+     * Reçus partagés par plusieurs sources, regroupés par empreinte
+     * @param eventId Événement concerné, ou null pour l'ensemble des reçus
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> conflictReport(Long eventId) {
+        List<ReceiptFingerprint> rows = eventId == null
+                ? fingerprintRepository.findAllConflicts()
+                : fingerprintRepository.findConflictsForEvent(eventId);
+
+        Map<String, List<ReceiptFingerprint>> byFingerprint = new LinkedHashMap<>();
+        for (ReceiptFingerprint row : rows) {
+            byFingerprint.computeIfAbsent(row.getKind() + ":" + row.getFingerprint(), k -> new ArrayList<>()).add(row);
+        }
+
+        List<Map<String, Object>> groups = new ArrayList<>();
+        for (List<ReceiptFingerprint> sameReceipt : byFingerprint.values()) {
+            ReceiptFingerprint first = sameReceipt.get(0);
+            List<Map<String, Object>> occurrences = new ArrayList<>();
+            for (ReceiptFingerprint row : sameReceipt) {
+                Map<String, Object> occurrence = new LinkedHashMap<>();
+                occurrence.put("sourceType", row.getSourceType());
+                occurrence.put("sourceId", row.getSourceId());
+                occurrence.put("eventId", row.getEventId());
+                occurrence.put("userId", row.getUserId());
+                occurrence.put("indexedAt", row.getCreatedAt());
+                occurrences.add(occurrence);
+            }
+            Map<String, Object> group = new LinkedHashMap<>();
+            group.put("kind", first.getKind());
+            group.put("description", first.getKind().getDisplayName());
+            group.put("value", first.getNormalizedValue());
+            group.put("occurrences", occurrences);
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Indexe au démarrage les numéros de reçus déjà enregistrés si l'index est vide
+     * (les fichiers et les triplets extraits sont indexés au fil des uploads et des vérifications)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillReceiptNumbers() {
+        if (fingerprintRepository.count() > 0) {
+            return;
+        }
+        int indexed = 0;
+        for (Object[] row : studentEventRegistrationRepository.findAllReceiptNumbers()) {
+            indexed += backfill(SOURCE_STUDENT_EVENT_REGISTRATION, row);
+        }
+        for (Object[] row : eventRegistrationRepository.findAllPaymentReferences()) {
+            indexed += backfill(SOURCE_EVENT_REGISTRATION, row);
+        }
+        if (indexed > 0) {
+            log.info("Receipt index backfilled with {} receipt numbers", indexed);
+        }
+    }
+
+    /**
+     * Majuscules, sans espaces ni ponctuation, zéros de tête retirés pour les numéros purement numériques
+     */
+    public static String normalizeReceiptNumber(String receiptNumber) {
+        if (receiptNumber == null) {
+            return "";
+        }
+        String normalized = receiptNumber.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "");
+        if (normalized.chars().allMatch(Character::isDigit)) {
+            normalized = normalized.replaceFirst("^0+(?=.)", "");
+        }
+        return normalized;
+    }
+
+    private int backfill(String sourceType, Object[] row) {
+        String number = normalizeReceiptNumber((String) row[3]);
+        if (number.isEmpty()) {
+            return 0;
+        }
+        index(ReceiptFingerprintKind.RECEIPT_NUMBER, sha256(number.getBytes(StandardCharsets.UTF_8)), number,
+                sourceType, (Long) row[0], (Long) row[1], (Long) row[2]);
+        return 1;
+    }
+
+    /**
+     * Enregistre (ou remplace) l'empreinte de la source, puis renvoie les autres sources qui la partagent
+     */
+    private List<ReceiptFingerprint> index(ReceiptFingerprintKind kind, String fingerprint, String value,
+                                           String sourceType, Long sourceId, Long eventId, Long userId) {
+        fingerprintRepository.upsert(kind.name(), fingerprint,
+                value != null && value.length() > 512 ? value.substring(0, 512) : value,
+                sourceType, sourceId, eventId, userId, LocalDateTime.now());
+
+        List<ReceiptFingerprint> conflicts = new ArrayList<>();
+        for (ReceiptFingerprint other : fingerprintRepository.findByKindAndFingerprint(kind, fingerprint)) {
+            if (!(other.getSourceType().equals(sourceType) && other.getSourceId().equals(sourceId))) {
+                conflicts.add(other);
+            }
+        }
+        return conflicts;
+    }
+
+    private void logConflicts(String sourceType, Long sourceId, List<ReceiptFingerprint> conflicts) {
+        for (ReceiptFingerprint conflict : conflicts) {
+            log.warn("Receipt of {} {} shares its {} with {} {} (event {})", sourceType, sourceId, conflict.getKind(),
+                    conflict.getSourceType(), conflict.getSourceId(), conflict.getEventId());
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.RegistrationNumberSequence;
+import com.example.Inscription.repository.RegistrationNumberRepository;
+import com.example.Inscription.repository.RegistrationNumberSequenceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attribution des numéros d'inscription à l'approbation.
+ *
+ * Événement avec un format (registration_number_sequences) : le nœud réserve en une requête un
+ * bloc de registration.numbers.block-size numéros, puis les distribue en mémoire (un incrément
+ * atomique par approbation). Deux nœuds n'ont jamais le même bloc, donc jamais le même numéro ;
+ * les numéros d'un bloc non utilisés avant l'arrêt du nœud sont perdus (trous dans la suite).
+ * Le format ("INST-2025-{number}", "{number:5}" pour compléter par des zéros) est découpé une
+ * fois par bloc et rendu par simple concaténation.
+ *
+ * Événement sans format : un numéro pré-créé libre est pris par une seule requête
+ * (FOR UPDATE SKIP LOCKED), sans charger la liste.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RegistrationNumberAllocator {
+
+    // Au-delà, le format produit surtout des numéros déjà pris : on abandonne
+    private static final int MAX_CONFLICTS = 100;
+
+    private final RegistrationNumberSequenceRepository sequenceRepository;
+    private final RegistrationNumberRepository registrationNumberRepository;
+
+    @Value("${registration.numbers.block-size:50}")
+    private long blockSize;
+
+    private final Map<Long, Block> blocks = new ConcurrentHashMap<>();
+    // Un verrou par événement : la réservation d'un bloc (requête en REQUIRES_NEW) se fait hors de la map
+    private final Map<Long, Object> claimLocks = new ConcurrentHashMap<>();
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder blocksClaimed = new LongAdder();
+    private final LongAdder poolClaims = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * Attribue un numéro à l'inscription, dans la transaction de l'appelant
+     * @return Le numéro, ou vide si l'événement n'a ni format ni numéro pré-créé libre
+     */
+    public Optional<String> allocate(Long eventId, Long registrationId) {
+        for (int attempt = 0; attempt < MAX_CONFLICTS; attempt++) {
+            Block block = currentBlock(eventId);
+            if (block == null) {
+                List<String> claimed = registrationNumberRepository.claimUnused(eventId, registrationId);
+                if (!claimed.isEmpty()) {
+                    poolClaims.increment();
+                }
+                return claimed.stream().findFirst();
+            }
+            long value = block.next.getAndIncrement();
+            if (value >= block.end) {
+                continue;
+            }
+            String number = block.format.render(value);
+            // La contrainte unique reste le dernier garde-fou (format modifié, numéros pré-créés identiques...)
+            if (!registrationNumberRepository.insertIssued(eventId, registrationId, number, block.format.pattern).isEmpty()) {
+                issued.increment();
+                return Optional.of(number);
+            }
+            conflicts.increment();
+        }
+        throw new IllegalStateException("Could not allocate a unique registration number for event " + eventId);
+    }
+
+    /**
+     * Définit le format des numéros de l'événement ; les numéros continuent à partir de
+     * startValue ou du dernier numéro réservé s'il est plus grand
+     */
+    public RegistrationNumberSequence configure(Long eventId, String customFormat, long startValue) {
+        NumberFormat.parse(customFormat);
+        RegistrationNumberSequence sequence = sequenceRepository.findById(eventId).orElseGet(() -> {
+            RegistrationNumberSequence created = new RegistrationNumberSequence();
+            created.setEventId(eventId);
+            created.setNextValue(startValue);
+            return created;
+        });
+        sequence.setNextValue(Math.max(sequence.getNextValue(), startValue));
+        sequence.setCustomFormat(customFormat);
+        sequence.setUpdatedAt(LocalDateTime.now());
+        RegistrationNumberSequence saved = sequenceRepository.save(sequence);
+        // Les autres nœuds prennent le nouveau format à leur prochain bloc
+        blocks.remove(eventId);
+        return saved;
+    }
+
+    public void forget(Long eventId) {
+        blocks.remove(eventId);
+        claimLocks.remove(eventId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("blockSize", blockSize);
+        stats.put("issued", issued.sum());
+        stats.put("blocksClaimed", blocksClaimed.sum());
+        stats.put("preCreatedClaimed", poolClaims.sum());
+        stats.put("conflictsSkipped", conflicts.sum());
+        Map<String, Long> remaining = new LinkedHashMap<>();
+        blocks.forEach((eventId, block) -> remaining.put(String.valueOf(eventId), Math.max(0, block.end - block.next.get())));
+        stats.put("remainingInBlock", remaining);
+        return stats;
+    }
+
+    /**
+     * Bloc en cours de l'événement, réservé si absent ou épuisé ; null si l'événement n'a pas de format
+     */
+    private Block currentBlock(Long eventId) {
+        Block block = blocks.get(eventId);
+        if (block != null && block.next.get() < block.end) {
+            return block;
+        }
+        if (block == null && !sequenceRepository.existsById(eventId)) {
+            return null;
+        }
+        // Un seul thread réserve le bloc suivant, les autres approbations de l'événement l'attendent ;
+        // les autres événements ne sont pas bloqués pendant la requête
+        synchronized (claimLocks.computeIfAbsent(eventId, id -> new Object())) {
+            Block current = blocks.get(eventId);
+            if (current != null && current.next.get() < current.end) {
+                return current;
+            }
+            List<Object[]> rows = sequenceRepository.claimBlock(eventId, blockSize, LocalDateTime.now());
+            if (rows.isEmpty()) {
+                blocks.remove(eventId);
+                return null;
+            }
+            blocksClaimed.increment();
+            Object[] row = rows.get(0);
+            long first = ((Number) row[0]).longValue();
+            long end = ((Number) row[1]).longValue();
+            log.debug("Registration numbers {}..{} reserved for event {}", first, end - 1, eventId);
+            Block claimed = new Block(first, end, NumberFormat.parse((String) row[2]));
+            blocks.put(eventId, claimed);
+            return claimed;
+        }
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+        private final NumberFormat format;
+
+        Block(long first, long end, NumberFormat format) {
+            this.next = new AtomicLong(first);
+            this.end = end;
+            this.format = format;
+        }
+    }
+
+    /**
+     * Format découpé autour de {number} ou {number:largeur}
+     */
+    static class NumberFormat {
+        private final String pattern;
+        private final String prefix;
+        private final String suffix;
+        private final int width;
+
+        private NumberFormat(String pattern, String prefix, String suffix, int width) {
+            this.pattern = pattern;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.width = width;
+        }
+
+        /**
+         * @throws IllegalArgumentException si le format ne contient pas {number}
+         */
+        static NumberFormat parse(String pattern) {
+            int start = pattern == null ? -1 : pattern.indexOf("{number");
+            int close = start < 0 ? -1 : pattern.indexOf('}', start);
+            if (close < 0) {
+                throw new IllegalArgumentException("Registration number format must contain {number}, e.g. INST-2025-{number}");
+            }
+            String placeholder = pattern.substring(start + 1, close);
+            int width = 0;
+            if (placeholder.startsWith("number:")) {
+                try {
+                    width = Integer.parseInt(placeholder.substring("number:".length()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid width in " + pattern.substring(start, close + 1));
+                }
+            } else if (!placeholder.equals("number")) {
+                throw new IllegalArgumentException("Registration number format must contain {number}, e.g. INST-2025-{number}");
+            }
+            return new NumberFormat(pattern, pattern.substring(0, start), pattern.substring(close + 1), width);
+        }
+
+        String render(long value) {
+            String digits = Long.toString(value);
+            StringBuilder number = new StringBuilder(prefix.length() + Math.max(width, digits.length()) + suffix.length());
+            number.append(prefix);
+            for (int i = digits.length(); i < width; i++) {
+                number.append('0');
+            }
+            return number.append(digits).append(suffix).toString();
+        }
+    }
+}
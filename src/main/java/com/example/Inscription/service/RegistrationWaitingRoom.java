@@ -0,0 +1,267 @@
+package com.example.Inscription.service;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Salle d'attente virtuelle des inscriptions, activée événement par événement.
+ *
+ * Chaque candidat reçoit un ticket numéroté ; un ordonnanceur admet les tickets dans l'ordre
+ * d'arrivée au rythme d'un token bucket par événement (registration.waiting-room.admit-per-second).
+ * Un ticket admis ouvre les endpoints d'inscription et d'upload pendant admission-ttl-seconds.
+ * La position se calcule sans base de données ni parcours de la file : numéro du ticket moins
+ * numéro du dernier ticket sorti. Un ticket qui n'est plus consulté pendant abandon-after-seconds
+ * est sauté à son tour.
+ *
+ * La file est en mémoire : avec plusieurs nœuds, chaque nœud admet à ce rythme (le répartiteur
+ * doit garder un candidat sur le même nœud).
+ */
+@Component
+@RequiredArgsConstructor
+public class RegistrationWaitingRoom {
+
+    // En-tête portant le ticket admis sur les appels d'inscription et d'upload
+    public static final String TICKET_HEADER = "X-Waiting-Room-Ticket";
+
+    private final EventMetadataCache eventMetadataCache;
+
+    @Value("${registration.waiting-room.admit-per-second:20}")
+    private double admitPerSecond;
+
+    @Value("${registration.waiting-room.burst:20}")
+    private double burst;
+
+    @Value("${registration.waiting-room.max-queue:100000}")
+    private int maxQueue;
+
+    @Value("${registration.waiting-room.admission-ttl-seconds:600}")
+    private long admissionTtlSeconds;
+
+    @Value("${registration.waiting-room.abandon-after-seconds:60}")
+    private long abandonAfterSeconds;
+
+    @Value("${registration.waiting-room.poll-interval-seconds:5}")
+    private long pollIntervalSeconds;
+
+    // Une salle par événement ayant reçu des candidats, gardée ensuite (quelques objets par événement)
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    public enum State {
+        WAITING, ADMITTED, EXPIRED
+    }
+
+    /**
+     * Position d'un ticket, renvoyée au candidat qui attend
+     */
+    @Data
+    public static class TicketStatus {
+        private final String ticket;
+        private final Long eventId;
+        private final State state;
+        private final long position;
+        private final long estimatedWaitSeconds;
+        private final long pollAfterSeconds;
+    }
+
+    public boolean isActive(Long eventId) {
+        return eventMetadataCache.get(eventId).isWaitingRoom();
+    }
+
+    /**
+     * Donne un ticket au candidat, ou lui rend le sien s'il en a déjà un valide (un rafraîchissement
+     * de page ne le renvoie pas en fin de file)
+     * @throws IllegalStateException si la salle d'attente de l'événement est pleine
+     */
+    public TicketStatus join(Long eventId, String owner) {
+        Room room = rooms.computeIfAbsent(eventId, id -> new Room(new TokenBucket(burst, admitPerSecond)));
+        long now = System.nanoTime();
+        Ticket ticket = room.byOwner.compute(owner, (o, current) -> {
+            if (current != null && !current.isExpired(now)) {
+                current.lastPoll = now;
+                return current;
+            }
+            if (room.waiting.get() >= maxQueue) {
+                room.rejected.increment();
+                throw new IllegalStateException("Waiting room is full, please retry later");
+            }
+            Ticket created = new Ticket(UUID.randomUUID().toString(), o, room.nextSeq.incrementAndGet(), now);
+            room.tickets.put(created.id, created);
+            room.queue.add(created);
+            room.waiting.incrementAndGet();
+            room.joined.increment();
+            return created;
+        });
+        return status(eventId, room, ticket, now);
+    }
+
+    /**
+     * Position du ticket ; chaque consultation prouve que le candidat attend toujours
+     */
+    public TicketStatus status(Long eventId, String ticketId, String owner) {
+        Room room = rooms.get(eventId);
+        Ticket ticket = room != null ? room.tickets.get(ticketId) : null;
+        if (ticket == null || !ticket.owner.equals(owner)) {
+            throw new IllegalArgumentException("Unknown waiting room ticket");
+        }
+        long now = System.nanoTime();
+        if (!ticket.isExpired(now)) {
+            ticket.lastPoll = now;
+        }
+        return status(eventId, room, ticket, now);
+    }
+
+    /**
+     * Vrai si l'événement n'a pas de salle d'attente active, ou si le ticket du candidat a été admis
+     */
+    public boolean isAdmitted(Long eventId, String owner, String ticketId) {
+        if (!isActive(eventId)) {
+            return true;
+        }
+        Room room = rooms.get(eventId);
+        Ticket ticket = room != null && ticketId != null ? room.tickets.get(ticketId) : null;
+        return ticket != null && ticket.owner.equals(owner) && ticket.admittedUntil != 0
+                && !ticket.isExpired(System.nanoTime());
+    }
+
+    /**
+     * Corps de la réponse 429 renvoyée à un candidat sans ticket admis
+     */
+    public Map<String, Object> notAdmittedBody(Long eventId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", "Registrations for this event go through the waiting room");
+        body.put("waitingRoom", true);
+        body.put("eventId", eventId);
+        body.put("join", "/api/student/registration/events/" + eventId + "/waiting-room");
+        return body;
+    }
+
+    public long getPollIntervalSeconds() {
+        return pollIntervalSeconds;
+    }
+
+    /**
+     * Admet les tickets en tête de file au rythme du token bucket de chaque événement
+     */
+    @Scheduled(fixedDelayString = "${registration.waiting-room.tick-ms:200}")
+    public void admit() {
+        long now = System.nanoTime();
+        long abandonNanos = TimeUnit.SECONDS.toNanos(abandonAfterSeconds);
+        for (Room room : rooms.values()) {
+            Ticket ticket;
+            while ((ticket = room.queue.peek()) != null) {
+                if (now - ticket.lastPoll > abandonNanos) {
+                    // Le candidat a quitté la page : son tour passe sans consommer de jeton
+                    room.queue.poll();
+                    room.headSeq = ticket.seq;
+                    room.waiting.decrementAndGet();
+                    room.abandoned.increment();
+                    forget(room, ticket);
+                    continue;
+                }
+                if (!room.bucket.tryAcquire()) {
+                    break;
+                }
+                room.queue.poll();
+                room.headSeq = ticket.seq;
+                room.waiting.decrementAndGet();
+                ticket.admittedUntil = now + TimeUnit.SECONDS.toNanos(admissionTtlSeconds);
+                room.admitted.increment();
+            }
+            room.tickets.values().removeIf(t -> {
+                if (t.isExpired(now)) {
+                    room.byOwner.remove(t.owner, t);
+                    return true;
+                }
+                return false;
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("admitPerSecond", admitPerSecond);
+        Map<String, Object> perEvent = new LinkedHashMap<>();
+        rooms.forEach((eventId, room) -> {
+            Map<String, Object> roomStats = new LinkedHashMap<>();
+            roomStats.put("waiting", room.waiting.get());
+            roomStats.put("tickets", room.tickets.size());
+            roomStats.put("joined", room.joined.sum());
+            roomStats.put("admitted", room.admitted.sum());
+            roomStats.put("abandoned", room.abandoned.sum());
+            roomStats.put("rejectedFull", room.rejected.sum());
+            perEvent.put(String.valueOf(eventId), roomStats);
+        });
+        stats.put("events", perEvent);
+        return stats;
+    }
+
+    private TicketStatus status(Long eventId, Room room, Ticket ticket, long now) {
+        if (ticket.isExpired(now)) {
+            return new TicketStatus(ticket.id, eventId, State.EXPIRED, 0, 0, 0);
+        }
+        if (ticket.admittedUntil != 0) {
+            return new TicketStatus(ticket.id, eventId, State.ADMITTED, 0, 0, 0);
+        }
+        long position = Math.max(1, ticket.seq - room.headSeq);
+        long estimatedWait = (long) Math.ceil(position / admitPerSecond);
+        return new TicketStatus(ticket.id, eventId, State.WAITING, position, estimatedWait, pollIntervalSeconds);
+    }
+
+    private void forget(Room room, Ticket ticket) {
+        room.tickets.remove(ticket.id);
+        room.byOwner.remove(ticket.owner, ticket);
+    }
+
+    private class Ticket {
+        private final String id;
+        private final String owner;
+        private final long seq;
+        private volatile long lastPoll;
+        // 0 tant que le ticket attend, sinon fin de validité de l'admission (System.nanoTime)
+        private volatile long admittedUntil;
+
+        Ticket(String id, String owner, long seq, long now) {
+            this.id = id;
+            this.owner = owner;
+            this.seq = seq;
+            this.lastPoll = now;
+        }
+
+        boolean isExpired(long now) {
+            return admittedUntil != 0 ? now - admittedUntil > 0
+                    : now - lastPoll > TimeUnit.SECONDS.toNanos(abandonAfterSeconds);
+        }
+    }
+
+    private static class Room {
+        private final TokenBucket bucket;
+        private final Queue<Ticket> queue = new ConcurrentLinkedQueue<>();
+        private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+        private final Map<String, Ticket> byOwner = new ConcurrentHashMap<>();
+        private final AtomicLong nextSeq = new AtomicLong();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private volatile long headSeq;
+        private final LongAdder joined = new LongAdder();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder abandoned = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Room(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+}
@@ -9,8 +9,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
-import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +19,10 @@ public class StudentEventRegistrationService {
     private final StudentEventRegistrationRepository registrationRepository;
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
+    private final ReceiptIndexService receiptIndexService;
+    private final EventMetadataCache eventMetadataCache;
+    private final EventEligibilityIndex eventEligibilityIndex;
+    private final CandidateDeduplication candidateDeduplication;
     
     /**
      * Register a student for an event
@@ -33,11 +35,34 @@ public class StudentEventRegistrationService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
         
-        Event event = eventRepository.findById(eventId)
-                .orElseThrow(() -> new IllegalArgumentException("Event not found"));
+        return registerForEvent(user, eventId, releveDeNoteFile, releveDeNoteFilename,
+                bordereauFile, bordereauFilename, numeroBordereau, null);
+    }
+    
+    /**
+     * Register a student for an event (using object)
+     */
+    public StudentEventRegistration registerForEvent(StudentEventRegistration registration) throws Exception {
+        return registerForEvent(registration.getUser(), registration.getEvent().getId(),
+                registration.getReleveDeNoteFile(), registration.getReleveDeNoteFilename(),
+                registration.getBordereauFile(), registration.getBordereauFilename(),
+                registration.getNumeroBordereau(), registration.getIdempotencyKey());
+    }
+    
+    /**
+     * Register a student for an event, checked against the cached event metadata.
+     * A single insert skipped on (user, event) conflict: concurrent submissions of the same
+     * student create one registration, a retry with the same idempotency key gets it back.
+     */
+    public StudentEventRegistration registerForEvent(User user, Long eventId,
+            byte[] releveDeNoteFile, String releveDeNoteFilename,
+            byte[] bordereauFile, String bordereauFilename,
+            String numeroBordereau, String idempotencyKey) {
+        
+        EventMetadataCache.EventMetadata event = eventMetadataCache.get(eventId);
         
         // Check if registration period is open
-        if (!event.getRegistrationsOpen()) {
+        if (!event.isRegistrationsOpen()) {
             throw new IllegalStateException("Registrations are temporarily paused for this event");
         }
         
@@ -47,66 +72,66 @@ public class StudentEventRegistrationService {
             throw new IllegalStateException("Registration deadline has passed for this event");
         }
         
-        // Check if student already registered
-        Optional<StudentEventRegistration> existing = registrationRepository.findByUserIdAndEventId(userId, eventId);
-        if (existing.isPresent()) {
-            throw new IllegalArgumentException("Student is already registered for this event");
+        // Check if student has eligible bac series
+        boolean isEligible = isStudentEligible(user, eventId);
+        
+        // Check the student is not already registered through another account: refused on a
+        // matching CIN, sent to review on a name / birth date / phone resemblance
+        RegistrationStatus status = RegistrationStatus.PENDING;
+        CandidateDeduplication.Suspects suspects = candidateDeduplication.suspects(user);
+        if (!suspects.isEmpty()) {
+            List<Long> registered = registrationRepository.findRegisteredUserIds(eventId, suspects.all());
+            if (suspects.blocks(registered)) {
+                throw new IllegalStateException("A registration for this candidate already exists under another account");
+            }
+            if (suspects.needsReview(registered)) {
+                status = RegistrationStatus.UNDER_REVIEW;
+                log.info("Registration of user {} to event {} flagged for review: possible duplicate of {}",
+                        user.getId(), eventId, registered);
+            }
         }
         
-        // Check if student has eligible bac series
-        boolean isEligible = isStudentEligible(user, event);
+        List<Long> created = registrationRepository.insertIfAbsent(user.getId(), eventId, status.name(),
+                releveDeNoteFile, releveDeNoteFilename, bordereauFile, bordereauFilename,
+                numeroBordereau, isEligible, idempotencyKey, now);
+        if (created.isEmpty()) {
+            StudentEventRegistration existing = registrationRepository.findByUserIdAndEventId(user.getId(), eventId)
+                    .orElseThrow(() -> new IllegalStateException("Registration conflict, please retry"));
+            if (idempotencyKey != null && idempotencyKey.equals(existing.getIdempotencyKey())) {
+                return existing;
+            }
+            throw new IllegalArgumentException("Student is already registered for this event");
+        }
         
+        // Registration as inserted, without reading the files back
         StudentEventRegistration registration = new StudentEventRegistration();
+        registration.setId(created.get(0));
         registration.setUser(user);
-        registration.setEvent(event);
-        registration.setStatus(RegistrationStatus.PENDING);
+        registration.setEvent(eventRepository.getReferenceById(eventId));
+        registration.setStatus(status);
         registration.setReleveDeNoteFile(releveDeNoteFile);
         registration.setReleveDeNoteFilename(releveDeNoteFilename);
         registration.setBordereauFile(bordereauFile);
         registration.setBordereauFilename(bordereauFilename);
         registration.setNumeroBordereau(numeroBordereau);
         registration.setIsEligible(isEligible);
-        registration.setIsReleveVerified(false);
-        registration.setIsBordereauVerified(false);
-        registration.setIsConvocationSent(false);
+        registration.setIdempotencyKey(idempotencyKey);
+        registration.setCreatedAt(now);
+        registration.setUpdatedAt(now);
         
-        return registrationRepository.save(registration);
-    }
-    
-    /**
-     * Register a student for an event (using object)
-     */
-    public StudentEventRegistration registerForEvent(StudentEventRegistration registration) throws Exception {
-        // Check if registration period is open
-        if (!registration.getEvent().getRegistrationsOpen()) {
-            throw new IllegalStateException("Registrations are temporarily paused for this event");
-        }
-        
-        // Check if registration deadline has passed
-        LocalDateTime now = LocalDateTime.now();
-        if (now.isAfter(registration.getEvent().getRegistrationEnd())) {
-            throw new IllegalStateException("Registration deadline has passed for this event");
-        }
-        
-        // Check if student already registered
-        Optional<StudentEventRegistration> existing = registrationRepository.findByUserIdAndEventId(
-                registration.getUser().getId(), 
-                registration.getEvent().getId());
-        if (existing.isPresent()) {
-            throw new IllegalArgumentException("Student is already registered for this event");
-        }
-        
-        return registrationRepository.save(registration);
+        receiptIndexService.indexReceipt(ReceiptIndexService.SOURCE_STUDENT_EVENT_REGISTRATION, registration.getId(),
+                eventId, user.getId(), numeroBordereau, bordereauFile, bordereauFilename);
+        return registration;
     }
     
     /**
      * Check if student has eligible bac series for the event
      */
-    private boolean isStudentEligible(User user, Event event) {
-        if (user.getBacSeries() == null || event.getEligibleSeries() == null || event.getEligibleSeries().isEmpty()) {
+    private boolean isStudentEligible(User user, Long eventId) {
+        if (user.getBacSeries() == null || !eventEligibilityIndex.restrictsSeries(eventId)) {
             return true; // No series restriction
         }
-        return event.getEligibleSeries().contains(user.getBacSeries());
+        return eventEligibilityIndex.listsSeries(eventId, user.getBacSeries());
     }
     
     /**
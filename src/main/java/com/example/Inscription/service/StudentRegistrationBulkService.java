@@ -0,0 +1,161 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.RegistrationStatus;
+import com.example.Inscription.repository.StudentEventRegistrationRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Traitement groupé des dossiers d'un événement : approbation, rejet, vérification du relevé
+ * ou du bordereau, convocation.
+ *
+ * Au lieu de charger et d'enregistrer chaque inscription, un UPDATE ... RETURNING id par lot
+ * de registration.bulk.chunk-size ids (une transaction par lot) applique la transition avec la
+ * même précondition que la méthode unitaire de StudentEventRegistrationService. Les ids non
+ * modifiés sont relus en une requête pour dire pourquoi (inconnu, déjà fait, précondition).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StudentRegistrationBulkService {
+
+    private final StudentEventRegistrationRepository registrationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${registration.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${registration.bulk.max-registrations:20000}")
+    private int maxRegistrations;
+
+    public enum Action {
+        APPROVE, REJECT, VERIFY_RELEVE, VERIFY_BORDEREAU, SEND_CONVOCATION
+    }
+
+    public enum Outcome {
+        UPDATED, UNCHANGED, PRECONDITION_FAILED, NOT_FOUND
+    }
+
+    /**
+     * Résultat d'un id
+     */
+    @Data
+    public static class Result {
+        private final Long id;
+        private final Outcome outcome;
+        private final String reason;
+    }
+
+    /**
+     * Ids des inscriptions de l'événement correspondant au filtre (critère null = ignoré)
+     */
+    public List<Long> findIds(Long eventId, RegistrationStatus status, Boolean eligible, Boolean releveVerified,
+                              Boolean bordereauVerified, Boolean convocationSent) {
+        return registrationRepository.findIdsForBulk(eventId, status, eligible, releveVerified,
+                bordereauVerified, convocationSent);
+    }
+
+    /**
+     * Applique l'action aux inscriptions de l'événement, lot par lot
+     * @param verified valeur posée par VERIFY_RELEVE et VERIFY_BORDEREAU, ignorée sinon
+     * @return Le résultat de chaque id, dans l'ordre de la demande (doublons retirés)
+     * @throws IllegalArgumentException si aucun id n'est donné ou s'il y en a plus que registration.bulk.max-registrations
+     */
+    public List<Result> apply(Long eventId, Action action, boolean verified, List<Long> ids) {
+        Set<Long> unique = new LinkedHashSet<>(ids);
+        unique.remove(null);
+        if (unique.isEmpty()) {
+            throw new IllegalArgumentException("No registration selected");
+        }
+        if (unique.size() > maxRegistrations) {
+            throw new IllegalArgumentException("Too many registrations in one request (max " + maxRegistrations + ")");
+        }
+        List<Long> targets = new ArrayList<>(unique);
+        List<Result> results = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i += chunkSize) {
+            List<Long> chunk = targets.subList(i, Math.min(targets.size(), i + chunkSize));
+            results.addAll(transactionTemplate.execute(tx -> applyChunk(eventId, action, verified, chunk)));
+        }
+        log.info("Bulk {} on event {}: {}", action, eventId, summary(results));
+        return results;
+    }
+
+    /**
+     * Nombre d'ids par résultat
+     */
+    public static Map<Outcome, Long> summary(List<Result> results) {
+        Map<Outcome, Long> summary = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            summary.put(outcome, 0L);
+        }
+        results.forEach(r -> summary.merge(r.getOutcome(), 1L, Long::sum));
+        return summary;
+    }
+
+    private List<Result> applyChunk(Long eventId, Action action, boolean verified, List<Long> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> updated = switch (action) {
+            case APPROVE -> registrationRepository.approveAll(eventId, chunk, now);
+            case REJECT -> registrationRepository.rejectAll(eventId, chunk, now);
+            case VERIFY_RELEVE -> registrationRepository.setReleveVerified(eventId, chunk, verified, now);
+            case VERIFY_BORDEREAU -> registrationRepository.setBordereauVerified(eventId, chunk, verified, now);
+            case SEND_CONVOCATION -> registrationRepository.markConvocationSent(eventId, chunk, now);
+        };
+        Set<Long> updatedIds = new HashSet<>(updated);
+
+        List<Long> notUpdated = chunk.stream().filter(id -> !updatedIds.contains(id)).toList();
+        Map<Long, Object[]> states = new HashMap<>();
+        if (!notUpdated.isEmpty()) {
+            for (Object[] row : registrationRepository.findBulkState(notUpdated)) {
+                states.put((Long) row[0], row);
+            }
+        }
+
+        List<Result> results = new ArrayList<>(chunk.size());
+        for (Long id : chunk) {
+            if (updatedIds.contains(id)) {
+                results.add(new Result(id, Outcome.UPDATED, null));
+                continue;
+            }
+            Object[] state = states.get(id);
+            // Une inscription d'un autre événement est traitée comme inconnue
+            if (state == null || !Objects.equals(state[1], eventId)) {
+                results.add(new Result(id, Outcome.NOT_FOUND, "Registration not found"));
+                continue;
+            }
+            results.add(explain(id, action, (RegistrationStatus) state[2]));
+        }
+        return results;
+    }
+
+    /**
+     * Raison pour laquelle une inscription de l'événement n'a pas été modifiée
+     */
+    private static Result explain(Long id, Action action, RegistrationStatus status) {
+        return switch (action) {
+            case APPROVE -> status == RegistrationStatus.APPROVED
+                    ? new Result(id, Outcome.UNCHANGED, "Already approved")
+                    : new Result(id, Outcome.PRECONDITION_FAILED, "Cannot approve registration: not all documents are verified");
+            case REJECT -> new Result(id, Outcome.UNCHANGED, "Already rejected");
+            case VERIFY_RELEVE, VERIFY_BORDEREAU -> new Result(id, Outcome.UNCHANGED, "Verification already set");
+            case SEND_CONVOCATION -> status == RegistrationStatus.APPROVED
+                    ? new Result(id, Outcome.UNCHANGED, "Convocation already sent")
+                    : new Result(id, Outcome.PRECONDITION_FAILED, "Can only send convocation to approved registrations");
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.Inscription.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket thread-safe : {@code capacity} jetons au maximum, rechargés en continu
+ * à raison de {@code refillPerSecond} jetons par seconde.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Token bucket capacity must be >= 1 and refill rate > 0");
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Consomme un jeton s'il est disponible, sans attendre
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Bloque jusqu'à ce qu'un jeton soit disponible
+     */
+    public void acquire() throws InterruptedException {
+        while (!tryAcquire()) {
+            long waitNanos = nanosUntilAvailable();
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * Temps restant (en nanosecondes) avant le prochain jeton, 0 si un jeton est disponible
+     */
+    public synchronized long nanosUntilAvailable() {
+        return nanosUntil(1);
+    }
+
+    /**
+     * Temps restant (en nanosecondes) avant que {@code count} jetons soient disponibles au rythme de recharge
+     */
+    public synchronized long nanosUntil(double count) {
+        refill();
+        if (tokens >= count) {
+            return 0;
+        }
+        return (long) Math.ceil((count - tokens) / refillPerNano);
+    }
+
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
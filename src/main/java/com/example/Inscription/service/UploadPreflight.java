@@ -0,0 +1,379 @@
+package com.example.Inscription.service;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contrôle rapide d'un fichier uploadé avant toute analyse coûteuse (OCR, Gemini).
+ *
+ * Le type est déduit des premiers octets (et non du Content-Type ou de l'extension envoyés
+ * par le client). Pour un PDF, la structure est lue directement dans les octets : marqueurs
+ * de début et de fin, dictionnaire /Encrypt, nombre de pages (/Count de l'arbre des pages)
+ * et présence de polices (couche texte). PDFBox n'est ouvert que si l'arbre des pages est
+ * compressé. Pour une image, les dimensions sont lues dans l'en-tête PNG, JPEG ou WebP.
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadPreflight {
+
+    public static final String PDF = "application/pdf";
+    public static final String PNG = "image/png";
+    public static final String JPEG = "image/jpeg";
+    public static final String WEBP = "image/webp";
+
+    private static final byte[] PDF_HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_EOF = "%%EOF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_ENCRYPT = "/Encrypt".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_COUNT = "/Count".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PDF_FONT = "/Font".getBytes(StandardCharsets.US_ASCII);
+
+    // Zones lues au début et à la fin d'un PDF (en-tête, trailer, dictionnaire de chiffrement)
+    private static final int PDF_HEAD_BYTES = 4096;
+    private static final int PDF_TAIL_BYTES = 65536;
+
+    private final PdfLoader pdfLoader;
+
+    @Value("${upload.preflight.min-bytes:100}")
+    private int minBytes;
+
+    @Value("${upload.preflight.max-bytes:52428800}")
+    private long maxBytes;
+
+    @Value("${upload.preflight.min-image-edge:300}")
+    private int minImageEdge;
+
+    @Value("${upload.preflight.default-max-pages:30}")
+    private int defaultMaxPages;
+
+    // type:pages, ex: releve_de_note:5
+    @Value("${upload.preflight.max-pages:releve_de_note:5,diplome:3,bordereau_paiement:3,piece_identite:2}")
+    private List<String> maxPagesByType;
+
+    private final Map<Reason, LongAdder> rejections = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder pdfBoxFallbacks = new LongAdder();
+    private final LatencyStats latency = new LatencyStats();
+
+    /**
+     * Motifs de rejet
+     */
+    public enum Reason {
+        EMPTY, TOO_LARGE, UNSUPPORTED_TYPE, CORRUPTED, ENCRYPTED, TOO_MANY_PAGES, IMAGE_TOO_SMALL
+    }
+
+    /**
+     * Contrôle le fichier
+     * @param expectedType Type de document attendu (releve_de_note...), null si inconnu
+     */
+    public Report inspect(byte[] bytes, String expectedType) {
+        long start = System.nanoTime();
+        Report report = new Report();
+        check(bytes, expectedType, report);
+        latency.record(System.nanoTime() - start);
+        report.setElapsedMicros((System.nanoTime() - start) / 1000);
+        if (report.isAccepted()) {
+            accepted.increment();
+        } else {
+            rejections.computeIfAbsent(report.getReason(), k -> new LongAdder()).increment();
+        }
+        return report;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("accepted", accepted.sum());
+        Map<String, Long> rejected = new TreeMap<>();
+        rejections.forEach((reason, count) -> rejected.put(reason.name(), count.sum()));
+        stats.put("rejected", rejected);
+        stats.put("pdfBoxFallbacks", pdfBoxFallbacks.sum());
+        stats.put("latency", latency.snapshot());
+        return stats;
+    }
+
+    private void check(byte[] bytes, String expectedType, Report report) {
+        if (bytes == null || bytes.length < minBytes) {
+            report.reject(Reason.EMPTY, "Fichier vide ou tronqué");
+            return;
+        }
+        report.setSize(bytes.length);
+        if (bytes.length > maxBytes) {
+            report.reject(Reason.TOO_LARGE, "Fichier trop volumineux (max " + maxBytes / (1024 * 1024) + " Mo)");
+            return;
+        }
+        report.setMimeType(sniff(bytes));
+        if (report.getMimeType() == null) {
+            report.reject(Reason.UNSUPPORTED_TYPE, "Format non pris en charge (PDF, JPEG, PNG ou WebP attendu)");
+            return;
+        }
+        if (PDF.equals(report.getMimeType())) {
+            checkPdf(bytes, expectedType, report);
+        } else {
+            checkImage(bytes, report);
+        }
+    }
+
+    private void checkPdf(byte[] bytes, String expectedType, Report report) {
+        int tailStart = Math.max(0, bytes.length - PDF_TAIL_BYTES);
+        if (indexOf(bytes, PDF_EOF, Math.max(0, bytes.length - 2048), bytes.length) < 0) {
+            report.reject(Reason.CORRUPTED, "PDF incomplet ou endommagé (marqueur de fin absent)");
+            return;
+        }
+        // Un PDF linéarisé place son trailer au début
+        boolean encrypted = indexOf(bytes, PDF_ENCRYPT, tailStart, bytes.length) >= 0
+                || indexOf(bytes, PDF_ENCRYPT, 0, Math.min(bytes.length, PDF_HEAD_BYTES)) >= 0;
+        int pages = maxCount(bytes);
+        boolean text = indexOf(bytes, PDF_FONT, 0, bytes.length) >= 0;
+
+        if (pages < 0 || encrypted) {
+            // Arbre des pages dans un flux d'objets compressé, ou PDF chiffré qui ne s'ouvre
+            // peut-être qu'avec un mot de passe : lecture par PDFBox
+            pdfBoxFallbacks.increment();
+            try {
+                int[] counted = pdfLoader.withDocument(bytes, document -> {
+                    int fonts = 0;
+                    if (document.getNumberOfPages() > 0 && document.getPage(0).getResources() != null) {
+                        for (Object ignored : document.getPage(0).getResources().getFontNames()) {
+                            fonts++;
+                        }
+                    }
+                    return new int[]{document.getNumberOfPages(), document.isEncrypted() ? 1 : 0, fonts};
+                });
+                pages = counted[0];
+                encrypted = counted[1] == 1; // chiffré mais lisible sans mot de passe (droits restreints)
+                text = text || counted[2] > 0;
+            } catch (InvalidPasswordException e) {
+                report.setEncrypted(true);
+                report.reject(Reason.ENCRYPTED, "PDF protégé par mot de passe");
+                return;
+            } catch (IllegalStateException e) {
+                throw e; // limite de PDF ouverts atteinte, le fichier n'est pas en cause
+            } catch (Exception e) {
+                report.reject(Reason.CORRUPTED, "PDF illisible : " + e.getMessage());
+                return;
+            }
+        }
+        report.setEncrypted(encrypted);
+        report.setPages(pages);
+        report.setTextLayer(text);
+        if (pages <= 0) {
+            report.reject(Reason.CORRUPTED, "PDF sans page");
+        } else if (pages > maxPages(expectedType)) {
+            report.reject(Reason.TOO_MANY_PAGES, "Trop de pages (" + pages + ") pour un document de type "
+                    + (expectedType == null ? "inconnu" : expectedType) + " (max " + maxPages(expectedType) + ")");
+        }
+    }
+
+    private void checkImage(byte[] bytes, Report report) {
+        int[] size = switch (report.getMimeType()) {
+            case PNG -> pngSize(bytes);
+            case JPEG -> jpegSize(bytes);
+            default -> webpSize(bytes);
+        };
+        if (size == null) {
+            report.reject(Reason.CORRUPTED, "En-tête d'image illisible");
+            return;
+        }
+        report.setPages(1);
+        report.setWidth(size[0]);
+        report.setHeight(size[1]);
+        if (Math.min(size[0], size[1]) < minImageEdge) {
+            report.reject(Reason.IMAGE_TOO_SMALL, "Image trop petite pour être lue (" + size[0] + "x" + size[1]
+                    + ", minimum " + minImageEdge + " px de côté)");
+        }
+    }
+
+    private int maxPages(String expectedType) {
+        if (expectedType != null) {
+            for (String entry : maxPagesByType) {
+                int colon = entry.lastIndexOf(':');
+                if (colon > 0 && entry.substring(0, colon).trim().equals(expectedType)) {
+                    return Integer.parseInt(entry.substring(colon + 1).trim());
+                }
+            }
+        }
+        return defaultMaxPages;
+    }
+
+    /**
+     * Type MIME d'après les premiers octets, null si non pris en charge
+     */
+    static String sniff(byte[] b) {
+        if (indexOf(b, PDF_HEADER, 0, Math.min(b.length, 1024)) >= 0) {
+            return PDF;
+        }
+        if (b.length >= 8 && (b[0] & 0xff) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G') {
+            return PNG;
+        }
+        if (b.length >= 3 && (b[0] & 0xff) == 0xFF && (b[1] & 0xff) == 0xD8 && (b[2] & 0xff) == 0xFF) {
+            return JPEG;
+        }
+        if (b.length >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') {
+            return WEBP;
+        }
+        return null;
+    }
+
+    /**
+     * Plus grande valeur de /Count : celle de la racine de l'arbre des pages. -1 si absente
+     */
+    private static int maxCount(byte[] b) {
+        int max = -1;
+        int from = 0;
+        while ((from = indexOf(b, PDF_COUNT, from, b.length)) >= 0) {
+            int i = from + PDF_COUNT.length;
+            while (i < b.length && (b[i] == ' ' || b[i] == '\r' || b[i] == '\n' || b[i] == '\t')) {
+                i++;
+            }
+            int value = 0;
+            int digits = 0;
+            while (i < b.length && b[i] >= '0' && b[i] <= '9' && digits < 7) {
+                value = value * 10 + (b[i] - '0');
+                digits++;
+                i++;
+            }
+            if (digits > 0) {
+                max = Math.max(max, value);
+            }
+            from = i;
+        }
+        return max;
+    }
+
+    private static int[] pngSize(byte[] b) {
+        if (b.length < 24) {
+            return null;
+        }
+        return new int[]{readInt(b, 16, true), readInt(b, 20, true)};
+    }
+
+    /**
+     * Parcourt les segments JPEG jusqu'au premier marqueur SOF (début de trame)
+     */
+    private static int[] jpegSize(byte[] b) {
+        int i = 2;
+        while (i + 9 < b.length) {
+            if ((b[i] & 0xff) != 0xFF) {
+                return null;
+            }
+            int marker = b[i + 1] & 0xff;
+            if (marker == 0xFF) {
+                i++;
+                continue;
+            }
+            int length = ((b[i + 2] & 0xff) << 8) | (b[i + 3] & 0xff);
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                int height = ((b[i + 5] & 0xff) << 8) | (b[i + 6] & 0xff);
+                int width = ((b[i + 7] & 0xff) << 8) | (b[i + 8] & 0xff);
+                return new int[]{width, height};
+            }
+            i += 2 + length;
+        }
+        return null;
+    }
+
+    private static int[] webpSize(byte[] b) {
+        if (b.length < 30) {
+            return null;
+        }
+        String chunk = new String(b, 12, 4, StandardCharsets.US_ASCII);
+        switch (chunk) {
+            case "VP8X":
+                return new int[]{1 + readInt24(b, 24), 1 + readInt24(b, 27)};
+            case "VP8 ":
+                return new int[]{(readShortLe(b, 26)) & 0x3FFF, (readShortLe(b, 28)) & 0x3FFF};
+            case "VP8L":
+                int bits = readInt(b, 21, false);
+                return new int[]{1 + (bits & 0x3FFF), 1 + ((bits >> 14) & 0x3FFF)};
+            default:
+                return null;
+        }
+    }
+
+    private static int readInt(byte[] b, int offset, boolean bigEndian) {
+        if (bigEndian) {
+            return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+        }
+        return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8) | ((b[offset + 2] & 0xff) << 16) | ((b[offset + 3] & 0xff) << 24);
+    }
+
+    private static int readInt24(byte[] b, int offset) {
+        return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8) | ((b[offset + 2] & 0xff) << 16);
+    }
+
+    private static int readShortLe(byte[] b, int offset) {
+        return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8);
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle, int from, int to) {
+        int last = to - needle.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (haystack[i] != needle[0]) {
+                continue;
+            }
+            for (int j = 1; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Résultat du contrôle
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Report {
+        private boolean accepted = true;
+        private Reason reason;
+        private String message;
+        private String mimeType;
+        private long size;
+        private int pages;
+        private int width;
+        private int height;
+        private boolean encrypted;
+        private boolean textLayer;
+        private long elapsedMicros;
+
+        private void reject(Reason reason, String message) {
+            this.accepted = false;
+            this.reason = reason;
+            this.message = message;
+        }
+
+        /**
+         * Code HTTP à renvoyer quand le fichier est refusé
+         */
+        public int httpStatus() {
+            if (reason == Reason.TOO_LARGE) {
+                return 413;
+            }
+            return reason == Reason.UNSUPPORTED_TYPE ? 415 : 400;
+        }
+
+        /**
+         * Corps d'erreur renvoyé au client quand le fichier est refusé
+         */
+        public Map<String, Object> toErrorBody() {
+            Map<String, Object> body = new HashMap<>();
+            body.put("success", false);
+            body.put("error", message);
+            body.put("reason", reason);
+            return body;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.Inscription.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pools dédiés aux traitements lourds, pour que les threads Tomcat restent disponibles
+ * pour les requêtes ordinaires (/api/events/active...) :
+ * - cpu : OCR, rendu et rastérisation de PDF (taille = nombre de CPU par défaut)
+ * - ai : appels bloquants vers Gemini et le service IA Python (beaucoup de threads, peu de CPU)
+ * - bulk : traitements de masse en base (vérifications par lot, rattrapages)
+ *
+ * cpu et ai rejettent quand leur file est pleine (l'appelant répond 503) ; bulk fait
+ * exécuter la tâche par l'appelant, ce qui ralentit le producteur au lieu de perdre la tâche.
+ */
+@Component
+@Slf4j
+public class WorkExecutors {
+
+    @Value("${executors.cpu.threads:0}")
+    private int cpuThreads;
+
+    @Value("${executors.cpu.queue-capacity:100}")
+    private int cpuQueueCapacity;
+
+    @Value("${executors.ai.threads:16}")
+    private int aiThreads;
+
+    @Value("${executors.ai.queue-capacity:200}")
+    private int aiQueueCapacity;
+
+    @Value("${executors.bulk.threads:2}")
+    private int bulkThreads;
+
+    @Value("${executors.bulk.queue-capacity:1000}")
+    private int bulkQueueCapacity;
+
+    private BoundedExecutor cpu;
+    private BoundedExecutor ai;
+    private BoundedExecutor bulk;
+
+    @PostConstruct
+    void start() {
+        int cpuSize = cpuThreads > 0 ? cpuThreads : Runtime.getRuntime().availableProcessors();
+        cpu = new BoundedExecutor("cpu", cpuSize, cpuQueueCapacity, false);
+        ai = new BoundedExecutor("ai", aiThreads, aiQueueCapacity, false);
+        bulk = new BoundedExecutor("bulk", bulkThreads, bulkQueueCapacity, true);
+        log.info("Work executors started: cpu={} ai={} bulk={} threads", cpuSize, aiThreads, bulkThreads);
+    }
+
+    @PreDestroy
+    void stop() {
+        cpu.shutdown();
+        ai.shutdown();
+        bulk.shutdown();
+    }
+
+    public BoundedExecutor cpu() {
+        return cpu;
+    }
+
+    public BoundedExecutor ai() {
+        return ai;
+    }
+
+    public BoundedExecutor bulk() {
+        return bulk;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(cpu.getName(), cpu.stats());
+        stats.put(ai.getName(), ai.stats());
+        stats.put(bulk.getName(), bulk.stats());
+        return stats;
+    }
+}
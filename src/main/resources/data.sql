@@ -1,2 +1,66 @@
 -- Supprimer la contrainte NOT NULL sur cin
 ALTER TABLE users ALTER COLUMN cin DROP NOT NULL;
+
+-- Inscriptions en double (même user_id et event_id) créées avant la contrainte unique :
+-- ddl-auto=update ne peut pas poser la contrainte tant qu'elles existent. On garde l'inscription
+-- la plus avancée (approuvée, puis pièces vérifiées, puis la plus ancienne), on supprime les autres,
+-- puis on crée l'index unique. Sans doublon, ces requêtes ne font rien.
+DELETE FROM student_event_registrations r
+USING (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id, event_id
+            ORDER BY CASE status WHEN 'APPROVED' THEN 0 WHEN 'REJECTED' THEN 2 WHEN 'CANCELLED' THEN 2 ELSE 1 END,
+                     is_convocation_sent DESC, is_bordereau_verified DESC, is_releve_verified DESC, id) AS rang
+    FROM student_event_registrations
+) d
+WHERE r.id = d.id AND d.rang > 1;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_student_event_registration_user_event
+    ON student_event_registrations (user_id, event_id);
+
+-- Même chose pour event_registrations ; les numéros d'inscription des doublons supprimés sont détachés
+-- (et restent marqués utilisés pour ne jamais être réattribués)
+UPDATE registration_numbers n
+SET event_registration_id = NULL
+FROM (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id, event_id
+            ORDER BY CASE status WHEN 'APPROVED' THEN 0 WHEN 'REJECTED' THEN 2 WHEN 'CANCELLED' THEN 2 ELSE 1 END,
+                     (registration_number IS NOT NULL) DESC, is_summons_sent DESC, is_payment_verified DESC, id) AS rang
+    FROM event_registrations
+) d
+WHERE n.event_registration_id = d.id AND d.rang > 1;
+
+DELETE FROM event_registrations r
+USING (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY user_id, event_id
+            ORDER BY CASE status WHEN 'APPROVED' THEN 0 WHEN 'REJECTED' THEN 2 WHEN 'CANCELLED' THEN 2 ELSE 1 END,
+                     (registration_number IS NOT NULL) DESC, is_summons_sent DESC, is_payment_verified DESC, id) AS rang
+    FROM event_registrations
+) d
+WHERE r.id = d.id AND d.rang > 1;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_event_registration_user_event
+    ON event_registrations (user_id, event_id);
+
+-- Empreintes de reçus des inscriptions supprimées
+DELETE FROM receipt_fingerprints f
+WHERE (f.source_type = 'student_event_registration'
+        AND NOT EXISTS (SELECT 1 FROM student_event_registrations r WHERE r.id = f.source_id))
+   OR (f.source_type = 'event_registration'
+        AND NOT EXISTS (SELECT 1 FROM event_registrations r WHERE r.id = f.source_id));
+
+-- CIN normalisé des comptes créés avant la colonne cin_normalized (même règle que User.normalizeCin).
+-- Les CIN déjà présents sur plusieurs comptes restent sans valeur : ces doublons sont à fusionner
+-- depuis le rapport /api/admin/monitoring/candidate-duplicates
+UPDATE users u
+SET cin_normalized = c.normalized
+FROM (
+    SELECT id, UPPER(REGEXP_REPLACE(cin, '[^A-Za-z0-9]', '', 'g')) AS normalized,
+           COUNT(*) OVER (PARTITION BY UPPER(REGEXP_REPLACE(cin, '[^A-Za-z0-9]', '', 'g'))) AS comptes
+    FROM users
+    WHERE cin IS NOT NULL
+) c
+WHERE u.id = c.id
+  AND u.cin_normalized IS NULL
+  AND c.comptes = 1
+  AND LENGTH(c.normalized) >= 5
+  AND NOT EXISTS (SELECT 1 FROM users o WHERE o.cin_normalized = c.normalized);
@@ -0,0 +1,145 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.repository.EventRegistrationRepository;
+import com.example.Inscription.repository.StudentEventRegistrationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rapprochement en dry run : les dépôts ne renvoient que les paiements en attente
+ */
+class BankStatementReconciliationServiceTest {
+
+	private static final String ACCOUNT = "21000135638-01";
+
+	private final List<Object[]> pendingReceipts = new ArrayList<>();
+	private BankStatementReconciliationService service;
+
+	@BeforeEach
+	void setUp() {
+		StudentEventRegistrationRepository receipts = mock(StudentEventRegistrationRepository.class);
+		when(receipts.findPendingReceipts(any(), any())).thenReturn(pendingReceipts);
+		EventRegistrationRepository payments = mock(EventRegistrationRepository.class);
+		when(payments.findPendingPayments(any(), any())).thenReturn(List.of());
+		service = new BankStatementReconciliationService(receipts, payments, new NameMatcher(null, null), null);
+		ReflectionTestUtils.setField(service, "expectedAccount", ACCOUNT);
+		ReflectionTestUtils.setField(service, "licenceAmounts", List.of(350000.0, 175000.0));
+		ReflectionTestUtils.setField(service, "masterAmounts", List.of(682500.0, 341250.0));
+		ReflectionTestUtils.setField(service, "amountTolerance", 0.01);
+	}
+
+	@Test
+	void matchesCsvTransactionsOnReferenceAmountAndDepositor() throws Exception {
+		pending(1L, "BV-001234", "RAKOTO", "Jean", 350000.0, "L1");
+		pending(2L, "BV-009999", "RABE", "Hery", 350000.0, "L1");
+
+		Map<String, Object> report = reconcile("releve.csv",
+				"Date;Référence;Libellé;Remettant;Crédit;Compte\n"
+						+ "02/09/2025;BV001234;Frais inscription;RAKOTO JEAN;350 000,00;" + ACCOUNT + "\n"
+						+ "02/09/2025;BV009999;Frais inscription;RAKOTO JEAN;350 000,00;" + ACCOUNT + "\n"
+						+ "03/09/2025;XX000001;Virement;RASOA Ny;1 000,00;" + ACCOUNT + "\n");
+
+		assertEquals("CSV", report.get("format"));
+		assertEquals(List.of(1L), report.get("matchedBordereaux"));
+		assertEquals(1, report.get("nameMismatches"));
+		assertEquals(3, report.get("transactions"));
+		assertEquals(4, report.get("linesRead"));
+	}
+
+	@Test
+	void checksTheAmountAgainstTheRegistrationsOwnFee() throws Exception {
+		pending(1L, "1001", "RAKOTO", "Jean", 682500.0, "M1");
+		pending(2L, "1002", "RABE", "Hery", null, "M2");
+		pending(3L, "1003", "RASOA", "Ny Aina", null, "L3");
+
+		Map<String, Object> report = reconcile("releve.csv",
+				"reference,nom,montant\n"
+						+ "1001,RAKOTO Jean,350000\n"       // frais licence pour une inscription à 682 500
+						+ "1002,RABE Hery,\"341,250.00\"\n"  // demi-tarif master d'après le niveau
+						+ "1003,RASOA Ny Aina,175000\n");   // demi-tarif licence
+
+		assertEquals(List.of(2L, 3L), report.get("matchedBordereaux"));
+		assertEquals(1, report.get("amountMismatches"));
+	}
+
+	@Test
+	void treatsTransactionsWithoutDepositorAsAmbiguous() throws Exception {
+		pending(1L, "BV-001234", "RAKOTO", "Jean", 350000.0, "L1");
+
+		Map<String, Object> report = reconcile("releve.csv",
+				"Référence;Montant\n"
+						+ "BV001234;350000\n");
+
+		assertEquals(List.of(), report.get("matchedBordereaux"));
+		assertEquals(1, report.get("ambiguous"));
+	}
+
+	@Test
+	void ignoresDebitsAndOtherAccounts() throws Exception {
+		pending(1L, "1001", "RAKOTO", "Jean", 350000.0, "L1");
+
+		Map<String, Object> report = reconcile("releve.csv",
+				"Compte;Référence;Remettant;Montant\n"
+						+ "99999999999-01;1001;RAKOTO Jean;350000\n"
+						+ ACCOUNT + ";1001;RAKOTO Jean;-350000\n");
+
+		assertEquals(2, report.get("ignored"));
+		assertEquals(0, report.get("transactions"));
+	}
+
+	@Test
+	void readsOfxStatementsIncludingTheFirstLine() throws Exception {
+		pending(1L, "7788", "RAKOTO", "Jean", 350000.0, "L1");
+		pending(2L, "7789", "RABE", "Hery", 350000.0, "L1");
+
+		// Compte et premier versement sur la première ligne (OFX sur une seule ligne)
+		Map<String, Object> report = reconcile("export.txt",
+				"<OFX><ACCTID>" + ACCOUNT + "<STMTTRN><TRNAMT>350000.00<CHECKNUM>7788<NAME>RAKOTO JEAN</STMTTRN>\n"
+						+ "<STMTTRN>\n"
+						+ "<TRNAMT>350000.00\n"
+						+ "<REFNUM>7789\n"
+						+ "<NAME>Versement\n"
+						+ "<MEMO>RABE HERY frais\n"
+						+ "</STMTTRN>\n"
+						+ "</OFX>\n");
+
+		assertEquals("OFX", report.get("format"));
+		assertEquals(List.of(1L, 2L), report.get("matchedBordereaux"));
+		assertEquals(2, report.get("transactions"));
+	}
+
+	@Test
+	void parsesAmountsInLocalAndInternationalFormats() {
+		assertEquals(350000.0, BankStatementReconciliationService.parseAmount("350000"));
+		assertEquals(350000.0, BankStatementReconciliationService.parseAmount("350 000,00"));
+		assertEquals(350000.0, BankStatementReconciliationService.parseAmount("350 000 Ar"));
+		assertEquals(1234567.5, BankStatementReconciliationService.parseAmount("1.234.567,50"));
+		assertEquals(1234567.5, BankStatementReconciliationService.parseAmount("1,234,567.50"));
+		assertEquals(1234567.0, BankStatementReconciliationService.parseAmount("1.234.567"));
+		assertEquals(341250.0, BankStatementReconciliationService.parseAmount("341,250"));
+		assertEquals(12.5, BankStatementReconciliationService.parseAmount("12,5"));
+		assertNull(BankStatementReconciliationService.parseAmount("MGA"));
+		assertNull(BankStatementReconciliationService.parseAmount(null));
+	}
+
+	private void pending(Long id, String reference, String lastName, String firstName, Double fee, String level) {
+		pendingReceipts.add(new Object[]{id, reference, lastName, firstName, 10L, fee, level});
+	}
+
+	private Map<String, Object> reconcile(String filename, String content) throws Exception {
+		return service.reconcile(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), filename, 1L, null, true);
+	}
+}
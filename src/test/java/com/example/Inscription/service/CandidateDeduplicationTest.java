@@ -0,0 +1,174 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.User;
+import com.example.Inscription.model.UserRole;
+import com.example.Inscription.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CandidateDeduplicationTest {
+
+	private final List<Object[]> students = new ArrayList<>();
+	private WorkExecutors workExecutors;
+	private CandidateDeduplication deduplication;
+
+	@BeforeEach
+	void setUp() {
+		workExecutors = new WorkExecutors();
+		ReflectionTestUtils.setField(workExecutors, "cpuThreads", 2);
+		ReflectionTestUtils.setField(workExecutors, "cpuQueueCapacity", 100);
+		ReflectionTestUtils.setField(workExecutors, "aiThreads", 1);
+		ReflectionTestUtils.setField(workExecutors, "aiQueueCapacity", 10);
+		ReflectionTestUtils.setField(workExecutors, "bulkThreads", 1);
+		ReflectionTestUtils.setField(workExecutors, "bulkQueueCapacity", 10);
+		workExecutors.start();
+
+		UserRepository users = mock(UserRepository.class);
+		when(users.findDeduplicationRowsByRole(UserRole.STUDENT)).thenReturn(students);
+		deduplication = new CandidateDeduplication(users, new NameMatcher(null, null), workExecutors);
+		ReflectionTestUtils.setField(deduplication, "enforceOnRegistration", true);
+		ReflectionTestUtils.setField(deduplication, "reviewThreshold", 0.85);
+		ReflectionTestUtils.setField(deduplication, "reportThreshold", 0.6);
+		ReflectionTestUtils.setField(deduplication, "maxBlockSize", 200);
+	}
+
+	@AfterEach
+	void tearDown() {
+		workExecutors.stop();
+	}
+
+	@Test
+	void normalizesCinBirthDateAndPhone() {
+		assertEquals("AB123456", CandidateDeduplication.normalizeCin(" ab 123-456 "));
+		assertNull(CandidateDeduplication.normalizeCin("12-3"));
+		assertEquals("20040514", CandidateDeduplication.normalizeBirthDate("2004-05-14"));
+		assertEquals("20040514", CandidateDeduplication.normalizeBirthDate("14/5/2004"));
+		assertEquals("20040514", CandidateDeduplication.normalizeBirthDate("2004-05-14T00:00:00"));
+		assertNull(CandidateDeduplication.normalizeBirthDate("mai 2004"));
+		assertEquals("341234567", CandidateDeduplication.normalizePhone("+261 34 12 345 67"));
+		assertEquals("341234567", CandidateDeduplication.normalizePhone("034 12 345 67"));
+		assertNull(CandidateDeduplication.normalizePhone("12 34"));
+	}
+
+	@Test
+	void phoneticKeyAbsorbsCommonSpellingVariants() {
+		assertEquals(CandidateDeduplication.phonetic("rakoto"), CandidateDeduplication.phonetic("rakotoo"));
+		assertEquals(CandidateDeduplication.phonetic("filipe"), CandidateDeduplication.phonetic("philippe"));
+		assertEquals(CandidateDeduplication.phonetic("rasoa"), CandidateDeduplication.phonetic("razoa"));
+		assertEquals(CandidateDeduplication.phonetic("tahina"), CandidateDeduplication.phonetic("tayina"));
+	}
+
+	@Test
+	void onlyMatchingCinsBlockTheRegistration() {
+		student(2L, "RAKOTO", "Jean", "101211012345", "2004-05-14", "0341234567");
+		// Même nom et même naissance, sans CIN : à examiner
+		student(3L, "RAKOTOO", "Jean", null, "14/05/2004", null);
+		// Jumeau : même naissance et même téléphone, CIN différent
+		student(4L, "RAKOTO", "Fara", "101211099999", "2004-05-14", "0341234567");
+		// CIN à un caractère près, même nom et même téléphone
+		student(5L, "RAKOTO", "Jean", "101211012346", "2001-01-01", "0341234567");
+		deduplication.rebuild();
+
+		User candidate = user(1L, "RAKOTO", "Jean", "101 211 012 345", "2004-05-14", "+261 34 12 345 67");
+		List<CandidateDeduplication.Match> matches = deduplication.findLikelyDuplicates(candidate);
+		assertEquals(List.of(2L, 3L, 5L), matches.stream().map(CandidateDeduplication.Match::getUserId).toList());
+		assertEquals(1.0, matches.get(0).getScore());
+		assertEquals(0.9, matches.get(1).getScore());
+		assertEquals(0.8, matches.get(2).getScore());
+
+		CandidateDeduplication.Suspects suspects = deduplication.suspects(candidate);
+		assertEquals(List.of(2L, 5L), suspects.getBlocking());
+		assertEquals(List.of(3L), suspects.getReview());
+		assertTrue(suspects.blocks(List.of(5L, 9L)));
+		assertFalse(suspects.blocks(List.of(3L, 4L)));
+		assertTrue(suspects.needsReview(List.of(3L)));
+	}
+
+	@Test
+	void differentCinsCapTheScoreBelowTheReportThreshold() {
+		student(2L, "RAKOTO", "Jean", "101211099999", "2004-05-14", "0341234567");
+		deduplication.rebuild();
+
+		User candidate = user(1L, "RAKOTO", "Jean", "101211012345", "2004-05-14", "0341234567");
+
+		assertEquals(List.of(), deduplication.findLikelyDuplicates(candidate));
+		assertTrue(deduplication.suspects(candidate).isEmpty());
+	}
+
+	@Test
+	void suspectsAreEmptyWhenEnforcementIsOff() {
+		student(2L, "RAKOTO", "Jean", "101211012345", null, null);
+		deduplication.rebuild();
+		ReflectionTestUtils.setField(deduplication, "enforceOnRegistration", false);
+
+		assertTrue(deduplication.suspects(user(1L, "RAKOTO", "Jean", "101211012345", null, null)).isEmpty());
+	}
+
+	@Test
+	void indexesNewAccountsWithoutARebuild() {
+		deduplication.rebuild();
+		User candidate = user(1L, "RABE", "Hery", "101-211-012-345", null, null);
+		assertEquals(List.of(), deduplication.findLikelyDuplicates(candidate));
+
+		deduplication.index(user(7L, "RABE", "Hery", "101 211 012 345", null, null));
+
+		assertEquals(List.of(7L), deduplication.findLikelyDuplicates(candidate).stream()
+				.map(CandidateDeduplication.Match::getUserId).toList());
+	}
+
+	@Test
+	void clustersPairsTransitively() throws Exception {
+		// 10 = 11 par le CIN, 11 = 12 par le nom et la naissance : un seul groupe de trois
+		student(10L, "RASOA", "Ny Aina", "201011000001", "2003-02-01", null);
+		student(11L, "RASOA", "Ny Aina", "201 011 000 001", "01/02/2003", null);
+		student(12L, "RAZOA", "Ny Aina", null, "2003-02-01", null);
+		student(20L, "RABE", "Hery", "301011000001", null, null);
+		student(21L, "RABE", "Hery", "301011000001", null, null);
+		student(30L, "RANDRIA", "Tiana", null, "2000-01-01", null);
+		deduplication.rebuild();
+
+		List<Map<String, Object>> clusters = deduplication.duplicateClusters().get(10, TimeUnit.SECONDS);
+
+		assertEquals(2, clusters.size());
+		assertEquals(3, clusters.get(0).get("size"));
+		assertEquals(1.0, clusters.get(0).get("maxScore"));
+		assertEquals(List.of(10L, 11L, 12L), memberIds(clusters.get(0)));
+		assertEquals(List.of(20L, 21L), memberIds(clusters.get(1)));
+	}
+
+	private void student(Long id, String lastName, String firstName, String cin, String birthDate, String phone) {
+		students.add(new Object[]{id, lastName, firstName, cin, birthDate, phone});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Long> memberIds(Map<String, Object> cluster) {
+		return ((List<Map<String, Object>>) cluster.get("members")).stream()
+				.map(member -> (Long) member.get("userId"))
+				.toList();
+	}
+
+	private static User user(Long id, String lastName, String firstName, String cin, String birthDate, String phone) {
+		User user = new User();
+		user.setId(id);
+		user.setLastName(lastName);
+		user.setFirstName(firstName);
+		user.setCin(cin);
+		user.setBirthDate(birthDate);
+		user.setPhone(phone);
+		return user;
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.Inscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventCatalogCacheTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+	private Object catalog = List.of(Map.of("id", 1, "title", "Concours L1"));
+	private EventCatalogCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new EventCatalogCache(new ObjectMapper());
+		ReflectionTestUtils.setField(cache, "ttlMs", 60000L);
+		ReflectionTestUtils.setField(cache, "countRefreshMs", 60000L);
+	}
+
+	@Test
+	void buildsEachEntryOnceAndServesTheSerializedJson() throws Exception {
+		EventCatalogCache.Entry first = cache.get(EventCatalogCache.ACTIVE, loader());
+		EventCatalogCache.Entry second = cache.get(EventCatalogCache.ACTIVE, loader());
+
+		assertSame(first, second);
+		assertEquals(1, loads.get());
+		ObjectMapper objectMapper = new ObjectMapper();
+		assertEquals(objectMapper.valueToTree(catalog), objectMapper.readTree(first.getBody()));
+		assertEquals(1L, cache.stats().get("hits"));
+	}
+
+	@Test
+	void returnsNullForAMissingEventWithoutCachingIt() {
+		catalog = null;
+
+		assertNull(cache.get(EventCatalogCache.event(42L), loader()));
+		assertNull(cache.get(EventCatalogCache.event(42L), loader()));
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.stats().get("entries"));
+	}
+
+	@Test
+	void etagDependsOnlyOnTheContent() {
+		EventCatalogCache.Entry active = cache.get(EventCatalogCache.ACTIVE, loader());
+		EventCatalogCache.Entry institution = cache.get(EventCatalogCache.institution(3L), loader());
+		// Un autre nœud, même contenu : même ETag
+		EventCatalogCache.Entry otherNode = new EventCatalogCache(new ObjectMapper()).get(EventCatalogCache.ACTIVE, loader());
+
+		assertTrue(active.getEtag().matches("\"[0-9a-f]{32}\""));
+		assertEquals(active.getEtag(), institution.getEtag());
+		assertEquals(active.getEtag(), otherNode.getEtag());
+
+		catalog = List.of(Map.of("id", 2, "title", "Concours M1"));
+		assertNotEquals(active.getEtag(), cache.get(EventCatalogCache.event(2L), loader()).getEtag());
+	}
+
+	@Test
+	void answersNotModifiedForAMatchingIfNoneMatch() {
+		EventCatalogCache.Entry entry = cache.get(EventCatalogCache.ACTIVE, loader());
+		String etag = entry.getEtag();
+
+		assertTrue(cache.isNotModified(entry, etag));
+		assertTrue(cache.isNotModified(entry, "W/" + etag));
+		assertTrue(cache.isNotModified(entry, "\"0000\", " + etag));
+		assertTrue(cache.isNotModified(entry, "*"));
+		assertFalse(cache.isNotModified(entry, "\"0000\""));
+		assertFalse(cache.isNotModified(entry, etag.replace("\"", "")));
+		assertFalse(cache.isNotModified(entry, null));
+		assertEquals(4L, cache.stats().get("notModified"));
+	}
+
+	@Test
+	void invalidateForcesARebuild() {
+		EventCatalogCache.Entry before = cache.get(EventCatalogCache.ACTIVE, loader());
+		catalog = List.of(Map.of("id", 1, "title", "Concours L1 (reporté)"));
+
+		cache.invalidate();
+		EventCatalogCache.Entry after = cache.get(EventCatalogCache.ACTIVE, loader());
+
+		assertEquals(2, loads.get());
+		assertNotEquals(before.getEtag(), after.getEtag());
+		assertFalse(cache.isNotModified(after, before.getEtag()));
+	}
+
+	@Test
+	void registrationCountsRefreshTheEntryOnlyAfterTheDelay() {
+		cache.get(EventCatalogCache.ACTIVE, loader());
+		cache.registrationCountChanged();
+		cache.get(EventCatalogCache.ACTIVE, loader());
+		assertEquals(1, loads.get());
+
+		ReflectionTestUtils.setField(cache, "countRefreshMs", 0L);
+		cache.get(EventCatalogCache.ACTIVE, loader());
+		assertEquals(2, loads.get());
+
+		// Reconstruite après le changement : de nouveau servie telle quelle
+		cache.get(EventCatalogCache.ACTIVE, loader());
+		assertEquals(2, loads.get());
+	}
+
+	private Supplier<Object> loader() {
+		return () -> {
+			loads.incrementAndGet();
+			return catalog;
+		};
+	}
+}
@@ -0,0 +1,108 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.BacSeries;
+import com.example.Inscription.model.EventType;
+import com.example.Inscription.repository.EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventEligibilityIndexTest {
+
+	private final LocalDateTime now = LocalDateTime.now();
+	private final List<Object[]> events = new ArrayList<>();
+	private final List<Object[]> series = new ArrayList<>();
+	private final AtomicInteger rebuilds = new AtomicInteger();
+	private EventEligibilityIndex index;
+
+	@BeforeEach
+	void setUp() {
+		// id, niveau, début, fin, actif, inscriptions ouvertes
+		events.add(new Object[]{1L, "L1", now.minusDays(1), now.plusDays(10), true, true});   // C, D
+		events.add(new Object[]{2L, "l1 ", now.minusDays(1), now.plusDays(10), true, null});  // toutes séries
+		events.add(new Object[]{3L, "M1", now.minusDays(1), now.plusDays(10), true, true});   // A
+		events.add(new Object[]{4L, "L1", now.plusDays(2), now.plusDays(10), true, true});    // pas encore ouvert
+		events.add(new Object[]{5L, "L1", now.minusDays(1), now.plusDays(10), true, false});  // suspendu
+		events.add(new Object[]{6L, "L1", now.minusDays(1), now.plusDays(10), false, true});  // inactif
+		series.add(new Object[]{1L, BacSeries.C});
+		series.add(new Object[]{1L, BacSeries.D});
+		series.add(new Object[]{3L, BacSeries.A});
+
+		EventRepository repository = mock(EventRepository.class);
+		when(repository.findEligibilityRows(any())).thenAnswer(invocation -> {
+			rebuilds.incrementAndGet();
+			return events;
+		});
+		when(repository.findEligibleSeriesRows(any())).thenReturn(series);
+		// Événement 99 : créé sur un autre nœud depuis la dernière reconstruction
+		when(repository.findRegistrationMetadata(99L)).thenReturn(List.<Object[]>of(
+				new Object[]{99L, EventType.CONTEST, now.minusDays(1), now.plusDays(1), true, false, 7L}));
+		when(repository.findEligibleSeries(99L)).thenReturn(Set.of(BacSeries.S));
+		EventMetadataCache metadataCache = new EventMetadataCache(repository);
+		ReflectionTestUtils.setField(metadataCache, "ttlMs", 60000L);
+		index = new EventEligibilityIndex(repository, metadataCache);
+	}
+
+	@Test
+	void openEventsAreActiveNotPausedAndInTheirPeriod() {
+		assertEquals(List.of(1L, 2L, 3L), index.openEventIds(null, null));
+	}
+
+	@Test
+	void seriesFilterKeepsListedAndUnrestrictedEvents() {
+		assertEquals(List.of(1L, 2L), index.openEventIds(BacSeries.C, null));
+		assertEquals(List.of(2L, 3L), index.openEventIds(BacSeries.A, null));
+		assertEquals(List.of(2L), index.openEventIds(BacSeries.TECHNICAL, null));
+	}
+
+	@Test
+	void levelFilterIsCaseAndSpaceInsensitive() {
+		assertEquals(List.of(1L, 2L), index.openEventIds(BacSeries.D, " l1"));
+		assertEquals(List.of(3L), index.openEventIds(null, "M1"));
+		assertEquals(List.of(), index.openEventIds(null, "M2"));
+	}
+
+	@Test
+	void answersSeriesRestrictionsPerEvent() {
+		assertTrue(index.restrictsSeries(1L));
+		assertFalse(index.restrictsSeries(2L));
+		assertTrue(index.listsSeries(1L, BacSeries.D));
+		assertFalse(index.listsSeries(1L, BacSeries.A));
+		assertFalse(index.listsSeries(2L, BacSeries.A));
+		assertFalse(index.listsSeries(1L, null));
+	}
+
+	@Test
+	void fallsBackToEventMetadataForEventsMissingFromTheIndex() {
+		assertTrue(index.restrictsSeries(99L));
+		assertTrue(index.listsSeries(99L, BacSeries.S));
+		assertFalse(index.listsSeries(99L, BacSeries.C));
+		assertEquals(3L, index.stats().get("fallbacks"));
+	}
+
+	@Test
+	void rebuildsOnlyAfterAnInvalidation() {
+		index.openEventIds(null, null);
+		index.openEventIds(BacSeries.C, "L1");
+		assertEquals(1, rebuilds.get());
+
+		events.remove(0);
+		index.invalidate();
+
+		assertEquals(List.of(2L, 3L), index.openEventIds(null, null));
+		assertEquals(2, rebuilds.get());
+	}
+}
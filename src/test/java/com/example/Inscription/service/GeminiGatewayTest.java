@@ -0,0 +1,208 @@
+package com.example.Inscription.service;
+
+import com.google.genai.Client;
+import com.google.genai.types.GenerateContentResponse;
+import com.google.genai.types.HttpOptions;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GeminiGateway driving the real Gemini client against a local stub server that answers with scripted status codes
+ */
+class GeminiGatewayTest {
+
+	private static final String OK_BODY = "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":\"pong\"}]}}]}";
+
+	private HttpServer server;
+	private final Deque<Integer> script = new ConcurrentLinkedDeque<>();
+	private final List<Long> requestTimes = Collections.synchronizedList(new ArrayList<>());
+	private Client client;
+	private GeminiGateway gateway;
+
+	@BeforeEach
+	void startStub() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			requestTimes.add(System.nanoTime());
+			exchange.getRequestBody().readAllBytes();
+			Integer status = script.poll();
+			int code = status == null ? 200 : status;
+			String body = code == 200 ? OK_BODY
+					: "{\"error\":{\"code\":" + code + ",\"message\":\"stub error\",\"status\":\"UNAVAILABLE\"}}";
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(code, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		server.start();
+		client = Client.builder()
+				.apiKey("test-key")
+				.httpOptions(HttpOptions.builder()
+						.baseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+						.build())
+				.build();
+	}
+
+	@AfterEach
+	void stop() {
+		if (gateway != null) {
+			gateway.stop();
+		}
+		server.stop(0);
+	}
+
+	@Test
+	void retriesRateLimitAndUnavailableWithGrowingBackoff() {
+		gateway = gateway(60, 1, 4, 40, 1000);
+		script.add(429);
+		script.add(503);
+
+		GenerateContentResponse response = gateway.execute("institution:1", this::ping);
+
+		assertEquals("pong", response.text());
+		assertEquals(3, requestTimes.size());
+		assertEquals(2L, gateway.stats().get("retries"));
+		// Equal jitter: attempt 1 waits at least initial/2, attempt 2 at least initial
+		assertTrue(gapMillis(0) >= 20, "first backoff was " + gapMillis(0) + " ms");
+		assertTrue(gapMillis(1) >= 40, "second backoff was " + gapMillis(1) + " ms");
+	}
+
+	@Test
+	void doesNotRetryClientErrors() {
+		gateway = gateway(60, 1, 4, 10, 100);
+		script.add(400);
+
+		GeminiException error = assertThrows(GeminiException.class, () -> gateway.execute("public", this::ping));
+
+		assertFalse(error.isRetriable());
+		assertEquals(400, error.getStatusCode());
+		assertEquals(1, requestTimes.size());
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() {
+		gateway = gateway(60, 1, 3, 10, 20);
+		for (int i = 0; i < 5; i++) {
+			script.add(503);
+		}
+
+		GeminiException error = assertThrows(GeminiException.class, () -> gateway.execute("public", this::ping));
+
+		assertTrue(error.isRetriable());
+		assertEquals(3, requestTimes.size());
+		assertEquals(1L, gateway.stats().get("failed"));
+	}
+
+	@Test
+	void retryAfterFollowsTheRefillRateOnceTheBucketIsEmpty() {
+		// 1 request/minute: the bucket holds a single token, refilled after 60 s
+		gateway = gateway(1, 1, 1, 10, 10);
+		assertEquals(1L, gateway.retryAfterSeconds());
+
+		long start = System.nanoTime();
+		gateway.execute("public", this::ping);
+		// The first client call may take over a second, during which the token partly refills
+		long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+
+		long retryAfter = gateway.retryAfterSeconds();
+		assertTrue(retryAfter >= 59 - elapsedSeconds && retryAfter <= 60, "retry after " + retryAfter);
+	}
+
+	@Test
+	void servesTenantsInTurn() throws Exception {
+		gateway = gateway(600, 1, 1, 10, 10);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CompletableFuture<String> blocker = gateway.submit("institution:1", () -> {
+			started.countDown();
+			release.await();
+			return "blocker";
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		List<CompletableFuture<String>> calls = new ArrayList<>();
+		for (String name : List.of("a1", "a2", "a3")) {
+			calls.add(gateway.submit("institution:1", () -> record(order, name)));
+		}
+		calls.add(gateway.submit("institution:2", () -> record(order, "b1")));
+		release.countDown();
+		blocker.get(5, TimeUnit.SECONDS);
+		for (CompletableFuture<String> call : calls) {
+			call.get(5, TimeUnit.SECONDS);
+		}
+
+		// The single call of institution 2 does not wait behind the whole backlog of institution 1
+		assertEquals(List.of("a1", "b1", "a2", "a3"), order);
+	}
+
+	@Test
+	void rejectsCallsBeyondQueueCapacity() throws Exception {
+		gateway = gateway(600, 1, 1, 10, 10);
+		ReflectionTestUtils.setField(gateway, "queueCapacity", 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		gateway.submit("public", () -> {
+			started.countDown();
+			release.await();
+			return "blocker";
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		gateway.submit("public", () -> "queued");
+
+		GeminiException error = assertThrows(GeminiException.class, () -> gateway.submit("public", () -> "rejected"));
+
+		assertEquals(429, error.getStatusCode());
+		release.countDown();
+	}
+
+	private GenerateContentResponse ping() {
+		return client.models.generateContent("gemini-2.5-flash", "ping", null);
+	}
+
+	private static String record(List<String> order, String name) {
+		order.add(name);
+		return name;
+	}
+
+	private long gapMillis(int index) {
+		return TimeUnit.NANOSECONDS.toMillis(requestTimes.get(index + 1) - requestTimes.get(index));
+	}
+
+	private static GeminiGateway gateway(int requestsPerMinute, int concurrency, int maxAttempts,
+										 long initialBackoffMs, long maxBackoffMs) {
+		GeminiGateway gateway = new GeminiGateway();
+		ReflectionTestUtils.setField(gateway, "requestsPerMinute", requestsPerMinute);
+		ReflectionTestUtils.setField(gateway, "maxConcurrency", concurrency);
+		ReflectionTestUtils.setField(gateway, "queueCapacity", 100);
+		ReflectionTestUtils.setField(gateway, "maxAttempts", maxAttempts);
+		ReflectionTestUtils.setField(gateway, "initialBackoffMs", initialBackoffMs);
+		ReflectionTestUtils.setField(gateway, "maxBackoffMs", maxBackoffMs);
+		ReflectionTestUtils.setField(gateway, "timeoutSeconds", 10L);
+		gateway.start();
+		return gateway;
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.Inscription.service;
+
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NameMatcherTest {
+
+	private final NameMatcher matcher = new NameMatcher(null, null);
+
+	@Test
+	void boundedDistanceIsExactUpToTheLimit() {
+		assertEquals(0, NameMatcher.boundedDistance("rakoto", "rakoto", 2));
+		assertEquals(1, NameMatcher.boundedDistance("rakoto", "rakotu", 2));
+		assertEquals(1, NameMatcher.boundedDistance("rakoto", "rakotoo", 2));
+		assertEquals(2, NameMatcher.boundedDistance("rasoa", "rasao", 2));
+		assertEquals(3, NameMatcher.boundedDistance("", "abc", 5));
+	}
+
+	@Test
+	void boundedDistanceStopsAboveTheLimit() {
+		assertEquals(2, NameMatcher.boundedDistance("randria", "rabe", 1));
+		assertEquals(2, NameMatcher.boundedDistance("ab", "abcdef", 1));
+		assertEquals(1, NameMatcher.boundedDistance("rakoto", "bema", 0));
+	}
+
+	@Test
+	void boundedDistanceAgreesWithLevenshtein() {
+		Random random = new Random(42);
+		LevenshteinDistance reference = new LevenshteinDistance();
+		for (int i = 0; i < 5000; i++) {
+			String a = randomWord(random);
+			String b = random.nextBoolean() ? mutate(a, random) : randomWord(random);
+			int max = random.nextInt(4);
+			int expected = Math.min(reference.apply(a, b), max + 1);
+			assertEquals(expected, NameMatcher.boundedDistance(a, b, max), a + " / " + b + " (max " + max + ")");
+			assertEquals(expected, NameMatcher.boundedDistance(b, a, max), b + " / " + a + " (max " + max + ")");
+		}
+	}
+
+	@Test
+	void normalizeStripsAccentsCaseAndPunctuation() {
+		assertEquals("rasoanirina hery jean", NameMatcher.normalize("  RASOANIRINA Héry-Jean "));
+		assertEquals("ny aina", NameMatcher.normalize("Ny'Aina 2"));
+		assertEquals("", NameMatcher.normalize(null));
+	}
+
+	@Test
+	void matchingTokensToleratesTyposByWordLength() {
+		// "rakotomalala" (12 lettres) : 2 fautes tolérées ; "jean" (4 lettres) : 1, une inversion en compte 2
+		assertEquals(2, matcher.matchingTokens("RAKOTOMALALA Jean", "rakotomalaa jaan"));
+		assertEquals(1, matcher.matchingTokens("RAKOTOMALALA Jean", "rakotomalala jaen x"));
+		// Mots de 3 lettres ou moins : aucune faute
+		assertEquals(0, matcher.matchingTokens("Bao", "bau"));
+	}
+
+	@Test
+	void matchingTokensIgnoresWordOrder() {
+		assertEquals(3, matcher.matchingTokens("Rabe Andry Hery", "HERY ANDRY RABE"));
+	}
+
+	private static String randomWord(Random random) {
+		int length = random.nextInt(9);
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			word.append((char) ('a' + random.nextInt(4)));
+		}
+		return word.toString();
+	}
+
+	private static String mutate(String word, Random random) {
+		StringBuilder mutated = new StringBuilder(word);
+		int edits = random.nextInt(4);
+		for (int i = 0; i < edits; i++) {
+			int position = mutated.length() == 0 ? 0 : random.nextInt(mutated.length());
+			switch (random.nextInt(3)) {
+				case 0 -> mutated.insert(position, (char) ('a' + random.nextInt(4)));
+				case 1 -> {
+					if (mutated.length() > 0) {
+						mutated.deleteCharAt(position);
+					}
+				}
+				default -> {
+					if (mutated.length() > 0) {
+						mutated.setCharAt(position, (char) ('a' + random.nextInt(4)));
+					}
+				}
+			}
+		}
+		return mutated.toString();
+	}
+}
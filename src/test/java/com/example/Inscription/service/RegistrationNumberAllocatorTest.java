@@ -0,0 +1,123 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.repository.RegistrationNumberRepository;
+import com.example.Inscription.repository.RegistrationNumberSequenceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RegistrationNumberAllocatorTest {
+
+	private final AtomicLong nextValue = new AtomicLong(1);
+	private final AtomicInteger blockClaims = new AtomicInteger();
+	private final Set<String> issued = ConcurrentHashMap.newKeySet();
+	private volatile String format = "ENI-2025-{number:4}";
+	private RegistrationNumberAllocator allocator;
+
+	@BeforeEach
+	void setUp() {
+		// Table des séquences : un bloc [premier, fin[ par réservation
+		RegistrationNumberSequenceRepository sequences = mock(RegistrationNumberSequenceRepository.class);
+		when(sequences.existsById(anyLong())).thenReturn(true);
+		when(sequences.claimBlock(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+			blockClaims.incrementAndGet();
+			long size = invocation.getArgument(1);
+			long end = nextValue.addAndGet(size);
+			return List.<Object[]>of(new Object[]{end - size, end, format});
+		});
+		// Contrainte unique sur le numéro : liste vide si déjà pris
+		RegistrationNumberRepository numbers = mock(RegistrationNumberRepository.class);
+		when(numbers.insertIssued(anyLong(), anyLong(), anyString(), any()))
+				.thenAnswer(invocation -> issued.add(invocation.getArgument(2)) ? List.of(1L) : List.of());
+		allocator = new RegistrationNumberAllocator(sequences, numbers);
+		ReflectionTestUtils.setField(allocator, "blockSize", 10L);
+	}
+
+	@Test
+	void rendersThePrefixPaddedNumberAndSuffix() {
+		RegistrationNumberAllocator.NumberFormat format = RegistrationNumberAllocator.NumberFormat.parse("INST-{number:5}/L1");
+
+		assertEquals("INST-00042/L1", format.render(42));
+		assertEquals("INST-123456/L1", format.render(123456));
+	}
+
+	@Test
+	void rendersWithoutPaddingByDefault() {
+		RegistrationNumberAllocator.NumberFormat format = RegistrationNumberAllocator.NumberFormat.parse("{number}");
+
+		assertEquals("7", format.render(7));
+	}
+
+	@Test
+	void rejectsFormatsWithoutAValidPlaceholder() {
+		assertThrows(IllegalArgumentException.class, () -> RegistrationNumberAllocator.NumberFormat.parse(null));
+		assertThrows(IllegalArgumentException.class, () -> RegistrationNumberAllocator.NumberFormat.parse("INST-2025"));
+		assertThrows(IllegalArgumentException.class, () -> RegistrationNumberAllocator.NumberFormat.parse("INST-{number"));
+		assertThrows(IllegalArgumentException.class, () -> RegistrationNumberAllocator.NumberFormat.parse("INST-{numero}"));
+		assertThrows(IllegalArgumentException.class, () -> RegistrationNumberAllocator.NumberFormat.parse("INST-{number:x}"));
+	}
+
+	@Test
+	void handsOutNumbersFromOneBlockBeforeClaimingTheNext() {
+		List<String> numbers = new ArrayList<>();
+		for (long registration = 1; registration <= 25; registration++) {
+			numbers.add(allocator.allocate(5L, registration).orElseThrow());
+		}
+
+		assertEquals("ENI-2025-0001", numbers.get(0));
+		assertEquals("ENI-2025-0025", numbers.get(24));
+		assertEquals(3, blockClaims.get());
+	}
+
+	@Test
+	void skipsNumbersThatAlreadyExist() {
+		issued.add("ENI-2025-0001");
+		issued.add("ENI-2025-0002");
+
+		Optional<String> number = allocator.allocate(5L, 1L);
+
+		assertEquals(Optional.of("ENI-2025-0003"), number);
+		assertEquals(2L, allocator.stats().get("conflictsSkipped"));
+	}
+
+	@Test
+	void concurrentApprovalsGetDistinctNumbers() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (long registration = 1; registration <= 400; registration++) {
+				long id = registration;
+				futures.add(pool.submit(() -> allocator.allocate(5L, id).orElseThrow()));
+			}
+			Set<String> numbers = ConcurrentHashMap.newKeySet();
+			for (Future<String> future : futures) {
+				assertTrue(numbers.add(future.get()), "duplicate number");
+			}
+			assertEquals(400, numbers.size());
+			// Aucun bloc réservé pour rien : 400 numéros, blocs de 10
+			assertEquals(40, blockClaims.get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.example.Inscription.service;
+
+import com.example.Inscription.model.RegistrationStatus;
+import com.example.Inscription.repository.StudentEventRegistrationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Table des inscriptions en mémoire : chaque UPDATE groupé applique la même condition
+ * que la requête native du dépôt
+ */
+class StudentRegistrationBulkServiceTest {
+
+	private static final Long EVENT = 5L;
+
+	private final Map<Long, Row> table = new LinkedHashMap<>();
+	private StudentEventRegistrationRepository repository;
+	private PlatformTransactionManager transactionManager;
+	private StudentRegistrationBulkService service;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(StudentEventRegistrationRepository.class);
+		when(repository.approveAll(any(), anyList(), any())).thenAnswer(invocation -> update(invocation,
+				r -> r.releveVerified && r.bordereauVerified && r.status != RegistrationStatus.APPROVED,
+				r -> r.status = RegistrationStatus.APPROVED));
+		when(repository.rejectAll(any(), anyList(), any())).thenAnswer(invocation -> update(invocation,
+				r -> r.status != RegistrationStatus.REJECTED,
+				r -> r.status = RegistrationStatus.REJECTED));
+		when(repository.setReleveVerified(any(), anyList(), anyBoolean(), any())).thenAnswer(invocation -> update(invocation,
+				r -> r.releveVerified != (Boolean) invocation.getArgument(2),
+				r -> r.releveVerified = invocation.getArgument(2)));
+		when(repository.setBordereauVerified(any(), anyList(), anyBoolean(), any())).thenAnswer(invocation -> update(invocation,
+				r -> r.bordereauVerified != (Boolean) invocation.getArgument(2),
+				r -> r.bordereauVerified = invocation.getArgument(2)));
+		when(repository.markConvocationSent(any(), anyList(), any())).thenAnswer(invocation -> update(invocation,
+				r -> r.status == RegistrationStatus.APPROVED && !r.convocationSent,
+				r -> r.convocationSent = true));
+		when(repository.findBulkState(anyList())).thenAnswer(invocation -> {
+			List<Object[]> rows = new ArrayList<>();
+			for (Long id : invocation.<List<Long>>getArgument(0)) {
+				Row r = table.get(id);
+				if (r != null) {
+					rows.add(new Object[]{id, r.eventId, r.status, r.releveVerified, r.bordereauVerified, r.convocationSent});
+				}
+			}
+			return rows;
+		});
+		transactionManager = mock(PlatformTransactionManager.class);
+		service = new StudentRegistrationBulkService(repository, new TransactionTemplate(transactionManager));
+		ReflectionTestUtils.setField(service, "chunkSize", 2);
+		ReflectionTestUtils.setField(service, "maxRegistrations", 10);
+	}
+
+	@Test
+	void approvesOnlyRegistrationsWithBothDocumentsVerified() {
+		row(1L, EVENT, RegistrationStatus.PENDING, true, true);
+		row(2L, EVENT, RegistrationStatus.PENDING, true, false);
+		row(3L, EVENT, RegistrationStatus.APPROVED, true, true);
+		row(4L, 6L, RegistrationStatus.PENDING, true, true);
+
+		List<StudentRegistrationBulkService.Result> results = service.apply(EVENT, StudentRegistrationBulkService.Action.APPROVE,
+				false, List.of(1L, 2L, 3L, 4L, 99L));
+
+		assertEquals(List.of(
+				new StudentRegistrationBulkService.Result(1L, StudentRegistrationBulkService.Outcome.UPDATED, null),
+				new StudentRegistrationBulkService.Result(2L, StudentRegistrationBulkService.Outcome.PRECONDITION_FAILED,
+						"Cannot approve registration: not all documents are verified"),
+				new StudentRegistrationBulkService.Result(3L, StudentRegistrationBulkService.Outcome.UNCHANGED, "Already approved"),
+				// Inscription d'un autre événement : inconnue, et non modifiée
+				new StudentRegistrationBulkService.Result(4L, StudentRegistrationBulkService.Outcome.NOT_FOUND, "Registration not found"),
+				new StudentRegistrationBulkService.Result(99L, StudentRegistrationBulkService.Outcome.NOT_FOUND, "Registration not found")),
+				results);
+		assertEquals(RegistrationStatus.APPROVED, table.get(1L).status);
+		assertEquals(RegistrationStatus.PENDING, table.get(4L).status);
+	}
+
+	@Test
+	void appliesOneTransactionPerChunkAndDropsDuplicates() {
+		for (long id = 1; id <= 5; id++) {
+			row(id, EVENT, RegistrationStatus.PENDING, false, false);
+		}
+
+		List<StudentRegistrationBulkService.Result> results = service.apply(EVENT, StudentRegistrationBulkService.Action.REJECT,
+				false, Arrays.asList(3L, 1L, 3L, null, 2L, 4L, 5L));
+
+		assertEquals(List.of(3L, 1L, 2L, 4L, 5L), results.stream().map(StudentRegistrationBulkService.Result::getId).toList());
+		verify(transactionManager, times(3)).getTransaction(any());
+		// Tout a été modifié : aucun état relu
+		verify(repository, never()).findBulkState(anyList());
+		assertEquals(Map.of(StudentRegistrationBulkService.Outcome.UPDATED, 5L,
+				StudentRegistrationBulkService.Outcome.UNCHANGED, 0L,
+				StudentRegistrationBulkService.Outcome.PRECONDITION_FAILED, 0L,
+				StudentRegistrationBulkService.Outcome.NOT_FOUND, 0L), StudentRegistrationBulkService.summary(results));
+	}
+
+	@Test
+	void setsAndClearsDocumentVerification() {
+		row(1L, EVENT, RegistrationStatus.PENDING, false, true);
+		row(2L, EVENT, RegistrationStatus.PENDING, true, true);
+
+		List<StudentRegistrationBulkService.Result> releve = service.apply(EVENT,
+				StudentRegistrationBulkService.Action.VERIFY_RELEVE, true, List.of(1L, 2L));
+		assertEquals(StudentRegistrationBulkService.Outcome.UPDATED, releve.get(0).getOutcome());
+		assertEquals("Verification already set", releve.get(1).getReason());
+		assertTrue(table.get(1L).releveVerified);
+
+		List<StudentRegistrationBulkService.Result> bordereau = service.apply(EVENT,
+				StudentRegistrationBulkService.Action.VERIFY_BORDEREAU, false, List.of(1L, 2L));
+		assertEquals(List.of(StudentRegistrationBulkService.Outcome.UPDATED, StudentRegistrationBulkService.Outcome.UPDATED),
+				bordereau.stream().map(StudentRegistrationBulkService.Result::getOutcome).toList());
+		assertFalse(table.get(2L).bordereauVerified);
+	}
+
+	@Test
+	void sendsConvocationsOnlyToApprovedRegistrations() {
+		row(1L, EVENT, RegistrationStatus.APPROVED, true, true);
+		row(2L, EVENT, RegistrationStatus.PENDING, true, true);
+
+		List<StudentRegistrationBulkService.Result> first = service.apply(EVENT,
+				StudentRegistrationBulkService.Action.SEND_CONVOCATION, false, List.of(1L, 2L));
+		assertEquals(StudentRegistrationBulkService.Outcome.UPDATED, first.get(0).getOutcome());
+		assertEquals(StudentRegistrationBulkService.Outcome.PRECONDITION_FAILED, first.get(1).getOutcome());
+
+		List<StudentRegistrationBulkService.Result> again = service.apply(EVENT,
+				StudentRegistrationBulkService.Action.SEND_CONVOCATION, false, List.of(1L));
+		assertEquals(new StudentRegistrationBulkService.Result(1L, StudentRegistrationBulkService.Outcome.UNCHANGED,
+				"Convocation already sent"), again.get(0));
+	}
+
+	@Test
+	void rejectsEmptyAndOversizedRequests() {
+		assertThrows(IllegalArgumentException.class,
+				() -> service.apply(EVENT, StudentRegistrationBulkService.Action.APPROVE, false, List.of()));
+		assertThrows(IllegalArgumentException.class,
+				() -> service.apply(EVENT, StudentRegistrationBulkService.Action.APPROVE, false, Collections.singletonList(null)));
+
+		List<Long> tooMany = new ArrayList<>();
+		for (long id = 1; id <= 11; id++) {
+			tooMany.add(id);
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> service.apply(EVENT, StudentRegistrationBulkService.Action.APPROVE, false, tooMany));
+		verifyNoInteractions(transactionManager);
+	}
+
+	private void row(Long id, Long eventId, RegistrationStatus status, boolean releveVerified, boolean bordereauVerified) {
+		Row row = new Row();
+		row.eventId = eventId;
+		row.status = status;
+		row.releveVerified = releveVerified;
+		row.bordereauVerified = bordereauVerified;
+		table.put(id, row);
+	}
+
+	// UPDATE ... WHERE id IN (:ids) AND event_id = :eventId AND <condition> RETURNING id
+	private List<Long> update(InvocationOnMock invocation, Predicate<Row> condition, Consumer<Row> change) {
+		Long eventId = invocation.getArgument(0);
+		List<Long> updated = new ArrayList<>();
+		for (Long id : invocation.<List<Long>>getArgument(1)) {
+			Row row = table.get(id);
+			if (row != null && row.eventId.equals(eventId) && condition.test(row)) {
+				change.accept(row);
+				updated.add(id);
+			}
+		}
+		return updated;
+	}
+
+	private static class Row {
+		private Long eventId;
+		private RegistrationStatus status;
+		private boolean releveVerified;
+		private boolean bordereauVerified;
+		private boolean convocationSent;
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.Inscription.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+	@Test
+	void startsFullAndRefusesOnceEmpty() {
+		TokenBucket bucket = new TokenBucket(3, 0.001);
+
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	@Test
+	void refillsAtTheConfiguredRate() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1, 20);
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+
+		Thread.sleep(80); // 20 tokens/s: one token every 50 ms
+
+		assertTrue(bucket.tryAcquire());
+	}
+
+	@Test
+	void neverHoldsMoreThanItsCapacity() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(2, 1000);
+		Thread.sleep(20);
+
+		assertEquals(2.0, bucket.availableTokens(), 1e-9);
+	}
+
+	@Test
+	void waitTimeMatchesTheMissingTokens() {
+		TokenBucket bucket = new TokenBucket(1, 1);
+		assertEquals(0L, bucket.nanosUntilAvailable());
+		assertTrue(bucket.tryAcquire());
+
+		long oneToken = bucket.nanosUntilAvailable();
+		long threeTokens = bucket.nanosUntil(3);
+
+		assertTrue(oneToken > TimeUnit.MILLISECONDS.toNanos(900) && oneToken <= TimeUnit.SECONDS.toNanos(1));
+		assertTrue(threeTokens > TimeUnit.MILLISECONDS.toNanos(2900) && threeTokens <= TimeUnit.SECONDS.toNanos(3));
+	}
+
+	@Test
+	void acquireBlocksUntilATokenIsAvailable() throws InterruptedException {
+		TokenBucket bucket = new TokenBucket(1, 50);
+		bucket.acquire();
+		long start = System.nanoTime();
+
+		bucket.acquire();
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(15));
+	}
+
+	@Test
+	void rejectsInvalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0.5, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+	}
+}
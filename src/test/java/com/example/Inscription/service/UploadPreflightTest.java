@@ -0,0 +1,222 @@
+package com.example.Inscription.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadPreflightTest {
+
+	private UploadPreflight preflight;
+
+	@BeforeEach
+	void setUp() {
+		PdfLoader pdfLoader = new PdfLoader(1);
+		ReflectionTestUtils.setField(pdfLoader, "maxMainMemoryBytes", 16L * 1024 * 1024);
+		ReflectionTestUtils.setField(pdfLoader, "maxStorageBytes", -1L);
+		ReflectionTestUtils.setField(pdfLoader, "tempDir", "");
+		ReflectionTestUtils.setField(pdfLoader, "acquireTimeoutMs", 5000L);
+
+		preflight = new UploadPreflight(pdfLoader);
+		ReflectionTestUtils.setField(preflight, "minBytes", 100);
+		ReflectionTestUtils.setField(preflight, "maxBytes", 10L * 1024 * 1024);
+		ReflectionTestUtils.setField(preflight, "minImageEdge", 300);
+		ReflectionTestUtils.setField(preflight, "defaultMaxPages", 30);
+		ReflectionTestUtils.setField(preflight, "maxPagesByType", List.of("releve_de_note:5", "bordereau_paiement:3"));
+	}
+
+	@Test
+	void sniffsTheTypeFromMagicBytes() throws Exception {
+		assertEquals(UploadPreflight.PDF, UploadPreflight.sniff(pdf(1, false, null)));
+		assertEquals(UploadPreflight.PNG, UploadPreflight.sniff(image("png", 10, 10)));
+		assertEquals(UploadPreflight.JPEG, UploadPreflight.sniff(image("jpg", 10, 10)));
+		assertEquals(UploadPreflight.WEBP, UploadPreflight.sniff(webpVp8x(10, 10)));
+		assertNull(UploadPreflight.sniff("GIF89a......".getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	@Test
+	void readsPageCountAndTextLayerOfAPdf() throws Exception {
+		UploadPreflight.Report report = preflight.inspect(pdf(2, true, null), "bordereau_paiement");
+
+		assertTrue(report.isAccepted(), report.getMessage());
+		assertEquals(UploadPreflight.PDF, report.getMimeType());
+		assertEquals(2, report.getPages());
+		assertTrue(report.isTextLayer());
+		assertFalse(report.isEncrypted());
+	}
+
+	@Test
+	void appliesThePageLimitOfTheExpectedType() throws Exception {
+		byte[] sixPages = pdf(6, false, null);
+
+		UploadPreflight.Report transcript = preflight.inspect(sixPages, "releve_de_note");
+		assertEquals(UploadPreflight.Reason.TOO_MANY_PAGES, transcript.getReason());
+		assertEquals(400, transcript.httpStatus());
+
+		assertTrue(preflight.inspect(sixPages, null).isAccepted());
+	}
+
+	@Test
+	void rejectsTruncatedAndPasswordProtectedPdfs() throws Exception {
+		byte[] complete = pdf(1, true, null);
+		byte[] truncated = Arrays.copyOf(complete, complete.length - 40);
+		assertEquals(UploadPreflight.Reason.CORRUPTED, preflight.inspect(truncated, null).getReason());
+
+		UploadPreflight.Report encrypted = preflight.inspect(pdf(1, true, "secret"), null);
+		assertEquals(UploadPreflight.Reason.ENCRYPTED, encrypted.getReason());
+		assertTrue(encrypted.isEncrypted());
+	}
+
+	@Test
+	void readsPngAndJpegDimensions() throws Exception {
+		UploadPreflight.Report png = preflight.inspect(image("png", 400, 320), null);
+		assertTrue(png.isAccepted(), png.getMessage());
+		assertEquals(400, png.getWidth());
+		assertEquals(320, png.getHeight());
+
+		UploadPreflight.Report jpeg = preflight.inspect(image("jpg", 640, 480), null);
+		assertTrue(jpeg.isAccepted(), jpeg.getMessage());
+		assertEquals(640, jpeg.getWidth());
+		assertEquals(480, jpeg.getHeight());
+	}
+
+	@Test
+	void rejectsImagesTooSmallToRead() throws Exception {
+		UploadPreflight.Report report = preflight.inspect(image("png", 200, 900), null);
+
+		assertEquals(UploadPreflight.Reason.IMAGE_TOO_SMALL, report.getReason());
+		assertEquals(200, report.getWidth());
+	}
+
+	@Test
+	void readsTheThreeWebpHeaderVariants() {
+		UploadPreflight.Report extended = preflight.inspect(webpVp8x(1200, 900), null);
+		assertEquals(1200, extended.getWidth());
+		assertEquals(900, extended.getHeight());
+
+		UploadPreflight.Report lossless = preflight.inspect(webpVp8l(800, 601), null);
+		assertEquals(800, lossless.getWidth());
+		assertEquals(601, lossless.getHeight());
+
+		UploadPreflight.Report lossy = preflight.inspect(webpVp8(1024, 768), null);
+		assertEquals(1024, lossy.getWidth());
+		assertEquals(768, lossy.getHeight());
+		assertTrue(lossy.isAccepted());
+	}
+
+	@Test
+	void mapsRejectionsToHttpStatuses() {
+		UploadPreflight.Report empty = preflight.inspect(new byte[10], null);
+		assertEquals(UploadPreflight.Reason.EMPTY, empty.getReason());
+		assertEquals(400, empty.httpStatus());
+
+		UploadPreflight.Report unsupported = preflight.inspect(new byte[500], null);
+		assertEquals(UploadPreflight.Reason.UNSUPPORTED_TYPE, unsupported.getReason());
+		assertEquals(415, unsupported.httpStatus());
+
+		ReflectionTestUtils.setField(preflight, "maxBytes", 200L);
+		UploadPreflight.Report large = preflight.inspect(new byte[500], null);
+		assertEquals(UploadPreflight.Reason.TOO_LARGE, large.getReason());
+		assertEquals(413, large.httpStatus());
+		assertEquals(false, large.toErrorBody().get("success"));
+	}
+
+	private static byte[] pdf(int pages, boolean text, String userPassword) throws Exception {
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < pages; i++) {
+				PDPage page = new PDPage();
+				document.addPage(page);
+				if (text) {
+					try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+						content.beginText();
+						content.setFont(PDType1Font.HELVETICA, 12);
+						content.newLineAtOffset(72, 700);
+						content.showText("Bordereau de versement page " + (i + 1));
+						content.endText();
+					}
+				}
+			}
+			if (userPassword != null) {
+				StandardProtectionPolicy policy = new StandardProtectionPolicy("owner", userPassword, new AccessPermission());
+				policy.setEncryptionKeyLength(128);
+				document.protect(policy);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			document.save(out);
+			return out.toByteArray();
+		}
+	}
+
+	private static byte[] image(String format, int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, format, out);
+		return pad(out.toByteArray());
+	}
+
+	private static byte[] webpVp8x(int width, int height) {
+		byte[] b = webp("VP8X");
+		writeInt24(b, 24, width - 1);
+		writeInt24(b, 27, height - 1);
+		return b;
+	}
+
+	private static byte[] webpVp8l(int width, int height) {
+		byte[] b = webp("VP8L");
+		b[20] = 0x2f;
+		int bits = (width - 1) | ((height - 1) << 14);
+		b[21] = (byte) bits;
+		b[22] = (byte) (bits >> 8);
+		b[23] = (byte) (bits >> 16);
+		b[24] = (byte) (bits >> 24);
+		return b;
+	}
+
+	private static byte[] webpVp8(int width, int height) {
+		byte[] b = webp("VP8 ");
+		b[23] = (byte) 0x9d;
+		b[24] = 0x01;
+		b[25] = 0x2a;
+		b[26] = (byte) width;
+		b[27] = (byte) (width >> 8);
+		b[28] = (byte) height;
+		b[29] = (byte) (height >> 8);
+		return b;
+	}
+
+	private static byte[] webp(String chunk) {
+		byte[] b = new byte[200];
+		System.arraycopy("RIFF".getBytes(StandardCharsets.US_ASCII), 0, b, 0, 4);
+		System.arraycopy("WEBP".getBytes(StandardCharsets.US_ASCII), 0, b, 8, 4);
+		System.arraycopy(chunk.getBytes(StandardCharsets.US_ASCII), 0, b, 12, 4);
+		return b;
+	}
+
+	private static void writeInt24(byte[] b, int offset, int value) {
+		b[offset] = (byte) value;
+		b[offset + 1] = (byte) (value >> 8);
+		b[offset + 2] = (byte) (value >> 16);
+	}
+
+	// Au-dessus de upload.preflight.min-bytes même pour une image unie très compressée
+	private static byte[] pad(byte[] bytes) {
+		return bytes.length >= 100 ? bytes : Arrays.copyOf(bytes, 100);
+	}
+}